@@ -0,0 +1,347 @@
+/*
+ * This file is part of the COASTAL tool, https://deepseaplatform.github.io/coastal/
+ *
+ * Copyright (c) 2019-2020, Computer Science, Stellenbosch University.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package za.ac.sun.cs.coastal;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.logging.log4j.Logger;
+
+import za.ac.sun.cs.coastal.instrument.InstrumentationCache;
+
+/**
+ * Runs a list of configurations one after the other, or several at a time, in
+ * the same JVM. Each configuration gets its own instance of {@link COASTAL},
+ * but all instances share a cache of instrumented classes. When all runs are
+ * done, a combined report is written to the log.
+ * 
+ * Standard output and standard error are suppressed for the whole batch, and
+ * not by the individual runs, since concurrent runs would otherwise restore
+ * the streams in the wrong order.
+ */
+public class BatchRunner {
+
+	/**
+	 * The log for the batch and all its runs.
+	 */
+	private final Logger log;
+
+	/**
+	 * The names of the configuration files, one for each run.
+	 */
+	private final List<String> configFiles = new ArrayList<>();
+
+	/**
+	 * Additional configuration settings added to every run.
+	 */
+	private final String extraConfig;
+
+	/**
+	 * The number of runs that may execute at the same time.
+	 */
+	private final int jobs;
+
+	/**
+	 * Whether a brief line is printed for each run.
+	 */
+	private final boolean brief;
+
+	/**
+	 * The instrumented classes shared by all runs.
+	 */
+	private final InstrumentationCache instrumentationCache = new InstrumentationCache();
+
+	/**
+	 * The outcome of each run, in the order of {@link #configFiles}.
+	 */
+	private final List<Result> results = new ArrayList<>();
+
+	/**
+	 * Whether any of the configurations asks for a hard exit.
+	 */
+	private volatile boolean hardExit = false;
+
+	/**
+	 * Construct a new batch.
+	 * 
+	 * @param log
+	 *                    the log for the batch and all its runs
+	 * @param args
+	 *                    configuration files, or list files (prefixed with
+	 *                    "@") that contain the names of configuration files
+	 * @param extraConfig
+	 *                    additional configuration settings added to every run,
+	 *                    or {@code null}
+	 * @param jobs
+	 *                    the number of runs that may execute at the same time
+	 * @param brief
+	 *                    whether a brief line is printed for each run
+	 */
+	public BatchRunner(Logger log, String[] args, String extraConfig, int jobs, boolean brief) {
+		this.log = log;
+		String echo = "coastal.settings.echo-output = true";
+		this.extraConfig = (extraConfig == null) ? echo : (extraConfig + "\n" + echo);
+		this.jobs = Math.max(jobs, 1);
+		this.brief = brief;
+		for (String arg : args) {
+			if (arg.startsWith("@")) {
+				readListFile(arg.substring(1));
+			} else {
+				configFiles.add(arg);
+			}
+		}
+	}
+
+	/**
+	 * Add the configuration files named in a list file. Blank lines and lines
+	 * that start with "#" are ignored.
+	 * 
+	 * @param listFile
+	 *                 the name of the list file
+	 */
+	private void readListFile(String listFile) {
+		try {
+			for (String line : Files.readAllLines(Paths.get(listFile), StandardCharsets.UTF_8)) {
+				line = line.trim();
+				if ((line.length() > 0) && !line.startsWith("#")) {
+					configFiles.add(line);
+				}
+			}
+		} catch (IOException x) {
+			log.warn("cannot read list file {}: {}", listFile, x.getMessage());
+		}
+	}
+
+	public List<Result> getResults() {
+		return results;
+	}
+
+	public InstrumentationCache getInstrumentationCache() {
+		return instrumentationCache;
+	}
+
+	public boolean isHardExit() {
+		return hardExit;
+	}
+
+	/**
+	 * Execute all runs and report on them.
+	 */
+	public void run() {
+		long startTime = System.currentTimeMillis();
+		PrintStream out = System.out;
+		PrintStream err = System.err;
+		System.setOut(COASTAL.NUL);
+		System.setErr(COASTAL.NUL);
+		try {
+			if (jobs == 1) {
+				for (String configFile : configFiles) {
+					results.add(run(configFile));
+				}
+			} else {
+				ExecutorService executor = Executors.newFixedThreadPool(Math.max(Math.min(jobs, configFiles.size()), 1));
+				List<Future<Result>> futures = new ArrayList<>();
+				for (String configFile : configFiles) {
+					futures.add(executor.submit(() -> run(configFile)));
+				}
+				executor.shutdown();
+				for (int i = 0; i < futures.size(); i++) {
+					try {
+						results.add(futures.get(i).get());
+					} catch (ExecutionException x) {
+						results.add(new Result(configFiles.get(i), x.getCause().toString()));
+					}
+				}
+			}
+		} catch (InterruptedException x) {
+			log.info(Banner.getBannerLine("batch interrupted", '!'));
+			Thread.currentThread().interrupt();
+		} finally {
+			System.setOut(out);
+			System.setErr(err);
+		}
+		report(System.currentTimeMillis() - startTime);
+	}
+
+	/**
+	 * Execute a single run.
+	 * 
+	 * @param configFile
+	 *                   the configuration file of the run
+	 * @return the outcome of the run
+	 */
+	private Result run(String configFile) {
+		Configuration config = Configuration.load(log, configFile, extraConfig);
+		if (config == null) {
+			return new Result(configFile, "configuration not loaded");
+		}
+		if (config.getBoolean("coastal.settings.hard-exit", false)) {
+			hardExit = true;
+		}
+		try {
+			COASTAL coastal = new COASTAL(log, config, instrumentationCache);
+			coastal.start(false);
+			return new Result(configFile, coastal);
+		} catch (RuntimeException x) {
+			log.warn("run {} failed", configFile, x);
+			return new Result(configFile, x.toString());
+		}
+	}
+
+	/**
+	 * Write the combined report of all runs to the log.
+	 * 
+	 * @param batchTime
+	 *                  the wall-clock time of the whole batch in milliseconds
+	 */
+	private void report(long batchTime) {
+		long totalTime = 0, totalPaths = 0, totalDives = 0, totalSurfs = 0;
+		int failed = 0;
+		log.info(Banner.getBannerLine("BATCH", '='));
+		for (Result result : results) {
+			if (result.getError() != null) {
+				failed++;
+				log.info("  {}: FAILED ({})", result.getConfigFile(), result.getError());
+				continue;
+			}
+			log.info("  {}: paths: {} dives: {} surfs: {} time: {} ms", result.getRunName(), result.getPaths(),
+					result.getDives(), result.getSurfs(), result.getTime());
+			if (brief) {
+				System.out.println("COASTAL version: " + COASTAL.VERSION + " model: " + result.getRunName()
+						+ " paths: " + result.getPaths() + " time: " + result.getTime());
+			}
+			totalTime += result.getTime();
+			totalPaths += result.getPaths();
+			totalDives += result.getDives();
+			totalSurfs += result.getSurfs();
+		}
+		log.info(Banner.getBannerLine("BATCH TOTAL", '='));
+		log.info("  runs: {}", results.size());
+		log.info("  failed-runs: {}", failed);
+		log.info("  paths: {}", totalPaths);
+		log.info("  dives: {}", totalDives);
+		log.info("  surfs: {}", totalSurfs);
+		log.info("  run-time: {} ms", totalTime);
+		log.info("  batch-time: {} ms", batchTime);
+		log.info("  instrumentation-cache-size: {}", instrumentationCache.size());
+		log.info("  instrumentation-cache-hits: {}", instrumentationCache.getHitCount());
+		log.info("  instrumentation-cache-misses: {}", instrumentationCache.getMissCount());
+	}
+
+	// ======================================================================
+	//
+	// RESULTS
+	//
+	// ======================================================================
+
+	/**
+	 * The outcome of a single run.
+	 */
+	public static class Result {
+
+		private final String configFile;
+
+		private final String runName;
+
+		private final String error;
+
+		private final long paths;
+
+		private final long dives;
+
+		private final long surfs;
+
+		private final long time;
+
+		/**
+		 * Construct the outcome of a completed run.
+		 * 
+		 * @param configFile
+		 *                   the configuration file of the run
+		 * @param coastal
+		 *                   the instance of COASTAL that executed the run
+		 */
+		Result(String configFile, COASTAL coastal) {
+			this.configFile = configFile;
+			runName = coastal.getConfig().getString("coastal.run-name", configFile);
+			error = null;
+			paths = coastal.getPathTree().getUniqueCount();
+			dives = coastal.getReporter().getLong("Divers.count");
+			surfs = coastal.getReporter().getLong("Surfers.count");
+			time = coastal.getStoppingTime() - coastal.getStartingTime();
+		}
+
+		/**
+		 * Construct the outcome of a failed run.
+		 * 
+		 * @param configFile
+		 *                   the configuration file of the run
+		 * @param error
+		 *                   a description of the failure
+		 */
+		Result(String configFile, String error) {
+			this.configFile = configFile;
+			runName = configFile;
+			this.error = error;
+			paths = 0;
+			dives = 0;
+			surfs = 0;
+			time = 0;
+		}
+
+		public String getConfigFile() {
+			return configFile;
+		}
+
+		public String getRunName() {
+			return runName;
+		}
+
+		public String getError() {
+			return error;
+		}
+
+		public long getPaths() {
+			return paths;
+		}
+
+		public long getDives() {
+			return dives;
+		}
+
+		public long getSurfs() {
+			return surfs;
+		}
+
+		public long getTime() {
+			return time;
+		}
+
+	}
+
+}
@@ -18,6 +18,7 @@
  */
 package za.ac.sun.cs.coastal;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
@@ -25,22 +26,34 @@ import java.lang.reflect.Method;
 import java.net.UnknownHostException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.Deque;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
 import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.LogManager;
@@ -49,11 +62,14 @@ import org.apache.logging.log4j.Logger;
 import za.ac.sun.cs.coastal.Reporter.Reportable;
 import za.ac.sun.cs.coastal.TaskFactory.Task;
 import za.ac.sun.cs.coastal.TaskFactory.TaskManager;
+import za.ac.sun.cs.coastal.TerminationDetector.Stage;
 import za.ac.sun.cs.coastal.diver.DiverFactory;
 import za.ac.sun.cs.coastal.diver.DiverFactory.DiverManager;
 import za.ac.sun.cs.coastal.diver.SymbolicState;
+import za.ac.sun.cs.coastal.instrument.InstrumentationCache;
 import za.ac.sun.cs.coastal.instrument.InstrumentationClassManager;
 import za.ac.sun.cs.coastal.messages.Broker;
+import za.ac.sun.cs.coastal.messages.EventBus;
 import za.ac.sun.cs.coastal.messages.FreqTuple;
 import za.ac.sun.cs.coastal.messages.TimeTuple;
 import za.ac.sun.cs.coastal.messages.Tuple;
@@ -64,6 +80,7 @@ import za.ac.sun.cs.coastal.strategy.StrategyFactory;
 import za.ac.sun.cs.coastal.surfer.SurferFactory;
 import za.ac.sun.cs.coastal.surfer.SurferFactory.SurferManager;
 import za.ac.sun.cs.coastal.symbolic.Execution;
+import za.ac.sun.cs.coastal.symbolic.FingerprintSet;
 import za.ac.sun.cs.coastal.symbolic.Input;
 
 /**
@@ -92,6 +109,12 @@ public class COASTAL {
 	 */
 	private final Broker broker;
 
+	/**
+	 * The single dispatcher for high-frequency events produced by instrumented
+	 * code.
+	 */
+	private final EventBus eventBus;
+
 	/**
 	 * The single reporter that collects information about the analysis run to
 	 * display at the end.
@@ -236,6 +259,21 @@ public class COASTAL {
 		 */
 		private int threadCount = 0;
 
+		/**
+		 * The largest number of threads at any time.
+		 */
+		private int peakThreadCount = 0;
+
+		/**
+		 * The running tasks, most recently started last.
+		 */
+		private final Deque<TaskThreads> taskThreads = new ArrayDeque<>();
+
+		/**
+		 * The accumulated wait time of the manager at the previous adjustment.
+		 */
+		private long lastWaitTime = 0;
+
 		/**
 		 * Construct a new task summary.
 		 * 
@@ -269,6 +307,7 @@ public class COASTAL {
 		 */
 		public Task[] create(COASTAL coastal) {
 			threadCount++;
+			peakThreadCount = Math.max(peakThreadCount, threadCount);
 			return factory.createTask(coastal, manager);
 		}
 
@@ -317,6 +356,81 @@ public class COASTAL {
 			return threadCount;
 		}
 
+		/**
+		 * Return the largest number of threads at any time.
+		 * 
+		 * @return peak number of threads
+		 */
+		public int getPeakThreadCount() {
+			return peakThreadCount;
+		}
+
+		/**
+		 * Retire the most recently started task and return the threads on which
+		 * its components run. Components that have not started yet will not run
+		 * at all.
+		 * 
+		 * @return the threads of the task (possibly empty)
+		 */
+		List<Thread> retire() {
+			TaskThreads retired = taskThreads.pollLast();
+			if (retired == null) {
+				return Collections.emptyList();
+			}
+			threadCount--;
+			return retired.retire();
+		}
+
+	}
+
+	/**
+	 * The threads that run the components of one task. When tasks are run by an
+	 * executor, a component only knows its thread once it starts to run.
+	 */
+	private static class TaskThreads {
+
+		private final Thread[] threads;
+
+		private boolean retired = false;
+
+		TaskThreads(int componentCount) {
+			threads = new Thread[componentCount];
+		}
+
+		/**
+		 * Record the thread that runs a component.
+		 * 
+		 * @param index
+		 *               the index of the component
+		 * @param thread
+		 *               the thread that runs it
+		 * @return {@code false} if the task has been retired and the component
+		 *         should not run
+		 */
+		synchronized boolean attach(int index, Thread thread) {
+			if (retired) {
+				return false;
+			}
+			threads[index] = thread;
+			return true;
+		}
+
+		/**
+		 * Mark the task as retired.
+		 * 
+		 * @return the threads of the components that have started
+		 */
+		synchronized List<Thread> retire() {
+			retired = true;
+			List<Thread> started = new ArrayList<>(threads.length);
+			for (Thread thread : threads) {
+				if (thread != null) {
+					started.add(thread);
+				}
+			}
+			return started;
+		}
+
 	}
 
 	/**
@@ -336,6 +450,22 @@ public class COASTAL {
 	 */
 	private SurferManager surferManager;
 
+	/**
+	 * The summary of divers, which tells whether any divers will run.
+	 */
+	private TaskInfo diverTasks;
+
+	/**
+	 * The summary of surfers, which tells whether any surfers will run.
+	 */
+	private TaskInfo surferTasks;
+
+	/**
+	 * The stages whose executions are consumed, either by a strategy or, for a
+	 * worker, by the coordinator. Executions of other stages are not queued.
+	 */
+	private final Set<Stage> consumedStages = EnumSet.noneOf(Stage.class);
+
 	// ======================================================================
 	//
 	// OBSERVERS
@@ -400,7 +530,7 @@ public class COASTAL {
 	/**
 	 * A null {@link PrintStream} for suppressing output and error.
 	 */
-	private static final PrintStream NUL = new PrintStream(new OutputStream() {
+	static final PrintStream NUL = new PrintStream(new OutputStream() {
 
 		@Override
 		public void write(int b) throws IOException {
@@ -415,34 +545,65 @@ public class COASTAL {
 	// ======================================================================
 
 	/**
-	 * Cache of all diver models that have been enqueued.
+	 * Fingerprints of all diver models that have been enqueued.
 	 */
-	protected final Set<String> visitedDiverInputs = Collections.synchronizedSet(new HashSet<>());
+	protected final FingerprintSet visitedDiverInputs;
 
 	/**
 	 * A queue of models produced by strategies and consumed by divers.
 	 */
-	private final BlockingQueue<Input> diverInputQueue;
+	private final WorkQueue<Input> diverInputQueue;
 
 	/**
-	 * Cache of all surfer models that have been enqueued.
+	 * Fingerprints of all surfer models that have been enqueued.
 	 */
-	protected final Set<String> visitedSurferInputs = Collections.synchronizedSet(new HashSet<>());
+	protected final FingerprintSet visitedSurferInputs;
 
 	/**
 	 * A queue of models produced by strategies and consumed by surfers.
 	 */
-	private final BlockingQueue<Input> surferInputQueue;
+	private final WorkQueue<Input> surferInputQueue;
+
+	/**
+	 * The per-surfer lanes that hold the surfer models in memory, or
+	 * {@code null} if work stealing is switched off and the models are kept in
+	 * a single priority queue.
+	 */
+	private final StealingQueue<Input> surferInputLanes;
 
 	/**
 	 * A queue of executions produced by divers and consumed by strategies.
 	 */
-	private final BlockingQueue<Execution> pcQueue;
+	private final WorkQueue<Execution> pcQueue;
 
 	/**
 	 * A queue of executions produced by surfers and consumed by strategies.
 	 */
-	private final BlockingQueue<Execution> traceQueue;
+	private final WorkQueue<Execution> traceQueue;
+
+	/**
+	 * The record of the progress of the analysis run that is written to
+	 * checkpoint files, or {@code null} if no checkpoints are written.
+	 */
+	private final Checkpoint checkpoint;
+
+	/**
+	 * Whether the analysis run is replaying the inputs of a checkpoint, and
+	 * still holds back the inputs that were queued.
+	 */
+	private boolean replaying = false;
+
+	/**
+	 * The coordinator that hands out inputs to worker processes, or
+	 * {@code null} if the analysis run is not distributed.
+	 */
+	private final Coordinator coordinator;
+
+	/**
+	 * The connection to the coordinator if this analysis run is a worker of a
+	 * distributed run, or {@code null} otherwise.
+	 */
+	private final Worker worker;
 
 	// ======================================================================
 	//
@@ -478,28 +639,78 @@ public class COASTAL {
 	// ======================================================================
 
 	/**
-	 * The maximum number of threads to use for divers and strategies.
+	 * How the components of divers, surfers, and strategies are run: "threads",
+	 * "pool", or "virtual" (see {@link #createExecutor(String)}).
 	 */
-	// private final int maxThreads;
+	private final String executionMode;
 
 	/**
-	 * The task manager for concurrent divers and strategies.
+	 * The executor that runs the components of divers, surfers, and strategies,
+	 * or {@code null} if each component runs on its own thread.
 	 */
-	// private final ExecutorService executor;
+	private ExecutorService executor = null;
 
 	/**
-	 * The task completion manager that collects the "results" from divers and
-	 * strategies. In this case, there are no actual results; instead, all products
-	 * are either consumed or collected by the reporter.
+	 * The components of tasks submitted to the {@link #executor}. Components that
+	 * have finished are removed by {@link #pruneComponents()}.
 	 */
-	// private final CompletionService<Void> completionService;
+	private final List<Future<?>> futures = new ArrayList<>();
 
 	/**
-	 * A list of outstanding tasks.
+	 * The threads started for components of tasks if there is no
+	 * {@link #executor}. Threads that have finished are removed by
+	 * {@link #pruneComponents()}.
 	 */
-	// private final List<Future<Void>> futures;
 	private final List<Thread> threads = new ArrayList<>();
 
+	/**
+	 * Number of milliseconds that {@link #stopTasks()} waits for the tasks to
+	 * finish after they have been interrupted.
+	 */
+	private static final long STOP_TIMEOUT = 500;
+
+	/**
+	 * Whether the number of divers, surfers, and strategies is adjusted while
+	 * COASTAL runs.
+	 */
+	private final boolean adaptiveThreads;
+
+	/**
+	 * The maximum number of items that a task takes from its queue at once.
+	 */
+	private final int batchSize;
+
+	/**
+	 * Threads that must stop the next time they ask for work.
+	 */
+	private final Set<Thread> retiringThreads = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * The number of threads currently waiting for an item from each queue.
+	 */
+	private final Map<WorkQueue<?>, AtomicInteger> waitingThreads = new IdentityHashMap<>();
+
+	/**
+	 * Number of milliseconds that a thread waits for work before it checks
+	 * whether it should retire.
+	 */
+	private static final long RETIRE_POLL_DELAY = 100;
+
+	/**
+	 * The number of tasks started by adaptive scaling.
+	 */
+	private int scaleUpCount = 0;
+
+	/**
+	 * The number of tasks retired by adaptive scaling.
+	 */
+	private int scaleDownCount = 0;
+
+	/**
+	 * The time of the previous adjustment of the number of tasks.
+	 */
+	private long lastScaleTime = 0;
+
 	// ======================================================================
 	//
 	// SHARED VARIABLES
@@ -507,13 +718,10 @@ public class COASTAL {
 	// ======================================================================
 
 	/**
-	 * The outstanding number of models that have not been processed by divers, or
-	 * whose resulting path conditions have not been processed by a strategy. This
-	 * is not merely the number of items in the models queue or the pcs queue: work
-	 * may also be presented by a model of path condition currently being processed.
-	 * The strategy adjusts the work after it has processed a path condition.
+	 * The inputs and executions that are queued or being processed by divers,
+	 * surfers, and strategies. As soon as none are left, the analysis run stops.
 	 */
-	private final AtomicLong work = new AtomicLong(0);
+	private final TerminationDetector termination = new TerminationDetector(this::stopWork);
 
 	/**
 	 * A flag to indicate that either (1) all work is done, or (2) symbolic
@@ -554,10 +762,10 @@ public class COASTAL {
 	 * Map<String, Integer> maxBounds = new HashMap<>();
 	 * 
 	 * // DIVERS, SURFERS, STRATEGIES
-	 *
+	 * 
 	 * private final List<TaskInfo> tasks = new ArrayList<>(); private DiverManager
 	 * diverManager; private SurferManager surferManager;
-	 *
+	 * 
 	 * // OBSERVERS
 	 * 
 	 * private final List<Tuple> observersPerRun = new ArrayList<>(); private final
@@ -597,7 +805,7 @@ public class COASTAL {
 	 * 
 	 * private final AtomicLong work = new AtomicLong(0); private final
 	 * AtomicBoolean workDone = new AtomicBoolean(false);
-	 *
+	 * 
 	 * @formatter:on
 	 */
 
@@ -610,27 +818,112 @@ public class COASTAL {
 	 *                      the configuration to use for this analysis run
 	 */
 	public COASTAL(Logger log, Configuration configuration) {
+		this(log, configuration, null, null);
+	}
+
+	/**
+	 * Initialize the final fields for this analysis run of COASTAL, sharing
+	 * instrumented classes with other analysis runs in the same JVM.
+	 * 
+	 * @param log
+	 *                             the logger to use for this analysis run
+	 * @param configuration
+	 *                             the configuration to use for this analysis run
+	 * @param instrumentationCache
+	 *                             the cache of instrumented classes shared with
+	 *                             other runs, or {@code null} if classes are not
+	 *                             shared
+	 */
+	public COASTAL(Logger log, Configuration configuration, InstrumentationCache instrumentationCache) {
+		this(log, configuration, instrumentationCache, null);
+	}
+
+	/**
+	 * Initialize the final fields for an analysis run that works for the
+	 * coordinator of a distributed run.
+	 * 
+	 * @param log
+	 *                      the logger to use for this analysis run
+	 * @param configuration
+	 *                      the configuration received from the coordinator
+	 * @param worker
+	 *                      the connection to the coordinator
+	 */
+	COASTAL(Logger log, Configuration configuration, Worker worker) {
+		this(log, configuration, null, worker);
+	}
+
+	private COASTAL(Logger log, Configuration configuration, InstrumentationCache instrumentationCache,
+			Worker worker) {
 		this.log = log;
 		this.configuration = configuration;
+		this.worker = worker;
 		broker = new Broker();
 		broker.subscribe("coastal-stop", this::report);
+		eventBus = new EventBus();
 		reporter = new Reporter(this);
 		pathTree = new PathTree(this);
-		classManager = new InstrumentationClassManager(this, System.getProperty("java.class.path"));
+		classManager = new InstrumentationClassManager(this, System.getProperty("java.class.path"),
+				instrumentationCache);
+		// The strategies need to know whether this run coordinates workers
+		int distributedPort = getConfig().getInt("coastal.settings.distributed.port", 0, 0, 65535);
+		int localWorkers = getConfig().getInt("coastal.settings.distributed.workers", 0, 0, Short.MAX_VALUE);
+		if ((worker == null) && ((distributedPort > 0) || (localWorkers > 0))) {
+			coordinator = new Coordinator(this, distributedPort, localWorkers);
+		} else {
+			coordinator = null;
+		}
 		parseConfig();
 		// QUEUES
-		diverInputQueue = new PriorityBlockingQueue<>(50, (Input i1, Input i2) -> i1.getPriority() - i2.getPriority());
-		surferInputQueue = new PriorityBlockingQueue<>(50, (Input i1, Input i2) -> i1.getPriority() - i2.getPriority());
-		pcQueue = new LinkedBlockingQueue<>();
-		traceQueue = new LinkedBlockingQueue<>();
+		Comparator<Input> byPriority = (Input i1, Input i2) -> i1.getPriority() - i2.getPriority();
+		WorkQueue.Codec<Input> inputCodec = new WorkQueue.Codec<Input>() {
+			@Override
+			public String encode(Input input) {
+				return input.encode();
+			}
+
+			@Override
+			public Input decode(String line) {
+				return Input.decode(line);
+			}
+		};
+		diverInputQueue = createQueue("diver-inputs", Stage.DIVER, null, byPriority, inputCodec);
+		if (getConfig().getBoolean("coastal.settings.queue.surfer-inputs.work-stealing", false)) {
+			int lanes = getConfig().getInt("coastal.surfers.threads", 1, 1, Short.MAX_VALUE);
+			surferInputLanes = new StealingQueue<>(Input::getPriority, lanes);
+		} else {
+			surferInputLanes = null;
+		}
+		surferInputQueue = createQueue("surfer-inputs", Stage.SURFER, surferInputLanes, byPriority, inputCodec);
+		pcQueue = createQueue("pcs", Stage.STRATEGY, null, null, null);
+		traceQueue = createQueue("traces", Stage.STRATEGY, null, null, null);
+		waitingThreads.put(diverInputQueue, new AtomicInteger());
+		waitingThreads.put(surferInputQueue, new AtomicInteger());
+		waitingThreads.put(pcQueue, new AtomicInteger());
+		waitingThreads.put(traceQueue, new AtomicInteger());
+		long dedupeLimit = getConfig().getLong("coastal.settings.dedupe-limit", 0, 0, Long.MAX_VALUE);
+		visitedDiverInputs = new FingerprintSet(dedupeLimit);
+		visitedSurferInputs = new FingerprintSet(dedupeLimit);
+		String checkpointFile = getConfig().getString("coastal.settings.checkpoint.file", "").trim();
+		String resumeFile = getConfig().getString("coastal.settings.checkpoint.resume", "").trim();
+		if (checkpointFile.isEmpty()) {
+			checkpointFile = resumeFile;
+		}
+		if (checkpointFile.isEmpty()) {
+			checkpoint = null;
+		} else {
+			long interval = getConfig().getLong("coastal.settings.checkpoint.interval", 60, 0, Long.MAX_VALUE);
+			checkpoint = new Checkpoint(this, checkpointFile, interval);
+			if (!resumeFile.isEmpty()) {
+				checkpoint.resume(new File(resumeFile));
+			}
+		}
 		// TIMING INFORMATION
 		timeLimit = getConfig().getLongMaxed("coastal.settings.time-limit");
 		// TASK MANAGEMENT
-		// maxThreads = getConfig().getInt("coastal.settings.max-threads", 32, 2,
-		// Short.MAX_VALUE);
-		// executor = Executors.newCachedThreadPool();
-		// completionService = new ExecutorCompletionService<Void>(executor);
-		// futures = new ArrayList<Future<Void>>(maxThreads);
+		adaptiveThreads = getConfig().getBoolean("coastal.settings.adaptive-threads", false);
+		batchSize = getConfig().getInt("coastal.settings.batch-size", 1, 1, Short.MAX_VALUE);
+		executionMode = getConfig().getString("coastal.settings.execution-mode", "threads");
 	}
 
 	/**
@@ -1134,15 +1427,25 @@ public class COASTAL {
 		int st = getConfig().getInt("coastal.surfers.threads", 0);
 		int sl = getConfig().getInt("coastal.surfers.min-threads", 0);
 		int su = getConfig().getInt("coastal.surfers.max-threads", 128);
-		if (dt + st == 0) {
+		if ((dt + st == 0) && (coordinator == null)) {
+			// A coordinator without divers and surfers leaves the executions to its workers
 			dt = 1;
 		}
-		TaskInfo dti = new TaskInfo(this, diverFactory, dt, dl, du);
-		diverManager = (DiverManager) dti.getManager();
-		tasks.add(dti);
-		TaskInfo sti = new TaskInfo(this, surferFactory, st, sl, su);
-		surferManager = (SurferManager) sti.getManager();
-		tasks.add(sti);
+		diverTasks = new TaskInfo(this, diverFactory, dt, dl, du);
+		diverManager = (DiverManager) diverTasks.getManager();
+		tasks.add(diverTasks);
+		surferTasks = new TaskInfo(this, surferFactory, st, sl, su);
+		surferManager = (SurferManager) surferTasks.getManager();
+		tasks.add(surferTasks);
+		if (worker != null) {
+			// The executions of a worker go to the strategies of the coordinator
+			for (Stage stage : new Stage[] { Stage.DIVER, Stage.SURFER }) {
+				if (getInitThreads(stage) > 0) {
+					consumedStages.add(stage);
+				}
+			}
+			return;
+		}
 		int sfCount = 0;
 		String strategyString = getConfig().getString("coastal.strategies", "").trim();
 		if (strategyString.length() > 0) {
@@ -1169,6 +1472,12 @@ public class COASTAL {
 			log.fatal("NO STRATEGY SPECIFIED -- TERMINATING");
 			System.exit(1);
 		}
+		if ((dt > 0) && !isConsumed(Stage.DIVER)) {
+			log.warn("no strategy consumes the path conditions of divers");
+		}
+		if ((st > 0) && !isConsumed(Stage.SURFER)) {
+			log.warn("no strategy consumes the traces of surfers");
+		}
 	}
 
 	private boolean parseConfigStrategy(String prefix) {
@@ -1185,6 +1494,12 @@ public class COASTAL {
 		int sfu = getConfig().getInt(prefix + ".max-threads", 128);
 		StrategyFactory sf = (StrategyFactory) sfObject;
 		tasks.add(new TaskInfo(this, sf, sft, sfl, sfu));
+		if (sf.consumesPcs()) {
+			consumedStages.add(Stage.DIVER);
+		}
+		if (sf.consumesTraces()) {
+			consumedStages.add(Stage.SURFER);
+		}
 		return true;
 	}
 
@@ -1321,6 +1636,15 @@ public class COASTAL {
 		return broker;
 	}
 
+	/**
+	 * Return the event dispatcher for this analysis run of COASTAL.
+	 * 
+	 * @return the event dispatcher
+	 */
+	public EventBus getEventBus() {
+		return eventBus;
+	}
+
 	/**
 	 * Return the reporter for this analysis run of COASTAL. This is used mainly for
 	 * testing purposes.
@@ -1377,6 +1701,54 @@ public class COASTAL {
 		};
 	}
 
+	/**
+	 * Create one of the queues between tasks, using the capacity and overflow
+	 * policy configured for the queue. Items that the queue drops are removed
+	 * from the outstanding work, and items that it adds beyond its capacity are
+	 * logged as warnings.
+	 * 
+	 * @param name
+	 *                   the name of the queue in the configuration
+	 * @param stage
+	 *                   the stage that consumes the items of the queue
+	 * @param queue
+	 *                   the queue that holds the items in memory, or
+	 *                   {@code null} for the default queue for the comparator
+	 * @param comparator
+	 *                   the order of items, or {@code null} for a
+	 *                   first-in-first-out queue
+	 * @param codec
+	 *                   the conversion used to spill items, or {@code null}
+	 * @return the new queue
+	 */
+	private <E> WorkQueue<E> createQueue(String name, Stage stage, BlockingQueue<E> queue,
+			Comparator<? super E> comparator, WorkQueue.Codec<E> codec) {
+		String prefix = "coastal.settings.queue." + name;
+		int capacity = getConfig().getInt(prefix + ".capacity", 0, 0, Integer.MAX_VALUE);
+		String policyName = getConfig().getString(prefix + ".overflow", "block");
+		WorkQueue.OverflowPolicy policy = WorkQueue.OverflowPolicy.parse(policyName, null);
+		if (policy == null) {
+			log.warn("unknown overflow policy \"{}\" for queue {}, using block", policyName, name);
+			policy = WorkQueue.OverflowPolicy.BLOCK;
+		} else if ((policy == WorkQueue.OverflowPolicy.SPILL) && (codec == null)) {
+			log.warn("queue {} cannot spill to disk, using block", name);
+		}
+		long blockTimeout = getConfig().getLong("coastal.settings.queue.block-timeout", 1000, 0, Long.MAX_VALUE);
+		LongConsumer dropHandler = n -> termination.leave(stage, n);
+		LongConsumer overflowHandler = n -> {
+			// Warn on the first overflow and whenever the number doubles
+			if ((n & (n - 1)) == 0) {
+				log.warn("queue {} exceeded its capacity of {} ({} items overflowed so far)", name, capacity, n);
+			}
+		};
+		if (queue == null) {
+			return new WorkQueue<>(name, comparator, capacity, policy, blockTimeout, codec, dropHandler,
+					overflowHandler);
+		}
+		return new WorkQueue<>(name, queue, comparator, capacity, policy, blockTimeout, codec, dropHandler,
+				overflowHandler);
+	}
+
 	/**
 	 * Return an instance of {@link Reportable} that reports information about the
 	 * COASTAL analysis run.
@@ -1387,16 +1759,20 @@ public class COASTAL {
 		return new Reportable() {
 
 			private final String[] propertyNames = new String[] { "#elapsed", "diverModelQueue", "surferModelQueue",
-					"pcQueue", "traceQueue" };
+					"pcQueue", "traceQueue", "diverModelDrops", "surferModelDrops", "pcDrops", "traceDrops" };
 
 			@Override
 			public Object[] getPropertyValues() {
-				Object[] propertyValues = new Object[5];
+				Object[] propertyValues = new Object[9];
 				propertyValues[0] = Banner.getElapsed(System.currentTimeMillis() - startingTime.getTimeInMillis());
 				propertyValues[1] = diverInputQueue.size();
 				propertyValues[2] = surferInputQueue.size();
 				propertyValues[3] = pcQueue.size();
 				propertyValues[4] = traceQueue.size();
+				propertyValues[5] = diverInputQueue.getDropCount();
+				propertyValues[6] = surferInputQueue.getDropCount();
+				propertyValues[7] = pcQueue.getDropCount();
+				propertyValues[8] = traceQueue.getDropCount();
 				return propertyValues;
 			}
 
@@ -1556,7 +1932,7 @@ public class COASTAL {
 	/**
 	 * Return the actual arguments that should be passed to the main entry point in
 	 * the main class for this run.
-	 *
+	 * 
 	 * @since 0.0.3
 	 * 
 	 * @return the arguments for the main entry point
@@ -1845,6 +2221,16 @@ public class COASTAL {
 	//
 	// ======================================================================
 
+	/**
+	 * Return the maximum number of items that a diver, surfer, or strategy takes
+	 * from its queue at once.
+	 * 
+	 * @return the batch size
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
 	// DIVER MODEL QUEUE
 
 	/**
@@ -1868,8 +2254,7 @@ public class COASTAL {
 		int n = 0;
 		try {
 			for (Input in : inputs) {
-				if (visitedDiverInputs.add(in.toString())) {
-					diverInputQueue.put(in);
+				if (enqueue(diverInputQueue, Stage.DIVER, true, in)) {
 					n++;
 				}
 			}
@@ -1891,12 +2276,32 @@ public class COASTAL {
 		if (coastalDone.get()) {
 			return Input.DONE_INPUT;
 		} else {
-			return diverInputQueue.take();
+			return taken(Stage.DIVER, take(diverInputQueue));
 		}
 	}
 
 	/**
-	 * Add the first model to the queue of models. This kicks off the analysis run.
+	 * Return up to the given number of diver models, waiting until at least one
+	 * is available.
+	 * 
+	 * @param maxInputs
+	 *                  the maximum number of models to return
+	 * @return the models
+	 * @throws InterruptedException
+	 *                              if the action of removing the models was
+	 *                              interrupted
+	 */
+	public List<Input> getNextDiverInputs(int maxInputs) throws InterruptedException {
+		if (coastalDone.get()) {
+			return Collections.singletonList(Input.DONE_INPUT);
+		} else {
+			return taken(Stage.DIVER, takeBatch(diverInputQueue, maxInputs));
+		}
+	}
+
+	/**
+	 * Add the first model to the input queues of the divers and surfers that will
+	 * run and whose executions are consumed. This kicks off the analysis run.
 	 * 
 	 * THIS METHOD IS A PART OF THE DESIGN THAT NEEDS TO BE REFACTORED!!
 	 * 
@@ -1905,9 +2310,12 @@ public class COASTAL {
 	 */
 	public void addFirstModel(Input firstInput) {
 		try {
-			surferInputQueue.put(firstInput);
-			diverInputQueue.put(firstInput);
-			work.incrementAndGet();
+			if (runsStage(Stage.DIVER) && isConsumed(Stage.DIVER)) {
+				enqueue(diverInputQueue, Stage.DIVER, false, firstInput);
+			}
+			if (runsStage(Stage.SURFER) && isConsumed(Stage.SURFER)) {
+				enqueue(surferInputQueue, Stage.SURFER, false, firstInput);
+			}
 		} catch (InterruptedException e1) {
 			e1.printStackTrace();
 		}
@@ -1936,8 +2344,7 @@ public class COASTAL {
 		int n = 0;
 		try {
 			for (Input input : inputs) {
-				if (visitedSurferInputs.add(input.toString())) {
-					surferInputQueue.put(input);
+				if (enqueue(surferInputQueue, Stage.SURFER, true, input)) {
 					n++;
 				}
 			}
@@ -1957,10 +2364,7 @@ public class COASTAL {
 	 */
 	public boolean addSurferModel(Input input) {
 		try {
-			if (visitedSurferInputs.add(input.toString())) {
-				surferInputQueue.put(input);
-				return true;
-			}
+			return enqueue(surferInputQueue, Stage.SURFER, true, input);
 		} catch (InterruptedException e) {
 			e.printStackTrace();
 		}
@@ -1976,7 +2380,22 @@ public class COASTAL {
 	 *                              interrupted
 	 */
 	public Input getNextSurferInput() throws InterruptedException {
-		return surferInputQueue.take();
+		return taken(Stage.SURFER, take(surferInputQueue));
+	}
+
+	/**
+	 * Return up to the given number of surfer models, waiting until at least
+	 * one is available.
+	 * 
+	 * @param maxInputs
+	 *                  the maximum number of models to return
+	 * @return the models
+	 * @throws InterruptedException
+	 *                              if the action of removing the models was
+	 *                              interrupted
+	 */
+	public List<Input> getNextSurferInputs(int maxInputs) throws InterruptedException {
+		return taken(Stage.SURFER, takeBatch(surferInputQueue, maxInputs));
 	}
 
 	// PATH CONDITION QUEUE
@@ -1991,7 +2410,8 @@ public class COASTAL {
 	}
 
 	/**
-	 * Add a new entry to the diver queue of executions.
+	 * Add a new entry to the diver queue of executions. The work of the diver on
+	 * its input is done and passes to the strategies.
 	 * 
 	 * @param execution
 	 *                  the execution to add
@@ -1999,11 +2419,15 @@ public class COASTAL {
 	 *                              if interrupted
 	 */
 	public void addPc(Execution execution) throws InterruptedException {
-		if (execution == null) {
-			pcQueue.put(Execution.NULL);
-		} else {
-			pcQueue.put(execution);
+		if (isConsumed(Stage.DIVER)) {
+			put(pcQueue, Stage.STRATEGY, (execution == null) ? Execution.NULL : execution);
+		} else if ((checkpoint != null) && (execution != null)) {
+			checkpoint.finished(Stage.DIVER, execution.getInput());
+		}
+		if ((checkpoint != null) && (execution != null)) {
+			checkpoint.replayFinished(execution.getInput(), visitedDiverInputs);
 		}
+		termination.leave(Stage.DIVER, 1);
 	}
 
 	/**
@@ -2015,7 +2439,22 @@ public class COASTAL {
 	 *                              interrupted
 	 */
 	public Execution getNextPc() throws InterruptedException {
-		return pcQueue.take();
+		return take(pcQueue);
+	}
+
+	/**
+	 * Return up to the given number of executions produced by divers, waiting
+	 * until at least one is available.
+	 * 
+	 * @param maxExecutions
+	 *                      the maximum number of executions to return
+	 * @return the executions
+	 * @throws InterruptedException
+	 *                              if the action of removing the executions was
+	 *                              interrupted
+	 */
+	public List<Execution> getNextPcs(int maxExecutions) throws InterruptedException {
+		return takeBatch(pcQueue, maxExecutions);
 	}
 
 	// TRACE QUEUE
@@ -2030,20 +2469,181 @@ public class COASTAL {
 	}
 
 	/**
-	 * Add a new entry to the surfer queue of executions.
+	 * Add a new entry to the surfer queue of executions. The work of the surfer
+	 * on its input is done and passes to the strategies.
 	 * 
 	 * @param execution
 	 *                  the execution to add
 	 * @throws InterruptedException
 	 */
 	public void addTrace(Execution execution) throws InterruptedException {
-		if (execution == null) {
-			traceQueue.put(Execution.NULL);
+		if (isConsumed(Stage.SURFER)) {
+			put(traceQueue, Stage.STRATEGY, (execution == null) ? Execution.NULL : execution);
+		}
+		if ((checkpoint != null) && (execution != null)) {
+			checkpoint.finished(Stage.SURFER, execution.getInput());
+			checkpoint.replayFinished(execution.getInput(), visitedSurferInputs);
+		}
+		termination.leave(Stage.SURFER, 1);
+	}
+
+	/**
+	 * Record that a surfer has given up on an input without producing an
+	 * execution.
+	 * 
+	 * @param input
+	 *              the input
+	 */
+	public void abandonSurferInput(Input input) {
+		if (worker != null) {
+			worker.abandon(Stage.SURFER, input);
+		}
+		if (checkpoint != null) {
+			checkpoint.finished(Stage.SURFER, input);
+			checkpoint.replayFinished(input, visitedSurferInputs);
+		}
+		termination.leave(Stage.SURFER, 1);
+	}
+
+	/**
+	 * Record that a strategy is done with executions that it has taken from the
+	 * pc or trace queue. Inputs that the strategy derives from the executions
+	 * must be added to the input queues before this method is called, otherwise
+	 * the analysis run may stop too early.
+	 * 
+	 * @param count
+	 *              the number of executions
+	 */
+	public void finishExecutions(int count) {
+		termination.leave(Stage.STRATEGY, count);
+	}
+
+	/**
+	 * Record that a strategy is done with an execution produced by a diver, and
+	 * has added all the inputs it derives from the execution. Unlike
+	 * {@link #finishExecutions(int)}, this marks the diver input as done in
+	 * checkpoints, so that a resumed run does not derive the same inputs again.
+	 * 
+	 * @param execution
+	 *                  the execution
+	 */
+	public void finishExecution(Execution execution) {
+		if ((checkpoint != null) && (execution.getInput() != null) && !workDone.get()) {
+			checkpoint.finished(Stage.DIVER, execution.getInput());
+		}
+		termination.leave(Stage.STRATEGY, 1);
+	}
+
+	/**
+	 * Return whether a strategy must not derive new inputs from the execution
+	 * of an input, because the input is replayed from a checkpoint and its new
+	 * inputs were derived before the checkpoint was written.
+	 * 
+	 * @param input
+	 *              the input
+	 * @return {@code true} if no new inputs must be derived
+	 */
+	public boolean isQuietReplay(Input input) {
+		return (checkpoint != null) && (input != null) && checkpoint.isQuietReplay(input);
+	}
+
+	/**
+	 * Add an input received from the coordinator of a distributed run to the
+	 * queue of its stage.
+	 * 
+	 * @param stage
+	 *              the stage of the input
+	 * @param input
+	 *              the input
+	 * @return {@code true} if the input was added
+	 * @throws InterruptedException
+	 *                              if interrupted while waiting for space
+	 */
+	boolean addWorkerInput(Stage stage, Input input) throws InterruptedException {
+		return enqueue((stage == Stage.DIVER) ? diverInputQueue : surferInputQueue, stage, false, input);
+	}
+
+	/**
+	 * Return an input that has been taken from its queue, but was not executed,
+	 * to the queue. This happens when a worker of a distributed run disconnects
+	 * before it sends back the execution of the input.
+	 * 
+	 * @param stage
+	 *              the stage of the input
+	 * @param input
+	 *              the input
+	 * @throws InterruptedException
+	 *                              if interrupted while waiting for space
+	 */
+	void returnInput(Stage stage, Input input) throws InterruptedException {
+		if (checkpoint != null) {
+			checkpoint.returned(stage, input);
+		}
+		enqueue((stage == Stage.DIVER) ? diverInputQueue : surferInputQueue, stage, false, input);
+		termination.leave(stage, 1);
+	}
+
+	/**
+	 * Give up on an input that has been taken from its queue without executing
+	 * it.
+	 * 
+	 * @param stage
+	 *              the stage of the input
+	 * @param input
+	 *              the input
+	 */
+	void dropInput(Stage stage, Input input) {
+		if (stage == Stage.SURFER) {
+			abandonSurferInput(input);
 		} else {
-			traceQueue.put(execution);
+			if (checkpoint != null) {
+				checkpoint.finished(stage, input);
+				checkpoint.replayFinished(input, visitedDiverInputs);
+			}
+			termination.leave(stage, 1);
 		}
 	}
 
+	/**
+	 * Return whether the executions produced by divers or surfers are consumed
+	 * by a strategy or, for a worker, by the coordinator.
+	 * 
+	 * @param stage
+	 *              the stage of the tasks
+	 * @return {@code true} if the executions of the stage are queued
+	 */
+	boolean isConsumed(Stage stage) {
+		return consumedStages.contains(stage);
+	}
+
+	/**
+	 * Return the number of divers or surfers started when the analysis run
+	 * starts.
+	 * 
+	 * @param stage
+	 *              the stage of the tasks
+	 * @return the initial number of tasks
+	 */
+	int getInitThreads(Stage stage) {
+		return ((stage == Stage.DIVER) ? diverTasks : surferTasks).getInitThreads();
+	}
+
+	/**
+	 * Return whether this analysis run or its workers run the tasks of a stage.
+	 * Workers receive the configuration of the coordinator, and run one diver
+	 * if it configures neither divers nor surfers.
+	 * 
+	 * @param stage
+	 *              the stage of the tasks
+	 * @return {@code true} if inputs of the stage are executed
+	 */
+	private boolean runsStage(Stage stage) {
+		if (getInitThreads(stage) > 0) {
+			return true;
+		}
+		return (coordinator != null) && (stage == Stage.DIVER) && (getInitThreads(Stage.SURFER) == 0);
+	}
+
 	/**
 	 * Return the next available execution produced by a surfer.
 	 * 
@@ -2053,7 +2653,7 @@ public class COASTAL {
 	 *                              interrupted
 	 */
 	public Execution getNextTrace() throws InterruptedException {
-		return traceQueue.take();
+		return take(traceQueue);
 	}
 
 	/**
@@ -2068,9 +2668,54 @@ public class COASTAL {
 	 *                              interrupted
 	 */
 	public Execution getNextTrace(long timeout) throws InterruptedException {
+		if (adaptiveThreads && retiringThreads.remove(Thread.currentThread())) {
+			throw new InterruptedException();
+		}
 		return traceQueue.poll(timeout, TimeUnit.MILLISECONDS);
 	}
 
+	/**
+	 * Return up to the given number of executions produced by surfers, waiting
+	 * until at least one is available.
+	 * 
+	 * @param maxExecutions
+	 *                      the maximum number of executions to return
+	 * @return the executions
+	 * @throws InterruptedException
+	 *                              if the action of removing the executions was
+	 *                              interrupted
+	 */
+	public List<Execution> getNextTraces(int maxExecutions) throws InterruptedException {
+		return takeBatch(traceQueue, maxExecutions);
+	}
+
+	/**
+	 * Return up to the given number of executions produced by surfers, waiting
+	 * at most the given time for the first one. If the timeout expires, return
+	 * an empty list.
+	 * 
+	 * @param maxExecutions
+	 *                      the maximum number of executions to return
+	 * @param timeout
+	 *                      number of milliseconds to wait
+	 * @return the executions (possibly none)
+	 * @throws InterruptedException
+	 *                              if the action of removing the executions was
+	 *                              interrupted
+	 */
+	public List<Execution> getNextTraces(int maxExecutions, long timeout) throws InterruptedException {
+		Execution first = getNextTrace(timeout);
+		if (first == null) {
+			return Collections.emptyList();
+		}
+		List<Execution> executions = new ArrayList<>();
+		executions.add(first);
+		if (maxExecutions > 1) {
+			traceQueue.drainTo(executions, maxExecutions - 1);
+		}
+		return executions;
+	}
+
 	// ======================================================================
 	//
 	// TIMING INFORMATION
@@ -2092,24 +2737,13 @@ public class COASTAL {
 			stopWork();
 		} else {
 			synchronized (workDone) {
-				workDone.wait(delay);
+				if (!workDone.get()) {
+					workDone.wait(delay);
+				}
 			}
 		}
 	}
 
-	/**
-	 * Update the count of outstanding work items by a given amount.
-	 * 
-	 * @param delta
-	 *              how much to add to the number of work items
-	 */
-	public void updateWork(long delta) {
-		long w = work.addAndGet(delta);
-		if (w == 0) {
-			stopWork();
-		}
-	}
-
 	public boolean workStopped() {
 		return workDone.get();
 	}
@@ -2126,7 +2760,7 @@ public class COASTAL {
 
 	/**
 	 * Set the flag to indicate that the analysis run must stop.
-	 *
+	 * 
 	 * @param message
 	 *                information message to display in the log
 	 */
@@ -2195,10 +2829,27 @@ public class COASTAL {
 		getBroker().publish("coastal-start", this);
 		getBroker().subscribe("tick", this::tick);
 		getBroker().subscribe("emergency-stop", this::emergencyStop);
-		addFirstModel(new Input());
+		if (getConfig().getBoolean("coastal.settings.pre-instrument", false)) {
+			classManager.preInstrument(getInitThreads(Stage.DIVER) > 0, getInitThreads(Stage.SURFER) > 0);
+		}
+		boolean resumed = (checkpoint != null) && checkpoint.isResumed();
+		if (!resumed && (worker == null)) {
+			addFirstModel(new Input());
+		}
 		try {
 			// Start surfers, divers, and strategies
 			startTasks();
+			if (resumed) {
+				replayCheckpoint();
+			}
+			if (coordinator != null) {
+				coordinator.start();
+			}
+			if (worker != null) {
+				// A worker runs until the coordinator tells it to stop
+				termination.enter(Stage.DIVER, 1);
+				worker.start(this);
+			}
 			// This main thread spends most of its time in the following loop
 			while (!workDone.get()) {
 				idle(500);
@@ -2209,13 +2860,16 @@ public class COASTAL {
 		} finally {
 			getBroker().publish("tock", this);
 			stopTasks();
+			if (checkpoint != null) {
+				checkpoint.write();
+			}
 		}
 		stoppingTime = Calendar.getInstance();
 		getBroker().publish("coastal-stop", this);
 		getBroker().publish("coastal-report", this);
 		System.setOut(getSystemOut());
 		System.setErr(getSystemErr());
-		if ((diverManager.getDiveCount() + surferManager.getSurfCount()) < 2) {
+		if ((coordinator == null) && ((diverManager.getDiveCount() + surferManager.getSurfCount()) < 2)) {
 			Banner bn = new Banner('@');
 			bn.println("Only a single run executed\n");
 			bn.println("Check you settings -- there might be a problem somewhere");
@@ -2240,34 +2894,381 @@ public class COASTAL {
 	 * the configuration.
 	 */
 	private void startTasks() {
+		executor = createExecutor(executionMode);
+		lastScaleTime = System.currentTimeMillis();
 		for (TaskInfo task : tasks) {
 			for (int i = 0; i < task.getInitThreads(); i++) {
-				for (Task taskComponent : task.create(this)) {
-					Thread newThread = new Thread(taskComponent);
-					assert (newThread != null);
-					threads.add(newThread);
-					newThread.start();
+				startTask(task);
+			}
+		}
+	}
+
+	/**
+	 * Create a new task of the given kind, and start a thread for each of its
+	 * components, or submit the components to the executor.
+	 * 
+	 * @param task
+	 *             the summary of the kind of task to start
+	 */
+	private void startTask(TaskInfo task) {
+		pruneComponents();
+		Task[] taskComponents = task.create(this);
+		TaskThreads taskThreads = new TaskThreads(taskComponents.length);
+		for (int i = 0; i < taskComponents.length; i++) {
+			Runnable component = wrapComponent(taskThreads, i, taskComponents[i]);
+			if (executor == null) {
+				Thread newThread = new Thread(component);
+				threads.add(newThread);
+				newThread.start();
+			} else {
+				futures.add(executor.submit(component));
+			}
+		}
+		task.taskThreads.addLast(taskThreads);
+	}
+
+	/**
+	 * Forget the task components that have finished, such as the components of
+	 * retired tasks, so that {@link #threads} and {@link #futures} only hold the
+	 * components that may still be running.
+	 */
+	private void pruneComponents() {
+		threads.removeIf(thread -> !thread.isAlive());
+		futures.removeIf(Future::isDone);
+	}
+
+	/**
+	 * Wrap a task component so that it records the thread it runs on, and does
+	 * not run if its task was retired before it started. Because an executor may
+	 * reuse a thread of a retired task, the wrapper also discards any
+	 * thread-local subscriptions left on the thread.
+	 * 
+	 * @param taskThreads
+	 *                    the threads of the task
+	 * @param index
+	 *                    the index of the component in the task
+	 * @param component
+	 *                    the component to run
+	 * @return the wrapped component
+	 */
+	private Runnable wrapComponent(TaskThreads taskThreads, int index, Task component) {
+		return () -> {
+			Thread thread = Thread.currentThread();
+			if (!taskThreads.attach(index, thread)) {
+				return;
+			}
+			if (executor != null) {
+				broker.resetThread();
+				eventBus.resetListeners();
+			}
+			try {
+				component.run();
+			} finally {
+				retiringThreads.remove(thread);
+			}
+		};
+	}
+
+	/**
+	 * Create the executor for the given execution mode. In the default mode
+	 * ("threads"), there is no executor and each task component runs on a thread
+	 * of its own. In the "pool" mode, components run on a pool of platform
+	 * threads. Because every component runs until it is retired or the analysis
+	 * ends, the pool grows with the number of components that run at the same
+	 * time, and threads of components that have finished are reused by
+	 * components started later. In the "virtual" mode, each component runs on a
+	 * virtual thread; this requires Java 21 or later, and on older versions the
+	 * "pool" mode is used instead.
+	 * 
+	 * @param mode
+	 *             the execution mode
+	 * @return the executor or {@code null} for the default mode
+	 */
+	private ExecutorService createExecutor(String mode) {
+		switch (mode.trim().toLowerCase()) {
+		case "threads":
+			return null;
+		case "virtual":
+			try {
+				Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+				return (ExecutorService) factory.invoke(null);
+			} catch (ReflectiveOperationException x) {
+				log.warn("virtual threads are not available, using a thread pool");
+			}
+			break;
+		case "pool":
+			break;
+		default:
+			log.warn("unknown execution mode \"{}\", using threads", mode);
+			return null;
+		}
+		return Executors.newCachedThreadPool();
+	}
+
+	/**
+	 * Adjust the number of tasks of each kind to the amount of work available to
+	 * them. Only kinds of tasks that are started initially are adjusted, and
+	 * always within their configured minimum and maximum number of threads.
+	 * 
+	 * A new task is started when more items are waiting in the queue from which
+	 * the kind of task takes its work than there are tasks, and the existing
+	 * tasks hardly ever wait. A task is retired when its queue is empty and the
+	 * tasks wait for more than half of the time. At most one task of each kind is
+	 * started or retired per adjustment.
+	 * 
+	 * The time spent waiting is estimated from the wait times recorded by the
+	 * task manager, which only include completed waits, and the number of
+	 * threads that are waiting at the moment of the adjustment.
+	 */
+	private void scaleTasks() {
+		long now = System.currentTimeMillis();
+		long interval = Math.max(now - lastScaleTime, 1);
+		lastScaleTime = now;
+		pruneComponents();
+		for (TaskInfo task : tasks) {
+			long waitTime = task.getManager().getWaitTime();
+			long waited = waitTime - task.lastWaitTime;
+			task.lastWaitTime = waitTime;
+			if (task.getInitThreads() == 0) {
+				continue;
+			}
+			int count = task.getThreadCount();
+			int backlog = getQueueLength(task, diverInputQueue.size(), surferInputQueue.size(),
+					pcQueue.size() + traceQueue.size());
+			int waiting = getQueueLength(task, waitingThreads.get(diverInputQueue).get(),
+					waitingThreads.get(surferInputQueue).get(),
+					waitingThreads.get(pcQueue).get() + waitingThreads.get(traceQueue).get());
+			long capacity = count * interval;
+			double idle = (count == 0) ? 0 : Math.min(waited + waiting * interval, capacity) / (double) capacity;
+			if ((backlog > count) && (idle < 0.1) && (count < task.getMaxThreads())) {
+				startTask(task);
+				scaleUpCount++;
+				log.trace("started {} task ({} threads, backlog {})", task.getManager().getName(), count + 1,
+						backlog);
+			} else if ((backlog == 0) && (idle > 0.5) && (count > Math.max(task.getMinThreads(), 1))) {
+				retiringThreads.addAll(task.retire());
+				scaleDownCount++;
+				log.trace("retired {} task ({} threads, idle {})", task.getManager().getName(), count - 1,
+						String.format("%.2f", idle));
+			}
+		}
+	}
+
+	/**
+	 * Select the one of three quantities that is relevant to a kind of task:
+	 * the first for divers, the second for surfers, and the third for
+	 * strategies.
+	 * 
+	 * @param task
+	 *                      the summary of the kind of task
+	 * @param diverValue
+	 *                      the value for divers
+	 * @param surferValue
+	 *                      the value for surfers
+	 * @param strategyValue
+	 *                      the value for strategies
+	 * @return the value for the kind of task
+	 */
+	private int getQueueLength(TaskInfo task, int diverValue, int surferValue, int strategyValue) {
+		if (task.getManager() == diverManager) {
+			return diverValue;
+		} else if (task.getManager() == surferManager) {
+			return surferValue;
+		} else {
+			return strategyValue;
+		}
+	}
+
+	/**
+	 * Add an item to a queue as work for a stage. The item is counted as work in
+	 * flight before it is added, so that the analysis run cannot stop while a
+	 * consumer processes the item.
+	 * 
+	 * @param queue
+	 *              the queue to add the item to
+	 * @param stage
+	 *              the stage that consumes the items of the queue
+	 * @param item
+	 *              the item to add
+	 * @return {@code true} if the item was added, or {@code false} if it was
+	 *         dropped
+	 * @throws InterruptedException
+	 *                              if the thread was interrupted while waiting
+	 *                              for space in the queue
+	 */
+	private <T> boolean put(WorkQueue<T> queue, Stage stage, T item) throws InterruptedException {
+		termination.enter(stage, 1);
+		boolean added = false;
+		try {
+			added = queue.put(item);
+		} finally {
+			if (!added) {
+				termination.leave(stage, 1);
+			}
+		}
+		return added;
+	}
+
+	/**
+	 * Add an input to a diver or surfer queue. If checkpoints are written, the
+	 * input is recorded as queued.
+	 * 
+	 * @param queue
+	 *              the queue to add the input to
+	 * @param stage
+	 *              the stage to which the input belongs
+	 * @param dedupe
+	 *              whether to add the input only if it has not been enqueued
+	 *              before
+	 * @param input
+	 *              the input to add
+	 * @return {@code true} if the input was added
+	 * @throws InterruptedException
+	 *                              if the producer was interrupted while
+	 *                              waiting for space
+	 */
+	private boolean enqueue(WorkQueue<Input> queue, Stage stage, boolean dedupe, Input input)
+			throws InterruptedException {
+		FingerprintSet visited = (stage == Stage.DIVER) ? visitedDiverInputs : visitedSurferInputs;
+		if (dedupe && !visited.add(input.getFingerprint())) {
+			return false;
+		}
+		if (checkpoint == null) {
+			return put(queue, stage, input);
+		}
+		checkpoint.queued(stage, input);
+		if (put(queue, stage, input)) {
+			return true;
+		}
+		checkpoint.unqueued(stage, input);
+		return false;
+	}
+
+	/**
+	 * Record in the checkpoint that an input has been taken from its queue.
+	 * 
+	 * @param stage
+	 *              the stage to which the input belongs
+	 * @param input
+	 *              the input
+	 * @return the input
+	 */
+	private Input taken(Stage stage, Input input) {
+		if (checkpoint != null) {
+			checkpoint.taken(stage, input);
+		}
+		return input;
+	}
+
+	/**
+	 * Record in the checkpoint that inputs have been taken from their queue.
+	 * 
+	 * @param stage
+	 *               the stage to which the inputs belong
+	 * @param inputs
+	 *               the inputs
+	 * @return the inputs
+	 */
+	private List<Input> taken(Stage stage, List<Input> inputs) {
+		if (checkpoint != null) {
+			for (Input input : inputs) {
+				checkpoint.taken(stage, input);
+			}
+		}
+		return inputs;
+	}
+
+	/**
+	 * Remove the next item from a queue, waiting for one to become available if
+	 * necessary. If the number of tasks is adjusted while COASTAL runs, the
+	 * calling thread regularly checks whether it has been retired, and if so,
+	 * stops waiting and behaves as if it was interrupted.
+	 * 
+	 * @param queue
+	 *              the queue to take an item from
+	 * @return the next item in the queue
+	 * @throws InterruptedException
+	 *                              if the thread was interrupted or retired
+	 */
+	private <T> T take(WorkQueue<T> queue) throws InterruptedException {
+		if (!adaptiveThreads) {
+			return queue.take();
+		}
+		Thread thread = Thread.currentThread();
+		AtomicInteger waiting = waitingThreads.get(queue);
+		waiting.incrementAndGet();
+		try {
+			while (true) {
+				if (retiringThreads.remove(thread)) {
+					throw new InterruptedException();
+				}
+				T item = queue.poll(RETIRE_POLL_DELAY, TimeUnit.MILLISECONDS);
+				if (item != null) {
+					return item;
 				}
 			}
+		} finally {
+			waiting.decrementAndGet();
 		}
 	}
 
 	/**
-	 * Stop the still-executing tasks and the thread manager itself.
+	 * Remove up to the given number of items from a queue, waiting for the first
+	 * one as {@link #take(WorkQueue)} does. The remaining items are only those
+	 * that are available immediately.
 	 * 
+	 * @param queue
+	 *                 the queue to take items from
+	 * @param maxItems
+	 *                 the maximum number of items to remove
+	 * @return the items removed from the queue
 	 * @throws InterruptedException
+	 *                              if the thread was interrupted or retired
 	 */
-	public void stopTasks() {
-		for (Thread thread : threads) {
-			thread.interrupt();
+	private <T> List<T> takeBatch(WorkQueue<T> queue, int maxItems) throws InterruptedException {
+		List<T> items = new ArrayList<>();
+		items.add(take(queue));
+		if (maxItems > 1) {
+			queue.drainTo(items, maxItems - 1);
 		}
+		return items;
+	}
+
+	/**
+	 * Stop the still-executing tasks and the thread manager itself. All tasks
+	 * are interrupted, and then joined, waiting at most {@link #STOP_TIMEOUT}
+	 * milliseconds in total.
+	 */
+	public void stopTasks() {
+		long deadline = System.currentTimeMillis() + STOP_TIMEOUT;
+		int unfinished = 0;
 		try {
-			int n = 10;
-			while ((--n > 0) && (Thread.activeCount() > 1)) {
-				Thread.sleep(50);
+			if (executor == null) {
+				for (Thread thread : threads) {
+					thread.interrupt();
+				}
+				for (Thread thread : threads) {
+					thread.join(Math.max(deadline - System.currentTimeMillis(), 1));
+					if (thread.isAlive()) {
+						unfinished++;
+					}
+				}
+			} else {
+				executor.shutdownNow();
+				for (Future<?> future : futures) {
+					try {
+						future.get(Math.max(deadline - System.currentTimeMillis(), 1), TimeUnit.MILLISECONDS);
+					} catch (CancellationException x) {
+						// never started
+					} catch (ExecutionException x) {
+						log.warn("task terminated abnormally", x.getCause());
+					} catch (TimeoutException x) {
+						unfinished++;
+					}
+				}
 			}
-			if (n == 0) {
-				log.trace("??? not sure if all threads terminated...");
+			if (unfinished > 0) {
+				log.trace("??? {} task components did not terminate", unfinished);
 			}
 		} catch (InterruptedException e) {
 			e.printStackTrace();
@@ -2287,6 +3288,15 @@ public class COASTAL {
 	 *               dummy object
 	 */
 	private void tick(Object object) {
+		if (adaptiveThreads) {
+			scaleTasks();
+		}
+		if (checkpoint != null) {
+			if (replaying && checkpoint.isReplayDone()) {
+				releaseHeldInputs();
+			}
+			checkpoint.writeIfDue();
+		}
 		long elapsedTime = System.currentTimeMillis() - getStartingTime();
 		if (elapsedTime > nextReportingTime) {
 			String time = Banner.getElapsed(this);
@@ -2317,6 +3327,68 @@ public class COASTAL {
 		}
 	}
 
+	/**
+	 * Start to resume the analysis run from a checkpoint. The inputs that were
+	 * taken or done are replayed, and the inputs that were queued are held back
+	 * until the replays have finished. The held inputs are recorded as queued
+	 * straight away, so that a checkpoint written in the meantime still
+	 * contains them. An extra unit of work is kept in flight so that the run
+	 * does not stop before the held inputs are released.
+	 */
+	private void replayCheckpoint() {
+		replaying = true;
+		termination.enter(Stage.DIVER, 1);
+		List<Input> diverReplays = checkpoint.getReplays(Stage.DIVER);
+		List<Input> surferReplays = checkpoint.getReplays(Stage.SURFER);
+		for (Stage stage : new Stage[] { Stage.DIVER, Stage.SURFER }) {
+			for (Input input : checkpoint.getHeldInputs(stage)) {
+				checkpoint.queued(stage, input);
+			}
+		}
+		log.info("replaying {} diver and {} surfer inputs", diverReplays.size(), surferReplays.size());
+		try {
+			for (Input input : diverReplays) {
+				if (!enqueue(diverInputQueue, Stage.DIVER, false, input)) {
+					checkpoint.replayFinished(input, visitedDiverInputs);
+				}
+			}
+			for (Input input : surferReplays) {
+				if (!enqueue(surferInputQueue, Stage.SURFER, false, input)) {
+					checkpoint.replayFinished(input, visitedSurferInputs);
+				}
+			}
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+		if (checkpoint.isReplayDone()) {
+			releaseHeldInputs();
+		}
+	}
+
+	/**
+	 * Add the inputs that were queued when the checkpoint was written to their
+	 * queues, once all replays have finished. Inputs that a strategy has
+	 * derived again during the replay are dropped.
+	 */
+	private void releaseHeldInputs() {
+		replaying = false;
+		try {
+			for (Input input : checkpoint.getHeldInputs(Stage.DIVER)) {
+				if (!visitedDiverInputs.add(input.getFingerprint()) || !put(diverInputQueue, Stage.DIVER, input)) {
+					checkpoint.unqueued(Stage.DIVER, input);
+				}
+			}
+			for (Input input : checkpoint.getHeldInputs(Stage.SURFER)) {
+				if (!visitedSurferInputs.add(input.getFingerprint()) || !put(surferInputQueue, Stage.SURFER, input)) {
+					checkpoint.unqueued(Stage.SURFER, input);
+				}
+			}
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+		termination.leave(Stage.DIVER, 1);
+	}
+
 	/**
 	 * Execute an emergency stop.
 	 * 
@@ -2337,6 +3409,27 @@ public class COASTAL {
 	private void report(Object object) {
 		getBroker().publish("report", new FreqTuple("COASTAL.diver-models", visitedDiverInputs.size()));
 		getBroker().publish("report", new FreqTuple("COASTAL.surfer-models", visitedSurferInputs.size()));
+		if (adaptiveThreads) {
+			getBroker().publish("report", new Tuple("COASTAL.tasks-started", scaleUpCount));
+			getBroker().publish("report", new Tuple("COASTAL.tasks-retired", scaleDownCount));
+			for (TaskInfo task : tasks) {
+				String name = task.getManager().getName();
+				if ((name != null) && (task.getInitThreads() > 0)) {
+					getBroker().publish("report", new Tuple("COASTAL.peak-tasks." + name, task.getPeakThreadCount()));
+				}
+			}
+		}
+		for (WorkQueue<?> queue : Arrays.asList(diverInputQueue, surferInputQueue, pcQueue, traceQueue)) {
+			if (queue.getCapacity() > 0) {
+				String prefix = "COASTAL." + queue.getName();
+				getBroker().publish("report", new Tuple(prefix + "-dropped", queue.getDropCount()));
+				getBroker().publish("report", new Tuple(prefix + "-spilled", queue.getSpillCount()));
+				getBroker().publish("report", new Tuple(prefix + "-overflowed", queue.getOverflowCount()));
+			}
+		}
+		if (surferInputLanes != null) {
+			getBroker().publish("report", new Tuple("COASTAL.surfer-inputs-steals", surferInputLanes.getStealCount()));
+		}
 		getBroker().publish("report", new Tuple("COASTAL.start", startingTime));
 		getBroker().publish("report", new Tuple("COASTAL.stop", stoppingTime));
 		long duration = stoppingTime.getTimeInMillis() - startingTime.getTimeInMillis();
@@ -2368,6 +3461,22 @@ public class COASTAL {
 	 */
 	private static String commandLineWarning = null;
 
+	/**
+	 * Whether each configuration file on the command line is a separate run.
+	 */
+	private static boolean batchMode = false;
+
+	/**
+	 * The number of runs that may execute at the same time in batch mode.
+	 */
+	private static int batchJobs = 1;
+
+	/**
+	 * The host and port of the coordinator if this process is a worker of a
+	 * distributed analysis run, or {@code null} otherwise.
+	 */
+	private static String workerAddress = null;
+
 	/**
 	 * The main function and entry point for COASTAL.
 	 * 
@@ -2392,6 +3501,33 @@ public class COASTAL {
 			break;
 		}
 		new Banner('~').println("COASTAL version " + VERSION).display(log);
+		if (workerAddress != null) {
+			Worker worker = (commandLineWarning == null) ? Worker.connect(log, workerAddress) : null;
+			if (commandLineWarning != null) {
+				new Banner('@').println("WARNING:\n").println(commandLineWarning).display(log);
+			} else if (worker != null) {
+				new COASTAL(log, worker.getConfiguration(), worker).start(false);
+			}
+			new Banner('~').println("COASTAL DONE (worker)").display(log);
+			LogManager.shutdown(true);
+			System.exit(0);
+		}
+		if (batchMode) {
+			boolean hardExit = false;
+			if (commandLineWarning == null) {
+				BatchRunner batch = new BatchRunner(log, args, extraConfig, batchJobs, verbosity == Verbosity.BRIEF);
+				batch.run();
+				hardExit = batch.isHardExit();
+			} else {
+				new Banner('@').println("WARNING:\n").println(commandLineWarning).display(log);
+			}
+			new Banner('~').println("COASTAL DONE (batch)").display(log);
+			LogManager.shutdown(true);
+			if (hardExit) {
+				System.exit(0);
+			}
+			return;
+		}
 		Configuration config = null;
 		String runName = "", runNameParens = "";
 		if (commandLineWarning == null) {
@@ -2442,6 +3578,26 @@ public class COASTAL {
 				} else {
 					extraConfig = extraConfig + "\n" + set;
 				}
+			} else if (arg.equals("-resume") || arg.equals("--resume")) {
+				String set = "coastal.settings.checkpoint.resume = " + ((i + 1 < args.length) ? args[++i] : "");
+				if (extraConfig == null) {
+					extraConfig = set;
+				} else {
+					extraConfig = extraConfig + "\n" + set;
+				}
+			} else if (arg.equals("-worker") || arg.equals("--worker")) {
+				workerAddress = (i + 1 < args.length) ? args[++i] : "";
+			} else if (arg.equals("-batch") || arg.equals("--batch")) {
+				batchMode = true;
+			} else if (arg.equals("-jobs") || arg.equals("--jobs")) {
+				String jobs = (i + 1 < args.length) ? args[++i] : "";
+				try {
+					batchJobs = Integer.parseInt(jobs);
+				} catch (NumberFormatException x) {
+					if (commandLineWarning == null) {
+						commandLineWarning = String.format("Illegal number of jobs \"%s\"", jobs);
+					}
+				}
 			} else if (arg.equals("-version") || arg.equals("--version")) {
 				displayVersion();
 			} else if (arg.equals("-help") || arg.equals("--help")) {
@@ -2509,6 +3665,10 @@ public class COASTAL {
 		System.out.println("  -verbose    run with a detailed log (written to log file) (DEFAULT)");
 		System.out.println("  -prolix     run with a detailed log (written to standard output)");
 		System.out.println("  -set K=V    add the key K with value V to end of configuration");
+		System.out.println("  -resume F   continue the analysis from checkpoint file F (if it exists)");
+		System.out.println("  -worker H:P run divers and surfers for the coordinator at host H and port P");
+		System.out.println("  -batch      run each file as a separate analysis (\"@F\" reads file names from F)");
+		System.out.println("  -jobs N     in batch mode, execute up to N analyses at the same time");
 		System.out.println("  -version    display version information and exit");
 		System.out.println("  -help       display this help message and exit");
 		System.out.println();
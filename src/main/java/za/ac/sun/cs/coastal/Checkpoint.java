@@ -0,0 +1,587 @@
+/*
+ * This file is part of the COASTAL tool, https://deepseaplatform.github.io/coastal/
+ *
+ * Copyright (c) 2019-2020, Computer Science, Stellenbosch University.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package za.ac.sun.cs.coastal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.logging.log4j.Logger;
+
+import za.ac.sun.cs.coastal.TerminationDetector.Stage;
+import za.ac.sun.cs.coastal.messages.Broker;
+import za.ac.sun.cs.coastal.messages.TimeTuple;
+import za.ac.sun.cs.coastal.messages.Tuple;
+import za.ac.sun.cs.coastal.symbolic.FingerprintSet;
+import za.ac.sun.cs.coastal.symbolic.Input;
+
+/**
+ * Records the progress of an analysis run so that it can be written to a
+ * checkpoint file, and restores the progress from such a file when a run is
+ * resumed.
+ * 
+ * For divers and surfers, the checkpoint keeps a ledger of the inputs that are
+ * queued, the inputs that a task has taken but not finished with, and the
+ * inputs that are done. A diver input is done once a strategy has added all
+ * the inputs it derives from the execution; a surfer input is done once its
+ * execution reaches the strategies. The ledger is all that a checkpoint file
+ * contains.
+ * 
+ * The path tree and the corpora of the fuzzers are not written, because their
+ * nodes and executions refer to branches and expressions that only exist in
+ * the memory of the analysis run. Instead, a resumed run replays the inputs
+ * that were taken or done, and so rebuilds the path tree and the corpora
+ * exactly. A strategy does not derive new inputs from a replayed diver input
+ * that was done, because those inputs were already queued or explored before
+ * the checkpoint was written. The queued inputs are held back until all
+ * replays have finished, so that strategies see them against the rebuilt
+ * path tree.
+ * 
+ * The sets of enqueued fingerprints are rebuilt in the same way rather than
+ * written: the fingerprint of a replayed input is added once the replay has
+ * finished, and held inputs are deduplicated when they are released. A
+ * strategy that marks a path as explored when its model turns out to be
+ * enqueued already would otherwise mark the paths of inputs that have not been
+ * replayed yet.
+ * 
+ * The file is a GZIP-compressed stream of binary data. Inputs are stored in
+ * the single-line form of {@link Input#encode()}; inputs that cannot be
+ * encoded are left out.
+ */
+public class Checkpoint {
+
+	/**
+	 * The first four bytes of a checkpoint file.
+	 */
+	private static final int MAGIC = 0x434f4350;
+
+	/**
+	 * The version of the file format.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * Marks inputs that were taken but could not be encoded.
+	 */
+	private static final String UNENCODABLE = new String("");
+
+	/**
+	 * The logger for the analysis run.
+	 */
+	private final Logger log;
+
+	/**
+	 * The file to which checkpoints are written.
+	 */
+	private final File file;
+
+	/**
+	 * The number of milliseconds between periodic checkpoints, or 0 if
+	 * checkpoints are only written at the end of the analysis run.
+	 */
+	private final long interval;
+
+	/**
+	 * The name of the target, used to check that a checkpoint belongs to the
+	 * run that resumes it.
+	 */
+	private final String target;
+
+	/**
+	 * The ledgers for diver and surfer inputs, indexed by stage.
+	 */
+	private final Ledger[] ledgers = new Ledger[Stage.values().length];
+
+	/**
+	 * The time (in milliseconds since the epoch) at which the next periodic
+	 * checkpoint is due.
+	 */
+	private volatile long nextWriteTime;
+
+	/**
+	 * The number of checkpoints written.
+	 */
+	private final AtomicLong writeCount = new AtomicLong(0);
+
+	/**
+	 * The total time spent writing checkpoints.
+	 */
+	private final AtomicLong writeTime = new AtomicLong(0);
+
+	/**
+	 * The number of inputs left out of the last checkpoint because they could
+	 * not be encoded.
+	 */
+	private volatile long skippedCount = 0;
+
+	// ======================================================================
+	//
+	// RESUMPTION
+	//
+	// ======================================================================
+
+	/**
+	 * The inputs restored from a checkpoint file, or {@code null} if the run
+	 * was not resumed.
+	 */
+	private Ledger[] restored = null;
+
+	/**
+	 * The inputs being replayed that have not finished yet, mapped to their
+	 * fingerprints before they were executed.
+	 */
+	private final Map<Input, Long> replays = new ConcurrentHashMap<>();
+
+	/**
+	 * The replayed diver inputs from which no new inputs must be derived.
+	 */
+	private final Set<Input> quietReplays = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+	/**
+	 * The number of inputs that were replayed.
+	 */
+	private final AtomicInteger replayCount = new AtomicInteger(0);
+
+	/**
+	 * Construct a new checkpoint.
+	 * 
+	 * @param coastal
+	 *                 the analysis run
+	 * @param fileName
+	 *                 the name of the checkpoint file
+	 * @param interval
+	 *                 the number of seconds between periodic checkpoints, or 0
+	 *                 for none
+	 */
+	public Checkpoint(COASTAL coastal, String fileName, long interval) {
+		log = coastal.getLog();
+		file = new File(fileName);
+		this.interval = interval * 1000;
+		target = coastal.getConfig().getString("coastal.target.main", "");
+		ledgers[Stage.DIVER.ordinal()] = new Ledger();
+		ledgers[Stage.SURFER.ordinal()] = new Ledger();
+		nextWriteTime = System.currentTimeMillis() + this.interval;
+		coastal.getBroker().subscribe("coastal-stop", this::report);
+	}
+
+	// ======================================================================
+	//
+	// RECORDING
+	//
+	// ======================================================================
+
+	/**
+	 * Record that an input is queued.
+	 * 
+	 * @param stage
+	 *              the stage of the input
+	 * @param input
+	 *              the input
+	 */
+	public synchronized void queued(Stage stage, Input input) {
+		ledgers[stage.ordinal()].queued.add(input);
+	}
+
+	/**
+	 * Record that an input was not added to its queue after all.
+	 * 
+	 * @param stage
+	 *              the stage of the input
+	 * @param input
+	 *              the input
+	 */
+	public synchronized void unqueued(Stage stage, Input input) {
+		ledgers[stage.ordinal()].queued.remove(input);
+	}
+
+	/**
+	 * Record that an input that a task has taken is about to be queued again
+	 * without being executed.
+	 * 
+	 * @param stage
+	 *              the stage of the input
+	 * @param input
+	 *              the input
+	 */
+	public synchronized void returned(Stage stage, Input input) {
+		ledgers[stage.ordinal()].running.remove(input);
+	}
+
+	/**
+	 * Record that a task has taken an input from its queue.
+	 * 
+	 * @param stage
+	 *              the stage of the input
+	 * @param input
+	 *              the input
+	 */
+	public void taken(Stage stage, Input input) {
+		if (input != Input.DONE_INPUT) {
+			String line = input.encode();
+			synchronized (this) {
+				Ledger ledger = ledgers[stage.ordinal()];
+				ledger.queued.remove(input);
+				ledger.running.put(input, (line == null) ? UNENCODABLE : line);
+			}
+		}
+	}
+
+	/**
+	 * Record that the analysis run is done with an input.
+	 * 
+	 * @param stage
+	 *              the stage of the input
+	 * @param input
+	 *              the input
+	 */
+	public synchronized void finished(Stage stage, Input input) {
+		Ledger ledger = ledgers[stage.ordinal()];
+		String line = ledger.running.remove(input);
+		if (line == UNENCODABLE) {
+			ledger.skipped++;
+		} else if (line != null) {
+			ledger.done.add(line);
+		}
+	}
+
+	// ======================================================================
+	//
+	// WRITING
+	//
+	// ======================================================================
+
+	/**
+	 * Write a checkpoint if the periodic interval has elapsed.
+	 */
+	public void writeIfDue() {
+		if ((interval > 0) && (System.currentTimeMillis() >= nextWriteTime)) {
+			write();
+		}
+	}
+
+	/**
+	 * Write a checkpoint. The file is first written under a temporary name, so
+	 * that an interrupted write does not destroy the previous checkpoint.
+	 */
+	public void write() {
+		long t0 = System.currentTimeMillis();
+		List<List<String>> lists = new ArrayList<>();
+		long skipped = 0;
+		synchronized (this) {
+			for (Stage stage : new Stage[] { Stage.DIVER, Stage.SURFER }) {
+				Ledger ledger = ledgers[stage.ordinal()];
+				lists.add(new ArrayList<>(ledger.done));
+				List<String> running = new ArrayList<>(ledger.running.values());
+				running.removeIf(line -> line == UNENCODABLE);
+				lists.add(running);
+				lists.add(encode(ledger.queued));
+				skipped += ledger.skipped + ledger.running.size() + ledger.queued.size();
+			}
+		}
+		skipped -= lists.get(1).size() + lists.get(2).size() + lists.get(4).size() + lists.get(5).size();
+		File tempFile = new File(file.getPath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tempFile))))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(target);
+			for (List<String> list : lists) {
+				out.writeInt(list.size());
+				for (String line : list) {
+					byte[] encoded = line.getBytes(StandardCharsets.UTF_8);
+					out.writeInt(encoded.length);
+					out.write(encoded);
+				}
+			}
+		} catch (IOException x) {
+			log.warn("could not write checkpoint to {}", file, x);
+			return;
+		}
+		if (!tempFile.renameTo(file)) {
+			file.delete();
+			if (!tempFile.renameTo(file)) {
+				log.warn("could not write checkpoint to {}", file);
+				return;
+			}
+		}
+		skippedCount = skipped;
+		writeCount.incrementAndGet();
+		long t1 = System.currentTimeMillis();
+		writeTime.addAndGet(t1 - t0);
+		nextWriteTime = t1 + interval;
+		log.trace("wrote checkpoint to {} in {} ms", file, t1 - t0);
+	}
+
+	/**
+	 * Encode a set of inputs, leaving out those that cannot be encoded.
+	 * 
+	 * @param inputs
+	 *               the inputs to encode
+	 * @return the encoded inputs
+	 */
+	private static List<String> encode(Set<Input> inputs) {
+		List<String> lines = new ArrayList<>(inputs.size());
+		for (Input input : inputs) {
+			String line = input.encode();
+			if (line != null) {
+				lines.add(line);
+			}
+		}
+		return lines;
+	}
+
+	// ======================================================================
+	//
+	// READING
+	//
+	// ======================================================================
+
+	/**
+	 * Restore the inputs from a checkpoint file. The inputs are kept until
+	 * {@link #getReplays(Stage)} and {@link #getHeldInputs(Stage)} are called.
+	 * 
+	 * @param resumeFile
+	 *                   the checkpoint file
+	 * @return {@code true} if the file was read successfully
+	 */
+	public boolean resume(File resumeFile) {
+		if (!resumeFile.exists()) {
+			log.info("checkpoint {} does not exist, starting from scratch", resumeFile);
+			return false;
+		}
+		Ledger[] inputs = new Ledger[ledgers.length];
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new GZIPInputStream(new FileInputStream(resumeFile))))) {
+			if ((in.readInt() != MAGIC) || (in.readInt() != VERSION)) {
+				log.warn("{} is not a checkpoint file, starting from scratch", resumeFile);
+				return false;
+			}
+			String checkpointTarget = in.readUTF();
+			if (!checkpointTarget.equals(target)) {
+				log.warn("checkpoint {} was written for target \"{}\", starting from scratch", resumeFile,
+						checkpointTarget);
+				return false;
+			}
+			for (Stage stage : new Stage[] { Stage.DIVER, Stage.SURFER }) {
+				Ledger ledger = new Ledger();
+				readInputs(in, ledger.doneInputs);
+				readInputs(in, ledger.runningInputs);
+				readInputs(in, ledger.queuedInputs);
+				inputs[stage.ordinal()] = ledger;
+			}
+		} catch (IOException | IllegalArgumentException x) {
+			log.warn("could not read checkpoint from {}, starting from scratch", resumeFile, x);
+			return false;
+		}
+		restored = inputs;
+		log.info("resuming from checkpoint {}", resumeFile);
+		return true;
+	}
+
+	/**
+	 * Read a list of inputs from a checkpoint file.
+	 * 
+	 * @param in
+	 *               the stream to read from
+	 * @param inputs
+	 *               the list to add the inputs to
+	 * @throws IOException
+	 *                     if the stream cannot be read
+	 */
+	private static void readInputs(DataInputStream in, List<Input> inputs) throws IOException {
+		int count = in.readInt();
+		for (int i = 0; i < count; i++) {
+			byte[] encoded = new byte[in.readInt()];
+			in.readFully(encoded);
+			inputs.add(Input.decode(new String(encoded, StandardCharsets.UTF_8)));
+		}
+	}
+
+	/**
+	 * Return whether the analysis run was resumed from a checkpoint.
+	 * 
+	 * @return {@code true} if the run was resumed
+	 */
+	public boolean isResumed() {
+		return restored != null;
+	}
+
+	/**
+	 * Return the inputs of a stage that must be replayed, and start tracking
+	 * them. The inputs that were done are replayed quietly.
+	 * 
+	 * @param stage
+	 *              the stage of the inputs
+	 * @return the inputs to replay
+	 */
+	public List<Input> getReplays(Stage stage) {
+		Ledger ledger = restored[stage.ordinal()];
+		List<Input> inputs = new ArrayList<>(ledger.doneInputs);
+		if (stage == Stage.DIVER) {
+			quietReplays.addAll(ledger.doneInputs);
+		}
+		inputs.addAll(ledger.runningInputs);
+		for (Input input : inputs) {
+			replays.put(input, input.getFingerprint());
+		}
+		replayCount.addAndGet(inputs.size());
+		return inputs;
+	}
+
+	/**
+	 * Return the inputs of a stage that were queued when the checkpoint was
+	 * written.
+	 * 
+	 * @param stage
+	 *              the stage of the inputs
+	 * @return the queued inputs
+	 */
+	public List<Input> getHeldInputs(Stage stage) {
+		return restored[stage.ordinal()].queuedInputs;
+	}
+
+	/**
+	 * Return whether the replays have all finished.
+	 * 
+	 * @return {@code true} if no replay is outstanding
+	 */
+	public boolean isReplayDone() {
+		return replays.isEmpty();
+	}
+
+	/**
+	 * Record that the execution of an input has finished. If the input is a
+	 * replay, its fingerprint is added to the given set.
+	 * 
+	 * @param input
+	 *                the input
+	 * @param visited
+	 *                the fingerprints of enqueued inputs of the stage
+	 */
+	public void replayFinished(Input input, FingerprintSet visited) {
+		Long fingerprint = replays.remove(input);
+		if (fingerprint != null) {
+			visited.add(fingerprint);
+		}
+	}
+
+	/**
+	 * Return whether new inputs must not be derived from the execution of an
+	 * input, because it is a replay of an input that was done before the
+	 * checkpoint was written. The question is answered only once per input.
+	 * 
+	 * @param input
+	 *              the input
+	 * @return {@code true} if the input is a quiet replay
+	 */
+	public boolean isQuietReplay(Input input) {
+		return quietReplays.remove(input);
+	}
+
+	// ======================================================================
+	//
+	// REPORTING
+	//
+	// ======================================================================
+
+	/**
+	 * Publish a report about the checkpoints.
+	 * 
+	 * @param object
+	 *               the analysis run
+	 */
+	private void report(Object object) {
+		Broker broker = ((COASTAL) object).getBroker();
+		broker.publish("report", new Tuple("Checkpoint.writes", writeCount.get()));
+		broker.publish("report", new TimeTuple("Checkpoint.write-time", writeTime.get()));
+		broker.publish("report", new Tuple("Checkpoint.skipped-inputs", skippedCount));
+		broker.publish("report", new Tuple("Checkpoint.replayed-inputs", replayCount.get()));
+	}
+
+	// ======================================================================
+	//
+	// LEDGER
+	//
+	// ======================================================================
+
+	/**
+	 * The inputs of one stage, either as recorded during the analysis run or as
+	 * restored from a checkpoint file.
+	 */
+	private static final class Ledger {
+
+		/**
+		 * Inputs that are queued. Inputs have no notion of equality, so the
+		 * set compares them by identity.
+		 */
+		final Set<Input> queued = Collections.newSetFromMap(new IdentityHashMap<>());
+
+		/**
+		 * Inputs that a task has taken but not finished with, mapped to their
+		 * encoding at the time they were taken. The diver adds the concrete
+		 * arguments to an input while it runs, so encoding it later would not
+		 * reproduce the input as it was queued.
+		 */
+		final Map<Input, String> running = new IdentityHashMap<>();
+
+		/**
+		 * Encoded inputs that are done.
+		 */
+		final List<String> done = new ArrayList<>();
+
+		/**
+		 * The number of inputs that are done but could not be encoded.
+		 */
+		int skipped = 0;
+
+		/**
+		 * Restored inputs that were done.
+		 */
+		final List<Input> doneInputs = new ArrayList<>();
+
+		/**
+		 * Restored inputs that had been taken but not finished with.
+		 */
+		final List<Input> runningInputs = new ArrayList<>();
+
+		/**
+		 * Restored inputs that were queued.
+		 */
+		final List<Input> queuedInputs = new ArrayList<>();
+
+	}
+
+}
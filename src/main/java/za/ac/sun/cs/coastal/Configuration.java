@@ -855,7 +855,7 @@ public final class Configuration {
 	 *                     the string that contains the configuration
 	 * @return an immutable configuration
 	 */
-	private static Configuration loadFromString(Logger log, String configString) {
+	static Configuration loadFromString(Logger log, String configString) {
 		if (configString == null) {
 			log.trace("configString is null");
 			return null;
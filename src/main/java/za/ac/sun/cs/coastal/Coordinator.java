@@ -0,0 +1,557 @@
+/*
+ * This file is part of the COASTAL tool, https://deepseaplatform.github.io/coastal/
+ *
+ * Copyright (c) 2019-2020, Computer Science, Stellenbosch University.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package za.ac.sun.cs.coastal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.Logger;
+
+import za.ac.sun.cs.coastal.TerminationDetector.Stage;
+import za.ac.sun.cs.coastal.messages.Broker;
+import za.ac.sun.cs.coastal.messages.Tuple;
+import za.ac.sun.cs.coastal.symbolic.Execution;
+import za.ac.sun.cs.coastal.symbolic.Input;
+
+/**
+ * The coordinator of a distributed analysis run. The coordinator owns the path
+ * tree, the strategies, and the input queues; worker processes connect to it
+ * over a socket and run divers and surfers on its inputs.
+ * 
+ * When a worker connects, the coordinator sends it the configuration of the
+ * run, so that a worker needs nothing but the address of the coordinator and a
+ * class path that contains the target. Each worker then grants credit for as
+ * many inputs per stage as it wants to hold, and the coordinator takes inputs
+ * from its queues, sends them in batches, and waits for more credit. Executions
+ * that come back are added to the pc and trace queues, just like the
+ * executions of local divers and surfers. An input remains in flight for the
+ * termination detector from the moment it is sent until its execution
+ * arrives, and if a worker disconnects, its outstanding inputs are returned to
+ * the queues.
+ * 
+ * The coordinator also runs the divers and surfers of the configuration, and
+ * each worker runs the same number.
+ */
+final class Coordinator {
+
+	/**
+	 * The number of milliseconds to wait for worker processes to exit.
+	 */
+	private static final long STOP_TIMEOUT = 5000;
+
+	/**
+	 * The analysis run.
+	 */
+	private final COASTAL coastal;
+
+	/**
+	 * The logger of the analysis run.
+	 */
+	private final Logger log;
+
+	/**
+	 * The port on which to listen, or 0 for any free port.
+	 */
+	private final int port;
+
+	/**
+	 * The number of worker processes to start on this machine.
+	 */
+	private final int localWorkers;
+
+	/**
+	 * The socket on which workers connect.
+	 */
+	private ServerSocket serverSocket = null;
+
+	/**
+	 * The connections to workers.
+	 */
+	private final List<Connection> connections = new CopyOnWriteArrayList<>();
+
+	/**
+	 * The worker processes started on this machine.
+	 */
+	private final List<Process> processes = new ArrayList<>();
+
+	/**
+	 * Whether the analysis run is stopping.
+	 */
+	private volatile boolean stopping = false;
+
+	/**
+	 * The number of workers that have connected.
+	 */
+	private final AtomicLong workerCount = new AtomicLong(0);
+
+	/**
+	 * The number of inputs sent to workers.
+	 */
+	private final AtomicLong sentCount = new AtomicLong(0);
+
+	/**
+	 * The number of executions received from workers.
+	 */
+	private final AtomicLong receivedCount = new AtomicLong(0);
+
+	/**
+	 * The number of inputs returned to the queues after a worker disconnected.
+	 */
+	private final AtomicLong returnedCount = new AtomicLong(0);
+
+	/**
+	 * The number of inputs that could not be encoded and were dropped.
+	 */
+	private final AtomicLong droppedCount = new AtomicLong(0);
+
+	/**
+	 * The number of expressions received in full from closed connections.
+	 */
+	private final AtomicLong newExpressions = new AtomicLong(0);
+
+	/**
+	 * The number of expressions received as table indices from closed
+	 * connections.
+	 */
+	private final AtomicLong reusedExpressions = new AtomicLong(0);
+
+	/**
+	 * Create the coordinator for an analysis run.
+	 * 
+	 * @param coastal
+	 *                     the analysis run
+	 * @param port
+	 *                     the port on which to listen, or 0 for any free port
+	 * @param localWorkers
+	 *                     the number of worker processes to start on this
+	 *                     machine
+	 */
+	Coordinator(COASTAL coastal, int port, int localWorkers) {
+		this.coastal = coastal;
+		log = coastal.getLog();
+		this.port = port;
+		this.localWorkers = localWorkers;
+		coastal.getBroker().subscribe("tock", this::stop);
+		coastal.getBroker().subscribe("coastal-stop", this::report);
+	}
+
+	/**
+	 * Listen for workers and start the local worker processes. If no port is
+	 * given, the coordinator only listens on the loopback address.
+	 */
+	void start() {
+		try {
+			if (port == 0) {
+				serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+			} else {
+				serverSocket = new ServerSocket(port);
+			}
+		} catch (IOException x) {
+			log.warn("could not listen for workers on port {}", port, x);
+			return;
+		}
+		log.info("listening for workers on port {}", serverSocket.getLocalPort());
+		startThread("coordinator", this::accept);
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		String address = InetAddress.getLoopbackAddress().getHostAddress() + ":" + serverSocket.getLocalPort();
+		for (int i = 0; i < localWorkers; i++) {
+			ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+					COASTAL.class.getName(), "-quiet", "-worker", address);
+			builder.redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.INHERIT);
+			try {
+				processes.add(builder.start());
+			} catch (IOException x) {
+				log.warn("could not start worker process", x);
+			}
+		}
+	}
+
+	/**
+	 * Tell all workers to stop, close their connections, and wait for the
+	 * local worker processes to exit.
+	 * 
+	 * @param object
+	 *               dummy object
+	 */
+	private void stop(Object object) {
+		stopping = true;
+		try {
+			if (serverSocket != null) {
+				serverSocket.close();
+			}
+		} catch (IOException x) {
+			// ignore
+		}
+		for (Connection connection : connections) {
+			connection.close(true);
+		}
+		long deadline = System.currentTimeMillis() + STOP_TIMEOUT;
+		for (Process process : processes) {
+			try {
+				long wait = Math.max(deadline - System.currentTimeMillis(), 1);
+				if (!process.waitFor(wait, TimeUnit.MILLISECONDS)) {
+					process.destroyForcibly();
+				}
+			} catch (InterruptedException x) {
+				process.destroyForcibly();
+			}
+		}
+	}
+
+	/**
+	 * Accept connections from workers until the analysis run stops.
+	 */
+	private void accept() {
+		while (!stopping) {
+			try {
+				Socket socket = serverSocket.accept();
+				socket.setTcpNoDelay(true);
+				Connection connection = new Connection(socket);
+				connections.add(connection);
+				startThread("coordinator-reader", connection::run);
+			} catch (IOException x) {
+				if (!stopping) {
+					log.warn("could not accept worker", x);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Return the configuration sent to workers. Workers do not write checkpoints
+	 * or coordinate other workers, and they run until the coordinator tells them
+	 * to stop.
+	 * 
+	 * @return the configuration as the text of a properties file
+	 */
+	private String getWorkerConfiguration() {
+		Configuration config = coastal.getConfig();
+		Properties properties = new Properties();
+		for (String key : config.getKeys()) {
+			if (!key.startsWith("coastal.settings.checkpoint.") && !key.startsWith("coastal.settings.distributed.")) {
+				properties.setProperty(key, config.getString(key));
+			}
+		}
+		properties.setProperty("coastal.settings.time-limit", "0");
+		StringWriter text = new StringWriter();
+		try {
+			properties.store(text, null);
+		} catch (IOException x) {
+			// cannot happen for a string writer
+		}
+		return text.toString();
+	}
+
+	private static void startThread(String name, Runnable runnable) {
+		Thread thread = new Thread(runnable, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Publish a report about the workers.
+	 * 
+	 * @param object
+	 *               the analysis run
+	 */
+	private void report(Object object) {
+		long fresh = newExpressions.get();
+		long reused = reusedExpressions.get();
+		for (Connection connection : connections) {
+			fresh += connection.decoder.getNewExpressions();
+			reused += connection.decoder.getReusedExpressions();
+		}
+		Broker broker = ((COASTAL) object).getBroker();
+		broker.publish("report", new Tuple("Coordinator.workers", workerCount.get()));
+		broker.publish("report", new Tuple("Coordinator.sent-inputs", sentCount.get()));
+		broker.publish("report", new Tuple("Coordinator.received-executions", receivedCount.get()));
+		broker.publish("report", new Tuple("Coordinator.returned-inputs", returnedCount.get()));
+		broker.publish("report", new Tuple("Coordinator.dropped-inputs", droppedCount.get()));
+		broker.publish("report", new Tuple("Coordinator.new-expressions", fresh));
+		broker.publish("report", new Tuple("Coordinator.reused-expressions", reused));
+	}
+
+	// ======================================================================
+	//
+	// CONNECTIONS
+	//
+	// ======================================================================
+
+	/**
+	 * The connection to one worker. A reader thread handles the messages of the
+	 * worker, and a feeder thread per stage sends inputs while the worker has
+	 * credit. Sending, closing, and the inputs that are outstanding are all
+	 * guarded by the encoder.
+	 */
+	private final class Connection {
+
+		private final Socket socket;
+
+		private final Wire.Encoder encoder;
+
+		private final Wire.Decoder decoder;
+
+		private final Semaphore[] credits = { new Semaphore(0), new Semaphore(0) };
+
+		private final List<Map<Long, Input>> pending = Arrays.asList(new ConcurrentHashMap<>(),
+				new ConcurrentHashMap<>());
+
+		private final List<Thread> feeders = new ArrayList<>();
+
+		private long nextId = 0;
+
+		private boolean closed = false;
+
+		Connection(Socket socket) throws IOException {
+			this.socket = socket;
+			encoder = new Wire.Encoder(socket.getOutputStream());
+			decoder = new Wire.Decoder(socket.getInputStream());
+		}
+
+		/**
+		 * Greet the worker, start the feeders, and handle the messages of the
+		 * worker until the connection closes.
+		 */
+		void run() {
+			try {
+				if ((decoder.getStream().readInt() != Wire.MAGIC) || (decoder.getStream().readInt() != Wire.VERSION)) {
+					log.warn("rejected worker {} with another protocol", socket.getRemoteSocketAddress());
+					close(false);
+					return;
+				}
+				synchronized (encoder) {
+					encoder.getStream().writeInt(Wire.MAGIC);
+					encoder.getStream().writeInt(Wire.VERSION);
+					encoder.writeString(getWorkerConfiguration());
+					encoder.flush();
+				}
+				workerCount.incrementAndGet();
+				log.info("worker {} connected", socket.getRemoteSocketAddress());
+				for (Stage stage : new Stage[] { Stage.DIVER, Stage.SURFER }) {
+					Thread feeder = new Thread(() -> feed(stage), "coordinator-feeder");
+					feeder.setDaemon(true);
+					feeders.add(feeder);
+					feeder.start();
+				}
+				while (true) {
+					byte message = decoder.getStream().readByte();
+					if (message == Wire.CREDIT) {
+						Stage stage = Wire.stageOf(decoder.getStream().readByte());
+						credits[stage.ordinal()].release(decoder.getStream().readInt());
+					} else if (message == Wire.EXECUTION) {
+						Stage stage = Wire.stageOf(decoder.getStream().readByte());
+						long id = decoder.getStream().readLong();
+						Input input = pending.get(stage.ordinal()).get(id);
+						if (input == null) {
+							throw new IOException("execution of an unknown input");
+						}
+						// the input stays pending until its execution has been decoded, so
+						// that close() returns it to the queues if decoding fails
+						Execution execution = decoder.readExecution(input);
+						pending.get(stage.ordinal()).remove(id);
+						receivedCount.incrementAndGet();
+						if (stage == Stage.DIVER) {
+							coastal.addPc(execution);
+						} else {
+							coastal.addTrace(execution);
+						}
+					} else if (message == Wire.ABANDON) {
+						Stage stage = Wire.stageOf(decoder.getStream().readByte());
+						Input input = pending.get(stage.ordinal()).remove(decoder.getStream().readLong());
+						if (input == null) {
+							throw new IOException("abandoned an unknown input");
+						} else if (stage == Stage.SURFER) {
+							coastal.abandonSurferInput(input);
+						} else {
+							returnedCount.incrementAndGet();
+							coastal.returnInput(stage, input);
+						}
+					} else if (message == Wire.STOP) {
+						log.info("worker {} stopped the analysis run", socket.getRemoteSocketAddress());
+						coastal.stopWork();
+						break;
+					} else {
+						throw new IOException("unknown message " + message);
+					}
+				}
+			} catch (IOException x) {
+				if (!stopping) {
+					log.warn("lost worker {}", socket.getRemoteSocketAddress(), x);
+				}
+			} catch (InterruptedException x) {
+				// stopping
+			} catch (RuntimeException x) {
+				log.warn("dropped worker {} after an unexpected error", socket.getRemoteSocketAddress(), x);
+			}
+			close(false);
+		}
+
+		/**
+		 * Send inputs of a stage to the worker while it has credit.
+		 * 
+		 * @param stage
+		 *              the stage of the inputs
+		 */
+		private void feed(Stage stage) {
+			Semaphore credit = credits[stage.ordinal()];
+			try {
+				while (true) {
+					credit.acquire();
+					int count = 1 + credit.drainPermits();
+					List<Input> inputs;
+					if (stage == Stage.DIVER) {
+						inputs = coastal.getNextDiverInputs(count);
+					} else {
+						inputs = coastal.getNextSurferInputs(count);
+					}
+					if (inputs.contains(Input.DONE_INPUT)) {
+						break;
+					}
+					credit.release(count - inputs.size());
+					send(stage, inputs);
+				}
+			} catch (InterruptedException x) {
+				// stopping
+			} catch (IOException x) {
+				if (!stopping) {
+					log.warn("lost worker {}", socket.getRemoteSocketAddress(), x);
+				}
+				close(false);
+			}
+		}
+
+		/**
+		 * Send a batch of inputs to the worker. If the connection has closed, the
+		 * inputs are returned to the queues instead.
+		 * 
+		 * @param stage
+		 *               the stage of the inputs
+		 * @param inputs
+		 *               the inputs
+		 * @throws IOException
+		 *                              if the connection fails
+		 * @throws InterruptedException
+		 *                              if interrupted while returning inputs
+		 */
+		private void send(Stage stage, List<Input> inputs) throws IOException, InterruptedException {
+			List<Input> sendable = new ArrayList<>(inputs.size());
+			List<String> lines = new ArrayList<>(inputs.size());
+			for (Input input : inputs) {
+				String line = input.encode();
+				if (line == null) {
+					log.warn("dropped input that cannot be sent to workers: {}", input);
+					droppedCount.incrementAndGet();
+					coastal.dropInput(stage, input);
+				} else {
+					sendable.add(input);
+					lines.add(line);
+				}
+			}
+			synchronized (encoder) {
+				if (closed) {
+					for (Input input : sendable) {
+						coastal.returnInput(stage, input);
+					}
+					returnedCount.addAndGet(sendable.size());
+					return;
+				}
+				encoder.getStream().writeByte(Wire.INPUTS);
+				encoder.getStream().writeByte(stage.ordinal());
+				encoder.getStream().writeInt(sendable.size());
+				for (int i = 0; i < sendable.size(); i++) {
+					long id = nextId++;
+					pending.get(stage.ordinal()).put(id, sendable.get(i));
+					encoder.writeInput(id, lines.get(i));
+				}
+				encoder.flush();
+			}
+			sentCount.addAndGet(sendable.size());
+		}
+
+		/**
+		 * Close the connection. Unless the analysis run is stopping, the inputs
+		 * that the worker still holds are returned to the queues.
+		 * 
+		 * @param sendStop
+		 *                 whether to tell the worker to stop first
+		 */
+		void close(boolean sendStop) {
+			List<Input> diverInputs = new ArrayList<>();
+			List<Input> surferInputs = new ArrayList<>();
+			synchronized (encoder) {
+				if (closed) {
+					return;
+				}
+				closed = true;
+				if (sendStop) {
+					try {
+						encoder.getStream().writeByte(Wire.STOP);
+						encoder.flush();
+					} catch (IOException x) {
+						// the worker is gone already
+					}
+				}
+				try {
+					socket.close();
+				} catch (IOException x) {
+					// ignore
+				}
+				if (!stopping) {
+					diverInputs.addAll(pending.get(Stage.DIVER.ordinal()).values());
+					surferInputs.addAll(pending.get(Stage.SURFER.ordinal()).values());
+				}
+				pending.get(Stage.DIVER.ordinal()).clear();
+				pending.get(Stage.SURFER.ordinal()).clear();
+			}
+			for (Thread feeder : feeders) {
+				feeder.interrupt();
+			}
+			connections.remove(this);
+			newExpressions.addAndGet(decoder.getNewExpressions());
+			reusedExpressions.addAndGet(decoder.getReusedExpressions());
+			try {
+				for (Input input : diverInputs) {
+					coastal.returnInput(Stage.DIVER, input);
+				}
+				for (Input input : surferInputs) {
+					coastal.returnInput(Stage.SURFER, input);
+				}
+			} catch (InterruptedException x) {
+				// stopping
+			}
+			returnedCount.addAndGet(diverInputs.size() + surferInputs.size());
+		}
+
+	}
+
+}
@@ -0,0 +1,385 @@
+/*
+ * This file is part of the COASTAL tool, https://deepseaplatform.github.io/coastal/
+ *
+ * Copyright (c) 2019-2020, Computer Science, Stellenbosch University.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package za.ac.sun.cs.coastal;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
+
+/**
+ * A blocking priority queue that is split into lanes, one for each consumer
+ * thread, so that consumers do not compete for a single lock. Producers add
+ * items to the lanes in turn. A consumer removes the item with the lowest
+ * priority value from its own lane, and when its lane is empty, steals from the
+ * other lanes. The order of items is therefore only approximately that of a
+ * single priority queue.
+ * 
+ * Each lane is a binary heap of items keyed by an integer priority, computed
+ * once when the item is added. A semaphore counts the items in all lanes: a
+ * consumer first acquires a permit, and is then guaranteed to find an item in
+ * some lane.
+ *
+ * @param <E>
+ *            the type of items in the queue
+ */
+public class StealingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+	/**
+	 * Computes the priority of an item. Items with lower values are served first.
+	 */
+	private final ToIntFunction<? super E> priority;
+
+	/**
+	 * The lanes of the queue.
+	 */
+	private final List<Lane<E>> lanes;
+
+	/**
+	 * The number of items in all lanes.
+	 */
+	private final Semaphore available = new Semaphore(0);
+
+	/**
+	 * The lane to which the next item is added.
+	 */
+	private final AtomicInteger nextPutLane = new AtomicInteger(0);
+
+	/**
+	 * The lane assigned to the next consumer thread.
+	 */
+	private final AtomicInteger nextOwnLane = new AtomicInteger(0);
+
+	/**
+	 * The lane of each consumer thread.
+	 */
+	private final ThreadLocal<Integer> ownLane = ThreadLocal
+			.withInitial(() -> Math.floorMod(nextOwnLane.getAndIncrement(), lanes().size()));
+
+	/**
+	 * The number of items that consumers took from lanes other than their own.
+	 */
+	private final AtomicLong stealCount = new AtomicLong(0);
+
+	/**
+	 * Construct a new queue.
+	 * 
+	 * @param priority
+	 *                  computes the priority of an item
+	 * @param laneCount
+	 *                  the number of lanes, normally the number of consumers
+	 */
+	public StealingQueue(ToIntFunction<? super E> priority, int laneCount) {
+		this.priority = priority;
+		int count = Math.max(laneCount, 1);
+		lanes = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			lanes.add(new Lane<>());
+		}
+	}
+
+	private List<Lane<E>> lanes() {
+		return lanes;
+	}
+
+	public long getStealCount() {
+		return stealCount.get();
+	}
+
+	// ======================================================================
+	//
+	// ADDING ITEMS
+	//
+	// ======================================================================
+
+	@Override
+	public boolean offer(E item) {
+		if (item == null) {
+			throw new NullPointerException();
+		}
+		int lane = Math.floorMod(nextPutLane.getAndIncrement(), lanes.size());
+		lanes.get(lane).add(item, priority.applyAsInt(item));
+		available.release();
+		return true;
+	}
+
+	@Override
+	public void put(E item) {
+		offer(item);
+	}
+
+	@Override
+	public boolean offer(E item, long timeout, TimeUnit unit) {
+		return offer(item);
+	}
+
+	@Override
+	public int remainingCapacity() {
+		return Integer.MAX_VALUE;
+	}
+
+	// ======================================================================
+	//
+	// REMOVING ITEMS
+	//
+	// ======================================================================
+
+	/**
+	 * Remove an item after a permit has been acquired. The consumer's own lane is
+	 * tried first, and then the other lanes in turn. Because every permit
+	 * corresponds to an item, one of the lanes will have an item, although a
+	 * consumer may have to look more than once while other consumers move
+	 * through the lanes.
+	 * 
+	 * @return the removed item
+	 */
+	private E removeAcquired() {
+		int own = ownLane.get();
+		while (true) {
+			E item = lanes.get(own).poll();
+			if (item != null) {
+				return item;
+			}
+			for (int i = 1; i < lanes.size(); i++) {
+				item = lanes.get((own + i) % lanes.size()).poll();
+				if (item != null) {
+					stealCount.incrementAndGet();
+					return item;
+				}
+			}
+			Thread.yield();
+		}
+	}
+
+	@Override
+	public E poll() {
+		return available.tryAcquire() ? removeAcquired() : null;
+	}
+
+	@Override
+	public E take() throws InterruptedException {
+		available.acquire();
+		return removeAcquired();
+	}
+
+	@Override
+	public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+		return available.tryAcquire(timeout, unit) ? removeAcquired() : null;
+	}
+
+	@Override
+	public int drainTo(Collection<? super E> items) {
+		return drainTo(items, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int drainTo(Collection<? super E> items, int maxItems) {
+		int n = 0;
+		while ((n < maxItems) && available.tryAcquire()) {
+			items.add(removeAcquired());
+			n++;
+		}
+		return n;
+	}
+
+	@Override
+	public boolean remove(Object item) {
+		if (!available.tryAcquire()) {
+			return false;
+		}
+		for (Lane<E> lane : lanes) {
+			if (lane.remove(item)) {
+				return true;
+			}
+		}
+		available.release();
+		return false;
+	}
+
+	@Override
+	public void clear() {
+		while (available.tryAcquire()) {
+			removeAcquired();
+		}
+	}
+
+	// ======================================================================
+	//
+	// INSPECTING ITEMS
+	//
+	// ======================================================================
+
+	@Override
+	public int size() {
+		return available.availablePermits();
+	}
+
+	/**
+	 * Return the item with the lowest priority value at the head of any lane.
+	 * This is only a snapshot: the item may be removed before the caller uses it.
+	 * 
+	 * @return the item or {@code null} if the queue is empty
+	 */
+	@Override
+	public E peek() {
+		E best = null;
+		int bestPriority = 0;
+		for (Lane<E> lane : lanes) {
+			synchronized (lane) {
+				if ((lane.size > 0) && ((best == null) || (lane.priorities[0] < bestPriority))) {
+					best = lane.items[0];
+					bestPriority = lane.priorities[0];
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Return an iterator over a snapshot of the items in the queue, in no
+	 * particular order. The iterator does not support removal; use
+	 * {@link #remove(Object)} instead.
+	 */
+	@Override
+	public Iterator<E> iterator() {
+		List<E> snapshot = new ArrayList<>();
+		for (Lane<E> lane : lanes) {
+			synchronized (lane) {
+				snapshot.addAll(Arrays.asList(lane.items).subList(0, lane.size));
+			}
+		}
+		Iterator<E> iterator = snapshot.iterator();
+		return new Iterator<E>() {
+			@Override
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			@Override
+			public E next() {
+				return iterator.next();
+			}
+		};
+	}
+
+	// ======================================================================
+	//
+	// LANES
+	//
+	// ======================================================================
+
+	/**
+	 * A binary min-heap of items keyed by integer priorities. All methods that
+	 * access the heap synchronize on the lane.
+	 */
+	private static final class Lane<E> {
+
+		private E[] items;
+
+		private int[] priorities;
+
+		private int size = 0;
+
+		@SuppressWarnings("unchecked")
+		Lane() {
+			items = (E[]) new Object[16];
+			priorities = new int[16];
+		}
+
+		synchronized void add(E item, int priority) {
+			if (size == items.length) {
+				items = Arrays.copyOf(items, size * 2);
+				priorities = Arrays.copyOf(priorities, size * 2);
+			}
+			siftUp(size++, item, priority);
+		}
+
+		synchronized E poll() {
+			return (size == 0) ? null : removeAt(0);
+		}
+
+		synchronized boolean remove(Object item) {
+			for (int i = 0; i < size; i++) {
+				if (item.equals(items[i])) {
+					removeAt(i);
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private E removeAt(int index) {
+			E item = items[index];
+			int last = --size;
+			E lastItem = items[last];
+			int lastPriority = priorities[last];
+			items[last] = null;
+			if (index < last) {
+				siftDown(index, lastItem, lastPriority);
+				if (items[index] == lastItem) {
+					siftUp(index, lastItem, lastPriority);
+				}
+			}
+			return item;
+		}
+
+		private void siftUp(int index, E item, int priority) {
+			while (index > 0) {
+				int parent = (index - 1) >>> 1;
+				if (priorities[parent] <= priority) {
+					break;
+				}
+				items[index] = items[parent];
+				priorities[index] = priorities[parent];
+				index = parent;
+			}
+			items[index] = item;
+			priorities[index] = priority;
+		}
+
+		private void siftDown(int index, E item, int priority) {
+			int half = size >>> 1;
+			while (index < half) {
+				int child = 2 * index + 1;
+				int right = child + 1;
+				if ((right < size) && (priorities[right] < priorities[child])) {
+					child = right;
+				}
+				if (priority <= priorities[child]) {
+					break;
+				}
+				items[index] = items[child];
+				priorities[index] = priorities[child];
+				index = child;
+			}
+			items[index] = item;
+			priorities[index] = priority;
+		}
+
+	}
+
+}
@@ -59,6 +59,16 @@ public interface TaskFactory {
 	 * information that are relevant to many instances of the task at hand.
 	 */
 	public interface TaskManager extends Reportable {
+
+		/**
+		 * Return the total time that tasks of this kind have spent waiting for
+		 * work. This is used to decide whether it makes sense to create
+		 * additional tasks (or to retire some).
+		 * 
+		 * @return the accumulated wait time in milliseconds
+		 */
+		long getWaitTime();
+
 	}
 
 	// ======================================================================
@@ -0,0 +1,177 @@
+/*
+ * This file is part of the COASTAL tool, https://deepseaplatform.github.io/coastal/
+ *
+ * Copyright (c) 2019-2020, Computer Science, Stellenbosch University.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package za.ac.sun.cs.coastal;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of the work in flight in each stage of an analysis run, and
+ * detects when the run has no more work to do.
+ * 
+ * A unit of work is an input for a diver or surfer, or an execution for a
+ * strategy. It is in flight from the moment it is added to a queue until the
+ * task that took it from the queue is done with it, even while no queue holds
+ * it. When a task passes work on to the next stage, the new units enter the
+ * next stage before the old unit leaves the current stage. The total in flight
+ * can therefore only reach zero when no queue holds an item and no task holds
+ * work, and no task will produce more work. At that moment the detector runs
+ * its quiescence action exactly once.
+ */
+public class TerminationDetector {
+
+	/**
+	 * The stages through which work passes.
+	 */
+	public enum Stage {
+		/**
+		 * Inputs queued for or being executed by divers.
+		 */
+		DIVER,
+		/**
+		 * Inputs queued for or being executed by surfers.
+		 */
+		SURFER,
+		/**
+		 * Executions queued for or being refined by strategies.
+		 */
+		STRATEGY
+	}
+
+	/**
+	 * The number of units in flight in each stage.
+	 */
+	private final AtomicLong[] inFlight = new AtomicLong[Stage.values().length];
+
+	/**
+	 * The number of units in flight in all stages.
+	 */
+	private final AtomicLong total = new AtomicLong(0);
+
+	/**
+	 * Whether the total in flight has reached zero.
+	 */
+	private volatile boolean quiescent = false;
+
+	/**
+	 * What to do when the total in flight reaches zero.
+	 */
+	private final Runnable onQuiescence;
+
+	/**
+	 * Construct a new detector.
+	 * 
+	 * @param onQuiescence
+	 *                     what to do when the total in flight reaches zero
+	 */
+	public TerminationDetector(Runnable onQuiescence) {
+		this.onQuiescence = onQuiescence;
+		for (int i = 0; i < inFlight.length; i++) {
+			inFlight[i] = new AtomicLong(0);
+		}
+	}
+
+	/**
+	 * Record that units of work have entered a stage.
+	 * 
+	 * @param stage
+	 *              the stage that the units enter
+	 * @param count
+	 *              the number of units
+	 */
+	public void enter(Stage stage, long count) {
+		if (count > 0) {
+			inFlight[stage.ordinal()].addAndGet(count);
+			total.addAndGet(count);
+		}
+	}
+
+	/**
+	 * Record that units of work have left a stage without producing work for
+	 * another stage.
+	 * 
+	 * @param stage
+	 *              the stage that the units leave
+	 * @param count
+	 *              the number of units
+	 */
+	public void leave(Stage stage, long count) {
+		if (count > 0) {
+			inFlight[stage.ordinal()].addAndGet(-count);
+			if (total.addAndGet(-count) == 0) {
+				signal();
+			}
+		}
+	}
+
+	/**
+	 * Record that a unit of work has moved from one stage to another.
+	 * 
+	 * @param from
+	 *             the stage that the unit leaves
+	 * @param to
+	 *             the stage that the unit enters
+	 */
+	public void transfer(Stage from, Stage to) {
+		enter(to, 1);
+		leave(from, 1);
+	}
+
+	/**
+	 * Run the quiescence action, unless it has already run.
+	 */
+	private void signal() {
+		synchronized (this) {
+			if (quiescent) {
+				return;
+			}
+			quiescent = true;
+		}
+		onQuiescence.run();
+	}
+
+	/**
+	 * Return the number of units in flight in a stage.
+	 * 
+	 * @param stage
+	 *              the stage
+	 * @return the number of units in the stage
+	 */
+	public long getInFlight(Stage stage) {
+		return inFlight[stage.ordinal()].get();
+	}
+
+	/**
+	 * Return the number of units in flight in all stages.
+	 * 
+	 * @return the number of units in flight
+	 */
+	public long getInFlight() {
+		return total.get();
+	}
+
+	/**
+	 * Return whether the total in flight has reached zero.
+	 * 
+	 * @return {@code true} if and only if there is no more work
+	 */
+	public boolean isQuiescent() {
+		return quiescent;
+	}
+
+}
@@ -0,0 +1,619 @@
+/*
+ * This file is part of the COASTAL tool, https://deepseaplatform.github.io/coastal/
+ *
+ * Copyright (c) 2019-2020, Computer Science, Stellenbosch University.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package za.ac.sun.cs.coastal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import za.ac.sun.cs.coastal.TerminationDetector.Stage;
+import za.ac.sun.cs.coastal.diver.SegmentedPC;
+import za.ac.sun.cs.coastal.solver.Expression;
+import za.ac.sun.cs.coastal.solver.IntegerConstant;
+import za.ac.sun.cs.coastal.solver.IntegerVariable;
+import za.ac.sun.cs.coastal.solver.Operation;
+import za.ac.sun.cs.coastal.solver.Operation.Operator;
+import za.ac.sun.cs.coastal.solver.RealConstant;
+import za.ac.sun.cs.coastal.solver.RealVariable;
+import za.ac.sun.cs.coastal.surfer.Trace;
+import za.ac.sun.cs.coastal.symbolic.Branch;
+import za.ac.sun.cs.coastal.symbolic.Choice;
+import za.ac.sun.cs.coastal.symbolic.Execution;
+import za.ac.sun.cs.coastal.symbolic.Input;
+import za.ac.sun.cs.coastal.symbolic.Path;
+import za.ac.sun.cs.coastal.symbolic.PayloadCarrier;
+
+/**
+ * The messages that the coordinator of a distributed analysis run and its
+ * workers exchange over a socket.
+ * 
+ * Inputs travel as the lines produced by {@link Input#encode()}. An execution
+ * travels as the sequence of its choices, from the root of the path to the
+ * leaf: for each choice, the kind of branch, the expressions of the branch,
+ * and the alternative taken. Expressions are not written out in full each
+ * time. Each end of a connection keeps a table of the expressions sent so far,
+ * and an expression that is already in the table is sent as its index. Because
+ * successive path conditions share most of their subexpressions, an execution
+ * mostly adds the few new conjuncts of its path to the table. The table is
+ * cleared when it grows beyond {@link #TABLE_LIMIT} entries.
+ * 
+ * Payloads of executions and choices are sent if their values are null, boxed
+ * primitives, strings, integer arrays, or lists and sets of these; other
+ * entries are left out.
+ */
+final class Wire {
+
+	/**
+	 * The first word sent over a new connection, by both ends.
+	 */
+	static final int MAGIC = 0x434f4457;
+
+	/**
+	 * The version of the protocol.
+	 */
+	static final int VERSION = 1;
+
+	/**
+	 * Worker to coordinator: the worker can accept more inputs for a stage.
+	 */
+	static final byte CREDIT = 1;
+
+	/**
+	 * Coordinator to worker: a batch of inputs for a stage.
+	 */
+	static final byte INPUTS = 2;
+
+	/**
+	 * Worker to coordinator: the execution of an input.
+	 */
+	static final byte EXECUTION = 3;
+
+	/**
+	 * Worker to coordinator: a surfer gave up on an input.
+	 */
+	static final byte ABANDON = 4;
+
+	/**
+	 * Either direction: the analysis run must stop.
+	 */
+	static final byte STOP = 5;
+
+	/**
+	 * The number of expressions in a table before it is cleared.
+	 */
+	static final int TABLE_LIMIT = 1 << 20;
+
+	private static final int NULL_REF = -1;
+
+	private static final int NEW_REF = -2;
+
+	private static final int RESET_REF = -3;
+
+	private static final byte INTEGER_CONSTANT = 0;
+
+	private static final byte INTEGER_VARIABLE = 1;
+
+	private static final byte REAL_CONSTANT = 2;
+
+	private static final byte REAL_VARIABLE = 3;
+
+	private static final byte OPERATION = 4;
+
+	private static final byte BINARY_BRANCH = 0;
+
+	private static final byte NARY_BRANCH = 1;
+
+	private static final byte KARY_BRANCH = 2;
+
+	private static final byte TRACE_BRANCH = 3;
+
+	private Wire() {
+		// static members and nested classes only
+	}
+
+	/**
+	 * Return the stage to which the inputs and executions of a message belong.
+	 * 
+	 * @param tag
+	 *            the stage as sent over the connection
+	 * @return the stage
+	 * @throws IOException
+	 *                     if the tag is not a diver or surfer stage
+	 */
+	static Stage stageOf(byte tag) throws IOException {
+		if (tag == Stage.DIVER.ordinal()) {
+			return Stage.DIVER;
+		} else if (tag == Stage.SURFER.ordinal()) {
+			return Stage.SURFER;
+		}
+		throw new IOException("unknown stage " + tag);
+	}
+
+	// ======================================================================
+	//
+	// ENCODING
+	//
+	// ======================================================================
+
+	/**
+	 * Writes messages to one end of a connection.
+	 */
+	static final class Encoder {
+
+		private final DataOutputStream out;
+
+		private final Map<Expression, Integer> table = new HashMap<>();
+
+		Encoder(OutputStream out) {
+			this.out = new DataOutputStream(new BufferedOutputStream(out));
+		}
+
+		DataOutputStream getStream() {
+			return out;
+		}
+
+		void flush() throws IOException {
+			out.flush();
+		}
+
+		void writeString(String string) throws IOException {
+			if (string == null) {
+				out.writeInt(-1);
+			} else {
+				byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+		}
+
+		/**
+		 * Write an input that has already been encoded, with the identifier by
+		 * which the worker refers to it.
+		 * 
+		 * @param id
+		 *             the identifier of the input
+		 * @param line
+		 *             the encoded input
+		 * @throws IOException
+		 *                     if the connection fails
+		 */
+		void writeInput(long id, String line) throws IOException {
+			out.writeLong(id);
+			writeString(line);
+		}
+
+		/**
+		 * Write the execution of an input. The input is written again, because
+		 * divers and surfers fill in the values that the input did not fix.
+		 * 
+		 * @param id
+		 *                  the identifier of the input
+		 * @param execution
+		 *                  the execution
+		 * @throws IOException
+		 *                     if the connection fails
+		 */
+		void writeExecution(long id, Execution execution) throws IOException {
+			out.writeLong(id);
+			String line = (execution.getInput() == null) ? null : execution.getInput().encode();
+			writeString(line);
+			List<Path> paths = new ArrayList<>();
+			for (Path path = execution.getPath(); path != null; path = path.getParent()) {
+				paths.add(path);
+			}
+			if (table.size() + 4 * paths.size() > TABLE_LIMIT) {
+				out.writeInt(RESET_REF);
+				table.clear();
+			}
+			out.writeInt(paths.size());
+			for (int i = paths.size() - 1; i >= 0; i--) {
+				Path path = paths.get(i);
+				Choice choice = path.getChoice();
+				writeBranch(choice.getBranch());
+				out.writeLong(choice.getAlternative());
+				out.writeBoolean(path.getWitness() != null);
+				writePayload(choice.getPayload());
+			}
+			writePayload(execution.getPayload());
+		}
+
+		private void writeBranch(Branch branch) throws IOException {
+			if (branch instanceof SegmentedPC.Binary) {
+				SegmentedPC.Binary binary = (SegmentedPC.Binary) branch;
+				out.writeByte(BINARY_BRANCH);
+				writeExpression(binary.getExpression());
+				writeExpression(binary.getPassiveConjunct());
+			} else if (branch instanceof SegmentedPC.Nary) {
+				SegmentedPC.Nary nary = (SegmentedPC.Nary) branch;
+				out.writeByte(NARY_BRANCH);
+				writeExpression(nary.getExpression());
+				out.writeLong(nary.getMin());
+				out.writeLong(nary.getMax());
+				writeExpression(nary.getPassiveConjunct());
+			} else if (branch instanceof SegmentedPC.Kary) {
+				SegmentedPC.Kary kary = (SegmentedPC.Kary) branch;
+				out.writeByte(KARY_BRANCH);
+				writeExpression(kary.getExpression());
+				int[] keys = kary.getKeys();
+				out.writeInt(keys.length);
+				for (int key : keys) {
+					out.writeInt(key);
+				}
+				writeExpression(kary.getPassiveConjunct());
+			} else if (branch instanceof Trace.Binary) {
+				out.writeByte(TRACE_BRANCH);
+			} else {
+				throw new IOException("cannot send branch " + branch.getClass().getName());
+			}
+		}
+
+		private void writeExpression(Expression expression) throws IOException {
+			if (expression == null) {
+				out.writeInt(NULL_REF);
+				return;
+			}
+			Integer ref = table.get(expression);
+			if (ref != null) {
+				out.writeInt(ref);
+				return;
+			}
+			out.writeInt(NEW_REF);
+			if (expression instanceof IntegerConstant) {
+				IntegerConstant constant = (IntegerConstant) expression;
+				out.writeByte(INTEGER_CONSTANT);
+				out.writeLong(constant.getValue());
+				out.writeInt(constant.getSize());
+			} else if (expression instanceof IntegerVariable) {
+				IntegerVariable variable = (IntegerVariable) expression;
+				out.writeByte(INTEGER_VARIABLE);
+				writeString(variable.getName());
+				out.writeInt(variable.getSize());
+				out.writeLong(variable.getLowerBound());
+				out.writeLong(variable.getUpperBound());
+			} else if (expression instanceof RealConstant) {
+				RealConstant constant = (RealConstant) expression;
+				out.writeByte(REAL_CONSTANT);
+				out.writeDouble(constant.getValue());
+				out.writeInt(constant.getSize());
+			} else if (expression instanceof RealVariable) {
+				RealVariable variable = (RealVariable) expression;
+				out.writeByte(REAL_VARIABLE);
+				writeString(variable.getName());
+				out.writeInt(variable.getSize());
+				out.writeDouble(variable.getLowerBound());
+				out.writeDouble(variable.getUpperBound());
+			} else if (expression instanceof Operation) {
+				Operation operation = (Operation) expression;
+				out.writeByte(OPERATION);
+				out.writeInt(operation.getOperator().ordinal());
+				out.writeInt(operation.getResultingSize());
+				out.writeInt(operation.getOperandCount());
+				for (Expression operand : operation.getOperands()) {
+					writeExpression(operand);
+				}
+			} else {
+				throw new IOException("cannot send expression " + expression.getClass().getName());
+			}
+			table.put(expression, table.size());
+		}
+
+		private void writePayload(Map<String, Object> payload) throws IOException {
+			List<Map.Entry<String, Object>> entries = new ArrayList<>();
+			for (Map.Entry<String, Object> entry : payload.entrySet()) {
+				if (isSendable(entry.getValue())) {
+					entries.add(entry);
+				}
+			}
+			out.writeInt(entries.size());
+			for (Map.Entry<String, Object> entry : entries) {
+				writeString(entry.getKey());
+				writeValue(entry.getValue());
+			}
+		}
+
+		private static boolean isSendable(Object value) {
+			if (value instanceof Collection) {
+				if (!((value instanceof List) || (value instanceof Set))) {
+					return false;
+				}
+				for (Object element : (Collection<?>) value) {
+					if (!isSendable(element) || (element instanceof Collection)) {
+						return false;
+					}
+				}
+				return true;
+			}
+			return (value == null) || (value instanceof String) || (value instanceof Integer)
+					|| (value instanceof Long) || (value instanceof Double) || (value instanceof Boolean)
+					|| (value instanceof int[]);
+		}
+
+		private void writeValue(Object value) throws IOException {
+			if (value == null) {
+				out.writeByte('N');
+			} else if (value instanceof String) {
+				out.writeByte('T');
+				writeString((String) value);
+			} else if (value instanceof Integer) {
+				out.writeByte('I');
+				out.writeInt((Integer) value);
+			} else if (value instanceof Long) {
+				out.writeByte('J');
+				out.writeLong((Long) value);
+			} else if (value instanceof Double) {
+				out.writeByte('D');
+				out.writeDouble((Double) value);
+			} else if (value instanceof Boolean) {
+				out.writeByte('Z');
+				out.writeBoolean((Boolean) value);
+			} else if (value instanceof int[]) {
+				int[] values = (int[]) value;
+				out.writeByte('A');
+				out.writeInt(values.length);
+				for (int v : values) {
+					out.writeInt(v);
+				}
+			} else {
+				out.writeByte((value instanceof Set) ? 'S' : 'L');
+				Collection<?> elements = (Collection<?>) value;
+				out.writeInt(elements.size());
+				for (Object element : elements) {
+					writeValue(element);
+				}
+			}
+		}
+
+	}
+
+	// ======================================================================
+	//
+	// DECODING
+	//
+	// ======================================================================
+
+	/**
+	 * Reads messages at one end of a connection.
+	 */
+	static final class Decoder {
+
+		private final DataInputStream in;
+
+		private final List<Expression> table = new ArrayList<>();
+
+		private long newExpressions = 0;
+
+		private long reusedExpressions = 0;
+
+		Decoder(InputStream in) {
+			this.in = new DataInputStream(new BufferedInputStream(in));
+		}
+
+		DataInputStream getStream() {
+			return in;
+		}
+
+		/**
+		 * Return the number of expressions that were sent in full.
+		 * 
+		 * @return the number of new expressions
+		 */
+		long getNewExpressions() {
+			return newExpressions;
+		}
+
+		/**
+		 * Return the number of expressions that were sent as an index into the
+		 * table of expressions.
+		 * 
+		 * @return the number of reused expressions
+		 */
+		long getReusedExpressions() {
+			return reusedExpressions;
+		}
+
+		String readString() throws IOException {
+			int length = in.readInt();
+			if (length < 0) {
+				return null;
+			}
+			byte[] bytes = new byte[length];
+			in.readFully(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		/**
+		 * Read an execution written by {@link Encoder#writeExecution(long, Execution)}.
+		 * The values of the input sent with the execution are copied to the
+		 * given input, which becomes the input of the execution and the witness
+		 * of its path.
+		 * 
+		 * @param input
+		 *              the input that was sent to the worker
+		 * @return the execution
+		 * @throws IOException
+		 *                     if the connection fails or the data is malformed
+		 */
+		Execution readExecution(Input input) throws IOException {
+			String line = readString();
+			if ((line != null) && (input != null)) {
+				Input result = Input.decode(line);
+				for (String name : result.getNames()) {
+					input.put(name, result.get(name));
+				}
+				for (Integer index : result.getIndices()) {
+					input.put(index, result.get(index));
+				}
+			}
+			int depth = in.readInt();
+			if (depth == RESET_REF) {
+				table.clear();
+				depth = in.readInt();
+			}
+			Path path = null;
+			for (int i = 0; i < depth; i++) {
+				Branch branch = readBranch();
+				Choice choice = new Choice(branch, in.readLong());
+				boolean hasWitness = in.readBoolean();
+				readPayload(choice);
+				path = new Path(path, choice, hasWitness ? input : null);
+			}
+			Execution execution = new Execution(path, input);
+			readPayload(execution);
+			return execution;
+		}
+
+		private Branch readBranch() throws IOException {
+			byte kind = in.readByte();
+			switch (kind) {
+			case BINARY_BRANCH:
+				Expression active = readExpression();
+				return new SegmentedPC.Binary(active, readExpression());
+			case NARY_BRANCH:
+				Expression expression = readExpression();
+				long min = in.readLong();
+				long max = in.readLong();
+				return new SegmentedPC.Nary(expression, min, max, readExpression());
+			case KARY_BRANCH:
+				Expression selector = readExpression();
+				int[] keys = new int[in.readInt()];
+				for (int i = 0; i < keys.length; i++) {
+					keys[i] = in.readInt();
+				}
+				return new SegmentedPC.Kary(selector, keys, readExpression());
+			case TRACE_BRANCH:
+				return new Trace.Binary();
+			default:
+				throw new IOException("unknown branch kind " + kind);
+			}
+		}
+
+		private Expression readExpression() throws IOException {
+			int ref = in.readInt();
+			if (ref == NULL_REF) {
+				return null;
+			} else if (ref >= 0) {
+				if (ref >= table.size()) {
+					throw new IOException("unknown expression " + ref);
+				}
+				reusedExpressions++;
+				return table.get(ref);
+			} else if (ref != NEW_REF) {
+				throw new IOException("malformed expression reference " + ref);
+			}
+			Expression expression;
+			byte kind = in.readByte();
+			switch (kind) {
+			case INTEGER_CONSTANT:
+				long value = in.readLong();
+				expression = IntegerConstant.create(value, in.readInt());
+				break;
+			case INTEGER_VARIABLE:
+				String name = readString();
+				int size = in.readInt();
+				long lower = in.readLong();
+				expression = IntegerVariable.create(name, size, lower, in.readLong());
+				break;
+			case REAL_CONSTANT:
+				double realValue = in.readDouble();
+				expression = RealConstant.create(realValue, in.readInt());
+				break;
+			case REAL_VARIABLE:
+				String realName = readString();
+				int realSize = in.readInt();
+				double realLower = in.readDouble();
+				expression = RealVariable.create(realName, realSize, realLower, in.readDouble());
+				break;
+			case OPERATION:
+				Operator[] operators = Operator.values();
+				int ordinal = in.readInt();
+				if ((ordinal < 0) || (ordinal >= operators.length)) {
+					throw new IOException("unknown operator " + ordinal);
+				}
+				int resultingSize = in.readInt();
+				Expression[] operands = new Expression[in.readInt()];
+				for (int i = 0; i < operands.length; i++) {
+					operands[i] = readExpression();
+				}
+				expression = Operation.create(operators[ordinal], resultingSize, operands);
+				break;
+			default:
+				throw new IOException("unknown expression kind " + kind);
+			}
+			newExpressions++;
+			table.add(expression);
+			return expression;
+		}
+
+		private void readPayload(PayloadCarrier carrier) throws IOException {
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				String key = readString();
+				carrier.setPayload(key, readValue());
+			}
+		}
+
+		private Object readValue() throws IOException {
+			byte kind = in.readByte();
+			switch (kind) {
+			case 'N':
+				return null;
+			case 'T':
+				return readString();
+			case 'I':
+				return in.readInt();
+			case 'J':
+				return in.readLong();
+			case 'D':
+				return in.readDouble();
+			case 'Z':
+				return in.readBoolean();
+			case 'A':
+				int[] values = new int[in.readInt()];
+				for (int i = 0; i < values.length; i++) {
+					values[i] = in.readInt();
+				}
+				return values;
+			case 'S':
+			case 'L':
+				int count = in.readInt();
+				Collection<Object> elements = (kind == 'S') ? new HashSet<>() : new ArrayList<>();
+				for (int i = 0; i < count; i++) {
+					elements.add(readValue());
+				}
+				return elements;
+			default:
+				throw new IOException("unknown value kind " + kind);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,604 @@
+/*
+ * This file is part of the COASTAL tool, https://deepseaplatform.github.io/coastal/
+ *
+ * Copyright (c) 2019-2020, Computer Science, Stellenbosch University.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package za.ac.sun.cs.coastal;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * A queue of work items between two stages of an analysis run, such as the
+ * models passed from strategies to divers, or the executions passed from
+ * divers to strategies. The queue is either ordered by priority or
+ * first-in-first-out.
+ * 
+ * A queue may have a capacity. What happens when an item is added to a full
+ * queue depends on its {@link OverflowPolicy}. Items that are dropped are
+ * reported to a handler, so that the amount of outstanding work can be
+ * adjusted, and items that are added beyond the capacity are reported to
+ * another, so that the user can be warned.
+ * 
+ * @param <E>
+ *            the type of items in the queue
+ */
+public class WorkQueue<E> {
+
+	/**
+	 * What to do when an item is added to a full queue.
+	 */
+	public enum OverflowPolicy {
+
+		/**
+		 * Wait until there is space, but no longer than the block timeout. When
+		 * the timeout expires, the item is added anyway, so that stages that feed
+		 * each other cannot deadlock. Unless the timeout is 0, the capacity is
+		 * therefore a soft bound.
+		 */
+		BLOCK,
+
+		/**
+		 * Drop the item that would be served last: either the new item or the
+		 * lowest-priority item in the queue. In a first-in-first-out queue, this
+		 * is always the new item.
+		 */
+		DROP_LOWEST,
+
+		/**
+		 * Drop the item that has been waiting the longest. Priority queues do not
+		 * record when items were added, and treat this policy like
+		 * {@link #DROP_LOWEST}.
+		 */
+		DROP_OLDEST,
+
+		/**
+		 * Write new items to a temporary file, and read them back when the queue
+		 * has drained to half its capacity. Items that cannot be written are added
+		 * to the queue anyway.
+		 */
+		SPILL;
+
+		/**
+		 * Return the policy with the given name, ignoring case and treating
+		 * hyphens as underscores.
+		 * 
+		 * @param name
+		 *                      the name of the policy
+		 * @param defaultPolicy
+		 *                      the policy to return if the name is not known
+		 * @return the policy
+		 */
+		public static OverflowPolicy parse(String name, OverflowPolicy defaultPolicy) {
+			if (name != null) {
+				String key = name.trim().toUpperCase().replace('-', '_');
+				for (OverflowPolicy policy : values()) {
+					if (policy.name().equals(key)) {
+						return policy;
+					}
+				}
+			}
+			return defaultPolicy;
+		}
+
+	}
+
+	/**
+	 * Conversion of items to and from single lines of text, used to spill items
+	 * to disk.
+	 * 
+	 * @param <E>
+	 *            the type of items
+	 */
+	public interface Codec<E> {
+
+		/**
+		 * Convert an item to a line of text.
+		 * 
+		 * @param item
+		 *             the item to convert
+		 * @return the line of text, or {@code null} if the item cannot be converted
+		 */
+		String encode(E item);
+
+		/**
+		 * Convert a line of text produced by {@link #encode(Object)} back to an
+		 * item.
+		 * 
+		 * @param line
+		 *             the line of text
+		 * @return the item
+		 */
+		E decode(String line);
+
+	}
+
+	/**
+	 * The name of the queue, used in reports.
+	 */
+	private final String name;
+
+	/**
+	 * The items in memory.
+	 */
+	private final BlockingQueue<E> queue;
+
+	/**
+	 * The order of the items, or {@code null} for a first-in-first-out queue.
+	 */
+	private final Comparator<? super E> comparator;
+
+	/**
+	 * The maximum number of items in memory, or 0 if the queue is unbounded.
+	 */
+	private final int capacity;
+
+	/**
+	 * What to do when the queue is full.
+	 */
+	private final OverflowPolicy policy;
+
+	/**
+	 * The maximum number of milliseconds a producer waits for space, or 0 to
+	 * wait indefinitely.
+	 */
+	private final long blockTimeout;
+
+	/**
+	 * The conversion used for spilling, or {@code null} if items cannot be
+	 * spilled.
+	 */
+	private final Codec<E> codec;
+
+	/**
+	 * Called with the number of items dropped.
+	 */
+	private final LongConsumer dropHandler;
+
+	/**
+	 * Called with the total number of overflowed items each time an item is
+	 * added beyond the capacity, or {@code null}.
+	 */
+	private final LongConsumer overflowHandler;
+
+	/**
+	 * Lock for producers of a bounded queue, and for the spill file.
+	 */
+	private final Object lock = new Object();
+
+	/**
+	 * The number of items dropped.
+	 */
+	private final AtomicLong dropCount = new AtomicLong(0);
+
+	/**
+	 * The number of items written to the spill file.
+	 */
+	private final AtomicLong spillCount = new AtomicLong(0);
+
+	/**
+	 * The number of items added to a full queue because a producer could not
+	 * wait longer, or the item could not be spilled.
+	 */
+	private final AtomicLong overflowCount = new AtomicLong(0);
+
+	/**
+	 * The number of items in the spill file that have not been read back.
+	 */
+	private volatile int spilled = 0;
+
+	private File spillFile = null;
+
+	private PrintWriter spillWriter = null;
+
+	private BufferedReader spillReader = null;
+
+	/**
+	 * Construct a new queue.
+	 * 
+	 * @param name
+	 *                        the name of the queue
+	 * @param comparator
+	 *                        the order of the items, or {@code null} for a
+	 *                        first-in-first-out queue
+	 * @param capacity
+	 *                        the maximum number of items in memory, or 0 for no
+	 *                        limit
+	 * @param policy
+	 *                        what to do when the queue is full
+	 * @param blockTimeout
+	 *                        the maximum number of milliseconds a producer waits
+	 *                        for space, or 0 for no limit
+	 * @param codec
+	 *                        the conversion used for spilling, or {@code null}
+	 * @param dropHandler
+	 *                        called with the number of items dropped
+	 * @param overflowHandler
+	 *                        called with the total number of overflowed items,
+	 *                        or {@code null}
+	 */
+	public WorkQueue(String name, Comparator<? super E> comparator, int capacity, OverflowPolicy policy,
+			long blockTimeout, Codec<E> codec, LongConsumer dropHandler, LongConsumer overflowHandler) {
+		this(name, (comparator == null) ? new LinkedBlockingQueue<>() : new PriorityBlockingQueue<>(50, comparator),
+				comparator, capacity, policy, blockTimeout, codec, dropHandler, overflowHandler);
+	}
+
+	/**
+	 * Construct a new queue that keeps its items in memory in the given queue.
+	 * 
+	 * @param name
+	 *                        the name of the queue
+	 * @param queue
+	 *                        the queue that holds the items in memory
+	 * @param comparator
+	 *                        the order of the items in the queue, or {@code null}
+	 *                        for a first-in-first-out queue
+	 * @param capacity
+	 *                        the maximum number of items in memory, or 0 for no
+	 *                        limit
+	 * @param policy
+	 *                        what to do when the queue is full
+	 * @param blockTimeout
+	 *                        the maximum number of milliseconds a producer waits
+	 *                        for space, or 0 for no limit
+	 * @param codec
+	 *                        the conversion used for spilling, or {@code null}
+	 * @param dropHandler
+	 *                        called with the number of items dropped
+	 * @param overflowHandler
+	 *                        called with the total number of overflowed items,
+	 *                        or {@code null}
+	 */
+	public WorkQueue(String name, BlockingQueue<E> queue, Comparator<? super E> comparator, int capacity,
+			OverflowPolicy policy, long blockTimeout, Codec<E> codec, LongConsumer dropHandler,
+			LongConsumer overflowHandler) {
+		this.name = name;
+		this.queue = queue;
+		this.comparator = comparator;
+		this.capacity = Math.max(capacity, 0);
+		this.policy = ((policy == OverflowPolicy.SPILL) && (codec == null)) ? OverflowPolicy.BLOCK : policy;
+		this.blockTimeout = blockTimeout;
+		this.codec = codec;
+		this.dropHandler = dropHandler;
+		this.overflowHandler = overflowHandler;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public OverflowPolicy getPolicy() {
+		return policy;
+	}
+
+	public long getDropCount() {
+		return dropCount.get();
+	}
+
+	public long getSpillCount() {
+		return spillCount.get();
+	}
+
+	public long getOverflowCount() {
+		return overflowCount.get();
+	}
+
+	/**
+	 * Return the number of items in the queue, including those in the spill
+	 * file.
+	 * 
+	 * @return the number of items
+	 */
+	public int size() {
+		return queue.size() + spilled;
+	}
+
+	/**
+	 * Add an item to the queue.
+	 * 
+	 * @param item
+	 *             the item to add
+	 * @return {@code true} if the item was added, or {@code false} if it was
+	 *         dropped
+	 * @throws InterruptedException
+	 *                              if the producer was interrupted while
+	 *                              waiting for space
+	 */
+	public boolean put(E item) throws InterruptedException {
+		if (capacity == 0) {
+			queue.put(item);
+			return true;
+		}
+		synchronized (lock) {
+			switch (policy) {
+			case BLOCK:
+				long deadline = System.currentTimeMillis() + blockTimeout;
+				while (queue.size() >= capacity) {
+					long remaining = (blockTimeout == 0) ? 0 : deadline - System.currentTimeMillis();
+					if ((blockTimeout != 0) && (remaining <= 0)) {
+						overflowed();
+						break;
+					}
+					lock.wait(remaining);
+				}
+				queue.put(item);
+				return true;
+			case SPILL:
+				if ((spilled == 0) && (queue.size() < capacity)) {
+					queue.put(item);
+				} else if (!spill(item)) {
+					overflowed();
+					queue.put(item);
+				}
+				return true;
+			case DROP_OLDEST:
+				if (queue.size() < capacity) {
+					queue.put(item);
+				} else if (comparator == null) {
+					if (queue.poll() != null) {
+						dropped(1);
+					}
+					queue.put(item);
+				} else {
+					return putOrDropLowest(item);
+				}
+				return true;
+			default:
+				if (queue.size() < capacity) {
+					queue.put(item);
+					return true;
+				} else if (comparator == null) {
+					dropCount.incrementAndGet();
+					return false;
+				} else {
+					return putOrDropLowest(item);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Add an item to a full priority queue, dropping either the item or the
+	 * lowest-priority item in the queue. Must be called while holding the lock.
+	 * 
+	 * @param item
+	 *             the item to add
+	 * @return {@code true} if the item was added, or {@code false} if it was
+	 *         dropped
+	 */
+	private boolean putOrDropLowest(E item) {
+		E lowest = null;
+		Iterator<E> iterator = queue.iterator();
+		while (iterator.hasNext()) {
+			E e = iterator.next();
+			if ((lowest == null) || (comparator.compare(e, lowest) > 0)) {
+				lowest = e;
+			}
+		}
+		if ((lowest != null) && (comparator.compare(item, lowest) >= 0)) {
+			dropCount.incrementAndGet();
+			return false;
+		}
+		if ((lowest != null) && queue.remove(lowest)) {
+			dropped(1);
+		}
+		queue.add(item);
+		return true;
+	}
+
+	private void dropped(long count) {
+		dropCount.addAndGet(count);
+		dropHandler.accept(count);
+	}
+
+	/**
+	 * Count an item that is added beyond the capacity of the queue, and report
+	 * it to the overflow handler.
+	 */
+	private void overflowed() {
+		long count = overflowCount.incrementAndGet();
+		if (overflowHandler != null) {
+			overflowHandler.accept(count);
+		}
+	}
+
+	/**
+	 * Remove the next item from the queue, waiting if necessary.
+	 * 
+	 * @return the next item
+	 * @throws InterruptedException
+	 *                              if the consumer was interrupted while waiting
+	 */
+	public E take() throws InterruptedException {
+		refill();
+		E item = queue.take();
+		taken();
+		return item;
+	}
+
+	/**
+	 * Remove the next item from the queue, waiting for at most the given time.
+	 * 
+	 * @param timeout
+	 *                how long to wait
+	 * @param unit
+	 *                the unit of the timeout
+	 * @return the next item or {@code null} if the timeout expired
+	 * @throws InterruptedException
+	 *                              if the consumer was interrupted while waiting
+	 */
+	public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+		refill();
+		E item = queue.poll(timeout, unit);
+		if (item != null) {
+			taken();
+		}
+		return item;
+	}
+
+	/**
+	 * Remove up to the given number of items that are available immediately,
+	 * and add them to a collection. This acquires the queue lock once for all
+	 * the items, instead of once per item.
+	 * 
+	 * @param items
+	 *                 the collection to add the items to
+	 * @param maxItems
+	 *                 the maximum number of items to remove
+	 * @return the number of items removed
+	 */
+	public int drainTo(Collection<? super E> items, int maxItems) {
+		refill();
+		int n = queue.drainTo(items, maxItems);
+		if ((n > 0) && (capacity > 0) && (policy == OverflowPolicy.BLOCK)) {
+			synchronized (lock) {
+				lock.notifyAll();
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Remove all items from the queue, including those in the spill file.
+	 */
+	public void clear() {
+		synchronized (lock) {
+			queue.clear();
+			closeSpillFile();
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Wake up a producer that waits for space.
+	 */
+	private void taken() {
+		if ((capacity > 0) && (policy == OverflowPolicy.BLOCK)) {
+			synchronized (lock) {
+				lock.notify();
+			}
+		}
+	}
+
+	// ======================================================================
+	//
+	// SPILLING
+	//
+	// ======================================================================
+
+	/**
+	 * Write an item to the spill file. Must be called while holding the lock.
+	 * 
+	 * @param item
+	 *             the item to write
+	 * @return {@code true} if the item was written
+	 */
+	private boolean spill(E item) {
+		String line = codec.encode(item);
+		if (line == null) {
+			return false;
+		}
+		try {
+			if (spillWriter == null) {
+				spillFile = File.createTempFile("coastal-" + name + "-", ".spill");
+				spillFile.deleteOnExit();
+				spillWriter = new PrintWriter(Files.newBufferedWriter(spillFile.toPath(), StandardCharsets.UTF_8));
+			}
+			spillWriter.println(line);
+			spilled++;
+			spillCount.incrementAndGet();
+			return true;
+		} catch (IOException x) {
+			return false;
+		}
+	}
+
+	/**
+	 * Move items from the spill file back to the queue once the queue has
+	 * drained to half its capacity.
+	 */
+	private void refill() {
+		if ((spilled == 0) || (queue.size() > capacity / 2)) {
+			return;
+		}
+		synchronized (lock) {
+			try {
+				if ((spilled > 0) && (spillReader == null)) {
+					spillWriter.flush();
+					spillReader = Files.newBufferedReader(spillFile.toPath(), StandardCharsets.UTF_8);
+				} else if (spilled > 0) {
+					spillWriter.flush();
+				}
+				while ((spilled > 0) && (queue.size() < capacity)) {
+					String line = spillReader.readLine();
+					if (line == null) {
+						break;
+					}
+					spilled--;
+					queue.add(codec.decode(line));
+				}
+			} catch (IOException x) {
+				// the remaining items are lost
+				dropped(spilled);
+				spilled = 0;
+			}
+			if (spilled == 0) {
+				closeSpillFile();
+			}
+		}
+	}
+
+	/**
+	 * Close and delete the spill file. Must be called while holding the lock.
+	 */
+	private void closeSpillFile() {
+		spilled = 0;
+		if (spillWriter != null) {
+			spillWriter.close();
+			spillWriter = null;
+		}
+		if (spillReader != null) {
+			try {
+				spillReader.close();
+			} catch (IOException x) {
+				// ignore
+			}
+			spillReader = null;
+		}
+		if (spillFile != null) {
+			spillFile.delete();
+			spillFile = null;
+		}
+	}
+
+}
@@ -0,0 +1,367 @@
+/*
+ * This file is part of the COASTAL tool, https://deepseaplatform.github.io/coastal/
+ *
+ * Copyright (c) 2019-2020, Computer Science, Stellenbosch University.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package za.ac.sun.cs.coastal;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.Logger;
+
+import za.ac.sun.cs.coastal.TerminationDetector.Stage;
+import za.ac.sun.cs.coastal.messages.Broker;
+import za.ac.sun.cs.coastal.messages.Tuple;
+import za.ac.sun.cs.coastal.symbolic.Execution;
+import za.ac.sun.cs.coastal.symbolic.Input;
+
+/**
+ * A worker of a distributed analysis run. A worker connects to a
+ * {@link Coordinator}, receives the configuration of the run, and then runs
+ * divers and surfers on the inputs that the coordinator sends. The worker has
+ * no strategies: its executions are sent back to the coordinator instead.
+ * 
+ * The worker grants the coordinator credit for twice as many inputs as its
+ * divers or surfers take in one batch, and renews the credit for each
+ * execution that it sends back. The worker runs until the coordinator tells it
+ * to stop, or until it stops on its own, in which case it tells the
+ * coordinator to stop the whole analysis run.
+ */
+final class Worker {
+
+	/**
+	 * The logger of the worker.
+	 */
+	private final Logger log;
+
+	/**
+	 * The connection to the coordinator.
+	 */
+	private final Socket socket;
+
+	/**
+	 * Writes the messages to the coordinator.
+	 */
+	private final Wire.Encoder encoder;
+
+	/**
+	 * Reads the messages from the coordinator.
+	 */
+	private final Wire.Decoder decoder;
+
+	/**
+	 * The configuration received from the coordinator.
+	 */
+	private final Configuration configuration;
+
+	/**
+	 * The analysis run of the worker.
+	 */
+	private COASTAL coastal = null;
+
+	/**
+	 * The identifiers by which the coordinator knows the inputs that are being
+	 * executed.
+	 */
+	private final Map<Input, Long> ids = new ConcurrentHashMap<>();
+
+	/**
+	 * The threads that send executions to the coordinator and read its
+	 * messages.
+	 */
+	private final List<Thread> threads = new ArrayList<>();
+
+	/**
+	 * Whether the connection has been closed.
+	 */
+	private volatile boolean closed = false;
+
+	/**
+	 * The number of inputs received from the coordinator.
+	 */
+	private final AtomicLong receivedCount = new AtomicLong(0);
+
+	/**
+	 * The number of executions sent to the coordinator.
+	 */
+	private final AtomicLong sentCount = new AtomicLong(0);
+
+	private Worker(Logger log, Socket socket, Wire.Encoder encoder, Wire.Decoder decoder, Configuration configuration) {
+		this.log = log;
+		this.socket = socket;
+		this.encoder = encoder;
+		this.decoder = decoder;
+		this.configuration = configuration;
+	}
+
+	/**
+	 * Connect to a coordinator and receive the configuration of the analysis
+	 * run.
+	 * 
+	 * @param log
+	 *                the logger to use
+	 * @param address
+	 *                the host and port of the coordinator, separated by a colon
+	 * @return the worker, or {@code null} if the connection failed
+	 */
+	static Worker connect(Logger log, String address) {
+		int colon = address.lastIndexOf(':');
+		String host = (colon < 0) ? "localhost" : address.substring(0, colon);
+		Socket socket = null;
+		try {
+			int port = Integer.parseInt(address.substring(colon + 1));
+			socket = new Socket(host, port);
+			socket.setTcpNoDelay(true);
+			Wire.Encoder encoder = new Wire.Encoder(socket.getOutputStream());
+			Wire.Decoder decoder = new Wire.Decoder(socket.getInputStream());
+			encoder.getStream().writeInt(Wire.MAGIC);
+			encoder.getStream().writeInt(Wire.VERSION);
+			encoder.flush();
+			if ((decoder.getStream().readInt() != Wire.MAGIC) || (decoder.getStream().readInt() != Wire.VERSION)) {
+				log.warn("coordinator {} uses another protocol", address);
+				socket.close();
+				return null;
+			}
+			Configuration configuration = Configuration.loadFromString(log, decoder.readString());
+			return new Worker(log, socket, encoder, decoder, configuration);
+		} catch (NumberFormatException x) {
+			log.warn("illegal coordinator address \"{}\"", address);
+		} catch (IOException x) {
+			log.warn("could not connect to coordinator {}", address, x);
+			if (socket != null) {
+				try {
+					socket.close();
+				} catch (IOException y) {
+					// ignore
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Return the configuration received from the coordinator.
+	 * 
+	 * @return the configuration of the analysis run
+	 */
+	Configuration getConfiguration() {
+		return configuration;
+	}
+
+	/**
+	 * Start to exchange inputs and executions with the coordinator. This is
+	 * called once the divers and surfers of the analysis run have started.
+	 * 
+	 * @param coastal
+	 *                the analysis run of the worker
+	 */
+	void start(COASTAL coastal) {
+		this.coastal = coastal;
+		coastal.getBroker().subscribe("tock", this::stop);
+		coastal.getBroker().subscribe("coastal-stop", this::report);
+		startThread("worker-reader", this::read);
+		int window = 2 * coastal.getBatchSize();
+		try {
+			synchronized (encoder) {
+				for (Stage stage : new Stage[] { Stage.DIVER, Stage.SURFER }) {
+					int threadCount = coastal.getInitThreads(stage);
+					if (threadCount > 0) {
+						encoder.getStream().writeByte(Wire.CREDIT);
+						encoder.getStream().writeByte(stage.ordinal());
+						encoder.getStream().writeInt(threadCount * window);
+						startThread("worker-sender", () -> send(stage));
+					}
+				}
+				encoder.flush();
+			}
+		} catch (IOException x) {
+			fail(x);
+		}
+	}
+
+	/**
+	 * Tell the coordinator that a surfer gave up on an input.
+	 * 
+	 * @param stage
+	 *              the stage of the input
+	 * @param input
+	 *              the input
+	 */
+	void abandon(Stage stage, Input input) {
+		Long id = ids.remove(input);
+		if (id == null) {
+			return;
+		}
+		try {
+			synchronized (encoder) {
+				encoder.getStream().writeByte(Wire.ABANDON);
+				encoder.getStream().writeByte(stage.ordinal());
+				encoder.getStream().writeLong(id);
+				encoder.getStream().writeByte(Wire.CREDIT);
+				encoder.getStream().writeByte(stage.ordinal());
+				encoder.getStream().writeInt(1);
+				encoder.flush();
+			}
+		} catch (IOException x) {
+			fail(x);
+		}
+	}
+
+	/**
+	 * Read the messages of the coordinator until the connection closes.
+	 */
+	private void read() {
+		try {
+			while (true) {
+				byte message = decoder.getStream().readByte();
+				if (message == Wire.INPUTS) {
+					Stage stage = Wire.stageOf(decoder.getStream().readByte());
+					int count = decoder.getStream().readInt();
+					for (int i = 0; i < count; i++) {
+						long id = decoder.getStream().readLong();
+						Input input = Input.decode(decoder.readString());
+						ids.put(input, id);
+						receivedCount.incrementAndGet();
+						if (!coastal.addWorkerInput(stage, input)) {
+							abandon(stage, input);
+						}
+					}
+				} else if (message == Wire.STOP) {
+					closed = true;
+					coastal.stopWork();
+					break;
+				} else {
+					throw new IOException("unknown message " + message);
+				}
+			}
+		} catch (IOException x) {
+			fail(x);
+		} catch (InterruptedException x) {
+			// stopping
+		}
+	}
+
+	/**
+	 * Send the executions of a stage to the coordinator as they become
+	 * available, and renew the credit of the stage.
+	 * 
+	 * @param stage
+	 *              the stage of the executions
+	 */
+	private void send(Stage stage) {
+		int batchSize = coastal.getBatchSize();
+		try {
+			while (true) {
+				List<Execution> executions;
+				if (stage == Stage.DIVER) {
+					executions = coastal.getNextPcs(batchSize);
+				} else {
+					executions = coastal.getNextTraces(batchSize);
+				}
+				synchronized (encoder) {
+					for (Execution execution : executions) {
+						Long id = ids.remove(execution.getInput());
+						if (id == null) {
+							continue;
+						}
+						encoder.getStream().writeByte(Wire.EXECUTION);
+						encoder.getStream().writeByte(stage.ordinal());
+						encoder.writeExecution(id, execution);
+					}
+					encoder.getStream().writeByte(Wire.CREDIT);
+					encoder.getStream().writeByte(stage.ordinal());
+					encoder.getStream().writeInt(executions.size());
+					encoder.flush();
+				}
+				sentCount.addAndGet(executions.size());
+				coastal.finishExecutions(executions.size());
+			}
+		} catch (IOException x) {
+			fail(x);
+		} catch (InterruptedException x) {
+			// stopping
+		}
+	}
+
+	/**
+	 * Stop the analysis run after the connection failed.
+	 * 
+	 * @param x
+	 *          the reason for the failure
+	 */
+	private void fail(IOException x) {
+		if (!closed) {
+			closed = true;
+			log.warn("lost coordinator", x);
+			coastal.stopWork();
+		}
+	}
+
+	/**
+	 * Tell the coordinator to stop, unless it told the worker to stop, and close
+	 * the connection.
+	 * 
+	 * @param object
+	 *               dummy object
+	 */
+	private void stop(Object object) {
+		if (!closed) {
+			closed = true;
+			try {
+				synchronized (encoder) {
+					encoder.getStream().writeByte(Wire.STOP);
+					encoder.flush();
+				}
+			} catch (IOException x) {
+				// the coordinator is gone already
+			}
+		}
+		for (Thread thread : threads) {
+			thread.interrupt();
+		}
+		try {
+			socket.close();
+		} catch (IOException x) {
+			// ignore
+		}
+	}
+
+	private void startThread(String name, Runnable runnable) {
+		Thread thread = new Thread(runnable, name);
+		thread.setDaemon(true);
+		threads.add(thread);
+		thread.start();
+	}
+
+	/**
+	 * Publish a report about the work done for the coordinator.
+	 * 
+	 * @param object
+	 *               the analysis run
+	 */
+	private void report(Object object) {
+		Broker broker = ((COASTAL) object).getBroker();
+		broker.publish("report", new Tuple("Worker.received-inputs", receivedCount.get()));
+		broker.publish("report", new Tuple("Worker.sent-executions", sentCount.get()));
+	}
+
+}
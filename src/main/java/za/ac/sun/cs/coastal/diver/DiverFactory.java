@@ -20,6 +20,8 @@ package za.ac.sun.cs.coastal.diver;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -32,6 +34,7 @@ import za.ac.sun.cs.coastal.TaskFactory;
 import za.ac.sun.cs.coastal.Trigger;
 import za.ac.sun.cs.coastal.messages.Broker;
 import za.ac.sun.cs.coastal.messages.FreqTuple;
+import za.ac.sun.cs.coastal.messages.Subscriptions;
 import za.ac.sun.cs.coastal.messages.TimeTuple;
 import za.ac.sun.cs.coastal.messages.Tuple;
 import za.ac.sun.cs.coastal.observers.ObserverFactory;
@@ -77,6 +80,11 @@ public class DiverFactory implements TaskFactory {
 
 		protected final Broker broker;
 
+		/**
+		 * Whether divers reuse their heavy class loaders.
+		 */
+		private final boolean reuseClasses;
+
 		/**
 		 * Counter for the number of dives undertaken.
 		 */
@@ -104,6 +112,7 @@ public class DiverFactory implements TaskFactory {
 
 		DiverManager(COASTAL coastal) {
 			broker = coastal.getBroker();
+			reuseClasses = coastal.getClassManager().isReuseClasses();
 			broker.subscribe("coastal-stop", this::report);
 		}
 
@@ -141,13 +150,18 @@ public class DiverFactory implements TaskFactory {
 		 * create additional threads (or destroy them).
 		 * 
 		 * @param time
-		 *             the wait time for this dive
+		 *             the wait time for this dive, in nanoseconds
 		 */
 		public void recordWaitTime(long time) {
 			diverWaitTime.addAndGet(time);
 			diverWaitCount.incrementAndGet();
 		}
 
+		@Override
+		public long getWaitTime() {
+			return diverWaitTime.get() / 1000000;
+		}
+
 		/**
 		 * Increment and return the abort counter.
 		 * 
@@ -157,13 +171,26 @@ public class DiverFactory implements TaskFactory {
 			return abortCount.incrementAndGet();
 		}
 
+		/**
+		 * Return the number of dives per second of diver time, formatted as a
+		 * string.
+		 * 
+		 * @return the dive rate
+		 */
+		public String getDiveRate() {
+			long t = diverTime.get();
+			return String.format("%.1f/sec", (t == 0) ? 0.0 : getDiveCount() / (0.001 * t));
+		}
+
 		public void report(Object object) {
-			double dwt = diverWaitTime.get() / diverWaitCount.doubleValue();
+			double dwt = diverWaitTime.get() / 1000000.0 / diverWaitCount.doubleValue();
 			broker.publish("report", new Tuple("Divers.tasks", getDiverTaskCount()));
 			broker.publish("report", new FreqTuple("Divers.count", getDiveCount()));
 			broker.publish("report", new Tuple("Divers.aborted", abortCount.get()));
 			broker.publish("report", new TimeTuple("Divers.time", diverTime.get()));
 			broker.publish("report", new TimeTuple("Divers.wait-time", dwt));
+			broker.publish("report", new Tuple("Divers.reuse-classes", reuseClasses));
+			broker.publish("report", new Tuple("Divers.dive-rate", getDiveRate()));
 		}
 
 		@Override
@@ -179,7 +206,7 @@ public class DiverFactory implements TaskFactory {
 		@Override
 		public Object[] getPropertyValues() {
 			Object[] propertyValues = new Object[4];
-			double dwt = diverWaitTime.get() / diverWaitCount.doubleValue();
+			double dwt = diverWaitTime.get() / 1000000.0 / diverWaitCount.doubleValue();
 			int dtc = getDiverTaskCount();
 			long c = getDiveCount();
 			long t = diverTime.get();
@@ -212,6 +239,10 @@ public class DiverFactory implements TaskFactory {
 
 		protected final int diverTaskId;
 
+		protected final boolean reuseClasses;
+
+		protected final int batchSize;
+
 		public Diver(COASTAL coastal, DiverManager manager, int id) {
 			this.coastal = coastal;
 			log = coastal.getLog();
@@ -219,6 +250,8 @@ public class DiverFactory implements TaskFactory {
 			broker = coastal.getBroker();
 			this.manager = manager;
 			diverTaskId = id;
+			reuseClasses = coastal.getClassManager().isReuseClasses();
+			batchSize = coastal.getBatchSize();
 		}
 
 		@Override
@@ -230,16 +263,20 @@ public class DiverFactory implements TaskFactory {
 				observerFactory.createObserver(coastal, observerManager);
 			}
 			try {
+				ClassLoader classLoader = null;
+				Deque<Input> pending = new ArrayDeque<>();
 				while (true) {
-					long t0 = System.currentTimeMillis();
-					Input input = coastal.getNextDiverInput();
+					if (pending.isEmpty()) {
+						long t0 = System.nanoTime();
+						pending.addAll(coastal.getNextDiverInputs(batchSize));
+						manager.recordWaitTime(System.nanoTime() - t0);
+					}
+					Input input = pending.poll();
 					if (input == Input.DONE_INPUT) {
 						throw new InterruptedException();
 					}
 					long t1 = System.currentTimeMillis();
-					manager.recordWaitTime(t1 - t0);
 					SymbolicState symbolicState = null;
-					ClassLoader classLoader = null;
 					symbolicState = new SymbolicState(coastal, input);
 					String banner = "(" + diverTaskId + ") starting dive " + manager.getNextDiveCount() + " @"
 							+ Banner.getElapsed(coastal);
@@ -249,11 +286,20 @@ public class DiverFactory implements TaskFactory {
 					} else {
 						log.trace(Banner.getBannerLine(input.toString(), '*'));
 					}
-					classLoader = coastal.getClassManager().createHeavyClassLoader(symbolicState);
-					performRun(symbolicState, classLoader);
-					manager.recordDiverTime(System.currentTimeMillis() - t1);
-					coastal.addPc(symbolicState.getExecution());
-					broker.publishThread("dive-end", this);
+					if (reuseClasses && (classLoader != null)) {
+						classLoader = coastal.getClassManager().reuseHeavyClassLoader(classLoader, symbolicState);
+					} else {
+						classLoader = coastal.getClassManager().createHeavyClassLoader(symbolicState);
+					}
+					Subscriptions diveSubscriptions = Subscriptions.open();
+					try {
+						performRun(symbolicState, classLoader);
+						manager.recordDiverTime(System.currentTimeMillis() - t1);
+						coastal.addPc(symbolicState.getExecution());
+						broker.publishThread("dive-end", this);
+					} finally {
+						diveSubscriptions.unsubscribe();
+					}
 					if (!symbolicState.mayContinue()) {
 						coastal.stopWork();
 					}
@@ -58,7 +58,7 @@ public abstract class SegmentedPC extends Branch {
 	 * 
 	 * @return passive conjunct
 	 */
-	protected final Expression getPassiveConjunct() {
+	public final Expression getPassiveConjunct() {
 		return passiveConjunct;
 	}
 
@@ -278,6 +278,24 @@ public abstract class SegmentedPC extends Branch {
 			this.max = max;
 		}
 
+		/**
+		 * Return the smallest value with its own alternative.
+		 * 
+		 * @return the smallest value
+		 */
+		public long getMin() {
+			return min;
+		}
+
+		/**
+		 * Return the largest value with its own alternative.
+		 * 
+		 * @return the largest value
+		 */
+		public long getMax() {
+			return max;
+		}
+
 		/*
 		 * (non-Javadoc)
 		 * 
@@ -306,11 +324,11 @@ public abstract class SegmentedPC extends Branch {
 		@Override
 		public Expression getAlternative(long alternative) {
 			if ((alternative < 0) || (alternative >= max - min + 1)) {
-				Expression lo = Operation.lt(expression, new IntegerConstant(min, 32));
-				Expression hi = Operation.gt(expression, new IntegerConstant(max, 32));
+				Expression lo = Operation.lt(expression, IntegerConstant.create(min, 32));
+				Expression hi = Operation.gt(expression, IntegerConstant.create(max, 32));
 				return Operation.or(lo, hi);
 			} else {
-				return Operation.eq(expression, new IntegerConstant(alternative + min, 32));
+				return Operation.eq(expression, IntegerConstant.create(alternative + min, 32));
 			}
 		}
 
@@ -373,6 +391,15 @@ public abstract class SegmentedPC extends Branch {
 			this.keys = keys;
 		}
 
+		/**
+		 * Return the values that have their own alternatives.
+		 * 
+		 * @return the keys of the choice
+		 */
+		public int[] getKeys() {
+			return keys;
+		}
+
 		/*
 		 * (non-Javadoc)
 		 * 
@@ -403,7 +430,7 @@ public abstract class SegmentedPC extends Branch {
 			if ((alternative < 0) || (alternative >= keys.length)) {
 				Expression alt = null;
 				for (int i = 0; i < keys.length; i++) {
-					Expression choice = Operation.ne(expression, new IntegerConstant(keys[i], 32));
+					Expression choice = Operation.ne(expression, IntegerConstant.create(keys[i], 32));
 					if (i == 0) {
 						alt = choice;
 					} else {
@@ -412,7 +439,7 @@ public abstract class SegmentedPC extends Branch {
 				}
 				return alt;
 			} else {
-				return Operation.eq(expression, new IntegerConstant(keys[(int) alternative], 32));
+				return Operation.eq(expression, IntegerConstant.create(keys[(int) alternative], 32));
 			}
 		}
 
@@ -38,6 +38,7 @@ import za.ac.sun.cs.coastal.Trigger;
 import za.ac.sun.cs.coastal.diver.SymbolicValueFactory.SymbolicValue;
 import za.ac.sun.cs.coastal.instrument.Bytecodes;
 import za.ac.sun.cs.coastal.instrument.InstrumentationClassManager;
+import za.ac.sun.cs.coastal.messages.EventBus;
 import za.ac.sun.cs.coastal.messages.Tuple;
 import za.ac.sun.cs.coastal.solver.Constant;
 import za.ac.sun.cs.coastal.solver.Evaluator;
@@ -390,7 +391,7 @@ public final class SymbolicState extends State {
 			// THIS PROBABLY REQUIRES A SECOND MAP LIKE instanceData
 			int min = (Integer) coastal.getDefaultMinValue(int.class);
 			int max = (Integer) coastal.getDefaultMaxValue(int.class);
-			Expression expr = new IntegerVariable(getNewVariableName(), 32, min, max);
+			Expression expr = IntegerVariable.create(getNewVariableName(), 32, min, max);
 			value = symbolicValueFactory.createSymbolicValue(expr);
 			instanceData.put(fullFieldName, value);
 		}
@@ -418,7 +419,7 @@ public final class SymbolicState extends State {
 			mayRecord = false;
 			setTrackingMode(trackAll);
 		}
-		broker.publishThread("exit-method", methodNumber);
+		events.publishMethod(EventBus.EXIT_METHOD, methodNumber);
 		return getTrackingMode();
 	}
 
@@ -629,39 +630,39 @@ public final class SymbolicState extends State {
 	 */
 	private void pushReturnValue(char type) {
 		if (type == 'Z') { // boolean
-			push(new IntegerVariable(getNewVariableName(), 32, 0, 1), 32);
+			push(IntegerVariable.create(getNewVariableName(), 32, 0, 1), 32);
 		} else if (type == 'B') { // byte
 			byte min = (byte) coastal.getDefaultMinValue(byte.class);
 			byte max = (byte) coastal.getDefaultMaxValue(byte.class);
-			push(new IntegerVariable(getNewVariableName(), 8, min, max), 8);
+			push(IntegerVariable.create(getNewVariableName(), 8, min, max), 8);
 		} else if (type == 'C') { // char
 			char min = (char) coastal.getDefaultMinValue(char.class);
 			char max = (char) coastal.getDefaultMaxValue(char.class);
-			push(new IntegerVariable(getNewVariableName(), 16, min, max), 16);
+			push(IntegerVariable.create(getNewVariableName(), 16, min, max), 16);
 		} else if (type == 'S') { // short
 			short min = (short) coastal.getDefaultMinValue(short.class);
 			short max = (short) coastal.getDefaultMaxValue(short.class);
-			push(new IntegerVariable(getNewVariableName(), 16, min, max), 16);
+			push(IntegerVariable.create(getNewVariableName(), 16, min, max), 16);
 		} else if (type == 'I') { // integer
 			int min = (int) coastal.getDefaultMinValue(int.class);
 			int max = (int) coastal.getDefaultMaxValue(int.class);
-			push(new IntegerVariable(getNewVariableName(), 32, min, max), 32);
+			push(IntegerVariable.create(getNewVariableName(), 32, min, max), 32);
 		} else if (type == 'J') { // long
 			long min = (long) coastal.getDefaultMinValue(long.class);
 			long max = (long) coastal.getDefaultMaxValue(long.class);
-			push(new IntegerVariable(getNewVariableName(), 64, min, max), 64);
+			push(IntegerVariable.create(getNewVariableName(), 64, min, max), 64);
 		} else if (type == 'F') { // float
 			float min = (float) coastal.getDefaultMinValue(float.class);
 			float max = (float) coastal.getDefaultMaxValue(float.class);
-			push(new RealVariable(getNewVariableName(), 32, min, max), 32);
+			push(RealVariable.create(getNewVariableName(), 32, min, max), 32);
 		} else if (type == 'D') { // double
 			double min = (double) coastal.getDefaultMinValue(double.class);
 			double max = (double) coastal.getDefaultMaxValue(double.class);
-			push(new RealVariable(getNewVariableName(), 64, min, max), 64);
+			push(RealVariable.create(getNewVariableName(), 64, min, max), 64);
 		} else if (type == 'L') { // object
 			int min = 0;
 			int max = Integer.MAX_VALUE;
-			push(new IntegerVariable(getNewVariableName(), 32, min, max), 32);
+			push(IntegerVariable.create(getNewVariableName(), 32, min, max), 32);
 		} else if ((type != 'V') && (type != '?')) {
 			push(IntegerConstant.ZERO32, 32);
 		}
@@ -710,7 +711,7 @@ public final class SymbolicState extends State {
 	 *                the type of the array elements
 	 */
 	private void setArrayType(int arrayId, int type) {
-		SymbolicValue value = symbolicValueFactory.createSymbolicValue(new IntegerConstant(type, 32));
+		SymbolicValue value = symbolicValueFactory.createSymbolicValue(IntegerConstant.create(type, 32));
 		putField(arrayId, "type", value);
 	}
 
@@ -734,7 +735,7 @@ public final class SymbolicState extends State {
 	 *                the length of the array
 	 */
 	private void setArrayLength(int arrayId, int length) {
-		SymbolicValue value = symbolicValueFactory.createSymbolicValue(new IntegerConstant(length, 32));
+		SymbolicValue value = symbolicValueFactory.createSymbolicValue(IntegerConstant.create(length, 32));
 		putField(arrayId, "length", value);
 	}
 
@@ -768,7 +769,7 @@ public final class SymbolicState extends State {
 		Expression length = getField(arrayId, "length").toExpression();
 		if (length instanceof IntegerVariable) {
 			String name = ((IntegerVariable) length).getName();
-			int i = (int) new IntegerConstant((Long) input.get(name), 32).getValue();
+			int i = (int) IntegerConstant.create((Long) input.get(name), 32).getValue();
 			if (i < index) {
 				return;
 			}
@@ -982,10 +983,10 @@ public final class SymbolicState extends State {
 	private void pushConjunct(Expression conjunct, boolean truthValue) {
 		if (!SegmentedPC.isConstant(conjunct) || !constantElimination) {
 			Branch branch = new SegmentedPC.Binary(conjunct, pendingExtraCondition);
-			path = new Path(path, new Choice(branch, truthValue ? 1 : 0));
+			path = new Path(path, new Choice(branch, truthValue ? 1 : 0), input);
 			pendingExtraCondition = null;
-			log.trace("    adding conjunct: {}", conjunct.toString());
-			log.trace("    path is now: {}", path.getPathCondition().toString());
+			log.trace("    adding conjunct: {}", conjunct);
+			log.trace("    path is now: {}", path.getPathCondition());
 			lastConjunctWasConstant = false;
 		} else {
 			lastConjunctWasConstant = true;
@@ -1021,18 +1022,18 @@ public final class SymbolicState extends State {
 		if (!SegmentedPC.isConstant(expression)) {
 			Expression conjunct;
 			if ((cur < min) || (cur > max)) {
-				Expression lo = Operation.lt(expression, new IntegerConstant(min, 32));
-				Expression hi = Operation.gt(expression, new IntegerConstant(max, 32));
+				Expression lo = Operation.lt(expression, IntegerConstant.create(min, 32));
+				Expression hi = Operation.gt(expression, IntegerConstant.create(max, 32));
 				conjunct = Operation.or(lo, hi);
 				cur = max + 1;
 			} else {
-				conjunct = Operation.eq(expression, new IntegerConstant(cur, 32));
+				conjunct = Operation.eq(expression, IntegerConstant.create(cur, 32));
 			}
 			Branch branch = new SegmentedPC.Nary(expression, min, max, pendingExtraCondition);
-			path = new Path(path, new Choice(branch, cur - min));
+			path = new Path(path, new Choice(branch, cur - min), input);
 			pendingExtraCondition = null;
-			log.trace("    adding (switch) conjunct: {}", conjunct.toString());
-			log.trace("    path is now: {}", path.getPathCondition().toString());
+			log.trace("    adding (switch) conjunct: {}", conjunct);
+			log.trace("    path is now: {}", path.getPathCondition());
 		}
 	}
 
@@ -1053,7 +1054,7 @@ public final class SymbolicState extends State {
 			Expression conjunct = null;
 			if (choice == keys.length) {
 				for (int i = 0; i < keys.length; i++) {
-					Expression clause = Operation.ne(expression, new IntegerConstant(keys[i], 32));
+					Expression clause = Operation.ne(expression, IntegerConstant.create(keys[i], 32));
 					if (i == 0) {
 						conjunct = clause;
 					} else {
@@ -1061,13 +1062,13 @@ public final class SymbolicState extends State {
 					}
 				}
 			} else {
-				conjunct = Operation.eq(expression, new IntegerConstant(keys[choice], 32));
+				conjunct = Operation.eq(expression, IntegerConstant.create(keys[choice], 32));
 			}
 			Branch branch = new SegmentedPC.Kary(expression, keys, pendingExtraCondition);
-			path = new Path(path, new Choice(branch, choice));
+			path = new Path(path, new Choice(branch, choice), input);
 			pendingExtraCondition = null;
-			log.trace("    adding (lookup switch) conjunct: {}", conjunct.toString());
-			log.trace("    path is now: {}", path.getPathCondition().toString());
+			log.trace("    adding (lookup switch) conjunct: {}", conjunct);
+			log.trace("    path is now: {}", path.getPathCondition());
 		}
 	}
 
@@ -1097,9 +1098,9 @@ public final class SymbolicState extends State {
 			return false;
 		}
 		pop();
-		push(new IntegerVariable(name, 32, 0, 1), 32);
+		push(IntegerVariable.create(name, 32, 0, 1), 32);
 		Long concreteVal = (input == null) ? null : (Long) input.get(name);
-		IntegerConstant concrete = concreteVal == null ? null : new IntegerConstant(concreteVal, 32);
+		IntegerConstant concrete = concreteVal == null ? null : IntegerConstant.create(concreteVal, 32);
 		if (concrete == null) {
 			currentValue = false;
 			log.trace("create symbolic var {}, default value of {}", name, currentValue);
@@ -1119,9 +1120,9 @@ public final class SymbolicState extends State {
 		pop();
 		long min = ((Number) coastal.getMinBound(name, byte.class)).longValue();
 		long max = ((Number) coastal.getMaxBound(name, byte.class)).longValue();
-		push(new IntegerVariable(name, 8, min, max), 8);
+		push(IntegerVariable.create(name, 8, min, max), 8);
 		Long concreteVal = (input == null) ? null : (Long) input.get(name);
-		IntegerConstant concrete = concreteVal == null ? null : new IntegerConstant(concreteVal, 8);
+		IntegerConstant concrete = concreteVal == null ? null : IntegerConstant.create(concreteVal, 8);
 		if (concrete == null) {
 			log.trace("create symbolic var {}, default value of {}", name, currentValue);
 			input.put(name, Long.valueOf(currentValue));
@@ -1140,9 +1141,9 @@ public final class SymbolicState extends State {
 		pop();
 		long min = ((Number) coastal.getMinBound(name, short.class)).longValue();
 		long max = ((Number) coastal.getMaxBound(name, short.class)).longValue();
-		push(new IntegerVariable(name, 16, min, max), 16);
+		push(IntegerVariable.create(name, 16, min, max), 16);
 		Long concreteVal = (input == null) ? null : (Long) input.get(name);
-		IntegerConstant concrete = concreteVal == null ? null : new IntegerConstant(concreteVal, 16);
+		IntegerConstant concrete = concreteVal == null ? null : IntegerConstant.create(concreteVal, 16);
 		if (concrete == null) {
 			log.trace("create symbolic var {}, default value of {}", name, currentValue);
 			input.put(name, Long.valueOf(currentValue));
@@ -1159,9 +1160,9 @@ public final class SymbolicState extends State {
 			return 0x00;
 		}
 		pop();
-		push(new IntegerVariable(name, 16, Character.MIN_VALUE, Character.MAX_VALUE), 16);
+		push(IntegerVariable.create(name, 16, Character.MIN_VALUE, Character.MAX_VALUE), 16);
 		Long concreteVal = (input == null) ? null : (Long) input.get(name);
-		IntegerConstant concrete = concreteVal == null ? null : new IntegerConstant(concreteVal, 16);
+		IntegerConstant concrete = concreteVal == null ? null : IntegerConstant.create(concreteVal, 16);
 		if (concrete == null) {
 			currentValue = ' ';
 			log.trace("create symbolic var {}, default value of {}", name, currentValue);
@@ -1183,9 +1184,9 @@ public final class SymbolicState extends State {
 		pop();
 		long min = ((Number) coastal.getMinBound(name, COASTAL.NewInt.class)).longValue();
 		long max = ((Number) coastal.getMaxBound(name, COASTAL.NewInt.class)).longValue();
-		push(new IntegerVariable(name, 32, min, max), 32);
+		push(IntegerVariable.create(name, 32, min, max), 32);
 		Long concreteVal = (input == null) ? null : (Long) input.get(name);
-		IntegerConstant concrete = concreteVal == null ? null : new IntegerConstant(concreteVal, 32);
+		IntegerConstant concrete = concreteVal == null ? null : IntegerConstant.create(concreteVal, 32);
 		if (concrete == null) {
 			int newValue = ThreadLocalRandom.current().nextInt((int) min, (int) max);
 			log.trace("create symbolic var {}, default value of {}, replaced by {}", name, currentValue, newValue);
@@ -1207,9 +1208,9 @@ public final class SymbolicState extends State {
 		pop();
 		long min = ((Number) coastal.getMinBound(name, long.class)).longValue();
 		long max = ((Number) coastal.getMaxBound(name, long.class)).longValue();
-		push(new IntegerVariable(name, 64, min, max), 64);
+		push(IntegerVariable.create(name, 64, min, max), 64);
 		Long concreteVal = (input == null) ? null : (Long) input.get(name);
-		IntegerConstant concrete = concreteVal == null ? null : new IntegerConstant(concreteVal, 64);
+		IntegerConstant concrete = concreteVal == null ? null : IntegerConstant.create(concreteVal, 64);
 		if (concrete == null) {
 			log.trace("create symbolic var {}, default value of {}", name, currentValue);
 			input.put(name, Long.valueOf(currentValue));
@@ -1226,9 +1227,9 @@ public final class SymbolicState extends State {
 			return 0;
 		}
 		pop();
-		push(new RealVariable(name, 32, Float.MIN_VALUE, Float.MAX_VALUE), 32);
+		push(RealVariable.create(name, 32, Float.MIN_VALUE, Float.MAX_VALUE), 32);
 		Double concreteVal = (input == null) ? null : (Double) input.get(name);
-		RealConstant concrete = concreteVal == null ? null : new RealConstant(concreteVal, 32);
+		RealConstant concrete = concreteVal == null ? null : RealConstant.create(concreteVal, 32);
 		if (concrete == null) {
 			log.trace("create symbolic var {}, default value of {}", name, currentValue);
 			input.put(name, Double.valueOf(currentValue));
@@ -1245,9 +1246,9 @@ public final class SymbolicState extends State {
 			return 0;
 		}
 		pop();
-		push(new RealVariable(name, 64, Double.MIN_VALUE, Double.MAX_VALUE), 64);
+		push(RealVariable.create(name, 64, Double.MIN_VALUE, Double.MAX_VALUE), 64);
 		Double concreteVal = (input == null) ? null : (Double) input.get(name);
-		RealConstant concrete = concreteVal == null ? null : new RealConstant(concreteVal, 64);
+		RealConstant concrete = concreteVal == null ? null : RealConstant.create(concreteVal, 64);
 		if (concrete == null) {
 			log.trace("create symbolic var {}, default value of {}", name, currentValue);
 			input.put(name, Double.valueOf(currentValue));
@@ -1271,13 +1272,13 @@ public final class SymbolicState extends State {
 		dumpFrames();
 		int length = currentValue.length();
 		int stringId = createString();
-		setStringLength(stringId, new IntegerConstant(length, 32));
+		setStringLength(stringId, IntegerConstant.create(length, 32));
 		if (name == null) { // not symbolic
 			for (int i = 0; i < length; i++) {
-				IntegerConstant chValue = new IntegerConstant(currentValue.charAt(i), 16);
+				IntegerConstant chValue = IntegerConstant.create(currentValue.charAt(i), 16);
 				setStringChar(stringId, i, chValue);
 			}
-			push(new IntegerConstant(stringId, 32));
+			push(IntegerConstant.create(stringId, 32));
 			input.put(name, currentValue);
 			log.trace("-->    AFTER (1):");
 			dumpFrames();
@@ -1290,13 +1291,13 @@ public final class SymbolicState extends State {
 			for (int i = 0; i < length; i++) {
 				String entryName = name + CHAR_SEPARATOR + i;
 				Object concrete = ((name == null) || (input == null)) ? null : input.get(entryName);
-				Expression entryExpr = new IntegerVariable(entryName, 16, minChar, maxChar);
+				Expression entryExpr = IntegerVariable.create(entryName, 16, minChar, maxChar);
 				if ((concrete != null) && (concrete instanceof Long)) {
 					chars[i] = (char) ((Long) concrete).intValue();
 				}
 				setStringChar(stringId, i, entryExpr);
 			}
-			push(new IntegerConstant(stringId, 32));
+			push(IntegerConstant.create(stringId, 32));
 			input.put(name, new String(chars));
 			log.trace("-->    AFTER (2):");
 			dumpFrames();
@@ -1494,7 +1495,7 @@ public final class SymbolicState extends State {
 		Trigger trigger = coastal.getTrigger(triggerIndex);
 		String name = trigger.getParamName(index);
 		if (name == null) { // not symbolic
-			setLocal(address, new IntegerConstant(currentValue, sizeInBits));
+			setLocal(address, IntegerConstant.create(currentValue, sizeInBits));
 			return currentValue;
 		}
 		Class<?> type = trigger.getParamType(index);
@@ -1514,7 +1515,7 @@ public final class SymbolicState extends State {
 			bn.display(log);
 			System.exit(-1);
 		}
-		setLocal(address, new IntegerVariable(name, sizeInBits, min, max));
+		setLocal(address, IntegerVariable.create(name, sizeInBits, min, max));
 		Long concrete = (Long) ((input == null) ? null : input.get(name));
 		return (concrete == null) ? currentValue : concrete;
 	}
@@ -1547,13 +1548,13 @@ public final class SymbolicState extends State {
 		Trigger trigger = coastal.getTrigger(triggerIndex);
 		String name = trigger.getParamName(index);
 		if (name == null) { // not symbolic
-			setLocal(address, new RealConstant(currentValue, sizeInBits));
+			setLocal(address, RealConstant.create(currentValue, sizeInBits));
 			return currentValue;
 		}
 		Class<?> type = trigger.getParamType(index);
 		double min = ((Number) coastal.getMinBound(name, type)).doubleValue();
 		double max = ((Number) coastal.getMaxBound(name, type)).doubleValue();
-		setLocal(address, new RealVariable(name, sizeInBits, min, max));
+		setLocal(address, RealVariable.create(name, sizeInBits, min, max));
 		Double concrete = (Double) ((input == null) ? null : input.get(name));
 		return (concrete == null) ? currentValue : concrete;
 	}
@@ -1569,13 +1570,13 @@ public final class SymbolicState extends State {
 		Trigger trigger = coastal.getTrigger(triggerIndex);
 		String name = trigger.getParamName(index);
 		if (name == null) { // not symbolic
-			setLocal(address, new IntegerConstant(currentValue ? 1 : 0, 32));
+			setLocal(address, IntegerConstant.create(currentValue ? 1 : 0, 32));
 			return currentValue;
 		}
 		// Class<?> type = trigger.getParamType(index);
 		int min = 0;
 		int max = 1;
-		setLocal(address, new IntegerVariable(name, 32, min, max));
+		setLocal(address, IntegerVariable.create(name, 32, min, max));
 		Long concrete = (Long) ((input == null) ? null : input.get(name));
 		boolean value = (concrete == null) ? currentValue : (concrete != 0);
 		input.put(index, value);
@@ -1681,13 +1682,13 @@ public final class SymbolicState extends State {
 		String name = trigger.getParamName(index);
 		int length = currentValue.length();
 		int stringId = createString();
-		setStringLength(stringId, new IntegerConstant(length, 32));
+		setStringLength(stringId, IntegerConstant.create(length, 32));
 		if (name == null) { // not symbolic
 			for (int i = 0; i < length; i++) {
-				IntegerConstant chValue = new IntegerConstant(currentValue.charAt(i), 32);
+				IntegerConstant chValue = IntegerConstant.create(currentValue.charAt(i), 32);
 				setStringChar(stringId, i, chValue);
 			}
-			setLocal(address, new IntegerConstant(stringId, 32));
+			setLocal(address, IntegerConstant.create(stringId, 32));
 			input.put(index, currentValue);
 			return currentValue;
 		} else {
@@ -1698,13 +1699,13 @@ public final class SymbolicState extends State {
 			for (int i = 0; i < length; i++) {
 				String entryName = name + CHAR_SEPARATOR + i;
 				Object concrete = ((name == null) || (input == null)) ? null : input.get(entryName);
-				Expression entryExpr = new IntegerVariable(entryName, 32, minChar, maxChar);
+				Expression entryExpr = IntegerVariable.create(entryName, 32, minChar, maxChar);
 				if ((concrete != null) && (concrete instanceof Long)) {
 					chars[i] = (char) ((Long) concrete).intValue();
 				}
 				setArrayValue(stringId, i, entryExpr);
 			}
-			setLocal(address, new IntegerConstant(stringId, 32));
+			setLocal(address, IntegerConstant.create(stringId, 32));
 			input.put(index, new String(chars));
 			return new String(chars);
 		}
@@ -1751,9 +1752,9 @@ public final class SymbolicState extends State {
 		setArrayLength(arrayId, length);
 		if (name == null) { // not symbolic
 			for (int i = 0; i < length; i++) {
-				setArrayValue(arrayId, i, new IntegerConstant(unconvert.apply(Array.get(currentArray, i)), sizeInBits));
+				setArrayValue(arrayId, i, IntegerConstant.create(unconvert.apply(Array.get(currentArray, i)), sizeInBits));
 			}
-			setLocal(index, new IntegerConstant(arrayId, 32));
+			setLocal(index, IntegerConstant.create(arrayId, 32));
 			input.put(index, currentArray);
 			return currentArray;
 		} else {
@@ -1782,10 +1783,10 @@ public final class SymbolicState extends State {
 				} else if (maxBound instanceof Character) {
 					max = Long.valueOf((Character) maxBound);
 				}
-				Expression entryExpr = new IntegerVariable(entryName, sizeInBits, min, max);
+				Expression entryExpr = IntegerVariable.create(entryName, sizeInBits, min, max);
 				setArrayValue(arrayId, i, entryExpr);
 			}
-			setLocal(index, new IntegerConstant(arrayId, 32));
+			setLocal(index, IntegerConstant.create(arrayId, 32));
 			input.put(index, newArray);
 			return newArray;
 		}
@@ -1830,9 +1831,9 @@ public final class SymbolicState extends State {
 		setArrayLength(arrayId, length);
 		if (name == null) { // not symbolic
 			for (int i = 0; i < length; i++) {
-				setArrayValue(arrayId, i, new RealConstant(unconvert.apply(Array.get(currentArray, i)), sizeInBits));
+				setArrayValue(arrayId, i, RealConstant.create(unconvert.apply(Array.get(currentArray, i)), sizeInBits));
 			}
-			setLocal(index, new IntegerConstant(arrayId, 32));
+			setLocal(index, IntegerConstant.create(arrayId, 32));
 			input.put(index, currentArray);
 			return currentArray;
 		} else {
@@ -1848,10 +1849,10 @@ public final class SymbolicState extends State {
 				}
 				double min = (Double) coastal.getMinBound(entryName, name, type);
 				double max = (Double) coastal.getMaxBound(entryName, name, type);
-				Expression entryExpr = new RealVariable(entryName, sizeInBits, min, max);
+				Expression entryExpr = RealVariable.create(entryName, sizeInBits, min, max);
 				setArrayValue(arrayId, i, entryExpr);
 			}
-			setLocal(index, new IntegerConstant(arrayId, 32));
+			setLocal(index, IntegerConstant.create(arrayId, 32));
 			input.put(index, newArray);
 			return newArray;
 		}
@@ -1971,12 +1972,12 @@ public final class SymbolicState extends State {
 				int stringLength = currentArray[i].length();
 				int stringId = createString();
 				for (int j = 0; j < stringLength; j++) {
-					IntegerConstant chValue = new IntegerConstant(currentArray[i].charAt(j), 16);
+					IntegerConstant chValue = IntegerConstant.create(currentArray[i].charAt(j), 16);
 					setStringChar(stringId, i, chValue);
 				}
-				setArrayValue(arrayId, i, new IntegerConstant(stringId, 32));
+				setArrayValue(arrayId, i, IntegerConstant.create(stringId, 32));
 			}
-			setLocal(index, new IntegerConstant(arrayId, 32));
+			setLocal(index, IntegerConstant.create(arrayId, 32));
 			input.put(index, currentArray);
 			return currentArray;
 		} else {
@@ -1989,7 +1990,7 @@ public final class SymbolicState extends State {
 //				/*???*/ Object concrete = ((name == null) || (input == null)) ? null : input.get(entryName);
 //				char[] chars = new char[length];
 //			}
-//			setLocal(index, new IntegerConstant(arrayId, 32));
+//			setLocal(index, IntegerConstant.create(arrayId, 32));
 //			input.put(index, newArray);
 //			return newArray;
 		}
@@ -2018,7 +2019,7 @@ public final class SymbolicState extends State {
 				triggeringIndex = triggerIndex;
 			}
 		}
-		broker.publishThread("enter-method", methodNumber);
+		events.publishMethod(EventBus.ENTER_METHOD, methodNumber);
 	}
 
 	/**
@@ -2056,7 +2057,7 @@ public final class SymbolicState extends State {
 			}
 		}
 		dumpFrames();
-		broker.publishThread("enter-method", methodNumber);
+		events.publishMethod(EventBus.ENTER_METHOD, methodNumber);
 	}
 
 	/*
@@ -2084,7 +2085,7 @@ public final class SymbolicState extends State {
 		if (justExecutedDelegate) {
 			justExecutedDelegate = false;
 		} else {
-			Expression value = new IntegerConstant(returnValue, 16);
+			Expression value = IntegerConstant.create(returnValue, 16);
 			pushExtraCondition(Operation.eq(peek().toExpression(), value));
 		}
 	}
@@ -2102,7 +2103,7 @@ public final class SymbolicState extends State {
 		if (justExecutedDelegate) {
 			justExecutedDelegate = false;
 		} else {
-			Expression value = new RealConstant(returnValue, 64);
+			Expression value = RealConstant.create(returnValue, 64);
 			pushExtraCondition(Operation.eq(peek().toExpression(), value));
 		}
 	}
@@ -2120,7 +2121,7 @@ public final class SymbolicState extends State {
 		if (justExecutedDelegate) {
 			justExecutedDelegate = false;
 		} else {
-			Expression value = new RealConstant(returnValue, 32);
+			Expression value = RealConstant.create(returnValue, 32);
 			pushExtraCondition(Operation.eq(peek().toExpression(), value));
 		}
 	}
@@ -2138,7 +2139,7 @@ public final class SymbolicState extends State {
 		if (justExecutedDelegate) {
 			justExecutedDelegate = false;
 		} else {
-			Expression value = new IntegerConstant(returnValue, 32);
+			Expression value = IntegerConstant.create(returnValue, 32);
 			pushExtraCondition(Operation.eq(peek().toExpression(), value));
 		}
 	}
@@ -2156,7 +2157,7 @@ public final class SymbolicState extends State {
 		if (justExecutedDelegate) {
 			justExecutedDelegate = false;
 		} else {
-			Expression value = new IntegerConstant(returnValue, 64);
+			Expression value = IntegerConstant.create(returnValue, 64);
 			pushExtraCondition(Operation.eq(peek().toExpression(), value));
 		}
 	}
@@ -2171,7 +2172,7 @@ public final class SymbolicState extends State {
 		if (justExecutedDelegate) {
 			justExecutedDelegate = false;
 		} else {
-			Expression value = new IntegerConstant(returnValue, 16);
+			Expression value = IntegerConstant.create(returnValue, 16);
 			pushExtraCondition(Operation.eq(peek().toExpression(), value));
 		}
 	}
@@ -2200,7 +2201,7 @@ public final class SymbolicState extends State {
 	}
 
 	public void produceException(Expression guard, int throwing) {
-		produceException(guard, new IntegerConstant(throwing, 32));
+		produceException(guard, IntegerConstant.create(throwing, 32));
 	}
 
 	/*
@@ -2217,7 +2218,7 @@ public final class SymbolicState extends State {
 		if (getRecordingMode()) {
 			lines.add(filename + ":" + line);
 		}
-		broker.publishThread("linenumber", new Tuple(instr, line));
+		events.publishLine(instr, line);
 	}
 
 	/*
@@ -2231,7 +2232,7 @@ public final class SymbolicState extends State {
 			return;
 		}
 		log.trace("--> LABEL {}", label);
-		broker.publishThread("label", new Tuple(instr, label));
+		events.publishLabel(instr, label);
 	}
 
 	/*
@@ -2245,14 +2246,14 @@ public final class SymbolicState extends State {
 			return;
 		}
 		log.trace("--> {} (offset={})", Bytecodes.toString(opcode), instr);
-		broker.publishThread("insn", new Tuple(instr, opcode));
+		events.publishInsn(EventBus.INSN, instr, opcode);
 		checkLimitConjuncts();
 		switch (opcode) {
 		case Opcodes.ACONST_NULL:
 			push(IntegerConstant.ZERO32, 32);
 			break;
 		case Opcodes.ICONST_M1:
-			push(new IntegerConstant(-1, 32), 32);
+			push(IntegerConstant.create(-1, 32), 32);
 			break;
 		case Opcodes.ICONST_0:
 			push(IntegerConstant.ZERO32, 32);
@@ -2261,16 +2262,16 @@ public final class SymbolicState extends State {
 			push(IntegerConstant.ONE32, 32);
 			break;
 		case Opcodes.ICONST_2:
-			push(new IntegerConstant(2, 32), 32);
+			push(IntegerConstant.create(2, 32), 32);
 			break;
 		case Opcodes.ICONST_3:
-			push(new IntegerConstant(3, 32), 32);
+			push(IntegerConstant.create(3, 32), 32);
 			break;
 		case Opcodes.ICONST_4:
-			push(new IntegerConstant(4, 32), 32);
+			push(IntegerConstant.create(4, 32), 32);
 			break;
 		case Opcodes.ICONST_5:
-			push(new IntegerConstant(5, 32), 32);
+			push(IntegerConstant.create(5, 32), 32);
 			break;
 		case Opcodes.LCONST_0:
 			push(IntegerConstant.ZERO64, 64);
@@ -2282,16 +2283,16 @@ public final class SymbolicState extends State {
 			push(RealConstant.ZERO32, 32);
 			break;
 		case Opcodes.FCONST_1:
-			push(new RealConstant(1, 32), 32);
+			push(RealConstant.create(1, 32), 32);
 			break;
 		case Opcodes.FCONST_2:
-			push(new RealConstant(2, 32), 32);
+			push(RealConstant.create(2, 32), 32);
 			break;
 		case Opcodes.DCONST_0:
 			push(RealConstant.ZERO64, 64);
 			break;
 		case Opcodes.DCONST_1:
-			push(new RealConstant(1, 64), 64);
+			push(RealConstant.create(1, 64), 64);
 			break;
 		case Opcodes.IALOAD:
 			// check if i is a variable, if a variable add noExceptionExpression 0 <= i <
@@ -2363,10 +2364,10 @@ public final class SymbolicState extends State {
 			push(x1);
 			break;
 		case Opcodes.LNEG:
-			push(pop().mul(symbolicValueFactory.createSymbolicValue(new IntegerConstant(-1, 64))));
+			push(pop().mul(symbolicValueFactory.createSymbolicValue(IntegerConstant.create(-1, 64))));
 			break;
 		case Opcodes.INEG:
-			push(pop().mul(symbolicValueFactory.createSymbolicValue(new IntegerConstant(-1, 32))));
+			push(pop().mul(symbolicValueFactory.createSymbolicValue(IntegerConstant.create(-1, 32))));
 			break;
 		case Opcodes.FNEG:
 			push(pop().fneg());
@@ -2564,14 +2565,14 @@ public final class SymbolicState extends State {
 			return;
 		}
 		log.trace("--> {} {} (offset={})", Bytecodes.toString(opcode), operand, instr);
-		broker.publishThread("int-insn", new Tuple(instr, opcode, operand));
+		events.publishInsn(EventBus.INT_INSN, instr, opcode);
 		checkLimitConjuncts();
 		switch (opcode) {
 		case Opcodes.BIPUSH:
-			push(new IntegerConstant(operand, 32), 32);
+			push(IntegerConstant.create(operand, 32), 32);
 			break;
 		case Opcodes.SIPUSH:
-			push(new IntegerConstant(operand, 32), 32);
+			push(IntegerConstant.create(operand, 32), 32);
 			break;
 		case Opcodes.NEWARRAY:
 			Constant init = null;
@@ -2605,7 +2606,7 @@ public final class SymbolicState extends State {
 				if (!(value instanceof Number)) {
 					throw new UnsupportedOperationException("NEWARRAY with symbolic value");
 				}
-				n = (int) new IntegerConstant((Long) input.get(name), 32).getValue();
+				n = (int) IntegerConstant.create((Long) input.get(name), 32).getValue();
 			} else if (e instanceof IntegerConstant) {
 				n = (int) ((IntegerConstant) e).getValue();
 			} else {
@@ -2617,8 +2618,8 @@ public final class SymbolicState extends State {
 			for (int i = 0; i < n; i++) {
 				setArrayValue(id, i, initValue);
 			}
-			push(new IntegerConstant(id, 32), 32);
-			produceException(Operation.ge(new IntegerConstant(n, 32), IntegerConstant.ZERO32), IntegerConstant.ZERO32);
+			push(IntegerConstant.create(id, 32), 32);
+			produceException(Operation.ge(IntegerConstant.create(n, 32), IntegerConstant.ZERO32), IntegerConstant.ZERO32);
 			break;
 		default:
 			log.fatal("UNIMPLEMENTED INSTRUCTION: <{}> {} {} (opcode: {})", instr, Bytecodes.toString(opcode), operand,
@@ -2639,7 +2640,7 @@ public final class SymbolicState extends State {
 			return;
 		}
 		log.trace("--> {} {} (offset={})", Bytecodes.toString(opcode), var, instr);
-		broker.publishThread("var-insn", new Tuple(instr, opcode, var));
+		events.publishInsn(EventBus.VAR_INSN, instr, opcode);
 		checkLimitConjuncts();
 		switch (opcode) {
 		case Opcodes.ILOAD:
@@ -2674,13 +2675,13 @@ public final class SymbolicState extends State {
 			return;
 		}
 		log.trace("--> {} {} (offset={})", Bytecodes.toString(opcode), type, instr);
-		broker.publishThread("type-insn", new Tuple(instr, opcode));
+		events.publishInsn(EventBus.TYPE_INSN, instr, opcode);
 		checkLimitConjuncts();
 		switch (opcode) {
 		case Opcodes.NEW:
 //			classLoader.loadClass(name)
 			int id = incrAndGetNewObjectId();
-			push(new IntegerConstant(id, 32), 32);
+			push(IntegerConstant.create(id, 32), 32);
 			break;
 		case Opcodes.INSTANCEOF:
 			break;
@@ -2691,8 +2692,8 @@ public final class SymbolicState extends State {
 			int size = (int) (pop().toValue());
 			id = incrAndGetNewObjectId();
 			setArrayLength(id, size);
-			push(new IntegerConstant(id, 32), 32);
-			produceException(Operation.ge(new IntegerConstant(size, 32), IntegerConstant.ZERO32),
+			push(IntegerConstant.create(id, 32), 32);
+			produceException(Operation.ge(IntegerConstant.create(size, 32), IntegerConstant.ZERO32),
 					IntegerConstant.ZERO32);
 			break;
 		default:
@@ -2714,7 +2715,7 @@ public final class SymbolicState extends State {
 			return;
 		}
 		log.trace("--> {} {} {} {} (offset={})", Bytecodes.toString(opcode), owner, name, descriptor, instr);
-		broker.publishThread("field-insn", new Tuple(instr, opcode, owner, name, descriptor));
+		events.publishInsn(EventBus.FIELD_INSN, instr, opcode);
 		checkLimitConjuncts();
 		switch (opcode) {
 		case Opcodes.GETSTATIC:
@@ -2726,13 +2727,13 @@ public final class SymbolicState extends State {
 		case Opcodes.GETFIELD:
 			int id = (int) (pop().toValue());
 			push(getField(id, name));
-			produceException(Operation.ne(new IntegerConstant(id, 32), IntegerConstant.ZERO32), IntegerConstant.ZERO32);
+			produceException(Operation.ne(IntegerConstant.create(id, 32), IntegerConstant.ZERO32), IntegerConstant.ZERO32);
 			break;
 		case Opcodes.PUTFIELD:
 			SymbolicValue v = pop();
 			id = (int) (pop().toValue());
 			putField(id, name, v);
-			produceException(Operation.ne(new IntegerConstant(id, 32), IntegerConstant.ZERO32), IntegerConstant.ZERO32);
+			produceException(Operation.ne(IntegerConstant.create(id, 32), IntegerConstant.ZERO32), IntegerConstant.ZERO32);
 			break;
 		default:
 			log.fatal("UNIMPLEMENTED INSTRUCTION: <{}> {} {} {} {} (opcode: {})", instr, Bytecodes.toString(opcode),
@@ -2755,7 +2756,7 @@ public final class SymbolicState extends State {
 			return;
 		}
 		log.trace("--> {} {} {} {} (offset={})", Bytecodes.toString(opcode), owner, name, descriptor, instr);
-		broker.publishThread("method-insn", new Tuple(instr, opcode, owner, name, descriptor));
+		events.publishInsn(EventBus.METHOD_INSN, instr, opcode);
 		checkLimitConjuncts();
 		lastInvokingInstruction = instr;
 		switch (opcode) {
@@ -2811,7 +2812,7 @@ public final class SymbolicState extends State {
 			return;
 		}
 		log.trace("--> {} (offset={})", Bytecodes.toString(opcode), instr);
-		broker.publishThread("invoke-dynamic-insn", new Tuple(instr, opcode));
+		events.publishInsn(EventBus.INVOKE_DYNAMIC_INSN, instr, opcode);
 		checkLimitConjuncts();
 		lastInvokingInstruction = instr;
 		switch (opcode) {
@@ -2865,7 +2866,7 @@ public final class SymbolicState extends State {
 		// dumpFrames();
 		log.trace("--> {} (offset={})", Bytecodes.toString(opcode), instr);
 		// dumpFrames();
-		broker.publishThread("jump-insn", new Tuple(instr, opcode));
+		events.publishInsn(EventBus.JUMP_INSN, instr, opcode);
 		checkLimitConjuncts();
 		if (getRecordingMode()) {
 			dangerFlag = true;
@@ -2991,14 +2992,14 @@ public final class SymbolicState extends State {
 			} else {
 				log.trace("--> POST {}", Bytecodes.toString(opcode));
 				log.trace("    previous conjunct is false");
-				broker.publishThread("post-jump-insn", new Tuple(instr, opcode));
+				events.publishInsn(EventBus.POST_JUMP_INSN, instr, opcode);
 				Choice lastChoice = path.getChoice();
 				Branch lastBranch = lastChoice.getBranch();
 				assert lastBranch instanceof SegmentedPC.Binary;
 				long otherAlternative = 1 - lastChoice.getAlternative();
-				path = new Path(path.getParent(), new Choice(lastBranch, otherAlternative));
+				path = new Path(path.getParent(), new Choice(lastBranch, otherAlternative), input);
 				checkLimitConjuncts();
-				log.trace("    path is now: {}", path.getPathCondition().toString());
+				log.trace("    path is now: {}", path.getPathCondition());
 			}
 		}
 	}
@@ -3023,27 +3024,27 @@ public final class SymbolicState extends State {
 		}
 		log.trace("--> {} {} {} (offset={})", Bytecodes.toString(opcode), value, value.getClass().getSimpleName(),
 				instr);
-		broker.publishThread("ldc-insn", new Tuple(instr, opcode, value));
+		events.publishInsn(EventBus.LDC_INSN, instr, opcode);
 		checkLimitConjuncts();
 		switch (opcode) {
 		case Opcodes.LDC:
 			if (value instanceof Integer) {
-				push(new IntegerConstant((int) value, 32), 32);
+				push(IntegerConstant.create((int) value, 32), 32);
 			} else if (value instanceof Long) {
-				push(new IntegerConstant((long) value, 64), 64);
+				push(IntegerConstant.create((long) value, 64), 64);
 			} else if (value instanceof Float) {
-				push(new RealConstant((float) value, 32), 32);
+				push(RealConstant.create((float) value, 32), 32);
 			} else if (value instanceof Double) {
-				push(new RealConstant((double) value, 64), 64);
+				push(RealConstant.create((double) value, 64), 64);
 			} else if (value instanceof String) {
 				String s = (String) value;
 				int id = createArray();
-				putField(id, "length", symbolicValueFactory.createSymbolicValue(new IntegerConstant(s.length(), 32)));
+				putField(id, "length", symbolicValueFactory.createSymbolicValue(IntegerConstant.create(s.length(), 32)));
 				for (int i = 0; i < s.length(); i++) {
 					setArrayValue(id, i,
-							symbolicValueFactory.createSymbolicValue(new IntegerConstant(s.charAt(i), 32)));
+							symbolicValueFactory.createSymbolicValue(IntegerConstant.create(s.charAt(i), 32)));
 				}
-				push(new IntegerConstant(id, 32), 32);
+				push(IntegerConstant.create(id, 32), 32);
 			} else {
 				push(IntegerConstant.ZERO32, 32);
 			}
@@ -3067,10 +3068,10 @@ public final class SymbolicState extends State {
 			return;
 		}
 		log.trace("--> {} {} (offset={})", Bytecodes.toString(opcode), increment, instr);
-		broker.publishThread("iinc-insn", new Tuple(instr, var, increment));
+		events.publishInsn(EventBus.IINC_INSN, instr, opcode);
 		checkLimitConjuncts();
 		SymbolicValue v0 = getLocal(var);
-		SymbolicValue v1 = symbolicValueFactory.createSymbolicValue(new IntegerConstant(increment, 32));
+		SymbolicValue v1 = symbolicValueFactory.createSymbolicValue(IntegerConstant.create(increment, 32));
 		setLocal(var, v0.add(v1));
 		dumpFrames();
 	}
@@ -3086,7 +3087,7 @@ public final class SymbolicState extends State {
 			return;
 		}
 		log.trace("--> {} (offset={})", Bytecodes.toString(opcode), instr);
-		broker.publishThread("table-switch-insn", new Tuple(instr, opcode));
+		events.publishInsn(EventBus.TABLE_SWITCH_INSN, instr, opcode);
 		checkLimitConjuncts();
 		pendingSwitch.push(pop());
 		dumpFrames();
@@ -3123,7 +3124,7 @@ public final class SymbolicState extends State {
 			return;
 		}
 		log.trace("--> {} (offset={})", Bytecodes.toString(opcode), instr);
-		broker.publishThread("lookup-switch-insn", new Tuple(instr, opcode));
+		events.publishInsn(EventBus.LOOKUP_SWITCH_INSN, instr, opcode);
 		checkLimitConjuncts();
 		pendingSwitch.push(pop());
 		dumpFrames();
@@ -3169,7 +3170,7 @@ public final class SymbolicState extends State {
 			return;
 		}
 		log.trace("--> {} (offset={})", Bytecodes.toString(opcode), instr);
-		broker.publishThread("multi-anew-array-insn", new Tuple(instr, opcode));
+		events.publishInsn(EventBus.MULTI_ANEW_ARRAY_INSN, instr, opcode);
 		checkLimitConjuncts();
 		switch (opcode) {
 		default:
@@ -3201,7 +3202,7 @@ public final class SymbolicState extends State {
 		}
 		noExceptionExpression.clear();
 		checkLimitConjuncts();
-		String p = (path == null) ? null : path.getPathCondition().toString();
+		Expression p = (path == null) ? null : path.getPathCondition();
 		log.trace("path is now: {}", p);
 		dumpFrames();
 	}
@@ -3236,7 +3237,7 @@ public final class SymbolicState extends State {
 		}
 		noExceptionExpression.clear();
 		checkLimitConjuncts();
-		String p = (path == null) ? null : path.getPathCondition().toString();
+		Expression p = (path == null) ? null : path.getPathCondition();
 		log.trace("path is now: {}", p);
 		dumpFrames();
 	}
@@ -70,7 +70,8 @@ public class HeavyAdapter extends ClassVisitor {
 			mv = new TraceMethodVisitor(mv, p);
 		}
 		if (mv != null) {
-			mv = new HeavyMethodAdapter(coastal, mv, this.name, triggerIndex, name, isStatic, argCount);
+			TaintAnalysis.Selection selection = coastal.getClassManager().getSelection(this.name, name, desc);
+			mv = new HeavyMethodAdapter(coastal, mv, this.name, triggerIndex, name, isStatic, argCount, selection);
 		}
 		return mv;
 	}
@@ -20,6 +20,8 @@ package za.ac.sun.cs.coastal.instrument;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.logging.log4j.Logger;
 
@@ -44,7 +46,25 @@ public class HeavyClassLoader extends ClassLoader {
 
 	private final InstrumentationClassManager manager;
 
-	private final SymbolicState symbolicState;
+	private SymbolicState symbolicState;
+
+	/**
+	 * The target classes defined by this loader that may contain a
+	 * {@link ReinitAdapter#REINIT_METHOD} method.
+	 */
+	private final List<Class<?>> targetClasses = new ArrayList<>();
+
+	/**
+	 * The re-initialization methods of the first {@link #resolvedCount} entries of
+	 * {@link #targetClasses}.
+	 */
+	private final List<Method> reinitMethods = new ArrayList<>();
+
+	/**
+	 * The number of entries of {@link #targetClasses} that have been examined for
+	 * re-initialization methods.
+	 */
+	private int resolvedCount = 0;
 
 	public HeavyClassLoader(COASTAL coastal, InstrumentationClassManager manager, SymbolicState symbolicState) {
 		this.coastal = coastal;
@@ -93,6 +113,7 @@ public class HeavyClassLoader extends ClassLoader {
 			if (raw != null) {
 				log.trace("> defining class {} instrumented", name);
 				clas = defineClass(name, raw, 0, raw.length);
+				targetClasses.add(clas);
 			}
 		}
 		if (clas == null) {
@@ -119,16 +140,59 @@ public class HeavyClassLoader extends ClassLoader {
 			throw new ClassNotFoundException(name);
 		}
 		if ((clas != null) && name.equals(VM_NAME)) {
+			setState(clas);
+		}
+		return clas;
+	}
+
+	/**
+	 * Prepare this class loader for a new run. The given symbolic state replaces
+	 * the previous one in the copy of {@code VM} loaded by this class loader, and
+	 * the static fields of all instrumented classes are restored to their initial
+	 * values.
+	 * 
+	 * @param symbolicState
+	 *                      the symbolic state for the new run
+	 * @return {@code true} if all the classes were re-initialized, or
+	 *         {@code false} if the re-initialization of some class failed and
+	 *         this class loader should no longer be used
+	 */
+	public synchronized boolean reset(SymbolicState symbolicState) {
+		this.symbolicState = symbolicState;
+		Class<?> vm = findLoadedClass(VM_NAME);
+		if (vm != null) {
+			setState(vm);
+		}
+		while (resolvedCount < targetClasses.size()) {
+			Class<?> clas = targetClasses.get(resolvedCount++);
 			try {
-				log.trace("> try to set symbolic state #{}", Integer.toHexString(symbolicState.hashCode()));
-				Method st = clas.getDeclaredMethod("setState", State.class);
-				st.invoke(null, symbolicState);
-			} catch (SecurityException | IllegalArgumentException | IllegalAccessException | NoSuchMethodException
-					| InvocationTargetException e) {
-				e.printStackTrace();
+				Method reinit = clas.getDeclaredMethod(ReinitAdapter.REINIT_METHOD);
+				reinit.setAccessible(true);
+				reinitMethods.add(reinit);
+			} catch (NoSuchMethodException | SecurityException e) {
+				log.trace("> class {} has no static fields to re-initialize", clas.getName());
 			}
 		}
-		return clas;
+		for (Method reinit : reinitMethods) {
+			try {
+				reinit.invoke(null);
+			} catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
+				log.warn("re-initialization of class {} failed", reinit.getDeclaringClass().getName(), e);
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void setState(Class<?> vm) {
+		try {
+			log.trace("> try to set symbolic state #{}", Integer.toHexString(symbolicState.hashCode()));
+			Method st = vm.getDeclaredMethod("setState", State.class);
+			st.invoke(null, symbolicState);
+		} catch (SecurityException | IllegalArgumentException | IllegalAccessException | NoSuchMethodException
+				| InvocationTargetException e) {
+			e.printStackTrace();
+		}
 	}
 
 }
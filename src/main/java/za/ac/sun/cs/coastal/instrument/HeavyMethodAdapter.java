@@ -63,6 +63,22 @@ public class HeavyMethodAdapter extends MethodVisitor {
 
 	private final int argCount;
 
+	/**
+	 * The instructions selected for instrumentation by the taint analysis, or
+	 * {@code null} if all instructions are instrumented.
+	 */
+	private final TaintAnalysis.Selection selection;
+
+	/**
+	 * Whether the method is entered symbolically.
+	 */
+	private final boolean entered;
+
+	/**
+	 * The number of instructions visited so far.
+	 */
+	private int instructionIndex = 0;
+
 	private static final class TableSwitchTuple {
 
 		final int min, max, cur;
@@ -84,18 +100,18 @@ public class HeavyMethodAdapter extends MethodVisitor {
 		}
 	}
 
-	private static Map<Label, Stack<TableSwitchTuple>> tableCaseLabels = new HashMap<>();
+	private final Map<Label, Stack<TableSwitchTuple>> tableCaseLabels = new HashMap<>();
 
-	private static Map<Label, Stack<LookupSwitchTuple>> lookupCaseLabels = new HashMap<>();
+	private final Map<Label, Stack<LookupSwitchTuple>> lookupCaseLabels = new HashMap<>();
 
-	private static Set<Label> catchLabels = new HashSet<>();
+	private final Set<Label> catchLabels = new HashSet<>();
 
 	private BitSet currentLinenumbers;
 
 	// private static BitSet currentBranchInstructions;
 
 	public HeavyMethodAdapter(COASTAL coastal, MethodVisitor cv, String filename, int triggerIndex, String name,
-			boolean isStatic, int argCount) {
+			boolean isStatic, int argCount, TaintAnalysis.Selection selection) {
 		super(Opcodes.ASM6, cv);
 		this.coastal = coastal;
 		this.log = coastal.getLog();
@@ -106,6 +122,35 @@ public class HeavyMethodAdapter extends MethodVisitor {
 		this.name = name;
 		this.isStatic = isStatic;
 		this.argCount = argCount;
+		this.selection = selection;
+		this.entered = (selection == null) || selection.isEntered() || (triggerIndex >= 0);
+	}
+
+	/**
+	 * Advance to the next instruction and return whether it is instrumented.
+	 * The instruction counter advances for all instructions, so that
+	 * instructions are numbered in the same way whether or not they are
+	 * instrumented.
+	 * 
+	 * @return {@code true} if and only if the instruction is instrumented
+	 */
+	private boolean isSelected() {
+		int index = instructionIndex++;
+		return (selection == null) || selection.isInstrumented(index);
+	}
+
+	/**
+	 * Advance to the next instruction and, if it is not instrumented, skip over
+	 * its number.
+	 * 
+	 * @return {@code true} if and only if the instruction is not instrumented
+	 */
+	private boolean skip() {
+		if (isSelected()) {
+			return false;
+		}
+		classManager.getNextInstructionCounter();
+		return true;
 	}
 
 	private int visitParameter(Trigger trigger, int triggerIndex, int index, int address) {
@@ -269,7 +314,9 @@ public class HeavyMethodAdapter extends MethodVisitor {
 	@Override
 	public void visitTryCatchBlock(Label start, Label end, Label handler, String type) {
 		log.trace("Hinstrument visitTryCatchBlock(start:{}, end:{}, handler:{}, type:{})", start, end, handler, type);
-		catchLabels.add(handler);
+		if (entered) {
+			catchLabels.add(handler);
+		}
 		mv.visitTryCatchBlock(start, end, handler, type);
 	}
 
@@ -307,6 +354,8 @@ public class HeavyMethodAdapter extends MethodVisitor {
 			// --- }
 			mv.visitLabel(end);
 			mv.visitFrame(Opcodes.F_SAME, 0, null, 0, null);
+		} else if (!entered) {
+			classManager.getNextMethodCounter();
 		} else {
 			mv.visitLdcInsn(classManager.getNextMethodCounter());
 			mv.visitLdcInsn(name);
@@ -322,6 +371,10 @@ public class HeavyMethodAdapter extends MethodVisitor {
 	@Override
 	public void visitInsn(int opcode) {
 		log.trace("Hinstrument visitInsn(opcode:{} ({}))", opcode, Bytecodes.toString(opcode));
+		if (skip()) {
+			mv.visitInsn(opcode);
+			return;
+		}
 		mv.visitLdcInsn(classManager.getNextInstructionCounter());
 		mv.visitLdcInsn(opcode);
 		mv.visitMethodInsn(Opcodes.INVOKESTATIC, LIBRARY, "insn", "(II)V", false);
@@ -334,6 +387,10 @@ public class HeavyMethodAdapter extends MethodVisitor {
 	@Override
 	public void visitIntInsn(int opcode, int operand) {
 		log.trace("Hinstrument visitIntInsn(opcode:{} ({}), operand:{})", opcode, Bytecodes.toString(opcode), operand);
+		if (skip()) {
+			mv.visitIntInsn(opcode, operand);
+			return;
+		}
 		mv.visitLdcInsn(classManager.getNextInstructionCounter());
 		mv.visitLdcInsn(opcode);
 		mv.visitLdcInsn(operand);
@@ -344,6 +401,10 @@ public class HeavyMethodAdapter extends MethodVisitor {
 	@Override
 	public void visitVarInsn(int opcode, int var) {
 		log.trace("Hinstrument visitVarInsn(opcode:{} ({}), var:{})", opcode, Bytecodes.toString(opcode), var);
+		if (skip()) {
+			mv.visitVarInsn(opcode, var);
+			return;
+		}
 		mv.visitLdcInsn(classManager.getNextInstructionCounter());
 		mv.visitLdcInsn(opcode);
 		mv.visitLdcInsn(var);
@@ -354,10 +415,12 @@ public class HeavyMethodAdapter extends MethodVisitor {
 	@Override
 	public void visitTypeInsn(int opcode, String type) {
 		log.trace("Hinstrument visitTypeInsn(opcode:{} ({}), type:{})", opcode, Bytecodes.toString(opcode), type);
-		mv.visitLdcInsn(classManager.getNextInstructionCounter());
-		mv.visitLdcInsn(opcode);
-		mv.visitLdcInsn(type);
-		mv.visitMethodInsn(Opcodes.INVOKESTATIC, LIBRARY, "typeInsn", "(IILjava/lang/String;)V", false);
+		if (!skip()) {
+			mv.visitLdcInsn(classManager.getNextInstructionCounter());
+			mv.visitLdcInsn(opcode);
+			mv.visitLdcInsn(type);
+			mv.visitMethodInsn(Opcodes.INVOKESTATIC, LIBRARY, "typeInsn", "(IILjava/lang/String;)V", false);
+		}
 		if (coastal.isTarget(type)) {
 			// classManager.loadHeavyInstrumented(type);
 			if (type.startsWith("java/")) {
@@ -375,6 +438,9 @@ public class HeavyMethodAdapter extends MethodVisitor {
 		log.trace("Hinstrument visitFieldInsn(opcode:{} ({}), owner:{}, name:{})", opcode, Bytecodes.toString(opcode),
 				owner, name);
 		mv.visitFieldInsn(opcode, owner, name, descriptor);
+		if (skip()) {
+			return;
+		}
 		mv.visitLdcInsn(classManager.getNextInstructionCounter());
 		mv.visitLdcInsn(opcode);
 		mv.visitLdcInsn(owner);
@@ -407,19 +473,24 @@ public class HeavyMethodAdapter extends MethodVisitor {
 	public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
 		log.trace("Hinstrument visitMethodInsn(opcode:{} ({}), owner:{}, name:{})", opcode, Bytecodes.toString(opcode),
 				owner, name);
+		boolean selected = isSelected();
 		if (owner.equals(SYMBOLIC)) {
 			mv.visitMethodInsn(opcode, LIBRARY, name, descriptor, isInterface);
 			// pop params !!!!!!!!!!!
 		} else if (owner.equals(SYSTEM) && name.equals("exit")) {
 			mv.visitMethodInsn(Opcodes.INVOKESTATIC, LIBRARY, "systemExit", "(I)V", false);
 		} else {
-			mv.visitLdcInsn(classManager.getNextInstructionCounter());
-			mv.visitLdcInsn(opcode);
-			mv.visitLdcInsn(owner);
-			mv.visitLdcInsn(name);
-			mv.visitLdcInsn(descriptor);
-			mv.visitMethodInsn(Opcodes.INVOKESTATIC, LIBRARY, "methodInsn",
-					"(IILjava/lang/String;Ljava/lang/String;Ljava/lang/String;)V", false);
+			if (selected) {
+				mv.visitLdcInsn(classManager.getNextInstructionCounter());
+				mv.visitLdcInsn(opcode);
+				mv.visitLdcInsn(owner);
+				mv.visitLdcInsn(name);
+				mv.visitLdcInsn(descriptor);
+				mv.visitMethodInsn(Opcodes.INVOKESTATIC, LIBRARY, "methodInsn",
+						"(IILjava/lang/String;Ljava/lang/String;Ljava/lang/String;)V", false);
+			} else {
+				classManager.getNextInstructionCounter();
+			}
 			if (owner.equals(VERIFIER)) {
 				if (name.equals("assume")) {
 					mv.visitMethodInsn(Opcodes.INVOKESTATIC, LIBRARY, "assume", "(Z)V", false);
@@ -474,7 +545,7 @@ public class HeavyMethodAdapter extends MethodVisitor {
 				} else {
 					mv.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
 				}
-				if (useConcreteValues && !coastal.isTarget(className)
+				if (selected && useConcreteValues && !coastal.isTarget(className)
 						&& (coastal.findDelegate(owner, className, descriptor) == null)) {
 					char returnType = primitiveReturnType(descriptor);
 					if ((returnType == 'J') || (returnType == 'D')) {
@@ -495,6 +566,10 @@ public class HeavyMethodAdapter extends MethodVisitor {
 	public void visitInvokeDynamicInsn(String name, String descriptor, Handle bootstrapMethodHandle,
 			Object... bootstrapMethodArguments) {
 		log.trace("Hinstrument visitInvokeDynamicInsn(name:{})", name);
+		if (skip()) {
+			mv.visitInvokeDynamicInsn(name, descriptor, bootstrapMethodHandle, bootstrapMethodArguments);
+			return;
+		}
 		mv.visitLdcInsn(classManager.getNextInstructionCounter());
 		mv.visitLdcInsn(186);
 		mv.visitMethodInsn(Opcodes.INVOKESTATIC, LIBRARY, "invokeDynamicInsn", "(II)V", false);
@@ -504,6 +579,10 @@ public class HeavyMethodAdapter extends MethodVisitor {
 	@Override
 	public void visitJumpInsn(int opcode, Label label) {
 		log.trace("Hinstrument visitJumpInsn(opcode:{} ({}), label:{})", opcode, Bytecodes.toString(opcode), label);
+		if (skip()) {
+			mv.visitJumpInsn(opcode, label);
+			return;
+		}
 		mv.visitLdcInsn(classManager.getNextInstructionCounter());
 		mv.visitLdcInsn(opcode);
 		mv.visitMethodInsn(Opcodes.INVOKESTATIC, LIBRARY, "jumpInsn", "(II)V", false);
@@ -519,6 +598,10 @@ public class HeavyMethodAdapter extends MethodVisitor {
 	@Override
 	public void visitLdcInsn(Object value) {
 		log.trace("Hinstrument visitLdcInsn(value:{})", value);
+		if (skip()) {
+			mv.visitLdcInsn(value);
+			return;
+		}
 		mv.visitLdcInsn(classManager.getNextInstructionCounter());
 		mv.visitLdcInsn(18);
 		mv.visitLdcInsn(value);
@@ -539,6 +622,10 @@ public class HeavyMethodAdapter extends MethodVisitor {
 	@Override
 	public void visitIincInsn(int var, int increment) {
 		log.trace("Hinstrument visitJumpInsn(var:{}, increment:{})", var, increment);
+		if (skip()) {
+			mv.visitIincInsn(var, increment);
+			return;
+		}
 		mv.visitLdcInsn(classManager.getNextInstructionCounter());
 		mv.visitLdcInsn(var);
 		mv.visitLdcInsn(increment);
@@ -549,6 +636,10 @@ public class HeavyMethodAdapter extends MethodVisitor {
 	@Override
 	public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
 		log.trace("Hinstrument visitTableSwitchInsn(min:{}, max:{}, dflt:{})", min, max, dflt);
+		if (skip()) {
+			mv.visitTableSwitchInsn(min, max, dflt, labels);
+			return;
+		}
 		mv.visitLdcInsn(classManager.getNextInstructionCounter());
 		mv.visitLdcInsn(170);
 		mv.visitMethodInsn(Opcodes.INVOKESTATIC, LIBRARY, "tableSwitchInsn", "(II)V", false);
@@ -599,6 +690,10 @@ public class HeavyMethodAdapter extends MethodVisitor {
 
 	@Override
 	public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+		if (skip()) {
+			mv.visitLookupSwitchInsn(dflt, keys, labels);
+			return;
+		}
 		int insnCounter = classManager.getNextInstructionCounter();
 		log.trace("Hinstrument visitLookupSwitchInsn(dflt:{})", dflt);
 		mv.visitLdcInsn(insnCounter);
@@ -626,6 +721,10 @@ public class HeavyMethodAdapter extends MethodVisitor {
 	@Override
 	public void visitMultiANewArrayInsn(String descriptor, int numDimensions) {
 		log.trace("Hinstrument visitMultiANewArrayInsn(numDimensions:{})", numDimensions);
+		if (skip()) {
+			mv.visitMultiANewArrayInsn(descriptor, numDimensions);
+			return;
+		}
 		mv.visitLdcInsn(classManager.getNextInstructionCounter());
 		mv.visitLdcInsn(197);
 		mv.visitMethodInsn(Opcodes.INVOKESTATIC, LIBRARY, "multiANewArrayInsn", "(II)V", false);
@@ -0,0 +1,587 @@
+/*
+ * This file is part of the COASTAL tool, https://deepseaplatform.github.io/coastal/
+ *
+ * Copyright (c) 2019-2020, Computer Science, Stellenbosch University.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package za.ac.sun.cs.coastal.instrument;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of instrumented classes that can be shared by several analysis runs
+ * in the same JVM. Entries are addressed by a digest of the original
+ * bytecode, the kind of instrumentation, the configuration settings that
+ * influence instrumentation, and the state of the instruction, method, and
+ * variable counters when instrumentation starts. Heavy instrumentation embeds
+ * these counters in the bytecode, so a class instrumented for one run can be
+ * reused by another run only if the counters agree.
+ * 
+ * Besides the instrumented bytecode, each entry records the side effects that
+ * instrumentation has on the {@link InstrumentationClassManager}, so that they
+ * can be replayed when the entry is reused.
+ * 
+ * If the cache is given a directory, entries are also written to files in
+ * that directory, one per key, so that later invocations of COASTAL can reuse
+ * them. Files are written under a temporary name and then renamed, so that
+ * concurrent invocations never read a partial entry. When the files grow
+ * beyond the size limit, the least recently used ones are deleted.
+ */
+public class InstrumentationCache {
+
+	/**
+	 * Marks the start of a cache file.
+	 */
+	private static final int MAGIC = 0x434f4943;
+
+	/**
+	 * The version of the file format.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * The suffix of cache files.
+	 */
+	private static final String SUFFIX = ".icache";
+
+	/**
+	 * The entries of the cache, indexed by their keys.
+	 */
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+	/**
+	 * The number of successful lookups.
+	 */
+	private final AtomicLong hitCount = new AtomicLong(0);
+
+	/**
+	 * The number of failed lookups.
+	 */
+	private final AtomicLong missCount = new AtomicLong(0);
+
+	/**
+	 * The directory where entries are stored, or {@code null} if entries are
+	 * only kept in memory.
+	 */
+	private volatile File directory = null;
+
+	/**
+	 * The maximum total size of the cache files in bytes.
+	 */
+	private volatile long sizeLimit = 0;
+
+	/**
+	 * The estimated total size of the cache files in bytes.
+	 */
+	private final AtomicLong diskSize = new AtomicLong(0);
+
+	/**
+	 * The number of entries read from the directory.
+	 */
+	private final AtomicLong diskHitCount = new AtomicLong(0);
+
+	/**
+	 * The number of entries written to the directory.
+	 */
+	private final AtomicLong diskWriteCount = new AtomicLong(0);
+
+	/**
+	 * The number of cache files deleted to stay within the size limit.
+	 */
+	private final AtomicLong evictedCount = new AtomicLong(0);
+
+	/**
+	 * Construct a cache that keeps its entries in memory only.
+	 */
+	public InstrumentationCache() {
+	}
+
+	/**
+	 * Construct a cache that also stores its entries in a directory.
+	 * 
+	 * @param directory
+	 *                  the directory for the cache files
+	 * @param sizeLimit
+	 *                  the maximum total size of the cache files in bytes
+	 */
+	public InstrumentationCache(File directory, long sizeLimit) {
+		useDirectory(directory, sizeLimit);
+	}
+
+	/**
+	 * Store entries in a directory from now on, unless a directory is already
+	 * in use. The directory is created if necessary, and old files are evicted
+	 * if the directory exceeds the size limit.
+	 * 
+	 * @param directory
+	 *                  the directory for the cache files
+	 * @param sizeLimit
+	 *                  the maximum total size of the cache files in bytes
+	 * @return {@code true} if and only if the directory can be used
+	 */
+	public synchronized boolean useDirectory(File directory, long sizeLimit) {
+		if (this.directory != null) {
+			return this.directory.equals(directory);
+		}
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			return false;
+		}
+		this.sizeLimit = sizeLimit;
+		long size = 0;
+		for (File file : listFiles(directory)) {
+			size += file.length();
+		}
+		diskSize.set(size);
+		this.directory = directory;
+		evict();
+		return true;
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Return the entry for a key, or {@code null} if there is none. If the entry
+	 * is not in memory, it is read from the directory, if there is one.
+	 * 
+	 * @param key
+	 *            the key of the entry
+	 * @return the entry or {@code null}
+	 */
+	public Entry get(String key) {
+		Entry entry = entries.get(key);
+		if ((entry == null) && (directory != null)) {
+			entry = read(key);
+			if (entry != null) {
+				entries.putIfAbsent(key, entry);
+				diskHitCount.incrementAndGet();
+			}
+		}
+		if (entry == null) {
+			missCount.incrementAndGet();
+		} else {
+			hitCount.incrementAndGet();
+		}
+		return entry;
+	}
+
+	/**
+	 * Add an entry to the cache, unless the key already has an entry. If there
+	 * is a directory, the entry is also written to it.
+	 * 
+	 * @param key
+	 *              the key of the entry
+	 * @param entry
+	 *              the entry to add
+	 */
+	public void put(String key, Entry entry) {
+		if ((entries.putIfAbsent(key, entry) == null) && (directory != null)) {
+			write(key, entry);
+		}
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	public long getDiskHitCount() {
+		return diskHitCount.get();
+	}
+
+	public long getDiskWriteCount() {
+		return diskWriteCount.get();
+	}
+
+	public long getEvictedCount() {
+		return evictedCount.get();
+	}
+
+	/**
+	 * Compute the key of a class.
+	 * 
+	 * @param kind
+	 *                      the kind of instrumentation ("heavy" or "light")
+	 * @param configuration
+	 *                      the configuration settings that influence
+	 *                      instrumentation
+	 * @param counters
+	 *                      the values of the counters when instrumentation starts
+	 * @param bytecode
+	 *                      the original bytecode of the class
+	 * @return the key as a hexadecimal string
+	 */
+	public static String computeKey(String kind, String configuration, int[] counters, byte[] bytecode) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(kind.getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			digest.update(configuration.getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			for (int counter : counters) {
+				digest.update((byte) (counter >>> 24));
+				digest.update((byte) (counter >>> 16));
+				digest.update((byte) (counter >>> 8));
+				digest.update((byte) counter);
+			}
+			digest.update(bytecode);
+			StringBuilder key = new StringBuilder();
+			for (byte b : digest.digest()) {
+				key.append(String.format("%02x", b));
+			}
+			return key.toString();
+		} catch (NoSuchAlgorithmException x) {
+			throw new IllegalStateException("SHA-256 is not available", x);
+		}
+	}
+
+	// ======================================================================
+	//
+	// CACHE FILES
+	//
+	// ======================================================================
+
+	/**
+	 * Return the cache files in a directory.
+	 * 
+	 * @param directory
+	 *                  the directory
+	 * @return the cache files
+	 */
+	private static File[] listFiles(File directory) {
+		File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+		return (files == null) ? new File[0] : files;
+	}
+
+	/**
+	 * Read the entry for a key from its cache file. A file that cannot be read,
+	 * that was written for another key, or whose contents are inconsistent
+	 * counts as missing and is deleted, so that the entry can be written again.
+	 * The modification time of the file is updated so that eviction spares
+	 * recently used entries.
+	 * 
+	 * @param key
+	 *            the key of the entry
+	 * @return the entry or {@code null}
+	 */
+	private Entry read(String key) {
+		File file = new File(directory, key + SUFFIX);
+		if (!file.isFile()) {
+			return null;
+		}
+		long length = file.length();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if ((in.readInt() != MAGIC) || (in.readInt() != VERSION) || !in.readUTF().equals(key)) {
+				throw new IOException("cache file for another key");
+			}
+			byte[] bytecode = new byte[readCount(in, length, 1)];
+			in.readFully(bytecode);
+			int[] counters = readInts(in, length);
+			Map<Integer, Integer> firstInstructions = new HashMap<>();
+			for (int i = readCount(in, length, 8); i > 0; i--) {
+				firstInstructions.put(in.readInt(), in.readInt());
+			}
+			Map<Integer, Integer> lastInstructions = new HashMap<>();
+			for (int i = readCount(in, length, 8); i > 0; i--) {
+				lastInstructions.put(in.readInt(), in.readInt());
+			}
+			Map<Integer, BitSet> lineNumbers = new HashMap<>();
+			for (int i = readCount(in, length, 8); i > 0; i--) {
+				int method = in.readInt();
+				byte[] lines = new byte[readCount(in, length, 1)];
+				in.readFully(lines);
+				lineNumbers.put(method, BitSet.valueOf(lines));
+			}
+			Map<Integer, int[]> lookupKeys = new HashMap<>();
+			for (int i = readCount(in, length, 8); i > 0; i--) {
+				lookupKeys.put(in.readInt(), readInts(in, length));
+			}
+			if (in.read() != -1) {
+				throw new IOException("trailing data in cache file");
+			}
+			file.setLastModified(System.currentTimeMillis());
+			return new Entry(bytecode, counters, firstInstructions, lastInstructions, lineNumbers, lookupKeys);
+		} catch (IOException | RuntimeException x) {
+			if (file.delete()) {
+				diskSize.addAndGet(-length);
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Read the number of elements that follow in a cache file, and check that
+	 * they fit in the file.
+	 * 
+	 * @param in
+	 *               the cache file
+	 * @param length
+	 *               the length of the cache file in bytes
+	 * @param width
+	 *               the number of bytes per element
+	 * @return the number of elements
+	 * @throws IOException
+	 *                     if the file cannot be read or the number is invalid
+	 */
+	private static int readCount(DataInputStream in, long length, int width) throws IOException {
+		int count = in.readInt();
+		if ((count < 0) || ((long) count * width > length)) {
+			throw new IOException("invalid count " + count + " in cache file");
+		}
+		return count;
+	}
+
+	private static int[] readInts(DataInputStream in, long length) throws IOException {
+		int[] values = new int[readCount(in, length, 4)];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = in.readInt();
+		}
+		return values;
+	}
+
+	/**
+	 * Write the entry for a key to its cache file. The entry is written to a
+	 * temporary file that is then moved into place. If that fails, the entry
+	 * is simply not stored on disk.
+	 * 
+	 * @param key
+	 *              the key of the entry
+	 * @param entry
+	 *              the entry to write
+	 */
+	private void write(String key, Entry entry) {
+		File file = new File(directory, key + SUFFIX);
+		if (file.isFile()) {
+			return;
+		}
+		Path tempFile = null;
+		try {
+			tempFile = Files.createTempFile(directory.toPath(), key, ".tmp");
+			try (OutputStream out0 = Files.newOutputStream(tempFile);
+					DataOutputStream out = new DataOutputStream(new BufferedOutputStream(out0))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeUTF(key);
+				out.writeInt(entry.bytecode.length);
+				out.write(entry.bytecode);
+				writeInts(out, entry.counters);
+				out.writeInt(entry.firstInstructions.size());
+				for (Map.Entry<Integer, Integer> first : entry.firstInstructions.entrySet()) {
+					out.writeInt(first.getKey());
+					out.writeInt(first.getValue());
+				}
+				out.writeInt(entry.lastInstructions.size());
+				for (Map.Entry<Integer, Integer> last : entry.lastInstructions.entrySet()) {
+					out.writeInt(last.getKey());
+					out.writeInt(last.getValue());
+				}
+				out.writeInt(entry.lineNumbers.size());
+				for (Map.Entry<Integer, BitSet> lines : entry.lineNumbers.entrySet()) {
+					byte[] bits = lines.getValue().toByteArray();
+					out.writeInt(lines.getKey());
+					out.writeInt(bits.length);
+					out.write(bits);
+				}
+				out.writeInt(entry.lookupKeys.size());
+				for (Map.Entry<Integer, int[]> lookup : entry.lookupKeys.entrySet()) {
+					out.writeInt(lookup.getKey());
+					writeInts(out, lookup.getValue());
+				}
+			}
+			long size = Files.size(tempFile);
+			try {
+				Files.move(tempFile, file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException x) {
+				Files.move(tempFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			tempFile = null;
+			diskWriteCount.incrementAndGet();
+			if (diskSize.addAndGet(size) > sizeLimit) {
+				evict();
+			}
+		} catch (IOException x) {
+			// the entry remains in memory only
+		} finally {
+			if (tempFile != null) {
+				tempFile.toFile().delete();
+			}
+		}
+	}
+
+	private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+		out.writeInt(values.length);
+		for (int value : values) {
+			out.writeInt(value);
+		}
+	}
+
+	/**
+	 * Delete the least recently used cache files until the directory is at
+	 * most three quarters of the size limit, so that eviction does not happen
+	 * on every write once the limit is reached.
+	 */
+	private synchronized void evict() {
+		if (diskSize.get() <= sizeLimit) {
+			return;
+		}
+		File[] files = listFiles(directory);
+		long size = 0;
+		long[] lastModified = new long[files.length];
+		Integer[] order = new Integer[files.length];
+		for (int i = 0; i < files.length; i++) {
+			size += files[i].length();
+			lastModified[i] = files[i].lastModified();
+			order[i] = i;
+		}
+		Arrays.sort(order, Comparator.comparingLong(i -> lastModified[i]));
+		long target = sizeLimit / 4 * 3;
+		for (int i = 0; (i < order.length) && (size > target); i++) {
+			File file = files[order[i]];
+			long length = file.length();
+			if (file.delete()) {
+				size -= length;
+				evictedCount.incrementAndGet();
+			}
+		}
+		diskSize.set(size);
+	}
+
+	// ======================================================================
+	//
+	// ENTRIES
+	//
+	// ======================================================================
+
+	/**
+	 * An instrumented class and the side effects of its instrumentation.
+	 */
+	public static class Entry {
+
+		/**
+		 * The instrumented bytecode.
+		 */
+		private final byte[] bytecode;
+
+		/**
+		 * The values of the instruction, method, and variable counters after
+		 * instrumentation.
+		 */
+		private final int[] counters;
+
+		/**
+		 * The first instruction of each instrumented method.
+		 */
+		private final Map<Integer, Integer> firstInstructions;
+
+		/**
+		 * The last instruction of each instrumented method.
+		 */
+		private final Map<Integer, Integer> lastInstructions;
+
+		/**
+		 * The line numbers of each instrumented method.
+		 */
+		private final Map<Integer, BitSet> lineNumbers;
+
+		/**
+		 * The keys of the lookup switch instructions.
+		 */
+		private final Map<Integer, int[]> lookupKeys;
+
+		/**
+		 * Construct a new entry.
+		 * 
+		 * @param bytecode
+		 *                          the instrumented bytecode
+		 * @param counters
+		 *                          the values of the counters after
+		 *                          instrumentation
+		 * @param firstInstructions
+		 *                          the first instruction of each method
+		 * @param lastInstructions
+		 *                          the last instruction of each method
+		 * @param lineNumbers
+		 *                          the line numbers of each method
+		 * @param lookupKeys
+		 *                          the keys of the lookup switch instructions
+		 */
+		public Entry(byte[] bytecode, int[] counters, Map<Integer, Integer> firstInstructions,
+				Map<Integer, Integer> lastInstructions, Map<Integer, BitSet> lineNumbers,
+				Map<Integer, int[]> lookupKeys) {
+			this.bytecode = bytecode;
+			this.counters = counters;
+			this.firstInstructions = new HashMap<>(firstInstructions);
+			this.lastInstructions = new HashMap<>(lastInstructions);
+			this.lineNumbers = new HashMap<>(lineNumbers);
+			this.lookupKeys = new HashMap<>(lookupKeys);
+		}
+
+		public byte[] getBytecode() {
+			return bytecode;
+		}
+
+		public int[] getCounters() {
+			return counters;
+		}
+
+		public Map<Integer, Integer> getFirstInstructions() {
+			return Collections.unmodifiableMap(firstInstructions);
+		}
+
+		public Map<Integer, Integer> getLastInstructions() {
+			return Collections.unmodifiableMap(lastInstructions);
+		}
+
+		public Map<Integer, BitSet> getLineNumbers() {
+			return Collections.unmodifiableMap(lineNumbers);
+		}
+
+		public Map<Integer, int[]> getLookupKeys() {
+			return Collections.unmodifiableMap(lookupKeys);
+		}
+
+	}
+
+}
@@ -29,13 +29,20 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Collections;
+import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.zip.ZipFile;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.logging.log4j.Logger;
@@ -48,6 +55,7 @@ import org.objectweb.asm.commons.Remapper;
 
 import za.ac.sun.cs.coastal.Banner;
 import za.ac.sun.cs.coastal.COASTAL;
+import za.ac.sun.cs.coastal.Configuration;
 import za.ac.sun.cs.coastal.diver.SymbolicState;
 import za.ac.sun.cs.coastal.messages.Broker;
 import za.ac.sun.cs.coastal.messages.FreqTuple;
@@ -65,6 +73,27 @@ public class InstrumentationClassManager {
 
 	private final boolean showInstrumentation;
 
+	private final boolean reuseClasses;
+
+	/**
+	 * Whether surfers use the edge-coverage profile of light instrumentation.
+	 */
+	private final boolean edgeCoverage;
+
+	/**
+	 * Whether heavy instrumentation is restricted to the instructions selected
+	 * by the taint analysis.
+	 */
+	private final boolean selectiveInstrumentation;
+
+	/**
+	 * The taint analysis of the target classes, or {@code null} if it has not
+	 * been performed yet.
+	 */
+	private TaintAnalysis taintAnalysis = null;
+
+	private long taintAnalysisTime = 0;
+
 	// private final boolean showClassList;
 	
 	private final String writeClassfile;
@@ -89,20 +118,106 @@ public class InstrumentationClassManager {
 
 	private final AtomicLong postInstrumentedSize = new AtomicLong(0);
 
-	private final Map<String, byte[]> clearCache = new HashMap<>();
+	private final Map<String, CompletableFuture<byte[]>> clearCache = new ConcurrentHashMap<>();
+
+	private final Map<String, CompletableFuture<byte[]>> heavyCache = new ConcurrentHashMap<>();
+
+	private final Map<String, CompletableFuture<byte[]>> lightCache = new ConcurrentHashMap<>();
+
+	private final Map<Integer, int[]> lookupKeys = new ConcurrentHashMap<>();
+
+	/**
+	 * The original bytecode of the target classes, fetched in parallel during
+	 * pre-instrumentation, indexed by file name.
+	 */
+	private final Map<String, CompletableFuture<byte[]>> prefetched = new ConcurrentHashMap<>();
+
+	private long preInstrumentedCount = 0;
+
+	private long preInstrumentTime = 0;
+
+	/**
+	 * Instrumented classes shared with other analysis runs, or {@code null} if
+	 * classes are not shared.
+	 */
+	private final InstrumentationCache sharedCache;
+
+	/**
+	 * The configuration settings that influence instrumentation, as part of the
+	 * key of the shared cache.
+	 */
+	private final String instrumentationSettings;
+
+	/**
+	 * The number of classes instrumented or taken from the shared cache so far,
+	 * used to detect that the instrumentation of one class caused another class
+	 * to be instrumented.
+	 */
+	private int instrumentSequence = 0;
+
+	private final AtomicLong sharedHitCount = new AtomicLong(0);
+
+	/**
+	 * The jar files opened so far, indexed by their names. A {@link ZipFile}
+	 * reads the central directory of the jar once, after which each entry is
+	 * found without scanning the jar.
+	 */
+	private final Map<String, ZipFile> openJars = new ConcurrentHashMap<>();
+
+	/**
+	 * For each file in the target jars, the name of the jar that contains it and
+	 * the name of its entry in the jar.
+	 */
+	private final Map<String, String[]> jarIndex = new HashMap<>();
+
+	/**
+	 * The names of the files in each directory of the class path that has been
+	 * searched, so that each directory is listed once instead of probing the
+	 * file system for every class.
+	 */
+	private final Map<File, Set<String>> directoryIndex = new ConcurrentHashMap<>();
+
+	/**
+	 * The files that could not be found, together with the places where they
+	 * were searched for.
+	 */
+	private final Set<String> missingFiles = ConcurrentHashMap.newKeySet();
 
-	private final Map<String, byte[]> heavyCache = new HashMap<>();
+	private final AtomicLong lookupCount = new AtomicLong(0);
 
-	private final Map<String, byte[]> lightCache = new HashMap<>();
+	private final AtomicLong missingHitCount = new AtomicLong(0);
 
-	private final Map<Integer, int[]> lookupKeys = new HashMap<>();
+	private long indexTime = 0;
 
 	public InstrumentationClassManager(COASTAL coastal, String classPath) {
+		this(coastal, classPath, null);
+	}
+
+	/**
+	 * Construct a class manager that shares instrumented classes with other
+	 * analysis runs.
+	 * 
+	 * @param coastal
+	 *                    instance of COASTAL
+	 * @param classPath
+	 *                    the class path to search for classes
+	 * @param sharedCache
+	 *                    the cache of instrumented classes, or {@code null} if
+	 *                    classes are not shared
+	 */
+	public InstrumentationClassManager(COASTAL coastal, String classPath, InstrumentationCache sharedCache) {
 		this.coastal = coastal;
 		log = coastal.getLog();
+		this.sharedCache = addCacheDirectory(coastal.getConfig(), sharedCache);
+		instrumentationSettings = getInstrumentationSettings(coastal.getConfig());
 		broker = coastal.getBroker();
 		broker.subscribe("coastal-stop", this::report);
+		broker.subscribe("coastal-stop", this::closeJars);
 		showInstrumentation = coastal.getConfig().getBoolean("coastal.settings.show-instrumentation", false);
+		reuseClasses = coastal.getConfig().getBoolean("coastal.settings.reuse-classes", false);
+		String profile = coastal.getConfig().getString("coastal.settings.surfer-instrumentation", "full");
+		edgeCoverage = profile.trim().equals("edges");
+		selectiveInstrumentation = useSelectiveInstrumentation(coastal.getConfig());
 		// showClassList = coastal.getConfig().getBoolean("coastal.settings.show-classlist", false);
 		// Check the directory
 		String wcf = coastal.getConfig().getString("coastal.settings.write-classfile", null);
@@ -123,6 +238,11 @@ public class InstrumentationClassManager {
 			classPaths.add(path);
 		}
 		classPaths.add(".");
+		parseJars();
+		buildIndex();
+	}
+
+	private void parseJars() {
 		String jarString = coastal.getConfig().getString("coastal.target.jars", "").trim();
 		if (jarString.length() == 0) {
 			return;
@@ -149,6 +269,83 @@ public class InstrumentationClassManager {
 		return classPaths;
 	}
 
+	/**
+	 * Store instrumented classes in the directory named by
+	 * {@code coastal.settings.instrumentation-cache.directory}, if it is set.
+	 * If no shared cache is given, a new cache is created for the directory.
+	 * 
+	 * @param config
+	 *                    the configuration
+	 * @param sharedCache
+	 *                    the cache of instrumented classes, or {@code null}
+	 * @return the cache to use, or {@code null} if classes are not cached
+	 */
+	private InstrumentationCache addCacheDirectory(Configuration config, InstrumentationCache sharedCache) {
+		String dir = config.getString("coastal.settings.instrumentation-cache.directory", "").trim();
+		if (dir.isEmpty()) {
+			return sharedCache;
+		}
+		long size = config.getLong("coastal.settings.instrumentation-cache.size", 256, 1, Long.MAX_VALUE / 1048576);
+		InstrumentationCache cache = (sharedCache == null) ? new InstrumentationCache() : sharedCache;
+		if (!cache.useDirectory(new File(dir), size * 1048576)) {
+			Banner bn = new Banner('@');
+			bn.println("WARNING:\n");
+			bn.println("coastal.settings.instrumentation-cache.directory cannot be used: " + dir);
+			bn.display(log);
+		}
+		return cache;
+	}
+
+	/**
+	 * Return whether heavy instrumentation should be restricted to the
+	 * instructions selected by the taint analysis. Skipping instructions that
+	 * only compute concrete values removes constant branches from the paths of
+	 * divers, so this is not possible if surfers add their paths to the same
+	 * path tree, or if constant branches or all instructions must be tracked.
+	 * 
+	 * @param config
+	 *               the configuration
+	 * @return {@code true} if and only if instrumentation is selective
+	 */
+	private boolean useSelectiveInstrumentation(Configuration config) {
+		if (!config.getBoolean("coastal.settings.selective-instrumentation", false)) {
+			return false;
+		}
+		if ((config.getInt("coastal.surfer.threads", 0) > 0)
+				|| !config.getBoolean("coastal.settings.constant-elimination", true)
+				|| config.getBoolean("coastal.settings.trace-all", false)) {
+			Banner bn = new Banner('@');
+			bn.println("WARNING:\n");
+			bn.println("coastal.settings.selective-instrumentation is ignored when surfers are used,");
+			bn.println("constant elimination is switched off, or all instructions are traced");
+			bn.display(log);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Return the configuration settings that influence instrumentation: the
+	 * version of COASTAL, the target, the delegates, and the settings read by
+	 * the adapters.
+	 * 
+	 * @param config
+	 *               the configuration
+	 * @return the settings as a string of key-value pairs
+	 */
+	private static String getInstrumentationSettings(Configuration config) {
+		StringBuilder settings = new StringBuilder();
+		settings.append("version=").append(COASTAL.VERSION).append('\n');
+		for (String key : config.getKeys()) {
+			if (key.startsWith("coastal.target.") || key.startsWith("coastal.delegates.")
+					|| key.equals("coastal.settings.concrete-values") || key.equals("coastal.settings.reuse-classes")
+					|| key.equals("coastal.settings.surfer-instrumentation")) {
+				settings.append(key).append('=').append(config.getString(key)).append('\n');
+			}
+		}
+		return settings.toString();
+	}
+
 	private void parseJar(String prefix) {
 		String jar = coastal.getConfig().getString(prefix);
 		if (jar == null) {
@@ -158,12 +355,234 @@ public class InstrumentationClassManager {
 		jars.put(jar, dir);
 	}
 
+	/**
+	 * Index the files in the target jars. If a directory is given for a jar,
+	 * only the files inside that directory are indexed, under their names
+	 * relative to it. If several jars contain the same file, the first one is
+	 * used.
+	 */
+	private void buildIndex() {
+		long t = System.currentTimeMillis();
+		for (Map.Entry<String, String> jar : jars.entrySet()) {
+			ZipFile zipFile = openJar(jar.getKey());
+			if (zipFile == null) {
+				continue;
+			}
+			String prefix = jar.getValue();
+			if ((prefix != null) && !prefix.endsWith("/")) {
+				prefix += "/";
+			}
+			Enumeration<? extends ZipEntry> entries = zipFile.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				if (entry.isDirectory()) {
+					continue;
+				}
+				String name = entry.getName();
+				String filename = name;
+				if (prefix != null) {
+					if (!name.startsWith(prefix)) {
+						continue;
+					}
+					filename = name.substring(prefix.length());
+				}
+				jarIndex.putIfAbsent(filename, new String[] { jar.getKey(), name });
+			}
+		}
+		indexTime = System.currentTimeMillis() - t;
+		log.trace("indexed {} files in {} target jars in {} ms", jarIndex.size(), jars.size(), indexTime);
+	}
+
+	/**
+	 * Return the opened jar file with the given name, opening it if necessary.
+	 * 
+	 * @param jarFilename
+	 *                    the name of the jar file
+	 * @return the jar file, or {@code null} if it cannot be opened
+	 */
+	private ZipFile openJar(String jarFilename) {
+		ZipFile zipFile = openJars.get(jarFilename);
+		if (zipFile == null) {
+			try {
+				zipFile = new ZipFile(jarFilename);
+			} catch (IOException x) {
+				return null;
+			}
+			ZipFile other = openJars.putIfAbsent(jarFilename, zipFile);
+			if (other != null) {
+				try {
+					zipFile.close();
+				} catch (IOException x) {
+					// ignore
+				}
+				zipFile = other;
+			}
+		}
+		return zipFile;
+	}
+
+	/**
+	 * Close the jar files opened during the analysis run.
+	 * 
+	 * @param object
+	 *               ignored
+	 */
+	private void closeJars(Object object) {
+		for (String jarFilename : new ArrayList<>(openJars.keySet())) {
+			ZipFile zipFile = openJars.remove(jarFilename);
+			try {
+				zipFile.close();
+			} catch (IOException x) {
+				// ignore
+			}
+		}
+	}
+
 	public ClassLoader createHeavyClassLoader(SymbolicState symbolicState) {
 		ClassLoader classLoader = new HeavyClassLoader(coastal, this, symbolicState);
 		symbolicState.setClassLoader(classLoader);
 		return classLoader;
 	}
 
+	/**
+	 * Prepare a heavy class loader created by an earlier call to
+	 * {@link #createHeavyClassLoader(SymbolicState)} for a new run. The classes
+	 * that the loader has already defined are kept, and their static fields are
+	 * re-initialized. If the re-initialization fails, a new class loader is
+	 * returned instead.
+	 * 
+	 * @param classLoader
+	 *                      the class loader to reuse
+	 * @param symbolicState
+	 *                      the symbolic state for the new run
+	 * @return the class loader to use for the new run
+	 */
+	public ClassLoader reuseHeavyClassLoader(ClassLoader classLoader, SymbolicState symbolicState) {
+		if (!((HeavyClassLoader) classLoader).reset(symbolicState)) {
+			return createHeavyClassLoader(symbolicState);
+		}
+		symbolicState.setClassLoader(classLoader);
+		return classLoader;
+	}
+
+	/**
+	 * Return whether divers should reuse their heavy class loaders from one run to
+	 * the next.
+	 * 
+	 * @return {@code true} if and only if heavy class loaders are reused
+	 */
+	public boolean isReuseClasses() {
+		return reuseClasses;
+	}
+
+	/**
+	 * Instrument all target classes before the first run. The original
+	 * bytecode of the classes is fetched in parallel on the common fork-join
+	 * pool. The classes are then instrumented one at a time in the order of
+	 * their names, because instrumentation numbers instructions and methods
+	 * consecutively; this also keeps the numbering the same from one analysis
+	 * run to the next, so that the shared cache can be used.
+	 * 
+	 * @param heavy
+	 *              whether to instrument the classes for divers
+	 * @param light
+	 *              whether to instrument the classes for surfers
+	 */
+	public void preInstrument(boolean heavy, boolean light) {
+		long t = System.currentTimeMillis();
+		List<String> names = findTargetClasses();
+		for (String name : names) {
+			String filename = name.replace('.', '/').concat(".class");
+			prefetched.put(filename, CompletableFuture.supplyAsync(() -> loadFile(filename, true, true)));
+		}
+		ClassLoader classLoader = heavy ? createHeavyClassLoader(new SymbolicState(coastal, null)) : null;
+		for (String name : names) {
+			try {
+				if (heavy) {
+					loadHeavyInstrumented(classLoader, name);
+				}
+				if (light) {
+					loadLightInstrumented(name);
+				}
+			} catch (RuntimeException | LinkageError x) {
+				log.trace("could not pre-instrument {}", name, x);
+			}
+		}
+		prefetched.clear();
+		preInstrumentedCount = names.size();
+		preInstrumentTime = System.currentTimeMillis() - t;
+		log.trace("pre-instrumented {} classes in {} ms", preInstrumentedCount, preInstrumentTime);
+	}
+
+	/**
+	 * Return the names of all target classes in the directories of the class
+	 * path and in the target jars. Only the package directories named by
+	 * {@code coastal.target.instrument} are searched.
+	 * 
+	 * @return the sorted names of the target classes
+	 */
+	private List<String> findTargetClasses() {
+		Set<String> names = new HashSet<>();
+		for (String filename : jarIndex.keySet()) {
+			addTargetClass(names, filename);
+		}
+		String[] instrumented = coastal.getConfig().getString("coastal.target.instrument", "").split(",");
+		for (String instr : instrumented) {
+			String instrument = instr.trim();
+			if (instrument.isEmpty()) {
+				continue;
+			}
+			boolean recursive = !instrument.equals("*.*") && instrument.endsWith("*");
+			int dot = instrument.lastIndexOf('.');
+			String packagePath = (dot == -1) ? "" : instrument.substring(0, dot).replace('.', '/');
+			for (String classPath : classPaths) {
+				File dir = new File(classPath, packagePath);
+				if (dir.isDirectory()) {
+					addTargetClasses(names, dir, packagePath.isEmpty() ? "" : packagePath + "/", recursive);
+				}
+			}
+		}
+		List<String> sortedNames = new ArrayList<>(names);
+		Collections.sort(sortedNames);
+		return sortedNames;
+	}
+
+	private void addTargetClasses(Set<String> names, File dir, String path, boolean recursive) {
+		File[] files = dir.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File file : files) {
+			if (file.isDirectory()) {
+				if (recursive) {
+					addTargetClasses(names, file, path + file.getName() + "/", true);
+				}
+			} else {
+				addTargetClass(names, path + file.getName());
+			}
+		}
+	}
+
+	private void addTargetClass(Set<String> names, String filename) {
+		if (filename.endsWith(".class")) {
+			String name = filename.substring(0, filename.length() - 6).replace('/', '.');
+			if (coastal.isTarget(name)) {
+				names.add(name);
+			}
+		}
+	}
+
+	/**
+	 * Return whether light instrumentation only records edge coverage. Such
+	 * instrumentation updates a map of edge hits directly and calls the trace
+	 * state only on entry to and exit from trigger methods.
+	 * 
+	 * @return {@code true} if and only if surfers use edge coverage
+	 */
+	public boolean isEdgeCoverage() {
+		return edgeCoverage;
+	}
+
 	public ClassLoader createLightClassLoader(TraceState traceState) {
 		return new LightClassLoader(coastal, this, traceState);
 	}
@@ -178,23 +597,86 @@ public class InstrumentationClassManager {
 
 	public byte[] loadUninstrumented(String name) {
 		long t = System.currentTimeMillis();
-		byte[] unInstrumented = clearCache.get(name);
-		if (unInstrumented == null) {
-			unInstrumented = loadUninstrumented0(name);
-		} else {
-			cacheHitCount.incrementAndGet();
-		}
+		byte[] unInstrumented = load(clearCache, name, false,
+				() -> loadFile(name.replace('.', '/').concat(".class"), false, false));
 		uninstrumentedTime.addAndGet(System.currentTimeMillis() - t);
 		return unInstrumented;
 	}
 
-	private synchronized byte[] loadUninstrumented0(String name) {
-		byte[] unInstrumented = clearCache.get(name);
-		if (unInstrumented == null) {
-			unInstrumented = loadFile(name.replace('.', '/').concat(".class"), false, false);
-			clearCache.put(name, unInstrumented);
+	/**
+	 * Return the bytecode of a class from one of the caches, or produce it if
+	 * the class is requested for the first time. A thread that requests a class
+	 * while another thread produces it waits for that class only.
+	 * 
+	 * Instrumentation numbers the instructions and methods of all classes
+	 * consecutively, so only one class is instrumented at a time. When an
+	 * exclusive request finds that the class is still being produced by the
+	 * current thread, the class is produced again without the cache, as happens
+	 * when computing the stack map frames of a class loads the class itself.
+	 * 
+	 * @param cache
+	 *                  the cache to use
+	 * @param name
+	 *                  the name of the class
+	 * @param exclusive
+	 *                  whether the bytecode is produced while holding the lock
+	 *                  of this manager
+	 * @param producer
+	 *                  produces the bytecode of the class
+	 * @return the bytecode or {@code null} if the class was not found
+	 */
+	private byte[] load(Map<String, CompletableFuture<byte[]>> cache, String name, boolean exclusive,
+			Supplier<byte[]> producer) {
+		CompletableFuture<byte[]> future = cache.get(name);
+		if (future == null) {
+			if (!exclusive) {
+				return produce(cache, name, false, producer);
+			}
+			synchronized (this) {
+				return produce(cache, name, true, producer);
+			}
 		}
-		return unInstrumented;
+		if (exclusive && !future.isDone() && Thread.holdsLock(this)) {
+			return producer.get();
+		}
+		cacheHitCount.incrementAndGet();
+		return future.join();
+	}
+
+	private byte[] produce(Map<String, CompletableFuture<byte[]>> cache, String name, boolean exclusive,
+			Supplier<byte[]> producer) {
+		CompletableFuture<byte[]> future = new CompletableFuture<>();
+		CompletableFuture<byte[]> other = cache.putIfAbsent(name, future);
+		if (other != null) {
+			if (exclusive && !other.isDone()) {
+				return producer.get();
+			}
+			cacheHitCount.incrementAndGet();
+			return other.join();
+		}
+		try {
+			byte[] bytecode = producer.get();
+			future.complete(bytecode);
+			return bytecode;
+		} catch (RuntimeException | Error x) {
+			cache.remove(name, future);
+			future.completeExceptionally(x);
+			throw x;
+		}
+	}
+
+	/**
+	 * Return the original bytecode of a class that is about to be instrumented.
+	 * During pre-instrumentation, the bytecode has been fetched in advance.
+	 * 
+	 * @param name
+	 *             the name of the class
+	 * @return the bytecode or {@code null} if the class was not found
+	 */
+	private byte[] loadOriginal(String name) {
+		String filename = name.replace('.', '/').concat(".class");
+		CompletableFuture<byte[]> future = prefetched.get(filename);
+		return (future != null) ? future.join() : loadFile(filename, true, true);
 	}
 
 	/*
@@ -215,25 +697,66 @@ public class InstrumentationClassManager {
 	 * typeName; } }
 	 */
 
-	public byte[] loadHeavyInstrumented(ClassLoader classLoader, String name) {
+	/**
+	 * Analyze all target classes to select the instructions that heavy
+	 * instrumentation instruments, if selective instrumentation is switched on
+	 * and the analysis has not been performed yet. Must be called while holding
+	 * the lock of this manager.
+	 */
+	private void analyzeTaint() {
+		if (!selectiveInstrumentation || (taintAnalysis != null)) {
+			return;
+		}
 		long t = System.currentTimeMillis();
-		byte[] instrumented = heavyCache.get(name);
-		if (instrumented == null) {
-			instrumented = loadHeavyInstrumented0(classLoader, name);
-		} else {
-			cacheHitCount.incrementAndGet();
+		taintAnalysis = new TaintAnalysis(coastal);
+		for (String name : findTargetClasses()) {
+			byte[] bytecode = loadOriginal(name);
+			if (bytecode != null) {
+				taintAnalysis.addClass(bytecode);
+			}
+		}
+		if (!taintAnalysis.analyze()) {
+			Banner bn = new Banner('@');
+			bn.println("WARNING:\n");
+			bn.println("taint analysis failed, all instructions are instrumented");
+			bn.display(log);
 		}
+		taintAnalysisTime = System.currentTimeMillis() - t;
+	}
+
+	/**
+	 * Return the instructions of a method that heavy instrumentation
+	 * instruments.
+	 * 
+	 * @param className
+	 *                   the name of the class
+	 * @param methodName
+	 *                   the name of the method
+	 * @param descriptor
+	 *                   the descriptor of the method
+	 * @return the selected instructions, or {@code null} if all instructions
+	 *         are instrumented
+	 */
+	public TaintAnalysis.Selection getSelection(String className, String methodName, String descriptor) {
+		return (taintAnalysis == null) ? null : taintAnalysis.getSelection(className, methodName, descriptor);
+	}
+
+	public byte[] loadHeavyInstrumented(ClassLoader classLoader, String name) {
+		long t = System.currentTimeMillis();
+		byte[] instrumented = load(heavyCache, name, true, () -> loadHeavyInstrumented0(classLoader, name));
 		instrumentedTime.addAndGet(System.currentTimeMillis() - t);
 		return instrumented;
 	}
 
-	private synchronized byte[] loadHeavyInstrumented0(ClassLoader classLoader, String name) {
-		byte[] instrumented = heavyCache.get(name);
-		if (instrumented == null) {
-			byte[] in = loadFile(name.replace('.', '/').concat(".class"), true, true);
-			if (in == null) {
-				return null;
-			}
+	private byte[] loadHeavyInstrumented0(ClassLoader classLoader, String name) {
+		byte[] in = loadOriginal(name);
+		if (in == null) {
+			return null;
+		}
+		analyzeTaint();
+		String fingerprint = (taintAnalysis == null) ? null : taintAnalysis.getFingerprint(name);
+		String kind = (fingerprint == null) ? "heavy" : "heavy-selective " + fingerprint;
+		byte[] instrumented = instrument(kind, in, () -> {
 			ClassReader cr = new ClassReader(in);
 			ClassWriter cw = new ClassWriter(cr, ClassWriter.COMPUTE_FRAMES) {
 
@@ -242,63 +765,58 @@ public class InstrumentationClassManager {
 					return classLoader;
 				}
 			};
-			HeavyAdapter ia = new HeavyAdapter(coastal, name, cw);
+			HeavyAdapter ia = new HeavyAdapter(coastal, name, reuseClasses ? new ReinitAdapter(cw, in) : cw);
 			cr.accept(ia, 0);
-			instrumented = cw.toByteArray();
-			instrumentedCount.incrementAndGet();
-			preInstrumentedSize.addAndGet(in.length);
-			postInstrumentedSize.addAndGet(instrumented.length);
-			log.trace("instrumented {}: {} -> {} bytes", name, in.length, instrumented.length);
-			if (writeClassfile != null) {
-				writeFile(writeClassfile, name, instrumented);
-			}
 			if (showInstrumentation) {
 				ia.showInstrumentation();
 			}
-			heavyCache.put(name, instrumented);
+			return cw.toByteArray();
+		});
+		instrumentedCount.incrementAndGet();
+		preInstrumentedSize.addAndGet(in.length);
+		postInstrumentedSize.addAndGet(instrumented.length);
+		log.trace("instrumented {}: {} -> {} bytes", name, in.length, instrumented.length);
+		if (writeClassfile != null) {
+			writeFile(writeClassfile, name, instrumented);
 		}
 		return instrumented;
 	}
 
 	public byte[] loadHeavyInstrumented(String name, String trueName) {
 		long t = System.currentTimeMillis();
-		byte[] instrumented = heavyCache.get(name);
-		if (instrumented == null) {
-			instrumented = loadHeavyInstrumented0(name, trueName);
-		} else {
-			cacheHitCount.incrementAndGet();
-		}
+		byte[] instrumented = load(heavyCache, name, true, () -> loadHeavyInstrumented0(name, trueName));
 		instrumentedTime.addAndGet(System.currentTimeMillis() - t);
 		return instrumented;
 	}
 
-	private synchronized byte[] loadHeavyInstrumented0(String name, String trueName) {
-		byte[] instrumented = heavyCache.get(name);
-		if (instrumented == null) {
-			byte[] in = loadFile(trueName.replace('.', '/').concat(".class"), true, true);
-			if (in == null) {
-				return null;
-			}
+	private byte[] loadHeavyInstrumented0(String name, String trueName) {
+		byte[] in = loadOriginal(trueName);
+		if (in == null) {
+			return null;
+		}
+		byte[] instrumented = instrument("heavy-prefixed", in, () -> {
 			try {
 				ClassReader cr = new PrefixingClassReader(in, coastal);
 				ClassWriter cw = new ClassWriter(cr, ClassWriter.COMPUTE_FRAMES);
 				HeavyAdapter ia = new HeavyAdapter(coastal, trueName, cw);
 				cr.accept(ia, 0);
-				instrumented = cw.toByteArray();
-				instrumentedCount.incrementAndGet();
-				preInstrumentedSize.addAndGet(in.length);
-				postInstrumentedSize.addAndGet(instrumented.length);
-				log.trace("instrumented {}: {} -> {} bytes", trueName, in.length, instrumented.length);
-				if (writeClassfile != null) {
-					writeFile(writeClassfile, name, instrumented);
-				}
 				if (showInstrumentation) {
 					ia.showInstrumentation();
 				}
+				return cw.toByteArray();
 			} catch (IOException e) {
 				e.printStackTrace();
+				return null;
+			}
+		});
+		if (instrumented != null) {
+			instrumentedCount.incrementAndGet();
+			preInstrumentedSize.addAndGet(in.length);
+			postInstrumentedSize.addAndGet(instrumented.length);
+			log.trace("instrumented {}: {} -> {} bytes", trueName, in.length, instrumented.length);
+			if (writeClassfile != null) {
+				writeFile(writeClassfile, name, instrumented);
 			}
-			heavyCache.put(name, instrumented);
 		}
 		return instrumented;
 	}
@@ -331,43 +849,92 @@ public class InstrumentationClassManager {
 
 	public byte[] loadLightInstrumented(String name) {
 		long t = System.currentTimeMillis();
-		byte[] instrumented = lightCache.get(name);
-		if (instrumented == null) {
-			instrumented = loadLightInstrumented0(name);
-			lightCache.put(name, instrumented);
-		} else {
-			cacheHitCount.incrementAndGet();
-		}
+		byte[] instrumented = load(lightCache, name, true, () -> loadLightInstrumented0(name));
 		instrumentedTime.addAndGet(System.currentTimeMillis() - t);
 		return instrumented;
 	}
 
-	private synchronized byte[] loadLightInstrumented0(String name) {
-		byte[] instrumented = lightCache.get(name);
-		if (instrumented == null) {
-			byte[] in = loadFile(name.replace('.', '/').concat(".class"), true, true);
-			if (in == null) {
-				return null;
-			}
+	private byte[] loadLightInstrumented0(String name) {
+		byte[] in = loadOriginal(name);
+		if (in == null) {
+			return null;
+		}
+		byte[] instrumented = instrument("light", in, () -> {
 			ClassReader cr = new ClassReader(in);
 			ClassWriter cw = new ClassWriter(cr, ClassWriter.COMPUTE_FRAMES);
 			LightAdapter ia = new LightAdapter(coastal, name, cw);
 			cr.accept(ia, 0);
-			instrumented = cw.toByteArray();
-			instrumentedCount.incrementAndGet();
-			preInstrumentedSize.addAndGet(in.length);
-			postInstrumentedSize.addAndGet(instrumented.length);
-			log.trace("instrumented {}: {} -> {} bytes", name, in.length, instrumented.length);
-			if (writeClassfile != null) {
-				writeFile(writeClassfile, name, instrumented);
-			}
 			if (showInstrumentation) {
 				ia.showInstrumentation();
 			}
+			return cw.toByteArray();
+		});
+		instrumentedCount.incrementAndGet();
+		preInstrumentedSize.addAndGet(in.length);
+		postInstrumentedSize.addAndGet(instrumented.length);
+		log.trace("instrumented {}: {} -> {} bytes", name, in.length, instrumented.length);
+		if (writeClassfile != null) {
+			writeFile(writeClassfile, name, instrumented);
 		}
 		return instrumented;
 	}
 
+	/**
+	 * Instrument a class, or take the instrumented class from the shared cache
+	 * if another run has already instrumented the same bytecode in the same way.
+	 * When the class is taken from the cache, the side effects of instrumentation
+	 * on the counters and the method information of this manager are replayed.
+	 * A class is only added to the cache if no other class was instrumented
+	 * while it was instrumented, so that its side effects are its own. Must be
+	 * called while holding the lock of this manager.
+	 * 
+	 * @param kind
+	 *                     the kind of instrumentation
+	 * @param in
+	 *                     the original bytecode
+	 * @param instrumenter
+	 *                     instruments the original bytecode
+	 * @return the instrumented bytecode
+	 */
+	private byte[] instrument(String kind, byte[] in, Supplier<byte[]> instrumenter) {
+		if (sharedCache == null) {
+			return instrumenter.get();
+		}
+		int[] counters = { instructionCounter, methodCounter, newVariableCounter };
+		String key = InstrumentationCache.computeKey(kind, instrumentationSettings, counters, in);
+		InstrumentationCache.Entry entry = sharedCache.get(key);
+		instrumentSequence++;
+		if (entry != null) {
+			instructionCounter = entry.getCounters()[0];
+			methodCounter = entry.getCounters()[1];
+			newVariableCounter = entry.getCounters()[2];
+			firstInstruction.putAll(entry.getFirstInstructions());
+			lastInstruction.putAll(entry.getLastInstructions());
+			for (Map.Entry<Integer, BitSet> lines : entry.getLineNumbers().entrySet()) {
+				linenumbers.put(lines.getKey(), (BitSet) lines.getValue().clone());
+			}
+			lookupKeys.putAll(entry.getLookupKeys());
+			sharedHitCount.incrementAndGet();
+			return entry.getBytecode();
+		}
+		int sequence = instrumentSequence;
+		byte[] out = instrumenter.get();
+		if ((out != null) && (instrumentSequence == sequence)) {
+			Map<Integer, int[]> keys = new HashMap<>();
+			for (Map.Entry<Integer, int[]> lookup : lookupKeys.entrySet()) {
+				if ((lookup.getKey() > counters[0]) && (lookup.getKey() <= instructionCounter)) {
+					keys.put(lookup.getKey(), lookup.getValue());
+				}
+			}
+			int[] newCounters = { instructionCounter, methodCounter, newVariableCounter };
+			int from = counters[1] + 1, to = methodCounter + 1;
+			sharedCache.put(key, new InstrumentationCache.Entry(out, newCounters,
+					firstInstruction.subMap(from, to), lastInstruction.subMap(from, to),
+					linenumbers.subMap(from, to), keys));
+		}
+		return out;
+	}
+
 	public synchronized void writeFile(String directory, String filename, byte[] contents) {
 		File file = new File(directory + File.separator + filename.replaceAll("\\.", "/") + ".class");
 		log.trace("~ writing classfile: {}", file.getPath());
@@ -391,61 +958,87 @@ public class InstrumentationClassManager {
 		}
 	}
 
+	/**
+	 * Load the contents of a file from the class path, from the resources, or
+	 * from the target jars. Failed lookups are remembered, so that files that
+	 * do not exist are only searched for once.
+	 * 
+	 * @param filename
+	 *                    the name of the file
+	 * @param tryResource
+	 *                    whether to search the resources
+	 * @param tryJar
+	 *                    whether to search the target jars
+	 * @return the contents of the file, or {@code null} if it is not found
+	 */
 	private byte[] loadFile(String filename, boolean tryResource, boolean tryJar) {
+		lookupCount.incrementAndGet();
+		String lookup = filename + (tryResource ? "+r" : "") + (tryJar ? "+j" : "");
+		if (missingFiles.contains(lookup)) {
+			missingHitCount.incrementAndGet();
+			return null;
+		}
+		byte[] out = null;
 		InputStream in = searchFor(filename, tryResource);
 		if (in != null) {
-			try {
-				return IOUtils.toByteArray(in);
+			try (InputStream in0 = in) {
+				out = IOUtils.toByteArray(in0);
 			} catch (IOException x) {
 				// ignore
 			}
 		} else if (tryJar) {
-			for (Map.Entry<String, String> entry : jars.entrySet()) {
-				in = searchFor(entry.getKey(), tryResource);
-				if (in == null) {
-					continue;
-				}
-				String fullFilename = entry.getValue();
-				if (fullFilename != null) {
-					if (fullFilename.endsWith("/")) {
-						fullFilename += filename;
-					} else {
-						fullFilename += "/" + filename;
-					}
-				} else {
-					fullFilename = filename;
-				}
-				byte[] out = loadFromJar(entry.getKey(), fullFilename);
-				if (out != null) {
-					return out;
-				}
+			String[] location = jarIndex.get(filename);
+			if (location != null) {
+				out = loadFromJar(location[0], location[1]);
 			}
 		}
-		return null;
+		if (out == null) {
+			missingFiles.add(lookup);
+		}
+		return out;
 	}
 
 	private byte[] loadFromJar(String jarFilename, String filename) {
-		try (FileInputStream in = new FileInputStream(jarFilename);
-				ZipInputStream zin = new ZipInputStream(new BufferedInputStream(in))) {
-			ZipEntry ze = zin.getNextEntry();
-			while (ze != null) {
-				if (ze.getName().equals(filename)) {
-					return IOUtils.toByteArray(zin);
+		ZipFile zipFile = openJar(jarFilename);
+		if (zipFile == null) {
+			return null;
+		}
+		try {
+			ZipEntry ze = zipFile.getEntry(filename);
+			if (ze != null) {
+				try (InputStream in = zipFile.getInputStream(ze)) {
+					return IOUtils.toByteArray(in);
 				}
-				ze = zin.getNextEntry();
 			}
-		} catch (IOException x) {
+		} catch (IOException | IllegalStateException x) {
 			// ignore
 		}
 		return null;
 	}
 
+	/**
+	 * Return whether a file exists in a directory, according to the index of
+	 * that directory.
+	 * 
+	 * @param file
+	 *             the file to look for
+	 * @return {@code true} if and only if the file exists
+	 */
+	private boolean isIndexed(File file) {
+		File dir = file.getParentFile();
+		Set<String> names = directoryIndex.computeIfAbsent(dir, d -> {
+			String[] list = d.list();
+			return (list == null) ? Collections.emptySet() : new HashSet<>(Arrays.asList(list));
+		});
+		return names.contains(file.getName()) && file.isFile();
+	}
+
 	private InputStream searchFor(String filename, boolean tryResource) {
 		for (String classPath : classPaths) {
 			File classPathFile = new File(classPath);
 			if (classPathFile.isDirectory()) {
 				File file = new File(classPathFile, filename);
-				if (file.isFile()) {
+				if (isIndexed(file)) {
 					try {
 						FileInputStream in = new FileInputStream(file);
 						if (in != null) {
@@ -456,7 +1049,7 @@ public class InstrumentationClassManager {
 						// ignore
 					}
 				}
-			} else if (classPathFile.isFile() && classPath.endsWith(".jar") && classPath.contains("coastal")) {
+			} else if (classPath.endsWith(".jar") && classPath.contains("coastal") && classPathFile.isFile()) {
 				byte[] out = loadFromJar(classPath, filename);
 				if (out != null) {
 					log.trace("file {} found in jar-file {}", filename, classPath);
@@ -480,11 +1073,37 @@ public class InstrumentationClassManager {
 		broker.publish("report", new FreqTuple("Instrumentation.requests-count", requestCount.get()));
 		broker.publish("report", new FreqTuple("Instrumentation.cache-hit-count", cacheHitCount.get()));
 		broker.publish("report", new FreqTuple("Instrumentation.instrumented-count", instrumentedCount.get()));
+		if (sharedCache != null) {
+			broker.publish("report", new Tuple("Instrumentation.shared-cache-hits", sharedHitCount.get()));
+			if (sharedCache.getDirectory() != null) {
+				broker.publish("report", new Tuple("Instrumentation.disk-cache-hits", sharedCache.getDiskHitCount()));
+				broker.publish("report", new Tuple("Instrumentation.disk-cache-writes", sharedCache.getDiskWriteCount()));
+				broker.publish("report", new Tuple("Instrumentation.disk-cache-evictions", sharedCache.getEvictedCount()));
+			}
+		}
 		broker.publish("report", new Tuple("Instrumentation.pre-instrumented-size", preInstrumentedSize.get()));
 		broker.publish("report", new Tuple("Instrumentation.post-instrumented-size", postInstrumentedSize.get()));
 		broker.publish("report", new TimeTuple("Instrumentation.load-time", loadTime.get()));
 		broker.publish("report", new TimeTuple("Instrumentation.instrumented-time", instrumentedTime.get()));
 		broker.publish("report", new TimeTuple("Instrumentation.uninstrumented-time", uninstrumentedTime.get()));
+		broker.publish("report", new TimeTuple("Instrumentation.index-build-time", indexTime));
+		if (preInstrumentedCount > 0) {
+			broker.publish("report", new Tuple("Instrumentation.pre-instrumented-count", preInstrumentedCount));
+			broker.publish("report", new TimeTuple("Instrumentation.pre-instrument-time", preInstrumentTime));
+		}
+		if (taintAnalysis != null) {
+			int count = taintAnalysis.getInstructionCount();
+			int skipped = taintAnalysis.getSkippedCount();
+			double percentage = (count == 0) ? 0 : skipped * 100.0 / count;
+			broker.publish("report", new Tuple("Instrumentation.analyzed-instruction-count", count));
+			broker.publish("report", new Tuple("Instrumentation.skipped-instruction-count", skipped));
+			broker.publish("report", new Tuple("Instrumentation.skipped-instruction-percentage", percentage));
+			broker.publish("report", new TimeTuple("Instrumentation.taint-analysis-time", taintAnalysisTime));
+		}
+		broker.publish("report", new Tuple("Instrumentation.indexed-jar-files", jarIndex.size()));
+		broker.publish("report", new Tuple("Instrumentation.indexed-directories", directoryIndex.size()));
+		broker.publish("report", new Tuple("Instrumentation.lookup-count", lookupCount.get()));
+		broker.publish("report", new Tuple("Instrumentation.missing-lookup-hits", missingHitCount.get()));
 	}
 
 	public synchronized int addLookupKeys(int id, int[] keys) {
@@ -504,11 +1123,11 @@ public class InstrumentationClassManager {
 
 	private int newVariableCounter = 0;
 
-	private Map<Integer, Integer> firstInstruction = new TreeMap<>();
+	private TreeMap<Integer, Integer> firstInstruction = new TreeMap<>();
 
-	private Map<Integer, Integer> lastInstruction = new TreeMap<>();
+	private TreeMap<Integer, Integer> lastInstruction = new TreeMap<>();
 
-	private Map<Integer, BitSet> linenumbers = new TreeMap<>();
+	private TreeMap<Integer, BitSet> linenumbers = new TreeMap<>();
 
 	private Map<Integer, BitSet> branchInstructions = new TreeMap<>();
 
@@ -27,6 +27,7 @@ import org.objectweb.asm.Opcodes;
 
 import za.ac.sun.cs.coastal.COASTAL;
 import za.ac.sun.cs.coastal.Trigger;
+import za.ac.sun.cs.coastal.symbolic.State;
 
 public class LightMethodAdapter extends MethodVisitor {
 
@@ -54,6 +55,12 @@ public class LightMethodAdapter extends MethodVisitor {
 
 	private final int argCount;
 
+	/**
+	 * Whether only edge coverage is recorded, as determined by
+	 * {@link InstrumentationClassManager#isEdgeCoverage()}.
+	 */
+	private final boolean edgeCoverage;
+
 	private BitSet currentLinenumbers;
 
 	public LightMethodAdapter(COASTAL coastal, MethodVisitor cv, String filename, int triggerIndex, String name, boolean isStatic,
@@ -67,6 +74,50 @@ public class LightMethodAdapter extends MethodVisitor {
 		this.name = name;
 		this.isStatic = isStatic;
 		this.argCount = argCount;
+		this.edgeCoverage = classManager.isEdgeCoverage();
+	}
+
+	/**
+	 * Return the identifier of one outcome of a branch. Identifiers are derived
+	 * from the instruction number, rather than chosen at random, so that the
+	 * same class is always instrumented in the same way.
+	 * 
+	 * @param instr
+	 *                the number of the branch instruction
+	 * @param outcome
+	 *                0 if the branch falls through, 1 if it jumps
+	 * @return the identifier, which is an index into the edge map
+	 */
+	private static int edgeId(int instr, int outcome) {
+		int bits = Integer.numberOfTrailingZeros(State.EDGE_MAP_SIZE);
+		return ((instr * 2 + outcome) * 0x9e3779b1) >>> (32 - bits);
+	}
+
+	/**
+	 * Emit code that counts the edge from the previous branch outcome to the
+	 * given outcome in the edge map of {@code VM}:
+	 * 
+	 * <pre>
+	 * VM.edges[VM.prevBlock ^ id]++;
+	 * VM.prevBlock = id &gt;&gt; 1;
+	 * </pre>
+	 * 
+	 * @param id
+	 *           the identifier of the outcome
+	 */
+	private void visitEdge(int id) {
+		mv.visitFieldInsn(Opcodes.GETSTATIC, LIBRARY, "edges", "[B");
+		mv.visitFieldInsn(Opcodes.GETSTATIC, LIBRARY, "prevBlock", "I");
+		mv.visitLdcInsn(id);
+		mv.visitInsn(Opcodes.IXOR);
+		mv.visitInsn(Opcodes.DUP2);
+		mv.visitInsn(Opcodes.BALOAD);
+		mv.visitInsn(Opcodes.ICONST_1);
+		mv.visitInsn(Opcodes.IADD);
+		mv.visitInsn(Opcodes.I2B);
+		mv.visitInsn(Opcodes.BASTORE);
+		mv.visitLdcInsn(id >> 1);
+		mv.visitFieldInsn(Opcodes.PUTSTATIC, LIBRARY, "prevBlock", "I");
 	}
 
 	private int visitParameter(Trigger trigger, int triggerIndex, int index, int address) {
@@ -210,6 +261,11 @@ public class LightMethodAdapter extends MethodVisitor {
 	@Override
 	public void visitLineNumber(int line, Label start) {
 		log.trace("Linstrument visitLineNumber(line:{}, label:{})", line, start);
+		if (edgeCoverage) {
+			mv.visitLineNumber(line, start);
+			currentLinenumbers.set(line);
+			return;
+		}
 		mv.visitLdcInsn(classManager.getInstructionCounter());
 		mv.visitLdcInsn(line);
 		mv.visitLdcInsn(filename);
@@ -269,6 +325,8 @@ public class LightMethodAdapter extends MethodVisitor {
 			// --- }
 			mv.visitLabel(end);
 			mv.visitFrame(Opcodes.F_SAME, 0, null, 0, null);
+		} else if (edgeCoverage) {
+			classManager.getNextMethodCounter();
 		} else {
 			mv.visitLdcInsn(classManager.getNextMethodCounter());
 			mv.visitLdcInsn(name);
@@ -287,6 +345,10 @@ public class LightMethodAdapter extends MethodVisitor {
 		case Opcodes.IRETURN:
 		case Opcodes.ARETURN:
 		case Opcodes.RETURN:
+			if (edgeCoverage && (triggerIndex < 0)) {
+				classManager.getNextInstructionCounter();
+				break;
+			}
 			mv.visitLdcInsn(classManager.getNextInstructionCounter());
 			mv.visitLdcInsn(opcode);
 			mv.visitMethodInsn(Opcodes.INVOKESTATIC, LIBRARY, "insn", "(II)V", false);
@@ -319,6 +381,27 @@ public class LightMethodAdapter extends MethodVisitor {
 	@Override
 	public void visitJumpInsn(int opcode, Label label) {
 		log.trace("Linstrument visitJumpInsn(opcode:{}, label:{})", opcode, label);
+		if (edgeCoverage) {
+			int instr = classManager.getNextInstructionCounter();
+			if ((opcode == Opcodes.GOTO) || (opcode == Opcodes.JSR)) {
+				mv.visitJumpInsn(opcode, label);
+				return;
+			}
+			// --- IF (condition) GOTO taken
+			// --- edge(fall-through); GOTO next
+			// --- taken: edge(jump); GOTO label
+			// --- next:
+			Label taken = new Label();
+			Label next = new Label();
+			mv.visitJumpInsn(opcode, taken);
+			visitEdge(edgeId(instr, 0));
+			mv.visitJumpInsn(Opcodes.GOTO, next);
+			mv.visitLabel(taken);
+			visitEdge(edgeId(instr, 1));
+			mv.visitJumpInsn(Opcodes.GOTO, label);
+			mv.visitLabel(next);
+			return;
+		}
 		switch (opcode) {
 		case Opcodes.IFEQ:
 		case Opcodes.IFNE:
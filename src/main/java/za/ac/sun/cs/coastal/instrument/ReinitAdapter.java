@@ -0,0 +1,161 @@
+/*
+ * This file is part of the COASTAL tool, https://deepseaplatform.github.io/coastal/
+ *
+ * Copyright (c) 2019-2020, Computer Science, Stellenbosch University.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package za.ac.sun.cs.coastal.instrument;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Class adapter that adds a static method {@link #REINIT_METHOD} to an
+ * instrumented class. The new method first sets every static field that is not
+ * a compile-time constant to its default value (0, {@code false} or
+ * {@code null}), and then executes a copy of the <em>uninstrumented</em> static
+ * initializer of the class, if there is one. It can be invoked (reflectively)
+ * to restore the static fields of the class to their initial values. This
+ * allows a class loader to be reused for more than one run.
+ * 
+ * Because the method assigns static fields outside of {@code <clinit>}, the
+ * {@code final} modifier is removed from all static fields that are not
+ * compile-time constants. Interfaces and enumerations are left unchanged.
+ */
+public class ReinitAdapter extends ClassVisitor {
+
+	/**
+	 * Name of the method that re-initializes the static fields.
+	 */
+	public static final String REINIT_METHOD = "__coastal$clinit";
+
+	/**
+	 * The bytecode of the class before instrumentation.
+	 */
+	private final byte[] uninstrumented;
+
+	/**
+	 * Whether the class is an interface or enumeration.
+	 */
+	private boolean skip = false;
+
+	/**
+	 * The internal name of the class.
+	 */
+	private String className;
+
+	/**
+	 * The static fields that are not compile-time constants, each given as a
+	 * name and a descriptor.
+	 */
+	private final List<String[]> staticFields = new ArrayList<>();
+
+	public ReinitAdapter(ClassVisitor cv, byte[] uninstrumented) {
+		super(Opcodes.ASM7, cv);
+		this.uninstrumented = uninstrumented;
+	}
+
+	@Override
+	public void visit(int version, int access, String name, String signature, String superName,
+			String[] interfaces) {
+		skip = (access & (Opcodes.ACC_INTERFACE | Opcodes.ACC_ENUM)) != 0;
+		className = name;
+		super.visit(version, access, name, signature, superName, interfaces);
+	}
+
+	@Override
+	public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+		if (!skip && ((access & Opcodes.ACC_STATIC) != 0) && (value == null)) {
+			access &= ~Opcodes.ACC_FINAL;
+			staticFields.add(new String[] { name, descriptor });
+		}
+		return super.visitField(access, name, descriptor, signature, value);
+	}
+
+	@Override
+	public void visitEnd() {
+		if (!skip) {
+			boolean[] hasClinit = { false };
+			new ClassReader(uninstrumented).accept(new ClassVisitor(Opcodes.ASM7) {
+				@Override
+				public MethodVisitor visitMethod(int access, String name, String desc, String signature,
+						String[] exceptions) {
+					if (!name.equals("<clinit>")) {
+						return null;
+					}
+					hasClinit[0] = true;
+					MethodVisitor mv = ReinitAdapter.this.cv.visitMethod(Opcodes.ACC_STATIC | Opcodes.ACC_SYNTHETIC,
+							REINIT_METHOD, desc, signature, exceptions);
+					return new MethodVisitor(Opcodes.ASM7, mv) {
+						@Override
+						public void visitCode() {
+							super.visitCode();
+							clearStaticFields(mv);
+						}
+					};
+				}
+			}, 0);
+			if (!hasClinit[0] && !staticFields.isEmpty()) {
+				MethodVisitor mv = cv.visitMethod(Opcodes.ACC_STATIC | Opcodes.ACC_SYNTHETIC, REINIT_METHOD, "()V",
+						null, null);
+				mv.visitCode();
+				clearStaticFields(mv);
+				mv.visitInsn(Opcodes.RETURN);
+				mv.visitMaxs(0, 0);
+				mv.visitEnd();
+			}
+		}
+		super.visitEnd();
+	}
+
+	/**
+	 * Emit instructions that set all the static fields in {@link #staticFields}
+	 * to their default values.
+	 * 
+	 * @param mv
+	 *           the visitor of the re-initialization method
+	 */
+	private void clearStaticFields(MethodVisitor mv) {
+		for (String[] field : staticFields) {
+			switch (Type.getType(field[1]).getSort()) {
+			case Type.LONG:
+				mv.visitInsn(Opcodes.LCONST_0);
+				break;
+			case Type.FLOAT:
+				mv.visitInsn(Opcodes.FCONST_0);
+				break;
+			case Type.DOUBLE:
+				mv.visitInsn(Opcodes.DCONST_0);
+				break;
+			case Type.ARRAY:
+			case Type.OBJECT:
+				mv.visitInsn(Opcodes.ACONST_NULL);
+				break;
+			default:
+				mv.visitInsn(Opcodes.ICONST_0);
+				break;
+			}
+			mv.visitFieldInsn(Opcodes.PUTSTATIC, className, field[0], field[1]);
+		}
+	}
+
+}
@@ -0,0 +1,886 @@
+/*
+ * This file is part of the COASTAL tool, https://deepseaplatform.github.io/coastal/
+ *
+ * Copyright (c) 2019-2020, Computer Science, Stellenbosch University.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package za.ac.sun.cs.coastal.instrument;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.logging.log4j.Logger;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.InvokeDynamicInsnNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.Frame;
+import org.objectweb.asm.tree.analysis.Interpreter;
+import org.objectweb.asm.tree.analysis.Value;
+
+import za.ac.sun.cs.coastal.COASTAL;
+import za.ac.sun.cs.coastal.Trigger;
+
+/**
+ * A static analysis of the target classes that determines which instructions
+ * can touch values derived from the symbolic parameters of triggers or from
+ * symbolic variables created by the program. Heavy instrumentation only adds
+ * symbolic callbacks to those instructions, and leaves the rest of the code
+ * as it is.
+ * 
+ * The analysis first propagates taint through all methods until it reaches a
+ * fixed point. Methods are summarized by name and descriptor, so that all
+ * methods a call may dispatch to share the same summary. Taint stored in a
+ * field is remembered per field name, taint stored in an array per kind of
+ * array, and taint passed to a delegate per delegated class.
+ * 
+ * Divers keep a shadow operand stack and shadow local variables for each
+ * method, and the instrumented instructions must keep them consistent: a
+ * value pushed by an instrumented instruction must be popped by an
+ * instrumented instruction and vice versa, and a local variable loaded by an
+ * instrumented instruction must be stored by instrumented instructions.
+ * Starting from the tainted instructions, the set of instrumented instructions
+ * is closed under these dependencies. Only methods that create or receive
+ * symbolic values, and the methods that call them, are entered symbolically;
+ * all other methods receive no callbacks at all.
+ */
+public class TaintAnalysis {
+
+	private static final String SYMBOLIC = "za/ac/sun/cs/coastal/Symbolic";
+
+	private static final String VERIFIER = "org/sosy_lab/sv_benchmarks/Verifier";
+
+	private static final String SYSTEM = "java/lang/System";
+
+	private final COASTAL coastal;
+
+	private final Logger log;
+
+	/**
+	 * The summary of methods that are not analyzed, such as methods of target
+	 * classes outside the class path. Such methods are fully instrumented.
+	 */
+	private final Summary unknown = new Summary(true);
+
+	/**
+	 * The classes to analyze, indexed by their internal names.
+	 */
+	private final Map<String, ClassNode> classes = new TreeMap<>();
+
+	/**
+	 * The method summaries, indexed by method name and descriptor.
+	 */
+	private final Map<String, Summary> summaries = new HashMap<>();
+
+	/**
+	 * The methods to analyze.
+	 */
+	private final List<MethodInfo> methods = new ArrayList<>();
+
+	/**
+	 * The names and descriptors of fields that may hold tainted values.
+	 */
+	private final Set<String> taintedFields = new HashSet<>();
+
+	/**
+	 * The kinds of arrays that may hold tainted values, indexed by the offset
+	 * of their store instruction from {@code IASTORE}.
+	 */
+	private final BitSet taintedArrays = new BitSet();
+
+	/**
+	 * The delegated classes that have been passed tainted values.
+	 */
+	private final Set<String> taintedDelegates = new HashSet<>();
+
+	/**
+	 * Whether a tainted value may be thrown.
+	 */
+	private boolean taintedExceptions = false;
+
+	/**
+	 * Whether the current pass has found new taint.
+	 */
+	private boolean changed = false;
+
+	/**
+	 * The selected instructions of each method, indexed by the internal name of
+	 * its class, its name, and its descriptor.
+	 */
+	private final Map<String, Selection> selections = new HashMap<>();
+
+	/**
+	 * A description of the selections of each class, indexed by internal class
+	 * name, that distinguishes differently instrumented versions of the class.
+	 */
+	private final Map<String, String> fingerprints = new HashMap<>();
+
+	private int instructionCount = 0;
+
+	private int skippedCount = 0;
+
+	/**
+	 * Create a new, empty analysis.
+	 * 
+	 * @param coastal
+	 *                instance of COASTAL
+	 */
+	public TaintAnalysis(COASTAL coastal) {
+		this.coastal = coastal;
+		this.log = coastal.getLog();
+	}
+
+	/**
+	 * Add a class to the analysis.
+	 * 
+	 * @param bytecode
+	 *                 the original bytecode of the class
+	 */
+	public void addClass(byte[] bytecode) {
+		ClassNode classNode = new ClassNode();
+		new ClassReader(bytecode).accept(classNode, 0);
+		classes.put(classNode.name, classNode);
+	}
+
+	/**
+	 * Analyze the classes that have been added and select the instructions to
+	 * instrument.
+	 * 
+	 * @return {@code true} if the analysis succeeded, {@code false} if some
+	 *         method could not be analyzed, in which case no instructions are
+	 *         selected
+	 */
+	public boolean analyze() {
+		for (ClassNode classNode : classes.values()) {
+			for (MethodNode method : classNode.methods) {
+				if (method.instructions.size() > 0) {
+					Summary summary = summaries.computeIfAbsent(method.name + method.desc, k -> new Summary(false));
+					methods.add(new MethodInfo(classNode.name, method, summary));
+					int triggerIndex = coastal.findTrigger(classNode.name.replace('/', '.') + "." + method.name,
+							method.desc);
+					if (triggerIndex >= 0) {
+						Trigger trigger = coastal.getTrigger(triggerIndex);
+						for (int i = 0; i < trigger.getParamCount(); i++) {
+							if (trigger.getParamName(i) != null) {
+								summary.parameters.set(i);
+							}
+						}
+						summary.entered = true;
+					}
+				}
+			}
+		}
+		MethodInfo info = null;
+		try {
+			do {
+				changed = false;
+				for (MethodInfo m : methods) {
+					info = m;
+					propagate(m, false);
+				}
+			} while (changed);
+			for (MethodInfo m : methods) {
+				info = m;
+				propagate(m, true);
+			}
+		} catch (AnalyzerException x) {
+			log.warn("taint analysis failed for {}.{}{}", info.owner, info.method.name, info.method.desc, x);
+			return false;
+		}
+		select();
+		log.trace("taint analysis selected {} of {} instructions", instructionCount - skippedCount, instructionCount);
+		return true;
+	}
+
+	/**
+	 * Return the selected instructions of a method.
+	 * 
+	 * @param className
+	 *                   the name of the class
+	 * @param methodName
+	 *                   the name of the method
+	 * @param descriptor
+	 *                   the descriptor of the method
+	 * @return the selected instructions, or {@code null} if the method has not
+	 *         been analyzed and all its instructions must be instrumented
+	 */
+	public Selection getSelection(String className, String methodName, String descriptor) {
+		return selections.get(className.replace('.', '/') + "." + methodName + descriptor);
+	}
+
+	/**
+	 * Return a description of the selected instructions of a class, so that
+	 * instrumented classes can be cached.
+	 * 
+	 * @param className
+	 *                  the name of the class
+	 * @return the description, or {@code null} if the class has not been
+	 *         analyzed
+	 */
+	public String getFingerprint(String className) {
+		return fingerprints.get(className.replace('.', '/'));
+	}
+
+	/**
+	 * Return the number of instructions in the analyzed methods.
+	 * 
+	 * @return the number of instructions
+	 */
+	public int getInstructionCount() {
+		return instructionCount;
+	}
+
+	/**
+	 * Return the number of instructions that are not instrumented.
+	 * 
+	 * @return the number of skipped instructions
+	 */
+	public int getSkippedCount() {
+		return skippedCount;
+	}
+
+	// ======================================================================
+	//
+	// TAINT PROPAGATION
+	//
+	// ======================================================================
+
+	/**
+	 * The method currently being analyzed.
+	 */
+	private MethodInfo current;
+
+	/**
+	 * The local variables of the current method that hold tainted parameters
+	 * on entry.
+	 */
+	private final BitSet parameterLocals = new BitSet();
+
+	/**
+	 * Whether the current pass records the tainted instructions and the
+	 * dependencies between instructions.
+	 */
+	private boolean recording = false;
+
+	private final Interpreter<TaintValue> interpreter = new TaintInterpreter();
+
+	private void propagate(MethodInfo info, boolean recording) throws AnalyzerException {
+		current = info;
+		this.recording = recording;
+		parameterLocals.clear();
+		int local = 0;
+		if ((info.method.access & Opcodes.ACC_STATIC) == 0) {
+			if (info.summary.receiver) {
+				parameterLocals.set(local);
+			}
+			local++;
+		}
+		Type[] arguments = Type.getArgumentTypes(info.method.desc);
+		for (int i = 0; i < arguments.length; i++) {
+			if (info.summary.parameters.get(i)) {
+				parameterLocals.set(local);
+			}
+			local += arguments[i].getSize();
+		}
+		Frame<TaintValue>[] frames = new Analyzer<>(interpreter).analyze(info.owner, info.method);
+		if (recording) {
+			// POP and POP2 are the only instructions not passed to the interpreter
+			for (int i = 0; i < frames.length; i++) {
+				AbstractInsnNode insn = info.method.instructions.get(i);
+				int opcode = insn.getOpcode();
+				if ((frames[i] != null) && ((opcode == Opcodes.POP) || (opcode == Opcodes.POP2))) {
+					int top = frames[i].getStackSize() - 1;
+					TaintValue value = frames[i].getStack(top);
+					link(insn, value, false);
+					if ((opcode == Opcodes.POP2) && (value.getSize() == 1)) {
+						link(insn, frames[i].getStack(top - 1), false);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Record that the instructions that produced a value and the instruction
+	 * that consumes it must be instrumented together. A load from a local
+	 * variable only depends on the stores to the variable, because a store
+	 * leaves nothing on the operand stack.
+	 * 
+	 * @param insn
+	 *                 the consuming instruction
+	 * @param value
+	 *                 the value consumed
+	 * @param directed
+	 *                 whether only the consumer depends on the producers
+	 */
+	private void link(AbstractInsnNode insn, TaintValue value, boolean directed) {
+		if (!recording) {
+			return;
+		}
+		for (AbstractInsnNode source : value.insns) {
+			current.depend(insn, source);
+			if (!directed) {
+				current.depend(source, insn);
+			}
+		}
+	}
+
+	private TaintValue produce(AbstractInsnNode insn, int size, boolean tainted) {
+		if (tainted && recording) {
+			current.seeds.add(insn);
+		}
+		return new TaintValue(size, insn, tainted);
+	}
+
+	private void taintField(FieldInsnNode insn) {
+		if (taintedFields.add(insn.name + insn.desc)) {
+			changed = true;
+		}
+	}
+
+	/**
+	 * Return whether a call of a method of {@link za.ac.sun.cs.coastal.Symbolic}
+	 * pops its arguments from the shadow stack. All such methods do, except for
+	 * {@code printPC}.
+	 * 
+	 * @param insn
+	 *             the call
+	 * @return {@code true} if and only if the call uses the shadow stack
+	 */
+	private static boolean usesShadowStack(MethodInsnNode insn) {
+		return !insn.name.equals("printPC") && (Type.getArgumentTypes(insn.desc).length > 0);
+	}
+
+	private Summary findSummary(MethodInsnNode insn) {
+		Summary summary = classes.containsKey(insn.owner) ? summaries.get(insn.name + insn.desc) : null;
+		return (summary == null) ? unknown : summary;
+	}
+
+	private class TaintInterpreter extends Interpreter<TaintValue> {
+
+		TaintInterpreter() {
+			super(Opcodes.ASM7);
+		}
+
+		@Override
+		public TaintValue newValue(Type type) {
+			if (type == Type.VOID_TYPE) {
+				return null;
+			}
+			return new TaintValue((type == null) ? 1 : type.getSize(), false);
+		}
+
+		@Override
+		public TaintValue newParameterValue(boolean isInstanceMethod, int local, Type type) {
+			return new TaintValue(type.getSize(), parameterLocals.get(local));
+		}
+
+		@Override
+		public TaintValue newExceptionValue(TryCatchBlockNode tryCatchBlockNode, Frame<TaintValue> handlerFrame,
+				Type exceptionType) {
+			return new TaintValue(1, taintedExceptions);
+		}
+
+		@Override
+		public TaintValue newOperation(AbstractInsnNode insn) {
+			switch (insn.getOpcode()) {
+			case Opcodes.LCONST_0:
+			case Opcodes.LCONST_1:
+			case Opcodes.DCONST_0:
+			case Opcodes.DCONST_1:
+				return produce(insn, 2, false);
+			case Opcodes.LDC:
+				Object value = ((LdcInsnNode) insn).cst;
+				return produce(insn, ((value instanceof Long) || (value instanceof Double)) ? 2 : 1, false);
+			case Opcodes.GETSTATIC:
+				FieldInsnNode field = (FieldInsnNode) insn;
+				return produce(insn, Type.getType(field.desc).getSize(),
+						taintedFields.contains(field.name + field.desc));
+			default:
+				return produce(insn, 1, false);
+			}
+		}
+
+		@Override
+		public TaintValue copyOperation(AbstractInsnNode insn, TaintValue value) {
+			int opcode = insn.getOpcode();
+			link(insn, value, (opcode >= Opcodes.ILOAD) && (opcode <= Opcodes.ALOAD));
+			return produce(insn, value.getSize(), value.tainted);
+		}
+
+		@Override
+		public TaintValue unaryOperation(AbstractInsnNode insn, TaintValue value) {
+			link(insn, value, insn.getOpcode() == Opcodes.IINC);
+			switch (insn.getOpcode()) {
+			case Opcodes.LNEG:
+			case Opcodes.DNEG:
+			case Opcodes.I2L:
+			case Opcodes.I2D:
+			case Opcodes.L2D:
+			case Opcodes.F2L:
+			case Opcodes.F2D:
+			case Opcodes.D2L:
+				return produce(insn, 2, value.tainted);
+			case Opcodes.GETFIELD:
+				FieldInsnNode field = (FieldInsnNode) insn;
+				return produce(insn, Type.getType(field.desc).getSize(),
+						value.tainted || taintedFields.contains(field.name + field.desc));
+			case Opcodes.PUTSTATIC:
+				if (value.tainted) {
+					taintField((FieldInsnNode) insn);
+				}
+				return produce(insn, 1, value.tainted);
+			case Opcodes.ATHROW:
+				if (value.tainted && !taintedExceptions) {
+					taintedExceptions = true;
+					changed = true;
+				}
+				return produce(insn, 1, value.tainted);
+			default:
+				return produce(insn, 1, value.tainted);
+			}
+		}
+
+		@Override
+		public TaintValue binaryOperation(AbstractInsnNode insn, TaintValue value1, TaintValue value2) {
+			link(insn, value1, false);
+			link(insn, value2, false);
+			boolean tainted = value1.tainted || value2.tainted;
+			switch (insn.getOpcode()) {
+			case Opcodes.LALOAD:
+			case Opcodes.DALOAD:
+				return produce(insn, 2, tainted || taintedArrays.get(insn.getOpcode() - Opcodes.IALOAD));
+			case Opcodes.IALOAD:
+			case Opcodes.FALOAD:
+			case Opcodes.AALOAD:
+			case Opcodes.BALOAD:
+			case Opcodes.CALOAD:
+			case Opcodes.SALOAD:
+				return produce(insn, 1, tainted || taintedArrays.get(insn.getOpcode() - Opcodes.IALOAD));
+			case Opcodes.LADD:
+			case Opcodes.DADD:
+			case Opcodes.LSUB:
+			case Opcodes.DSUB:
+			case Opcodes.LMUL:
+			case Opcodes.DMUL:
+			case Opcodes.LDIV:
+			case Opcodes.DDIV:
+			case Opcodes.LREM:
+			case Opcodes.DREM:
+			case Opcodes.LSHL:
+			case Opcodes.LSHR:
+			case Opcodes.LUSHR:
+			case Opcodes.LAND:
+			case Opcodes.LOR:
+			case Opcodes.LXOR:
+				return produce(insn, 2, tainted);
+			case Opcodes.PUTFIELD:
+				if (value2.tainted) {
+					taintField((FieldInsnNode) insn);
+				}
+				return produce(insn, 1, tainted);
+			default:
+				return produce(insn, 1, tainted);
+			}
+		}
+
+		@Override
+		public TaintValue ternaryOperation(AbstractInsnNode insn, TaintValue value1, TaintValue value2,
+				TaintValue value3) {
+			link(insn, value1, false);
+			link(insn, value2, false);
+			link(insn, value3, false);
+			int kind = insn.getOpcode() - Opcodes.IASTORE;
+			if (value3.tainted && !taintedArrays.get(kind)) {
+				taintedArrays.set(kind);
+				changed = true;
+			}
+			return produce(insn, 1, value1.tainted || value2.tainted || value3.tainted);
+		}
+
+		@Override
+		public TaintValue naryOperation(AbstractInsnNode insn, List<? extends TaintValue> values) {
+			boolean tainted = false;
+			for (TaintValue value : values) {
+				tainted |= value.tainted;
+			}
+			int opcode = insn.getOpcode();
+			if (opcode == Opcodes.MULTIANEWARRAY) {
+				values.forEach(value -> link(insn, value, false));
+				return produce(insn, 1, tainted);
+			} else if (opcode == Opcodes.INVOKEDYNAMIC) {
+				values.forEach(value -> link(insn, value, false));
+				return produce(insn, Type.getReturnType(((InvokeDynamicInsnNode) insn).desc).getSize(), tainted);
+			}
+			MethodInsnNode call = (MethodInsnNode) insn;
+			int size = Type.getReturnType(call.desc).getSize();
+			if (call.owner.equals(SYMBOLIC)) {
+				if (!usesShadowStack(call)) {
+					return new TaintValue(size, false);
+				}
+				values.forEach(value -> link(insn, value, false));
+				if (recording) {
+					current.seeds.add(insn);
+				}
+				return produce(insn, size, call.name.startsWith("makeSymbolic"));
+			} else if (call.owner.equals(SYSTEM) && call.name.equals("exit")) {
+				return new TaintValue(size, false);
+			}
+			values.forEach(value -> link(insn, value, false));
+			if (call.owner.equals(VERIFIER)) {
+				return produce(insn, size, tainted || call.name.startsWith("nondet"));
+			} else if (coastal.isTarget(call.owner)) {
+				Summary summary = findSummary(call);
+				if (recording) {
+					current.calls.put(insn, summary);
+					if (tainted) {
+						current.seeds.add(insn);
+					}
+				}
+				int first = (opcode == Opcodes.INVOKESTATIC) ? 0 : 1;
+				if ((first == 1) && values.get(0).tainted && !summary.receiver) {
+					summary.receiver = true;
+					changed = true;
+				}
+				for (int i = first; i < values.size(); i++) {
+					if (values.get(i).tainted && !summary.parameters.get(i - first)) {
+						summary.parameters.set(i - first);
+						changed = true;
+					}
+				}
+				return produce(insn, size, summary.returnsTaint);
+			}
+			String owner = call.owner.replace('/', '.');
+			if (coastal.findDelegate(owner) != null) {
+				if (tainted && taintedDelegates.add(owner)) {
+					changed = true;
+				}
+				tainted |= taintedDelegates.contains(owner);
+			}
+			return produce(insn, size, tainted);
+		}
+
+		@Override
+		public void returnOperation(AbstractInsnNode insn, TaintValue value, TaintValue expected) {
+			link(insn, value, false);
+			if (value.tainted && !current.summary.returnsTaint) {
+				current.summary.returnsTaint = true;
+				changed = true;
+			}
+			if (value.tainted && recording) {
+				current.seeds.add(insn);
+			}
+		}
+
+		@Override
+		public TaintValue merge(TaintValue value1, TaintValue value2) {
+			boolean tainted = value1.tainted || value2.tainted;
+			if ((value1.size == value2.size) && (value1.tainted == tainted) && value1.insns.containsAll(value2.insns)) {
+				return value1;
+			}
+			Set<AbstractInsnNode> insns = new HashSet<>(value1.insns);
+			insns.addAll(value2.insns);
+			return new TaintValue(Math.min(value1.size, value2.size), insns, tainted);
+		}
+
+	}
+
+	// ======================================================================
+	//
+	// SELECTION
+	//
+	// ======================================================================
+
+	/**
+	 * Enter the methods that call entered methods or whose calls must be
+	 * instrumented, until no more methods are entered, and then record the
+	 * selected instructions of each method.
+	 */
+	private void select() {
+		boolean promoted = true;
+		while (promoted) {
+			promoted = false;
+			for (MethodInfo info : methods) {
+				if (info.summary.entered) {
+					info.selected = close(info);
+					for (Map.Entry<AbstractInsnNode, Summary> call : info.calls.entrySet()) {
+						if (!call.getValue().entered && info.selected.contains(call.getKey())) {
+							call.getValue().entered = true;
+							promoted = true;
+						}
+					}
+				} else if (info.symbolic || info.calls.values().stream().anyMatch(s -> s.entered)) {
+					info.summary.entered = true;
+					promoted = true;
+				}
+			}
+		}
+		for (MethodInfo info : methods) {
+			BitSet instructions = new BitSet();
+			int index = 0;
+			for (AbstractInsnNode insn : info.method.instructions) {
+				if (insn.getOpcode() >= 0) {
+					if (info.summary.entered && info.selected.contains(insn)) {
+						instructions.set(index);
+					}
+					index++;
+				}
+			}
+			instructionCount += index;
+			skippedCount += index - instructions.cardinality();
+			String key = info.method.name + info.method.desc;
+			Selection selection = new Selection(info.summary.entered, instructions);
+			selections.put(info.owner + "." + key, selection);
+			fingerprints.merge(info.owner, key + selection + ";", String::concat);
+		}
+	}
+
+	/**
+	 * Return the instructions of an entered method that must be instrumented:
+	 * the tainted instructions, the returns and throws, the calls of entered
+	 * methods, and all instructions they depend on. Methods with exception
+	 * handlers or subroutines are instrumented completely.
+	 * 
+	 * @param info
+	 *             the method
+	 * @return the instructions to instrument
+	 */
+	private Set<AbstractInsnNode> close(MethodInfo info) {
+		Deque<AbstractInsnNode> pending = new ArrayDeque<>();
+		for (AbstractInsnNode insn : info.method.instructions) {
+			int opcode = insn.getOpcode();
+			if (opcode < 0) {
+				continue;
+			}
+			Summary callee = info.calls.get(insn);
+			if (info.full || info.seeds.contains(insn) || ((opcode >= Opcodes.IRETURN) && (opcode <= Opcodes.RETURN))
+					|| (opcode == Opcodes.ATHROW) || ((callee != null) && callee.entered)) {
+				pending.push(insn);
+			}
+		}
+		Set<AbstractInsnNode> selected = new HashSet<>();
+		while (!pending.isEmpty()) {
+			AbstractInsnNode insn = pending.pop();
+			if (selected.add(insn)) {
+				pending.addAll(info.dependencies.getOrDefault(insn, Collections.emptySet()));
+			}
+		}
+		return selected;
+	}
+
+	// ======================================================================
+	//
+	// HELPER CLASSES
+	//
+	// ======================================================================
+
+	/**
+	 * The instructions of a method selected for instrumentation.
+	 */
+	public static final class Selection {
+
+		private final boolean entered;
+
+		private final BitSet instructions;
+
+		private Selection(boolean entered, BitSet instructions) {
+			this.entered = entered;
+			this.instructions = instructions;
+		}
+
+		/**
+		 * Return whether the method is entered symbolically, so that the start
+		 * of the method is instrumented.
+		 * 
+		 * @return {@code true} if and only if the method is entered
+		 */
+		public boolean isEntered() {
+			return entered;
+		}
+
+		/**
+		 * Return whether an instruction is instrumented. Instructions are
+		 * numbered from 0 in the order in which they are visited, not counting
+		 * labels, line numbers, and frames.
+		 * 
+		 * @param index
+		 *              the number of the instruction
+		 * @return {@code true} if and only if the instruction is instrumented
+		 */
+		public boolean isInstrumented(int index) {
+			return instructions.get(index);
+		}
+
+		@Override
+		public String toString() {
+			return (entered ? "+" : "-") + instructions;
+		}
+
+	}
+
+	/**
+	 * The taint of the parameters and the return value of all methods with the
+	 * same name and descriptor, and whether they are entered symbolically.
+	 */
+	private static final class Summary {
+
+		final BitSet parameters = new BitSet();
+
+		boolean receiver = false;
+
+		boolean returnsTaint;
+
+		boolean entered;
+
+		Summary(boolean unknown) {
+			returnsTaint = unknown;
+			entered = unknown;
+		}
+
+	}
+
+	/**
+	 * The information gathered about a single method.
+	 */
+	private static final class MethodInfo {
+
+		final String owner;
+
+		final MethodNode method;
+
+		final Summary summary;
+
+		/**
+		 * Whether the method must be instrumented completely if it is entered.
+		 */
+		final boolean full;
+
+		/**
+		 * Whether the method creates symbolic variables or otherwise uses the
+		 * shadow stack through calls that are always instrumented.
+		 */
+		final boolean symbolic;
+
+		/**
+		 * The instructions that touch tainted values.
+		 */
+		final Set<AbstractInsnNode> seeds = new HashSet<>();
+
+		/**
+		 * For each instruction, the instructions that must be instrumented if it
+		 * is instrumented.
+		 */
+		final Map<AbstractInsnNode, Set<AbstractInsnNode>> dependencies = new HashMap<>();
+
+		/**
+		 * The calls of methods of target classes and the summaries of the
+		 * methods called.
+		 */
+		final Map<AbstractInsnNode, Summary> calls = new HashMap<>();
+
+		Set<AbstractInsnNode> selected = Collections.emptySet();
+
+		MethodInfo(String owner, MethodNode method, Summary summary) {
+			this.owner = owner;
+			this.method = method;
+			this.summary = summary;
+			boolean full = !method.tryCatchBlocks.isEmpty();
+			boolean symbolic = false;
+			for (AbstractInsnNode insn : method.instructions) {
+				int opcode = insn.getOpcode();
+				if ((opcode == Opcodes.JSR) || (opcode == Opcodes.RET)) {
+					full = true;
+				} else if (insn instanceof MethodInsnNode) {
+					MethodInsnNode call = (MethodInsnNode) insn;
+					symbolic |= (call.owner.equals(SYMBOLIC) && usesShadowStack(call))
+							|| (call.owner.equals(VERIFIER) && call.name.startsWith("nondet"));
+				}
+			}
+			this.full = full;
+			this.symbolic = symbolic;
+		}
+
+		void depend(AbstractInsnNode insn, AbstractInsnNode source) {
+			dependencies.computeIfAbsent(insn, k -> new HashSet<>()).add(source);
+		}
+
+	}
+
+	/**
+	 * A value in the frames of a method: its size, the instructions that may
+	 * have produced it, and whether it may be tainted.
+	 */
+	private static final class TaintValue implements Value {
+
+		final int size;
+
+		final Set<AbstractInsnNode> insns;
+
+		final boolean tainted;
+
+		TaintValue(int size, boolean tainted) {
+			this(size, Collections.emptySet(), tainted);
+		}
+
+		TaintValue(int size, AbstractInsnNode insn, boolean tainted) {
+			this(size, Collections.singleton(insn), tainted);
+		}
+
+		TaintValue(int size, Set<AbstractInsnNode> insns, boolean tainted) {
+			this.size = size;
+			this.insns = insns;
+			this.tainted = tainted;
+		}
+
+		@Override
+		public int getSize() {
+			return size;
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			if (!(object instanceof TaintValue)) {
+				return false;
+			}
+			TaintValue value = (TaintValue) object;
+			return (size == value.size) && (tainted == value.tainted) && insns.equals(value.insns);
+		}
+
+		@Override
+		public int hashCode() {
+			return insns.hashCode() * 2 + (tainted ? 1 : 0);
+		}
+
+	}
+
+}
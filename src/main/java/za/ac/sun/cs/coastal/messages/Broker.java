@@ -18,11 +18,9 @@
  */
 package za.ac.sun.cs.coastal.messages;
 
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Map;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 
 /**
@@ -33,12 +31,7 @@ public class Broker {
 	/**
 	 * Map from topics (strings) to lists of subscribers.
 	 */
-	private final Map<String, SubscriberList> subscribers = new HashMap<>();
-
-	/**
-	 * A lock to update the map of topics to subscriber lists.
-	 */
-	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(false);
+	private final Map<String, SubscriberList> subscribers = new ConcurrentHashMap<>();
 
 	/**
 	 * Publish a message on a certain topic.
@@ -64,7 +57,7 @@ public class Broker {
 	 *            the message as a generic object
 	 */
 	public void publishThread(String topic, Object message) {
-		topic = topic + Thread.currentThread().getId();
+		topic = topic + '#' + Thread.currentThread().getId();
 		SubscriberList subscriberList = subscribers.get(topic);
 		if (subscriberList != null) {
 			subscriberList.publish(message);
@@ -72,63 +65,75 @@ public class Broker {
 	}
 	
 	/**
-	 * Subscribe to a topic.
+	 * Subscribe to a topic. The subscription is recorded in the current
+	 * {@link Subscriptions} scope of the calling thread, if there is one.
 	 * 
 	 * @param topic
 	 *            the topic to subscribe to
 	 * @param subscriber
 	 *            a callback that will be invoked for all new message on the
 	 *            topic
+	 * @return a handle to cancel the subscription
 	 */
-	public void subscribe(String topic, Consumer<Object> subscriber) {
-		SubscriberList subscriberList = subscribers.get(topic);
-		if (subscriberList == null) {
-			lock.writeLock().lock();
-			subscriberList = new SubscriberList();
-			subscribers.put(topic, subscriberList);
-			lock.writeLock().unlock();
-		}
+	public Subscription subscribe(String topic, Consumer<Object> subscriber) {
+		SubscriberList subscriberList = subscribers.computeIfAbsent(topic, t -> new SubscriberList());
 		subscriberList.subscribe(subscriber);
+		return Subscriptions.record(() -> subscriberList.unsubscribe(subscriber));
 	}
 	
 	/**
-	 * Subscribe to a topic that is local to the current thread.
+	 * Subscribe to a topic that is local to the current thread. The
+	 * subscription is recorded in the current {@link Subscriptions} scope of the
+	 * calling thread, if there is one.
 	 * 
 	 * @param topic
 	 *            the topic to subscribe to
 	 * @param subscriber
 	 *            a callback that will be invoked for all new message on the
 	 *            topic
+	 * @return a handle to cancel the subscription
+	 */
+	public Subscription subscribeThread(String topic, Consumer<Object> subscriber) {
+		return subscribe(topic + '#' + Thread.currentThread().getId(), subscriber);
+	}
+
+	/**
+	 * Discard all subscriptions to topics that are local to the current thread.
+	 * A thread that is reused for a new task calls this, so that the
+	 * subscribers of the previous task no longer receive its messages.
+	 */
+	public void resetThread() {
+		String suffix = "#" + Thread.currentThread().getId();
+		subscribers.keySet().removeIf(topic -> topic.endsWith(suffix));
+	}
+
+	/**
+	 * Return the number of subscribers to a topic.
+	 * 
+	 * @param topic
+	 *            the topic
+	 * @return the number of subscribers
 	 */
-	public void subscribeThread(String topic, Consumer<Object> subscriber) {
-		topic = topic + Thread.currentThread().getId();
+	public int getSubscriberCount(String topic) {
 		SubscriberList subscriberList = subscribers.get(topic);
-		if (subscriberList == null) {
-			lock.writeLock().lock();
-			subscriberList = new SubscriberList();
-			subscribers.put(topic, subscriberList);
-			lock.writeLock().unlock();
-		}
-		subscriberList.subscribe(subscriber);
+		return (subscriberList == null) ? 0 : subscriberList.size();
 	}
 
 	/**
-	 * An encapsulation of a list of subscribers. This sits in an inner class
-	 * mainly to simplify the code that locks the access to the list of
-	 * subscribers.
+	 * An encapsulation of a list of subscribers. The subscribers are kept in an
+	 * array that is replaced (and never modified) when a subscriber is added or
+	 * removed. Publishing a message therefore needs no locking, and a subscriber
+	 * that (un)subscribes while a message is being delivered does not disturb
+	 * the delivery.
 	 */
 	private static class SubscriberList {
 
-		/**
-		 * The list of subscribers.
-		 */
-		private final List<Consumer<Object>> subscribers = new LinkedList<>();
+		private static final Consumer<?>[] EMPTY = new Consumer<?>[0];
 
 		/**
-		 * A lock to protect the list of subscribers when publishing messages or
-		 * updating the list.
+		 * The current array of subscribers.
 		 */
-		private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(false);
+		private volatile Consumer<?>[] subscribers = EMPTY;
 
 		/**
 		 * Add a new subscriber to this list.
@@ -136,10 +141,40 @@ public class Broker {
 		 * @param subscriber
 		 *            the new subscriber
 		 */
-		public void subscribe(Consumer<Object> subscriber) {
-			lock.writeLock().lock();
-			subscribers.add(subscriber);
-			lock.writeLock().unlock();
+		public synchronized void subscribe(Consumer<Object> subscriber) {
+			Consumer<?>[] oldSubscribers = subscribers;
+			Consumer<?>[] newSubscribers = Arrays.copyOf(oldSubscribers, oldSubscribers.length + 1);
+			newSubscribers[oldSubscribers.length] = subscriber;
+			subscribers = newSubscribers;
+		}
+
+		/**
+		 * Remove a subscriber from this list. Only the most recently added
+		 * occurrence of the subscriber is removed.
+		 * 
+		 * @param subscriber
+		 *            the subscriber to remove
+		 */
+		public synchronized void unsubscribe(Consumer<Object> subscriber) {
+			Consumer<?>[] oldSubscribers = subscribers;
+			for (int i = oldSubscribers.length - 1; i >= 0; i--) {
+				if (oldSubscribers[i] == subscriber) {
+					Consumer<?>[] newSubscribers = new Consumer<?>[oldSubscribers.length - 1];
+					System.arraycopy(oldSubscribers, 0, newSubscribers, 0, i);
+					System.arraycopy(oldSubscribers, i + 1, newSubscribers, i, newSubscribers.length - i);
+					subscribers = newSubscribers;
+					return;
+				}
+			}
+		}
+
+		/**
+		 * Return the number of subscribers on this list.
+		 * 
+		 * @return the number of subscribers
+		 */
+		public int size() {
+			return subscribers.length;
 		}
 
 		/**
@@ -148,10 +183,11 @@ public class Broker {
 		 * @param message
 		 *            the message to publish
 		 */
+		@SuppressWarnings("unchecked")
 		public void publish(Object message) {
-			lock.readLock().lock();
-			subscribers.forEach(s -> s.accept(message));
-			lock.readLock().unlock();
+			for (Consumer<?> subscriber : subscribers) {
+				((Consumer<Object>) subscriber).accept(message);
+			}
 		}
 
 	}
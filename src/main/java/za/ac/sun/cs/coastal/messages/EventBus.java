@@ -0,0 +1,434 @@
+/*
+ * This file is part of the COASTAL tool, https://deepseaplatform.github.io/coastal/
+ *
+ * Copyright (c) 2019-2020, Computer Science, Stellenbosch University.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package za.ac.sun.cs.coastal.messages;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * Dispatcher for the high-frequency events produced by instrumented code. Where
+ * the {@link Broker} handles infrequent messages with arbitrary payloads, this
+ * class handles per-instruction events with primitive payloads.
+ * 
+ * Topics are identified by small integer constants (and not by strings), and
+ * each kind of listener has its own range of topic identifiers. All listeners
+ * are local to the thread that registered them: each thread has its own
+ * {@link Listeners} instance, which a {@link za.ac.sun.cs.coastal.symbolic.State}
+ * looks up once when it is created. Publishing an event without subscribers
+ * therefore costs one {@code null} check, and publishing an event with
+ * subscribers allocates nothing.
+ * 
+ * Subscriptions can only be cancelled by the thread that made them.
+ */
+public class EventBus {
+
+	// ======================================================================
+	//
+	// INSTRUCTION TOPICS
+	//
+	// ======================================================================
+
+	public static final int INSN = 0;
+
+	public static final int INT_INSN = 1;
+
+	public static final int VAR_INSN = 2;
+
+	public static final int TYPE_INSN = 3;
+
+	public static final int FIELD_INSN = 4;
+
+	public static final int METHOD_INSN = 5;
+
+	public static final int INVOKE_DYNAMIC_INSN = 6;
+
+	public static final int JUMP_INSN = 7;
+
+	public static final int POST_JUMP_INSN = 8;
+
+	public static final int LDC_INSN = 9;
+
+	public static final int IINC_INSN = 10;
+
+	public static final int TABLE_SWITCH_INSN = 11;
+
+	public static final int LOOKUP_SWITCH_INSN = 12;
+
+	public static final int MULTI_ANEW_ARRAY_INSN = 13;
+
+	/**
+	 * The number of instruction topics.
+	 */
+	public static final int INSN_TOPIC_COUNT = 14;
+
+	/**
+	 * All instruction topics that correspond to the execution of a bytecode
+	 * instruction. This excludes {@link #POST_JUMP_INSN}, which is published
+	 * after the jump instruction itself.
+	 */
+	public static final int[] EXECUTED_INSN_TOPICS = { INSN, INT_INSN, VAR_INSN, TYPE_INSN, FIELD_INSN, METHOD_INSN,
+			INVOKE_DYNAMIC_INSN, JUMP_INSN, LDC_INSN, IINC_INSN, TABLE_SWITCH_INSN, LOOKUP_SWITCH_INSN,
+			MULTI_ANEW_ARRAY_INSN };
+
+	// ======================================================================
+	//
+	// METHOD TOPICS
+	//
+	// ======================================================================
+
+	public static final int ENTER_METHOD = 0;
+
+	public static final int EXIT_METHOD = 1;
+
+	/**
+	 * The number of method topics.
+	 */
+	public static final int METHOD_TOPIC_COUNT = 2;
+
+	// ======================================================================
+	//
+	// LISTENER INTERFACES
+	//
+	// ======================================================================
+
+	/**
+	 * Listener for instruction topics.
+	 */
+	@FunctionalInterface
+	public interface InsnListener {
+
+		/**
+		 * Handle the execution of an instruction.
+		 * 
+		 * @param instr
+		 *               the instruction number
+		 * @param opcode
+		 *               the instruction opcode
+		 */
+		void onInsn(int instr, int opcode);
+
+	}
+
+	/**
+	 * Listener for method topics.
+	 */
+	@FunctionalInterface
+	public interface MethodListener {
+
+		/**
+		 * Handle the entry into or exit from a method.
+		 * 
+		 * @param methodNumber
+		 *                     the method number
+		 */
+		void onMethod(int methodNumber);
+
+	}
+
+	/**
+	 * Listener for line numbers.
+	 */
+	@FunctionalInterface
+	public interface LineListener {
+
+		/**
+		 * Handle the execution of a new source line.
+		 * 
+		 * @param instr
+		 *              the instruction number
+		 * @param line
+		 *              the line number
+		 */
+		void onLine(int instr, int line);
+
+	}
+
+	/**
+	 * Listener for labels.
+	 */
+	@FunctionalInterface
+	public interface LabelListener {
+
+		/**
+		 * Handle a label.
+		 * 
+		 * @param instr
+		 *              the instruction number
+		 * @param label
+		 *              the name of the label
+		 */
+		void onLabel(int instr, String label);
+
+	}
+
+	// ======================================================================
+	//
+	// PER-THREAD LISTENERS
+	//
+	// ======================================================================
+
+	/**
+	 * The listeners of each thread.
+	 */
+	private final ThreadLocal<Listeners> listeners = ThreadLocal.withInitial(Listeners::new);
+
+	/**
+	 * Return the listeners of the current thread. Clients that publish events
+	 * should call this once and keep the result.
+	 * 
+	 * @return the listeners of the current thread
+	 */
+	public Listeners getListeners() {
+		return listeners.get();
+	}
+
+	/**
+	 * Discard all the listeners of the current thread. A thread that is reused
+	 * for a new task calls this, so that the listeners of the previous task no
+	 * longer receive its events.
+	 */
+	public void resetListeners() {
+		listeners.remove();
+	}
+
+	/**
+	 * Subscribe to an instruction topic for the current thread.
+	 * 
+	 * @param topic
+	 *                 the instruction topic
+	 * @param listener
+	 *                 the listener to add
+	 * @return a handle to cancel the subscription
+	 */
+	public Subscription subscribeInsn(int topic, InsnListener listener) {
+		final Listeners threadListeners = getListeners();
+		threadListeners.subscribeInsn(topic, listener);
+		return Subscriptions.record(() -> threadListeners.unsubscribeInsn(topic, listener));
+	}
+
+	/**
+	 * Subscribe to all instruction topics in {@link #EXECUTED_INSN_TOPICS} for the
+	 * current thread.
+	 * 
+	 * @param listener
+	 *                 the listener to add
+	 * @return a handle to cancel the subscription to all the topics
+	 */
+	public Subscription subscribeExecutedInsns(InsnListener listener) {
+		final Listeners threadListeners = getListeners();
+		for (int topic : EXECUTED_INSN_TOPICS) {
+			threadListeners.subscribeInsn(topic, listener);
+		}
+		return Subscriptions.record(() -> {
+			for (int topic : EXECUTED_INSN_TOPICS) {
+				threadListeners.unsubscribeInsn(topic, listener);
+			}
+		});
+	}
+
+	/**
+	 * Subscribe to a method topic for the current thread.
+	 * 
+	 * @param topic
+	 *                 the method topic
+	 * @param listener
+	 *                 the listener to add
+	 * @return a handle to cancel the subscription
+	 */
+	public Subscription subscribeMethod(int topic, MethodListener listener) {
+		final Listeners threadListeners = getListeners();
+		threadListeners.subscribeMethod(topic, listener);
+		return Subscriptions.record(() -> threadListeners.unsubscribeMethod(topic, listener));
+	}
+
+	/**
+	 * Subscribe to line numbers for the current thread.
+	 * 
+	 * @param listener
+	 *                 the listener to add
+	 * @return a handle to cancel the subscription
+	 */
+	public Subscription subscribeLine(LineListener listener) {
+		final Listeners threadListeners = getListeners();
+		threadListeners.subscribeLine(listener);
+		return Subscriptions.record(() -> threadListeners.unsubscribeLine(listener));
+	}
+
+	/**
+	 * Subscribe to labels for the current thread.
+	 * 
+	 * @param listener
+	 *                 the listener to add
+	 * @return a handle to cancel the subscription
+	 */
+	public Subscription subscribeLabel(LabelListener listener) {
+		final Listeners threadListeners = getListeners();
+		threadListeners.subscribeLabel(listener);
+		return Subscriptions.record(() -> threadListeners.unsubscribeLabel(listener));
+	}
+
+	/**
+	 * The listeners registered by a single thread. Each topic maps to an array of
+	 * listeners, or to {@code null} if there are none. Because instances are
+	 * confined to one thread, no locking is needed.
+	 */
+	public static final class Listeners {
+
+		private final InsnListener[][] insnListeners = new InsnListener[INSN_TOPIC_COUNT][];
+
+		private final MethodListener[][] methodListeners = new MethodListener[METHOD_TOPIC_COUNT][];
+
+		private LineListener[] lineListeners = null;
+
+		private LabelListener[] labelListeners = null;
+
+		void subscribeInsn(int topic, InsnListener listener) {
+			insnListeners[topic] = append(insnListeners[topic], listener, InsnListener[]::new);
+		}
+
+		void subscribeMethod(int topic, MethodListener listener) {
+			methodListeners[topic] = append(methodListeners[topic], listener, MethodListener[]::new);
+		}
+
+		void subscribeLine(LineListener listener) {
+			lineListeners = append(lineListeners, listener, LineListener[]::new);
+		}
+
+		void subscribeLabel(LabelListener listener) {
+			labelListeners = append(labelListeners, listener, LabelListener[]::new);
+		}
+
+		void unsubscribeInsn(int topic, InsnListener listener) {
+			insnListeners[topic] = remove(insnListeners[topic], listener, InsnListener[]::new);
+		}
+
+		void unsubscribeMethod(int topic, MethodListener listener) {
+			methodListeners[topic] = remove(methodListeners[topic], listener, MethodListener[]::new);
+		}
+
+		void unsubscribeLine(LineListener listener) {
+			lineListeners = remove(lineListeners, listener, LineListener[]::new);
+		}
+
+		void unsubscribeLabel(LabelListener listener) {
+			labelListeners = remove(labelListeners, listener, LabelListener[]::new);
+		}
+
+		/**
+		 * Publish an instruction event.
+		 * 
+		 * @param topic
+		 *               the instruction topic
+		 * @param instr
+		 *               the instruction number
+		 * @param opcode
+		 *               the instruction opcode
+		 */
+		public void publishInsn(int topic, int instr, int opcode) {
+			final InsnListener[] ls = insnListeners[topic];
+			if (ls != null) {
+				for (InsnListener l : ls) {
+					l.onInsn(instr, opcode);
+				}
+			}
+		}
+
+		/**
+		 * Publish a method event.
+		 * 
+		 * @param topic
+		 *                     the method topic
+		 * @param methodNumber
+		 *                     the method number
+		 */
+		public void publishMethod(int topic, int methodNumber) {
+			final MethodListener[] ls = methodListeners[topic];
+			if (ls != null) {
+				for (MethodListener l : ls) {
+					l.onMethod(methodNumber);
+				}
+			}
+		}
+
+		/**
+		 * Publish a line number event.
+		 * 
+		 * @param instr
+		 *              the instruction number
+		 * @param line
+		 *              the line number
+		 */
+		public void publishLine(int instr, int line) {
+			final LineListener[] ls = lineListeners;
+			if (ls != null) {
+				for (LineListener l : ls) {
+					l.onLine(instr, line);
+				}
+			}
+		}
+
+		/**
+		 * Publish a label event.
+		 * 
+		 * @param instr
+		 *              the instruction number
+		 * @param label
+		 *              the name of the label
+		 */
+		public void publishLabel(int instr, String label) {
+			final LabelListener[] ls = labelListeners;
+			if (ls != null) {
+				for (LabelListener l : ls) {
+					l.onLabel(instr, label);
+				}
+			}
+		}
+
+		private static <T> T[] append(T[] array, T element, IntFunction<T[]> generator) {
+			if (array == null) {
+				T[] newArray = generator.apply(1);
+				newArray[0] = element;
+				return newArray;
+			}
+			T[] newArray = Arrays.copyOf(array, array.length + 1);
+			newArray[array.length] = element;
+			return newArray;
+		}
+
+		private static <T> T[] remove(T[] array, T element, IntFunction<T[]> generator) {
+			if (array == null) {
+				return null;
+			}
+			for (int i = array.length - 1; i >= 0; i--) {
+				if (array[i] == element) {
+					if (array.length == 1) {
+						return null;
+					}
+					T[] newArray = generator.apply(array.length - 1);
+					System.arraycopy(array, 0, newArray, 0, i);
+					System.arraycopy(array, i + 1, newArray, i, newArray.length - i);
+					return newArray;
+				}
+			}
+			return array;
+		}
+
+	}
+
+}
@@ -0,0 +1,35 @@
+/*
+ * This file is part of the COASTAL tool, https://deepseaplatform.github.io/coastal/
+ *
+ * Copyright (c) 2019-2020, Computer Science, Stellenbosch University.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package za.ac.sun.cs.coastal.messages;
+
+/**
+ * Handle to a subscription made with a {@link Broker} or an {@link EventBus}.
+ * Once a subscription has been cancelled, its subscriber no longer receives
+ * messages, and the broker no longer holds a reference to it.
+ */
+@FunctionalInterface
+public interface Subscription {
+
+	/**
+	 * Cancel the subscription. Cancelling a subscription more than once has no
+	 * effect.
+	 */
+	void unsubscribe();
+
+}
@@ -0,0 +1,113 @@
+/*
+ * This file is part of the COASTAL tool, https://deepseaplatform.github.io/coastal/
+ *
+ * Copyright (c) 2019-2020, Computer Science, Stellenbosch University.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package za.ac.sun.cs.coastal.messages;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A scope that collects all the subscriptions made by the current thread while
+ * it is open. Closing the scope cancels all of them. This allows tasks to
+ * discard the subscriptions of short-lived observers (such as those created for
+ * every dive) without the observers having to keep track of their own
+ * subscriptions.
+ * 
+ * Scopes nest: a subscription is recorded only in the innermost open scope of
+ * the thread that made it. A scope must be opened and closed by the same
+ * thread.
+ */
+public final class Subscriptions implements Subscription {
+
+	/**
+	 * The innermost open scope of each thread.
+	 */
+	private static final ThreadLocal<Subscriptions> current = new ThreadLocal<>();
+
+	/**
+	 * The scope that was open when this scope was opened.
+	 */
+	private final Subscriptions parent;
+
+	/**
+	 * The subscriptions recorded in this scope.
+	 */
+	private final List<Subscription> subscriptions = new ArrayList<>();
+
+	private Subscriptions(Subscriptions parent) {
+		this.parent = parent;
+	}
+
+	/**
+	 * Open a new scope for the current thread.
+	 * 
+	 * @return the new scope
+	 */
+	public static Subscriptions open() {
+		Subscriptions scope = new Subscriptions(current.get());
+		current.set(scope);
+		return scope;
+	}
+
+	/**
+	 * Record a subscription in the innermost open scope of the current thread,
+	 * if there is one.
+	 * 
+	 * @param subscription
+	 *                     the subscription to record
+	 * @return the subscription
+	 */
+	static Subscription record(Subscription subscription) {
+		Subscriptions scope = current.get();
+		if (scope != null) {
+			scope.subscriptions.add(subscription);
+		}
+		return subscription;
+	}
+
+	/**
+	 * Return the number of subscriptions recorded in this scope.
+	 * 
+	 * @return the number of subscriptions
+	 */
+	public int size() {
+		return subscriptions.size();
+	}
+
+	/**
+	 * Cancel all the subscriptions recorded in this scope, in the reverse order
+	 * in which they were made, and close the scope. If this scope is the
+	 * innermost scope of the current thread, its parent becomes the innermost
+	 * scope.
+	 */
+	@Override
+	public void unsubscribe() {
+		for (int i = subscriptions.size() - 1; i >= 0; i--) {
+			subscriptions.get(i).unsubscribe();
+		}
+		subscriptions.clear();
+		if (current.get() == this) {
+			if (parent == null) {
+				current.remove();
+			} else {
+				current.set(parent);
+			}
+		}
+	}
+
+}
@@ -32,11 +32,11 @@ import za.ac.sun.cs.coastal.solver.Operation;
 public class Character {
 
 	private static char min, max;
-	private static IntegerConstant lowerA = new IntegerConstant('a', 16);
-	private static IntegerConstant lowerZ = new IntegerConstant('z', 16);
-	private static IntegerConstant upperA = new IntegerConstant('A', 16);
-	private static IntegerConstant upperZ = new IntegerConstant('Z', 16);
-	private static IntegerConstant thirtyTwo = new IntegerConstant(32, 16);
+	private static IntegerConstant lowerA = IntegerConstant.create('a', 16);
+	private static IntegerConstant lowerZ = IntegerConstant.create('z', 16);
+	private static IntegerConstant upperA = IntegerConstant.create('A', 16);
+	private static IntegerConstant upperZ = IntegerConstant.create('Z', 16);
+	private static IntegerConstant thirtyTwo = IntegerConstant.create(32, 16);
 
 	public Character(COASTAL coastal, Configuration config) {
 		min = (char) coastal.getDefaultMinValue(char.class);
@@ -45,7 +45,7 @@ public class Character {
 
 	public boolean toUpperCase__C__C(SymbolicState state) {
 		Expression arg = state.pop().toExpression();
-		Expression var = new IntegerVariable(state.getNewVariableName(), 16, min, max);
+		Expression var = IntegerVariable.create(state.getNewVariableName(), 16, min, max);
 		Expression pc0 = Operation.and(Operation.lt(arg, lowerA), Operation.eq(arg, var));
 		Expression pc1 = Operation.and(Operation.gt(arg, lowerZ), Operation.eq(arg, var));
 		Expression pc2 = Operation.and(Operation.ge(arg, lowerA), Operation.le(arg, lowerZ));
@@ -58,7 +58,7 @@ public class Character {
 
 	public boolean toLowerCase__C__C(SymbolicState state) {
 		Expression arg = state.pop().toExpression();
-		Expression var = new IntegerVariable(state.getNewVariableName(), 16, min, max);
+		Expression var = IntegerVariable.create(state.getNewVariableName(), 16, min, max);
 		Expression pc0 = Operation.and(Operation.lt(arg, upperA), Operation.eq(arg, var));
 		Expression pc1 = Operation.and(Operation.gt(arg, upperZ), Operation.eq(arg, var));
 		Expression pc2 = Operation.and(Operation.ge(arg, upperA), Operation.le(arg, upperZ));
@@ -71,7 +71,7 @@ public class Character {
 	
 	public boolean isLetter__C__Z(SymbolicState state) {
 		Expression arg = state.pop().toExpression();
-		Expression var = new IntegerVariable(state.getNewVariableName(), 32, 0, 1);
+		Expression var = IntegerVariable.create(state.getNewVariableName(), 32, 0, 1);
 		Expression pcu = Operation.and(Operation.ge(arg, upperA), Operation.eq(arg, upperZ));
 		Expression pcl = Operation.and(Operation.ge(arg, lowerA), Operation.eq(arg, lowerZ));
 		Expression pcy = Operation.or(pcu, pcl);
@@ -40,7 +40,7 @@ public class Math {
 	public boolean max__II__I(SymbolicState state) {
 		Expression arg0 = state.pop().toExpression();
 		Expression arg1 = state.pop().toExpression();
-		Expression var = new IntegerVariable(state.getNewVariableName(), 32, min, max);
+		Expression var = IntegerVariable.create(state.getNewVariableName(), 32, min, max);
 		Expression pc = Operation.or(Operation.and(Operation.ge(arg0, arg1), Operation.eq(arg0, var)),
 				Operation.and(Operation.lt(arg0, arg1), Operation.eq(arg1, var)));
 		state.pushExtraCondition(pc);
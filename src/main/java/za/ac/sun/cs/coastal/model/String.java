@@ -37,7 +37,7 @@ import za.ac.sun.cs.coastal.symbolic.exceptions.UnsupportedOperationException;
  */
 public class String {
 
-	private static final Expression MONE = new IntegerConstant(-1, 32);
+	private static final Expression MONE = IntegerConstant.create(-1, 32);
 
 	private final int minChar;
 
@@ -97,11 +97,11 @@ public class String {
 		// Symbolic modelling
 		int strAddress = (int) intConstantValue(str.toExpression());
 		if (strAddress == 0) {
-			state.push(new IntegerVariable(state.getNewVariableName(), 32, Integer.MIN_VALUE, Integer.MAX_VALUE));
+			state.push(IntegerVariable.create(state.getNewVariableName(), 32, Integer.MIN_VALUE, Integer.MAX_VALUE));
 		} else {
 			int thisAddress = (int) intConstantValue(thiss.toExpression());
 			int strLength = (int) state.getStringLength(strAddress).toValue();
-			state.setStringLength(thisAddress, new IntegerConstant(strLength, 32));
+			state.setStringLength(thisAddress, IntegerConstant.create(strLength, 32));
 			for (int i = 0; i < strLength; i++) {
 				state.setStringChar(thisAddress, i, state.getStringChar(strAddress, i));
 			}
@@ -132,11 +132,11 @@ public class String {
 		// Symbolic modelling
 		int valueAddress = (int) intConstantValue(value.toExpression());
 		if (valueAddress == 0) {
-			state.push(new IntegerVariable(state.getNewVariableName(), 32, Integer.MIN_VALUE, Integer.MAX_VALUE));
+			state.push(IntegerVariable.create(state.getNewVariableName(), 32, Integer.MIN_VALUE, Integer.MAX_VALUE));
 		} else {
 			int thisAddress = (int) intConstantValue(thiss.toExpression());
 			int valueLength = (int) state.getStringLength(valueAddress).toValue();
-			state.setStringLength(thisAddress, new IntegerConstant(valueLength, 32));
+			state.setStringLength(thisAddress, IntegerConstant.create(valueLength, 32));
 			for (int i = 0; i < valueLength; i++) {
 				state.setStringChar(thisAddress, i, state.getStringChar(valueAddress, i));
 			}
@@ -197,24 +197,24 @@ public class String {
 		SymbolicValue bool = state.pop();
 		if (falseStringId == -1) {
 			falseStringId = state.createString();
-			state.setStringLength(falseStringId, new IntegerConstant(5, 32));
-			state.setStringChar(falseStringId, 0, new IntegerConstant('f', 16));
-			state.setStringChar(falseStringId, 1, new IntegerConstant('a', 16));
-			state.setStringChar(falseStringId, 2, new IntegerConstant('l', 16));
-			state.setStringChar(falseStringId, 3, new IntegerConstant('s', 16));
-			state.setStringChar(falseStringId, 4, new IntegerConstant('e', 16));
+			state.setStringLength(falseStringId, IntegerConstant.create(5, 32));
+			state.setStringChar(falseStringId, 0, IntegerConstant.create('f', 16));
+			state.setStringChar(falseStringId, 1, IntegerConstant.create('a', 16));
+			state.setStringChar(falseStringId, 2, IntegerConstant.create('l', 16));
+			state.setStringChar(falseStringId, 3, IntegerConstant.create('s', 16));
+			state.setStringChar(falseStringId, 4, IntegerConstant.create('e', 16));
 			trueStringId = state.createString();
-			state.setStringLength(trueStringId, new IntegerConstant(4, 32));
-			state.setStringChar(trueStringId, 0, new IntegerConstant('t', 16));
-			state.setStringChar(trueStringId, 1, new IntegerConstant('r', 16));
-			state.setStringChar(trueStringId, 2, new IntegerConstant('u', 16));
-			state.setStringChar(trueStringId, 3, new IntegerConstant('e', 16));
+			state.setStringLength(trueStringId, IntegerConstant.create(4, 32));
+			state.setStringChar(trueStringId, 0, IntegerConstant.create('t', 16));
+			state.setStringChar(trueStringId, 1, IntegerConstant.create('r', 16));
+			state.setStringChar(trueStringId, 2, IntegerConstant.create('u', 16));
+			state.setStringChar(trueStringId, 3, IntegerConstant.create('e', 16));
 		}
-		Expression var = new IntegerVariable(state.getNewVariableName(), 32, 0, 1);
+		Expression var = IntegerVariable.create(state.getNewVariableName(), 32, 0, 1);
 		Expression posGuard = Operation.and(Operation.eq(bool.toExpression(), IntegerConstant.ONE32),
-				Operation.eq(var, new IntegerConstant(trueStringId, 32)));
+				Operation.eq(var, IntegerConstant.create(trueStringId, 32)));
 		Expression negGuard = Operation.and(Operation.eq(bool.toExpression(), IntegerConstant.ZERO32),
-				Operation.eq(var, new IntegerConstant(falseStringId, 32)));
+				Operation.eq(var, IntegerConstant.create(falseStringId, 32)));
 		Expression pc = Operation.or(posGuard, negGuard);
 		state.pushExtraCondition(pc);
 		state.push(var);
@@ -224,7 +224,7 @@ public class String {
 	public boolean length____I(SymbolicState state) {
 		SymbolicValue stringValue = state.pop();
 		if ((stringValue == null) || !stringValue.isConstant()) {
-			state.push(new IntegerVariable(state.getNewVariableName(), 32, Integer.MIN_VALUE, Integer.MAX_VALUE));
+			state.push(IntegerVariable.create(state.getNewVariableName(), 32, Integer.MIN_VALUE, Integer.MAX_VALUE));
 		} else {
 			int thisAddress = (int) intConstantValue(stringValue.toExpression());
 			state.push(state.getStringLength(thisAddress));
@@ -236,9 +236,9 @@ public class String {
 		SymbolicValue stringValue1 = state.pop();
 		SymbolicValue stringValue2 = state.pop();
 		if ((stringValue1 == null) || !stringValue1.isConstant()) {
-			state.push(new IntegerVariable(state.getNewVariableName(), 32, 0, 1));
+			state.push(IntegerVariable.create(state.getNewVariableName(), 32, 0, 1));
 		} else if ((stringValue2 == null) || !stringValue2.isConstant()) {
-			state.push(new IntegerVariable(state.getNewVariableName(), 32, 0, 1));
+			state.push(IntegerVariable.create(state.getNewVariableName(), 32, 0, 1));
 		} else {
 			int thisAddress1 = (int) intConstantValue(stringValue1.toExpression());
 			int thisAddress2 = (int) intConstantValue(stringValue2.toExpression());
@@ -260,7 +260,7 @@ public class String {
 						guard = Operation.and(guard, eq);
 					}
 				}
-				Expression var = new IntegerVariable(state.getNewVariableName(), 32, 0, 1);
+				Expression var = IntegerVariable.create(state.getNewVariableName(), 32, 0, 1);
 				Expression pc = Operation.or(Operation.and(guard, Operation.eq(var, IntegerConstant.ONE32)),
 						Operation.and(Operation.not(guard), Operation.eq(var, IntegerConstant.ZERO32)));
 				state.pushExtraCondition(pc);
@@ -307,7 +307,7 @@ public class String {
 					guard = Operation.or(guard, subguard);
 				}
 			}
-			Expression var = new IntegerVariable(state.getNewVariableName(), 32, 0, 1);
+			Expression var = IntegerVariable.create(state.getNewVariableName(), 32, 0, 1);
 			Expression posGuard = Operation.and(guard, Operation.eq(var, IntegerConstant.ONE32));
 			Expression negGuard = Operation.and(Operation.not(guard), Operation.eq(var, IntegerConstant.ZERO32));
 			Expression pc = Operation.or(posGuard, negGuard);
@@ -355,7 +355,7 @@ public class String {
 					guard = Operation.and(guard, eq);
 				}
 			}
-			Expression var = new IntegerVariable(state.getNewVariableName(), 32, 0, 1);
+			Expression var = IntegerVariable.create(state.getNewVariableName(), 32, 0, 1);
 			Expression posGuard = Operation.and(guard, Operation.eq(var, IntegerConstant.ONE32));
 			Expression negGuard = Operation.and(Operation.not(guard), Operation.eq(var, IntegerConstant.ZERO32));
 			Expression pc = Operation.or(posGuard, negGuard);
@@ -370,14 +370,14 @@ public class String {
 		int thisAddress = (int) intConstantValue(state.pop());
 		int thisLength = (int) intConstantValue(state.getStringLength(thisAddress));
 		Expression guard = Operation.and(Operation.ge(index, IntegerConstant.ZERO32),
-				Operation.lt(index, new IntegerConstant(thisLength, 32)));
+				Operation.lt(index, IntegerConstant.create(thisLength, 32)));
 		if (index instanceof IntegerConstant) {
 			state.push(state.getStringChar(thisAddress, (int) ((IntegerConstant) index).getValue()));
 		} else {
-			Expression var = new IntegerVariable(state.getNewVariableName(), 16, minChar, maxChar);
+			Expression var = IntegerVariable.create(state.getNewVariableName(), 16, minChar, maxChar);
 			Expression subguard = null;
 			for (int i = 0; i < thisLength; i++) {
-				Expression eq = Operation.and(Operation.eq(index, new IntegerConstant(i, 32)),
+				Expression eq = Operation.and(Operation.eq(index, IntegerConstant.create(i, 32)),
 						Operation.eq(var, state.getStringChar(thisAddress, i).toExpression()));
 				if (subguard == null) {
 					subguard = eq;
@@ -399,7 +399,7 @@ public class String {
 		if (thisLength == 0) {
 			state.push(MONE);
 		} else {
-			Expression var = new IntegerVariable(state.getNewVariableName(), 32, -1, thisLength - 1);
+			Expression var = IntegerVariable.create(state.getNewVariableName(), 32, -1, thisLength - 1);
 			state.pushExtraCondition(firstOccurrenceGuard(state, thisAddress, chr, var, 0, thisLength));
 			state.push(var);
 		}
@@ -418,15 +418,15 @@ public class String {
 			if (ofs >= thisLength) {
 				state.push(MONE);
 			} else {
-				Expression var = new IntegerVariable(state.getNewVariableName(), 32, -1, thisLength - 1);
+				Expression var = IntegerVariable.create(state.getNewVariableName(), 32, -1, thisLength - 1);
 				state.pushExtraCondition(firstOccurrenceGuard(state, thisAddress, chr, var, ofs, thisLength));
 				state.push(var);
 			}
 		} else {
-			Expression var = new IntegerVariable(state.getNewVariableName(), 32, -1, thisLength - 1);
+			Expression var = IntegerVariable.create(state.getNewVariableName(), 32, -1, thisLength - 1);
 			Expression pc = null;
 			for (int i = 0; i < thisLength; i++) {
-				Expression guard = Operation.eq(expr, new IntegerConstant(i, 32));
+				Expression guard = Operation.eq(expr, IntegerConstant.create(i, 32));
 				guard = Operation.and(guard, firstOccurrenceGuard(state, thisAddress, chr, var, i, thisLength));
 				if (pc == null) {
 					pc = guard;
@@ -450,7 +450,7 @@ public class String {
 		assert ofs < len;
 		Expression thisChar = state.getStringChar(strAddress, ofs).toExpression();
 		Expression foundAtOfs = Operation.eq(thisChar, chr);
-		Expression returnValue = Operation.eq(rval, new IntegerConstant(ofs, 32));
+		Expression returnValue = Operation.eq(rval, IntegerConstant.create(ofs, 32));
 		Expression guard = Operation.and(foundAtOfs, returnValue);
 		Expression mismatch = null;
 		for (int o = ofs + 1; o < len; o++) {
@@ -461,7 +461,7 @@ public class String {
 			}
 			thisChar = state.getStringChar(strAddress, o).toExpression();
 			foundAtOfs = Operation.and(mismatch, Operation.eq(thisChar, chr));
-			returnValue = Operation.eq(rval, new IntegerConstant(o, 32));
+			returnValue = Operation.eq(rval, IntegerConstant.create(o, 32));
 			guard = Operation.or(guard, Operation.and(foundAtOfs, returnValue));
 		}
 		if (mismatch == null) {
@@ -493,7 +493,7 @@ public class String {
 			if (guard == null) {
 				state.push(IntegerConstant.ONE32); // |prefix| == 0, so result is always TRUE (=1)
 			} else {
-				Expression var = new IntegerVariable(state.getNewVariableName(), 32, 0, 1);
+				Expression var = IntegerVariable.create(state.getNewVariableName(), 32, 0, 1);
 				Expression pc = Operation.or(Operation.and(guard, Operation.eq(var, IntegerConstant.ONE32)),
 						Operation.and(Operation.not(guard), Operation.eq(var, IntegerConstant.ZERO32)));
 				state.pushExtraCondition(pc);
@@ -533,7 +533,7 @@ public class String {
 			if (guard == null) {
 				state.push(IntegerConstant.ONE32); // |prefix| == 0, so result is always TRUE (=1)
 			} else {
-				Expression var = new IntegerVariable(state.getNewVariableName(), 32, 0, 1);
+				Expression var = IntegerVariable.create(state.getNewVariableName(), 32, 0, 1);
 				Expression posGuard = Operation.and(guard, Operation.eq(var, IntegerConstant.ONE32));
 				Expression negGuard = Operation.and(Operation.not(guard), Operation.eq(var, IntegerConstant.ZERO32));
 				Expression pc = Operation.or(posGuard, negGuard);
@@ -570,7 +570,7 @@ public class String {
 			if (guard == null) {
 				state.push(IntegerConstant.ONE32); // |prefix| == 0, so result is always TRUE (=1)
 			} else {
-				Expression var = new IntegerVariable(state.getNewVariableName(), 32, 0, 1);
+				Expression var = IntegerVariable.create(state.getNewVariableName(), 32, 0, 1);
 				Expression pc = Operation.or(Operation.and(guard, Operation.eq(var, IntegerConstant.ONE32)),
 						Operation.and(Operation.not(guard), Operation.eq(var, IntegerConstant.ZERO32)));
 				state.pushExtraCondition(pc);
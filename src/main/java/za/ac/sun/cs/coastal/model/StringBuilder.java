@@ -48,7 +48,7 @@ public class StringBuilder {
 		int strAddress = (int) intConstantValue(str.toExpression());
 		int strLength = (int) state.getStringLength(strAddress).toValue();
 		int thisAddress = (int) intConstantValue(thiss.toExpression());
-		state.setStringLength(thisAddress, new IntegerConstant(strLength, 32));
+		state.setStringLength(thisAddress, IntegerConstant.create(strLength, 32));
 		for (int i = 0; i < strLength; i++) {
 			state.setStringChar(thisAddress, i, state.getStringChar(strAddress, i));
 		}
@@ -152,21 +152,21 @@ public class TaintMap {
 			long value = Long.parseLong(expr.toString().split("_")[1]);
 			switch (type) {
 			case 'Z':
-				return new IntegerConstant(value, 32);
+				return IntegerConstant.create(value, 32);
 			case 'B':
-				return new IntegerConstant(value, 8);
+				return IntegerConstant.create(value, 8);
 			case 'C':
-				return new IntegerConstant(value, 16);
+				return IntegerConstant.create(value, 16);
 			case 'S':
-				return new IntegerConstant(value, 16);
+				return IntegerConstant.create(value, 16);
 			case 'I':
-				return new IntegerConstant(value, 32);
+				return IntegerConstant.create(value, 32);
 			case 'J':
-				return new IntegerConstant(value, 64);
+				return IntegerConstant.create(value, 64);
 			case 'F':
-				return new RealConstant(value, 32);
+				return RealConstant.create(value, 32);
 			case 'D':
-				return new RealConstant(value, 64);
+				return RealConstant.create(value, 64);
 			default:
 				throw new RuntimeException("Not implemented for unboxing");
 			}
@@ -226,39 +226,39 @@ public class TaintMap {
 		case 'Z':
 			long min = 0L;
 			long max = 1L;
-			return new IntegerVariable(varName, 32, min, max);
+			return IntegerVariable.create(varName, 32, min, max);
 		case 'B':
 			min = (byte) coastal.getDefaultMinValue(byte.class);
 			max = (byte) coastal.getDefaultMaxValue(byte.class);
-			return new IntegerVariable(varName, 8, min, max);
+			return IntegerVariable.create(varName, 8, min, max);
 		case 'C':
 			min = (char) coastal.getDefaultMinValue(char.class);
 			max = (char) coastal.getDefaultMaxValue(char.class);
-			return new IntegerVariable(varName, 16, min, max);
+			return IntegerVariable.create(varName, 16, min, max);
 		case 'S':
 			min = (short) coastal.getDefaultMinValue(short.class);
 			max = (short) coastal.getDefaultMaxValue(short.class);
-			return new IntegerVariable(varName, 16, min, max);
+			return IntegerVariable.create(varName, 16, min, max);
 		case 'I':
 			min = (int) coastal.getDefaultMinValue(int.class);
 			max = (int) coastal.getDefaultMaxValue(int.class);
-			return new IntegerVariable(varName, 32, min, max);
+			return IntegerVariable.create(varName, 32, min, max);
 		case 'J':
 			min = (long) coastal.getDefaultMinValue(long.class);
 			max = (long) coastal.getDefaultMaxValue(long.class);
-			return new IntegerVariable(varName, 64, min, max);
+			return IntegerVariable.create(varName, 64, min, max);
 		case 'F':
 			float minf = (float) coastal.getDefaultMinValue(float.class);
 			float maxf = (float) coastal.getDefaultMaxValue(float.class);
-			return new RealVariable(varName, 32, minf, maxf);
+			return RealVariable.create(varName, 32, minf, maxf);
 		case 'D':
 			double mind = (double) coastal.getDefaultMinValue(double.class);
 			double maxd = (double) coastal.getDefaultMaxValue(double.class);
-			return new RealVariable(varName, 64, mind, maxd);
+			return RealVariable.create(varName, 64, mind, maxd);
 		case 'L':
 			min = 0;
 			max = Integer.MAX_VALUE;
-			return new IntegerVariable(varName, 32, min, max);
+			return IntegerVariable.create(varName, 32, min, max);
 		default:
 			throw new RuntimeException("Not implemented for getting variable expression");
 		}
@@ -50,7 +50,7 @@ public class TreeMap {
 		SymbolicValue value = state.pop();
 		SymbolicValue thisRef = state.pop();
 		if ((thisRef == null) || !thisRef.isConstant()) {
-			state.push(new IntegerVariable(state.getNewVariableName(), 32, Integer.MIN_VALUE, Integer.MAX_VALUE));
+			state.push(IntegerVariable.create(state.getNewVariableName(), 32, Integer.MIN_VALUE, Integer.MAX_VALUE));
 		} else {
 			int thisAddress = (int) intConstantValue(thisRef.toExpression());
 			List<Tuple> thisPuts = PUTS.get(thisAddress);
@@ -26,6 +26,7 @@ import za.ac.sun.cs.coastal.COASTAL;
 import za.ac.sun.cs.coastal.Configuration;
 import za.ac.sun.cs.coastal.instrument.InstrumentationClassManager;
 import za.ac.sun.cs.coastal.messages.Broker;
+import za.ac.sun.cs.coastal.messages.EventBus;
 import za.ac.sun.cs.coastal.messages.Tuple;
 
 public class InstructionCoverageFactory implements ObserverFactory {
@@ -143,24 +144,12 @@ public class InstructionCoverageFactory implements ObserverFactory {
 			this.classManager = coastal.getClassManager();
 			Broker broker = coastal.getBroker();
 			broker.subscribe("instruction-coverage-report", this::update);
-			broker.subscribeThread("enter-method", this::enterMethod);
-			broker.subscribeThread("insn", this::insn);
-			broker.subscribeThread("int-insn", this::insn);
-			broker.subscribeThread("var-insn", this::insn);
-			broker.subscribeThread("type-insn", this::insn);
-			broker.subscribeThread("field-insn", this::insn);
-			broker.subscribeThread("method-insn", this::insn);
-			broker.subscribeThread("invoke-dynamic-insn", this::insn);
-			broker.subscribeThread("jump-insn", this::insn);
-			broker.subscribeThread("ldc-insn", this::insn);
-			broker.subscribeThread("iinc-insn", this::insn);
-			broker.subscribeThread("table-switch-insn", this::insn);
-			broker.subscribeThread("lookup-switch-insn", this::insn);
-			broker.subscribeThread("multi-anew-array-insn", this::insn);
+			EventBus eventBus = coastal.getEventBus();
+			eventBus.subscribeMethod(EventBus.ENTER_METHOD, this::enterMethod);
+			eventBus.subscribeExecutedInsns(this::insn);
 		}
 
-		public void enterMethod(Object object) {
-			int methodNumber = (Integer) object;
+		public void enterMethod(int methodNumber) {
 			Integer first = classManager.getFirstInstruction(methodNumber);
 			Integer last = classManager.getLastInstruction(methodNumber);
 			if ((first != null) && (last != null)) {
@@ -173,8 +162,7 @@ public class InstructionCoverageFactory implements ObserverFactory {
 			}
 		}
 
-		public void insn(Object object) {
-			int instr = (Integer) ((Tuple) object).get(0);
+		public void insn(int instr, int opcode) {
 			log.trace("{} {}", LOG_PREFIX, instr);
 			covered.set(instr);
 			if (--updateCounter < 0) {
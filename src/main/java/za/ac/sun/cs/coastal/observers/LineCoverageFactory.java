@@ -26,6 +26,7 @@ import za.ac.sun.cs.coastal.COASTAL;
 import za.ac.sun.cs.coastal.Configuration;
 import za.ac.sun.cs.coastal.instrument.InstrumentationClassManager;
 import za.ac.sun.cs.coastal.messages.Broker;
+import za.ac.sun.cs.coastal.messages.EventBus;
 import za.ac.sun.cs.coastal.messages.Tuple;
 
 public class LineCoverageFactory implements ObserverFactory {
@@ -145,12 +146,12 @@ public class LineCoverageFactory implements ObserverFactory {
 			this.classManager = coastal.getClassManager();
 			Broker broker = coastal.getBroker();
 			broker.subscribe("line-coverage-report", this::update);
-			broker.subscribeThread("enter-method", this::enterMethod);
-			broker.subscribeThread("linenumber", this::line);
+			EventBus eventBus = coastal.getEventBus();
+			eventBus.subscribeMethod(EventBus.ENTER_METHOD, this::enterMethod);
+			eventBus.subscribeLine(this::line);
 		}
 
-		public void enterMethod(Object object) {
-			int methodNumber = (Integer) object;
+		public void enterMethod(int methodNumber) {
 			BitSet linenumbers = classManager.getLineNumbers(methodNumber);
 			if (linenumbers != null) {
 				potentials.or(linenumbers);
@@ -160,8 +161,7 @@ public class LineCoverageFactory implements ObserverFactory {
 			}
 		}
 
-		public void line(Object object) {
-			int lineno = (Integer) ((Tuple) object).get(1);
+		public void line(int instr, int lineno) {
 			log.trace("{} L{}", LOG_PREFIX, lineno);
 			covered.set(lineno);
 			if (--updateCounter < 0) {
@@ -28,6 +28,7 @@ import za.ac.sun.cs.coastal.COASTAL;
 import za.ac.sun.cs.coastal.Configuration;
 import za.ac.sun.cs.coastal.instrument.InstrumentationClassManager;
 import za.ac.sun.cs.coastal.messages.Broker;
+import za.ac.sun.cs.coastal.messages.EventBus;
 import za.ac.sun.cs.coastal.messages.Tuple;
 import za.ac.sun.cs.coastal.solver.Solver;
 
@@ -144,8 +145,9 @@ public class TaintObserverFactory implements ObserverFactory {
 
 			// Trigger method / enter method
 			broker.subscribe("tainted-coverage-report", this::update);
-			broker.subscribeThread("enter-method", this::triggerMethod);
-			broker.subscribeThread("linenumber", this::linenumber);
+			EventBus eventBus = coastal.getEventBus();
+			eventBus.subscribeMethod(EventBus.ENTER_METHOD, this::triggerMethod);
+			eventBus.subscribeLine(this::linenumber);
 			broker.subscribeThread("taint-parameter", this::taintParameter);
 			broker.subscribeThread("taint-merge", this::taintMerge);
 			broker.subscribeThread("taint-leaked", this::taintLeaked);
@@ -158,12 +160,12 @@ public class TaintObserverFactory implements ObserverFactory {
 			broker.subscribeThread("visit-end-insn", this::update);
 		}
 
-		public void triggerMethod(Object object) {
+		public void triggerMethod(int methodNumber) {
 			this.currentLine = 0;
 		}
 
-		public void linenumber(Object object) {
-			currentLine = (int) ((Tuple) object).get(1);
+		public void linenumber(int instr, int line) {
+			currentLine = line;
 		}
 
 		public void taintParameter(Object object) {
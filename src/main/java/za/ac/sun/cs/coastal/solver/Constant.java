@@ -20,4 +20,8 @@ package za.ac.sun.cs.coastal.solver;
 
 public abstract class Constant extends Expression {
 
+	protected Constant(int hash) {
+		super(hash);
+	}
+
 }
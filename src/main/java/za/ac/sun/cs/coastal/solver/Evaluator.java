@@ -27,7 +27,7 @@ import za.ac.sun.cs.coastal.solver.Operation.Operator;
 import za.ac.sun.cs.coastal.symbolic.Input;
 
 /**
- *
+ * 
  */
 public final class Evaluator extends Visitor {
 
@@ -67,16 +67,16 @@ public final class Evaluator extends Visitor {
 	@Override
 	public void postVisit(RealVariable realVariable) throws VisitorException {
 		Double value = (Double) (input.get(realVariable.getName()));
-		stack.push(new RealConstant((double) value, 64));
+		stack.push(RealConstant.create((double) value, 64));
 	}
 	
 	@Override
 	public void postVisit(IntegerVariable integerVariable) throws VisitorException {
 		Long value = (Long) (input.get(integerVariable.getName()));
 		if (value == null) {
-			stack.push(new IntegerConstant((long) 0, 64));
+			stack.push(IntegerConstant.create((long) 0, 64));
 		} else {
-			stack.push(new IntegerConstant((long) value, 64));
+			stack.push(IntegerConstant.create((long) value, 64));
 		}
 	}
 
@@ -156,55 +156,55 @@ public final class Evaluator extends Visitor {
 			if ((l instanceof IntegerConstant) && (r instanceof IntegerConstant)) {
 				ll = (l instanceof IntegerConstant) ? ((IntegerConstant) l).getValue() : 0;
 				rr = (r instanceof IntegerConstant) ? ((IntegerConstant) r).getValue() : 0;
-				stack.push(new IntegerConstant(ll + rr, 64));
+				stack.push(IntegerConstant.create(ll + rr, 64));
 			} else {
 				lx = (l instanceof IntegerConstant) ? ((IntegerConstant) l).getValue() : ((RealConstant) l).getValue();
 				rx = (r instanceof IntegerConstant) ? ((IntegerConstant) r).getValue() : ((RealConstant) r).getValue();
-				stack.push(new RealConstant(lx + rx, 64));
+				stack.push(RealConstant.create(lx + rx, 64));
 			}
 			break;
 		case SUB:
 			if ((l instanceof IntegerConstant) && (r instanceof IntegerConstant)) {
 				ll = (l instanceof IntegerConstant) ? ((IntegerConstant) l).getValue() : 0;
 				rr = (r instanceof IntegerConstant) ? ((IntegerConstant) r).getValue() : 0;
-				stack.push(new IntegerConstant(ll - rr, 64));
+				stack.push(IntegerConstant.create(ll - rr, 64));
 			} else {
 				lx = (l instanceof IntegerConstant) ? ((IntegerConstant) l).getValue() : ((RealConstant) l).getValue();
 				rx = (r instanceof IntegerConstant) ? ((IntegerConstant) r).getValue() : ((RealConstant) r).getValue();
-				stack.push(new RealConstant(lx - rx, 64));
+				stack.push(RealConstant.create(lx - rx, 64));
 			}
 			break;
 		case MUL:
 			if ((l instanceof IntegerConstant) && (r instanceof IntegerConstant)) {
 				ll = (l instanceof IntegerConstant) ? ((IntegerConstant) l).getValue() : 0;
 				rr = (r instanceof IntegerConstant) ? ((IntegerConstant) r).getValue() : 0;
-				stack.push(new IntegerConstant(ll * rr, 64));
+				stack.push(IntegerConstant.create(ll * rr, 64));
 			} else {
 				lx = (l instanceof IntegerConstant) ? ((IntegerConstant) l).getValue() : ((RealConstant) l).getValue();
 				rx = (r instanceof IntegerConstant) ? ((IntegerConstant) r).getValue() : ((RealConstant) r).getValue();
-				stack.push(new RealConstant(lx * rx, 64));
+				stack.push(RealConstant.create(lx * rx, 64));
 			}
 			break;
 		case DIV:
 			if ((l instanceof IntegerConstant) && (r instanceof IntegerConstant)) {
 				ll = (l instanceof IntegerConstant) ? ((IntegerConstant) l).getValue() : 0;
 				rr = (r instanceof IntegerConstant) ? ((IntegerConstant) r).getValue() : 0;
-				stack.push(new IntegerConstant(ll / rr, 64));
+				stack.push(IntegerConstant.create(ll / rr, 64));
 			} else {
 				lx = (l instanceof IntegerConstant) ? ((IntegerConstant) l).getValue() : ((RealConstant) l).getValue();
 				rx = (r instanceof IntegerConstant) ? ((IntegerConstant) r).getValue() : ((RealConstant) r).getValue();
-				stack.push(new RealConstant(lx / rx, 64));
+				stack.push(RealConstant.create(lx / rx, 64));
 			}
 			break;
 		case REM:
 			if ((l instanceof IntegerConstant) && (r instanceof IntegerConstant)) {
 				ll = (l instanceof IntegerConstant) ? ((IntegerConstant) l).getValue() : 0;
 				rr = (r instanceof IntegerConstant) ? ((IntegerConstant) r).getValue() : 0;
-				stack.push(new IntegerConstant(ll % rr, 64));
+				stack.push(IntegerConstant.create(ll % rr, 64));
 			} else {
 				lx = (l instanceof IntegerConstant) ? ((IntegerConstant) l).getValue() : ((RealConstant) l).getValue();
 				rx = (r instanceof IntegerConstant) ? ((IntegerConstant) r).getValue() : ((RealConstant) r).getValue();
-				stack.push(new RealConstant(lx % rx, 64));
+				stack.push(RealConstant.create(lx % rx, 64));
 			}
 			break;
 		case B2I:
@@ -230,32 +230,32 @@ public final class Evaluator extends Visitor {
 		case BITOR:
 			ll = (l instanceof IntegerConstant) ? ((IntegerConstant) l).getValue() : 0;
 			rr = (r instanceof IntegerConstant) ? ((IntegerConstant) r).getValue() : 0;
-			stack.push(new IntegerConstant(ll | rr, 64));
+			stack.push(IntegerConstant.create(ll | rr, 64));
 			break;
 		case BITAND:
 			ll = (l instanceof IntegerConstant) ? ((IntegerConstant) l).getValue() : 0;
 			rr = (r instanceof IntegerConstant) ? ((IntegerConstant) r).getValue() : 0;
-			stack.push(new IntegerConstant(ll & rr, 64));
+			stack.push(IntegerConstant.create(ll & rr, 64));
 			break;
 		case BITXOR:
 			ll = (l instanceof IntegerConstant) ? ((IntegerConstant) l).getValue() : 0;
 			rr = (r instanceof IntegerConstant) ? ((IntegerConstant) r).getValue() : 0;
-			stack.push(new IntegerConstant(ll ^ rr, 64));
+			stack.push(IntegerConstant.create(ll ^ rr, 64));
 			break;
 		case SHL:
 			ll = (l instanceof IntegerConstant) ? ((IntegerConstant) l).getValue() : 0;
 			rr = (r instanceof IntegerConstant) ? ((IntegerConstant) r).getValue() : 0;
-			stack.push(new IntegerConstant(ll << rr, 64));
+			stack.push(IntegerConstant.create(ll << rr, 64));
 			break;
 		case ASHR:
 			ll = (l instanceof IntegerConstant) ? ((IntegerConstant) l).getValue() : 0;
 			rr = (r instanceof IntegerConstant) ? ((IntegerConstant) r).getValue() : 0;
-			stack.push(new IntegerConstant(ll >> rr, 64));
+			stack.push(IntegerConstant.create(ll >> rr, 64));
 			break;
 		case LSHR:
 			ll = (l instanceof IntegerConstant) ? ((IntegerConstant) l).getValue() : 0;
 			rr = (r instanceof IntegerConstant) ? ((IntegerConstant) r).getValue() : 0;
-			stack.push(new IntegerConstant(ll >>> rr, 64));
+			stack.push(IntegerConstant.create(ll >>> rr, 64));
 			break;
 		default:
 			stack.push(IntegerConstant.ZERO32);
@@ -20,36 +20,130 @@ package za.ac.sun.cs.coastal.solver;
 
 import java.util.Stack;
 
+/**
+ * Base class for all solver expressions. Expressions are immutable, and are
+ * created by static factory methods ({@code create}) that intern them: two
+ * structurally equal expressions created by these methods are the same object.
+ * Each expression computes its structural hash code when it is constructed, so
+ * that hashing and comparing expressions never require their string
+ * representations. The string representation is only produced when it is
+ * requested, and is not cached.
+ */
 public abstract class Expression implements Comparable<Expression> {
 
-	protected String stringRepr = null;
+	/**
+	 * The structural hash code of this expression.
+	 */
+	protected final int hash;
+
+	protected Expression(int hash) {
+		this.hash = hash;
+	}
 
 	public abstract void accept(Visitor visitor) throws VisitorException;
 
+	/**
+	 * Compare this expression to another expression. Expressions of different
+	 * kinds are ordered by their kinds (see {@link #getKind()}); expressions of
+	 * the same kind are compared structurally (see {@link #compareTo0(Expression)}).
+	 * The structural hash codes are used as a quick check for equality before the
+	 * structures are compared.
+	 * 
+	 * @param expression
+	 *                   the expression to compare to
+	 * @return a negative number, zero, or a positive number if this expression is
+	 *         less than, equal to, or greater than the given expression
+	 */
 	@Override
 	public final int compareTo(Expression expression) {
-		return toString().compareTo(expression.toString());
+		if (expression == this) {
+			return 0;
+		}
+		int order = Integer.compare(getKind(), expression.getKind());
+		if (order != 0) {
+			return order;
+		}
+		if ((expression.hash == hash) && equals0(expression)) {
+			return 0;
+		}
+		return compareTo0(expression);
 	}
 
+	/**
+	 * Return a number that identifies the kind of this expression. Expressions
+	 * of the same kind are instances of the same class.
+	 * 
+	 * @return the kind of this expression
+	 */
+	protected abstract int getKind();
+
+	/**
+	 * Compare the structure of this expression to another expression of the same
+	 * kind. The result is zero if and only if the expressions are structurally
+	 * equal.
+	 * 
+	 * @param expression
+	 *                   the expression to compare to
+	 * @return a negative number, zero, or a positive number if this expression is
+	 *         less than, equal to, or greater than the given expression
+	 */
+	protected abstract int compareTo0(Expression expression);
+
 	@Override
 	public final boolean equals(Object object) {
-		return (object != null) && (object.getClass() == this.getClass()) && toString().equals(object.toString());
+		if (object == this) {
+			return true;
+		}
+		if ((object == null) || (object.getClass() != this.getClass())) {
+			return false;
+		}
+		Expression expression = (Expression) object;
+		return (expression.hash == hash) && equals0(expression);
 	}
 
+	/**
+	 * Compare the structure of this expression to another expression of the same
+	 * class with the same hash code.
+	 * 
+	 * @param expression
+	 *                   the expression to compare to
+	 * @return {@code true} if and only if the expressions are structurally equal
+	 */
+	protected abstract boolean equals0(Expression expression);
+
 	@Override
 	public final int hashCode() {
-		return toString().hashCode();
+		return hash;
 	}
 
 	@Override
 	public final String toString() {
-		if (stringRepr == null) {
-			stringRepr = toString0();
-		}
-		return stringRepr;
+		StringBuilder b = new StringBuilder();
+		toString(b);
+		return b.toString();
 	}
 
-	protected abstract String toString0();
+	/**
+	 * Append the string representation of this expression to a string builder.
+	 * 
+	 * @param b
+	 *          the string builder to append to
+	 */
+	protected abstract void toString(StringBuilder b);
+
+	/**
+	 * Return the unique instance of an expression that is structurally equal to
+	 * the given one.
+	 * 
+	 * @param <T>
+	 *                   the class of the expression
+	 * @param expression
+	 *                   the newly constructed expression
+	 * @return the interned expression
+	 */
+	protected static <T extends Expression> T intern(T expression) {
+		return Interner.intern(expression);
+	}
 
 	// ======================================================================
 	//
@@ -20,27 +20,41 @@ package za.ac.sun.cs.coastal.solver;
 
 public class IntegerConstant extends Constant {
 
-	public static final Constant ZERO32 = new IntegerConstant(0, 32);
+	public static final Constant ZERO32 = create(0, 32);
 
-	public static final Constant ZERO64 = new IntegerConstant(0, 64);
+	public static final Constant ZERO64 = create(0, 64);
 	
-	public static final Constant ONE32 = new IntegerConstant(1, 32);
+	public static final Constant ONE32 = create(1, 32);
 	
-	public static final Constant ONE64 = new IntegerConstant(1, 64);
+	public static final Constant ONE64 = create(1, 64);
 	
-	public static final Constant MONE32 = new IntegerConstant(-1, 32);
+	public static final Constant MONE32 = create(-1, 32);
 	
-	public static final Constant MONE64 = new IntegerConstant(-1, 64);
+	public static final Constant MONE64 = create(-1, 64);
 	
 	protected final long value;
 
 	protected final int size;
 	
-	public IntegerConstant(final long value, final int size) {
+	protected IntegerConstant(final long value, final int size) {
+		super(31 * Long.hashCode(value) + size);
 		this.value = value;
 		this.size = size;
 	}
 
+	/**
+	 * Return the unique integer constant with the given value and size.
+	 * 
+	 * @param value
+	 *              the value of the constant
+	 * @param size
+	 *              the number of bits in the constant
+	 * @return the interned constant
+	 */
+	public static IntegerConstant create(final long value, final int size) {
+		return intern(new IntegerConstant(value, size));
+	}
+
 	public long getValue() {
 		return value;
 	}
@@ -68,8 +82,38 @@ public class IntegerConstant extends Constant {
 	// ======================================================================
 
 	@Override
-	public String toString0() {
-		return Long.toString(value);
+	protected void toString(StringBuilder b) {
+		b.append(value);
+	}
+
+	// ======================================================================
+	//
+	// EQUALITY
+	//
+	// ======================================================================
+
+	@Override
+	protected boolean equals0(Expression expression) {
+		IntegerConstant constant = (IntegerConstant) expression;
+		return (constant.value == value) && (constant.size == size);
+	}
+
+	// ======================================================================
+	//
+	// ORDERING
+	//
+	// ======================================================================
+
+	@Override
+	protected int getKind() {
+		return 0;
+	}
+
+	@Override
+	protected int compareTo0(Expression expression) {
+		IntegerConstant constant = (IntegerConstant) expression;
+		int order = Long.compare(value, constant.value);
+		return (order != 0) ? order : Integer.compare(size, constant.size);
 	}
 
 }
@@ -29,8 +29,8 @@ public class IntegerVariable extends Variable {
 
 	protected final long upperBound;
 	
-	public IntegerVariable(final String name, final int size, final long lowerBound, final long upperBound) {
-		super(name);
+	protected IntegerVariable(final String name, final int size, final long lowerBound, final long upperBound) {
+		super(31 * name.hashCode() + size, name);
 		assert (size == 32) || (size == 64) || (size == 8) || (size == 16);
 		this.size = size;
 		assert (lowerBound <= upperBound);
@@ -38,6 +38,24 @@ public class IntegerVariable extends Variable {
 		this.upperBound = upperBound;
 	}
 
+	/**
+	 * Return the unique integer variable with the given name, size and bounds.
+	 * 
+	 * @param name
+	 *                   the name of the variable
+	 * @param size
+	 *                   the number of bits in the variable
+	 * @param lowerBound
+	 *                   the smallest value of the variable
+	 * @param upperBound
+	 *                   the largest value of the variable
+	 * @return the interned variable
+	 */
+	public static IntegerVariable create(final String name, final int size, final long lowerBound,
+			final long upperBound) {
+		return intern(new IntegerVariable(name, size, lowerBound, upperBound));
+	}
+
 	public int getSize() {
 		return size;
 	}
@@ -64,8 +82,39 @@ public class IntegerVariable extends Variable {
 
 	// ======================================================================
 	//
-	// STRING REPRESENTATION
+	// EQUALITY
+	//
+	// ======================================================================
+
+	@Override
+	protected boolean equals0(Expression expression) {
+		IntegerVariable variable = (IntegerVariable) expression;
+		return getName().equals(variable.getName()) && (variable.size == size)
+				&& (variable.lowerBound == lowerBound) && (variable.upperBound == upperBound);
+	}
+
+	// ======================================================================
+	//
+	// ORDERING
 	//
 	// ======================================================================
 
+	@Override
+	protected int getKind() {
+		return 2;
+	}
+
+	@Override
+	protected int compareTo0(Expression expression) {
+		IntegerVariable variable = (IntegerVariable) expression;
+		int order = getName().compareTo(variable.getName());
+		if (order == 0) {
+			order = Integer.compare(size, variable.size);
+		}
+		if (order == 0) {
+			order = Long.compare(lowerBound, variable.lowerBound);
+		}
+		return (order != 0) ? order : Long.compare(upperBound, variable.upperBound);
+	}
+
 }
@@ -0,0 +1,100 @@
+/*
+ * This file is part of the COASTAL tool, https://deepseaplatform.github.io/coastal/
+ *
+ * Copyright (c) 2019-2020, Computer Science, Stellenbosch University.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package za.ac.sun.cs.coastal.solver;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Weak table of all expressions created by the static factory methods. An
+ * expression stays in the table for as long as it is referenced elsewhere.
+ * The table is split into a number of stripes, each with its own lock, so that
+ * threads that create expressions concurrently seldom contend.
+ */
+final class Interner {
+
+	/**
+	 * The number of stripes. Must be a power of two.
+	 */
+	private static final int STRIPE_COUNT = 64;
+
+	/**
+	 * The stripes of the table.
+	 */
+	private static final Stripe[] stripes = new Stripe[STRIPE_COUNT];
+
+	static {
+		for (int i = 0; i < STRIPE_COUNT; i++) {
+			stripes[i] = new Stripe();
+		}
+	}
+
+	private Interner() {
+		// static methods only
+	}
+
+	/**
+	 * Return the unique instance of an expression that is structurally equal to
+	 * the given one. If there is none, the given expression becomes the unique
+	 * instance.
+	 * 
+	 * @param <T>
+	 *                   the class of the expression
+	 * @param expression
+	 *                   the expression to intern
+	 * @return the interned expression
+	 */
+	@SuppressWarnings("unchecked")
+	static <T extends Expression> T intern(T expression) {
+		int h = expression.hash;
+		Stripe stripe = stripes[(h ^ (h >>> 16)) & (STRIPE_COUNT - 1)];
+		synchronized (stripe) {
+			WeakReference<Expression> ref = stripe.expressions.get(expression);
+			Expression existing = (ref == null) ? null : ref.get();
+			if (existing != null) {
+				return (T) existing;
+			}
+			stripe.expressions.put(expression, new WeakReference<>(expression));
+			return expression;
+		}
+	}
+
+	/**
+	 * Return the number of expressions in the table.
+	 * 
+	 * @return the number of interned expressions
+	 */
+	static int size() {
+		int size = 0;
+		for (Stripe stripe : stripes) {
+			synchronized (stripe) {
+				size += stripe.expressions.size();
+			}
+		}
+		return size;
+	}
+
+	private static final class Stripe {
+
+		private final Map<Expression, WeakReference<Expression>> expressions = new WeakHashMap<>();
+
+	}
+
+}
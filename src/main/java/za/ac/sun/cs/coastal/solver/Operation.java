@@ -33,18 +33,50 @@ public class Operation extends Expression {
 
 	protected final int resultingSize;
 	
-	public Operation(final Operator operator, Expression... operands) {
+	protected Operation(final Operator operator, int resultingSize, Expression... operands) {
+		super(hash(operator, resultingSize, operands));
 		this.operator = operator;
 		this.operands = operands;
-		this.resultingSize = 0;
+		this.resultingSize = resultingSize;
 	}
 
-	public Operation(final Operator operator, int resultingSize, Expression... operands) {
-		this.operator = operator;
-		this.operands = operands;
-		this.resultingSize = resultingSize;
+	/**
+	 * Return the unique operation with the given operator and operands.
+	 * 
+	 * @param operator
+	 *                 the operator
+	 * @param operands
+	 *                 the operands
+	 * @return the interned operation
+	 */
+	public static Operation create(final Operator operator, Expression... operands) {
+		return intern(new Operation(operator, 0, operands));
+	}
+
+	/**
+	 * Return the unique operation with the given operator, resulting size, and
+	 * operands.
+	 * 
+	 * @param operator
+	 *                      the operator
+	 * @param resultingSize
+	 *                      the number of bits in the result
+	 * @param operands
+	 *                      the operands
+	 * @return the interned operation
+	 */
+	public static Operation create(final Operator operator, int resultingSize, Expression... operands) {
+		return intern(new Operation(operator, resultingSize, operands));
+	}
+
+	private static int hash(final Operator operator, int resultingSize, Expression[] operands) {
+		int hash = 31 * operator.ordinal() + resultingSize;
+		for (Expression operand : operands) {
+			hash = 31 * hash + operand.hash;
+		}
+		return hash;
 	}
-	
+
 	public Operator getOperator() {
 		return operator;
 	}
@@ -117,61 +149,99 @@ public class Operation extends Expression {
 	// ======================================================================
 
 	@Override
-	public String toString0() {
-		StringBuilder sb = new StringBuilder();
+	protected void toString(StringBuilder b) {
 		int arity = operator.getArity();
 		Fix fix = operator.getFix();
 		if (arity == 2 && fix == Fix.INFIX) {
-			if ((operands[0] instanceof Constant) || (operands[0] instanceof Variable)) {
-				sb.append(operands[0].toString());
-			} else {
-				sb.append('(');
-				sb.append(operands[0].toString());
-				sb.append(')');
-			}
-			sb.append(operator.toString());
-			if ((operands[1] instanceof Constant) || (operands[1] instanceof Variable)) {
-				sb.append(operands[1].toString());
-			} else {
-				sb.append('(');
-				sb.append(operands[1].toString());
-				sb.append(')');
-			}
+			appendOperand(b, operands[0]);
+			b.append(operator.toString());
+			appendOperand(b, operands[1]);
 		} else if (arity == 1 && fix == Fix.INFIX) {
-			sb.append(operator.toString());
-			if ((operands[0] instanceof Constant) || (operands[0] instanceof Variable)) {
-				sb.append(operands[0].toString());
-			} else {
-				sb.append('(');
-				sb.append(operands[0].toString());
-				sb.append(')');
-			}
+			b.append(operator.toString());
+			appendOperand(b, operands[0]);
 		} else if (fix == Fix.POSTFIX) {
-			sb.append(operands[0].toString());
-			sb.append('.');
-			sb.append(operator.toString());
-			sb.append('(');
+			operands[0].toString(b);
+			b.append('.');
+			b.append(operator.toString());
+			b.append('(');
 			if (operands.length > 1) {
-				sb.append(operands[1].toString());
+				operands[1].toString(b);
 				for (int i = 2; i < operands.length; i++) {
-					sb.append(',');
-					sb.append(operands[i].toString());
+					b.append(',');
+					operands[i].toString(b);
 				}
 			}
-			sb.append(')');
+			b.append(')');
 		} else if (operands.length > 0) {
-			sb.append(operator.toString());
-			sb.append('(');
-			sb.append(operands[0].toString());
+			b.append(operator.toString());
+			b.append('(');
+			operands[0].toString(b);
 			for (int i = 1; i < operands.length; i++) {
-				sb.append(',');
-				sb.append(operands[i].toString());
+				b.append(',');
+				operands[i].toString(b);
 			}
-			sb.append(')');
+			b.append(')');
+		} else {
+			b.append(operator.toString());
+		}
+	}
+
+	private static void appendOperand(StringBuilder b, Expression operand) {
+		if ((operand instanceof Constant) || (operand instanceof Variable)) {
+			operand.toString(b);
 		} else {
-			sb.append(operator.toString());
+			b.append('(');
+			operand.toString(b);
+			b.append(')');
+		}
+	}
+
+	// ======================================================================
+	//
+	// EQUALITY
+	//
+	// ======================================================================
+
+	@Override
+	protected boolean equals0(Expression expression) {
+		Operation operation = (Operation) expression;
+		if ((operation.operator != operator) || (operation.resultingSize != resultingSize)
+				|| (operation.operands.length != operands.length)) {
+			return false;
+		}
+		for (int i = 0; i < operands.length; i++) {
+			if (!operands[i].equals(operation.operands[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// ======================================================================
+	//
+	// ORDERING
+	//
+	// ======================================================================
+
+	@Override
+	protected int getKind() {
+		return 4;
+	}
+
+	@Override
+	protected int compareTo0(Expression expression) {
+		Operation operation = (Operation) expression;
+		int order = operator.compareTo(operation.operator);
+		if (order == 0) {
+			order = Integer.compare(resultingSize, operation.resultingSize);
+		}
+		if (order == 0) {
+			order = Integer.compare(operands.length, operation.operands.length);
+		}
+		for (int i = 0; (order == 0) && (i < operands.length); i++) {
+			order = operands[i].compareTo(operation.operands[i]);
 		}
-		return sb.toString();
+		return order;
 	}
 
 	// ======================================================================
@@ -190,7 +260,7 @@ public class Operation extends Expression {
 		} else if (b == TRUE) {
 			return TRUE;
 		} else {
-			return new Operation(Operator.OR, a, b);
+			return create(Operator.OR, a, b);
 		}
 	}
 
@@ -204,7 +274,7 @@ public class Operation extends Expression {
 		} else if (b == TRUE) {
 			return a;
 		} else {
-			return new Operation(Operator.AND, a, b);
+			return create(Operator.AND, a, b);
 		}
 	}
 
@@ -214,7 +284,7 @@ public class Operation extends Expression {
 		} else if (a == TRUE) {
 			return FALSE;
 		} else {
-			return new Operation(Operator.NOT, a);
+			return create(Operator.NOT, a);
 		}
 	}
 
@@ -222,189 +292,189 @@ public class Operation extends Expression {
 		if (a == b) {
 			return TRUE;
 		} else {
-			return new Operation(Operator.EQ, a, b);
+			return create(Operator.EQ, a, b);
 		}
 	}
 
 	public static Expression ne(Expression a, Expression b) {
-		return new Operation(Operator.NE, a, b);
+		return create(Operator.NE, a, b);
 	}
 
 	public static Expression lt(Expression a, Expression b) {
-		return new Operation(Operator.LT, a, b);
+		return create(Operator.LT, a, b);
 	}
 
 	public static Expression le(Expression a, Expression b) {
-		return new Operation(Operator.LE, a, b);
+		return create(Operator.LE, a, b);
 	}
 
 	public static Expression gt(Expression a, Expression b) {
-		return new Operation(Operator.GT, a, b);
+		return create(Operator.GT, a, b);
 	}
 
 	public static Expression ge(Expression a, Expression b) {
-		return new Operation(Operator.GE, a, b);
+		return create(Operator.GE, a, b);
 	}
 
 	public static Expression lcmp(Expression a, Expression b) {
-		return new Operation(Operator.LCMP, 32, a, b);
+		return create(Operator.LCMP, 32, a, b);
 	}
 
 	public static Expression fcmpl(Expression a, Expression b) {
-		return new Operation(Operator.FCMPL, a, b);
+		return create(Operator.FCMPL, a, b);
 	}
 
 	public static Expression fcmpg(Expression a, Expression b) {
-		return new Operation(Operator.FCMPG, a, b);
+		return create(Operator.FCMPG, a, b);
 	}
 
 	public static Expression dcmpl(Expression a, Expression b) {
-		return new Operation(Operator.DCMPL, 32, a, b);
+		return create(Operator.DCMPL, 32, a, b);
 	}
 
 	public static Expression dcmpg(Expression a, Expression b) {
-		return new Operation(Operator.DCMPG, 32, a, b);
+		return create(Operator.DCMPG, 32, a, b);
 	}
 	
 	public static Expression b2i(Expression a) {
-		return new Operation(Operator.B2I, a);
+		return create(Operator.B2I, a);
 	}
 	
 	public static Expression d2f(Expression a) {
-		return new Operation(Operator.D2F, 32, a);
+		return create(Operator.D2F, 32, a);
 	}
 	
 	public static Expression d2i(Expression a) {
-		return new Operation(Operator.D2I, 32, a);
+		return create(Operator.D2I, 32, a);
 	}
 	
 	public static Expression d2l(Expression a) {
-		return new Operation(Operator.D2L, a);
+		return create(Operator.D2L, a);
 	}
 	
 	public static Expression f2i(Expression a) {
-		return new Operation(Operator.F2I, a);
+		return create(Operator.F2I, a);
 	}
 	
 	public static Expression f2l(Expression a) {
-		return new Operation(Operator.F2L, 64, a);
+		return create(Operator.F2L, 64, a);
 	}
 	
 	public static Expression f2d(Expression a) {
-		return new Operation(Operator.F2D, 64, a);
+		return create(Operator.F2D, 64, a);
 	}
 	
 	public static Expression i2b(Expression a) {
-		return new Operation(Operator.I2B, a);
+		return create(Operator.I2B, a);
 	}
 	
 	public static Expression i2c(Expression a) {
-		return new Operation(Operator.I2C, a);
+		return create(Operator.I2C, a);
 	}
 	
 	public static Expression i2d(Expression a) {
-		return new Operation(Operator.I2D, 64, a);
+		return create(Operator.I2D, 64, a);
 	}
 	
 	public static Expression i2f(Expression a) {
-		return new Operation(Operator.I2F, a);
+		return create(Operator.I2F, a);
 	}
 	
 	public static Expression i2l(Expression a) {
-		return new Operation(Operator.I2L, 64, a);
+		return create(Operator.I2L, 64, a);
 	}
 	
 	public static Expression i2s(Expression a) {
-		return new Operation(Operator.I2S, a);
+		return create(Operator.I2S, a);
 	}
 	
 	public static Expression l2d(Expression a) {
-		return new Operation(Operator.L2D, a);
+		return create(Operator.L2D, a);
 	}
 	
 	public static Expression l2f(Expression a) {
-		return new Operation(Operator.L2F, 32, a);
+		return create(Operator.L2F, 32, a);
 	}
 	
 	public static Expression l2i(Expression a) {
-		return new Operation(Operator.L2I, 32, a);
+		return create(Operator.L2I, 32, a);
 	}
 	
 	public static Expression s2i(Expression a) {
-		return new Operation(Operator.S2I, a);
+		return create(Operator.S2I, a);
 	}
 	
 	public static Expression fneg(Expression a) {
-		return new Operation(Operator.FNEG, a);
+		return create(Operator.FNEG, a);
 	}
 	
 	public static Expression add(Expression a, Expression b) {
 		if (a instanceof IntegerConstant) {
 			if (b instanceof IntegerConstant) {
 				int z = Math.max(((IntegerConstant) a).getSize(), ((IntegerConstant) b).getSize());
-				return new IntegerConstant(((IntegerConstant) a).getValue() + ((IntegerConstant) b).getValue(), z);
+				return IntegerConstant.create(((IntegerConstant) a).getValue() + ((IntegerConstant) b).getValue(), z);
 			} else if (b instanceof RealConstant) {
 				// Should not happen
 				assert false;
-				// return new RealConstant(((IntegerConstant) a).getValue() + ((RealConstant) b).getValue());
+				// return RealConstant.create(((IntegerConstant) a).getValue() + ((RealConstant) b).getValue());
 			}
 		} else if (a instanceof RealConstant) {
 			if (b instanceof IntegerConstant) {
 				// Should not happen
 				assert false;
-				// return new RealConstant(((RealConstant) a).getValue() + ((IntegerConstant) b).getValue());
+				// return RealConstant.create(((RealConstant) a).getValue() + ((IntegerConstant) b).getValue());
 			} else if (b instanceof RealConstant) {
 				int z = Math.max(((RealConstant) a).getSize(), ((RealConstant) b).getSize());
-				return new RealConstant(((RealConstant) a).getValue() + ((RealConstant) b).getValue(), z);
+				return RealConstant.create(((RealConstant) a).getValue() + ((RealConstant) b).getValue(), z);
 			}
 		}
-		return new Operation(Operator.ADD, a, b);
+		return create(Operator.ADD, a, b);
 	}
 
 	public static Expression sub(Expression a, Expression b) {
 		if (a instanceof IntegerConstant) {
 			if (b instanceof IntegerConstant) {
 				int z = Math.max(((IntegerConstant) a).getSize(), ((IntegerConstant) b).getSize());
-				return new IntegerConstant(((IntegerConstant) a).getValue() - ((IntegerConstant) b).getValue(), z);
+				return IntegerConstant.create(((IntegerConstant) a).getValue() - ((IntegerConstant) b).getValue(), z);
 			} else if (b instanceof RealConstant) {
 				// Should not happen
 				assert false;
-				// return new RealConstant(((IntegerConstant) a).getValue() - ((RealConstant) b).getValue());
+				// return RealConstant.create(((IntegerConstant) a).getValue() - ((RealConstant) b).getValue());
 			}
 		} else if (a instanceof RealConstant) {
 			if (b instanceof IntegerConstant) {
 				// Should not happen
 				assert false;
-				// return new RealConstant(((RealConstant) a).getValue() - ((IntegerConstant) b).getValue());
+				// return RealConstant.create(((RealConstant) a).getValue() - ((IntegerConstant) b).getValue());
 			} else if (b instanceof RealConstant) {
 				int z = Math.max(((RealConstant) a).getSize(), ((RealConstant) b).getSize());
-				return new RealConstant(((RealConstant) a).getValue() - ((RealConstant) b).getValue(), z);
+				return RealConstant.create(((RealConstant) a).getValue() - ((RealConstant) b).getValue(), z);
 			}
 		}
-		return new Operation(Operator.SUB, a, b);
+		return create(Operator.SUB, a, b);
 	}
 
 	public static Expression mul(Expression a, Expression b) {
 		if (a instanceof IntegerConstant) {
 			if (b instanceof IntegerConstant) {
 				int z = Math.max(((IntegerConstant) a).getSize(), ((IntegerConstant) b).getSize());
-				return new IntegerConstant(((IntegerConstant) a).getValue() * ((IntegerConstant) b).getValue(), z);
+				return IntegerConstant.create(((IntegerConstant) a).getValue() * ((IntegerConstant) b).getValue(), z);
 			} else if (b instanceof RealConstant) {
 				// Should not happen
 				assert false;
-				// return new RealConstant(((IntegerConstant) a).getValue() * ((RealConstant) b).getValue());
+				// return RealConstant.create(((IntegerConstant) a).getValue() * ((RealConstant) b).getValue());
 			}
 		} else if (a instanceof RealConstant) {
 			if (b instanceof IntegerConstant) {
 				// Should not happen
 				assert false;
-				// return new RealConstant(((RealConstant) a).getValue() * ((IntegerConstant) b).getValue());
+				// return RealConstant.create(((RealConstant) a).getValue() * ((IntegerConstant) b).getValue());
 			} else if (b instanceof RealConstant) {
 				int z = Math.max(((RealConstant) a).getSize(), ((RealConstant) b).getSize());
-				return new RealConstant(((RealConstant) a).getValue() * ((RealConstant) b).getValue(), z);
+				return RealConstant.create(((RealConstant) a).getValue() * ((RealConstant) b).getValue(), z);
 			}
 		}
-		return new Operation(Operator.MUL, a, b);
+		return create(Operator.MUL, a, b);
 	}
 
 	public static Expression div(Expression a, Expression b) {
@@ -414,26 +484,26 @@ public class Operation extends Expression {
 				if (((IntegerConstant) b).getValue() == 0) {
 					return null;
 				}
-				return new IntegerConstant(((IntegerConstant) a).getValue() / ((IntegerConstant) b).getValue(), z);
+				return IntegerConstant.create(((IntegerConstant) a).getValue() / ((IntegerConstant) b).getValue(), z);
 			} else if (b instanceof RealConstant) {
 				// Should not happen
 				assert false;
-				// return new RealConstant(((IntegerConstant) a).getValue() / ((RealConstant) b).getValue());
+				// return RealConstant.create(((IntegerConstant) a).getValue() / ((RealConstant) b).getValue());
 			}
 		} else if (a instanceof RealConstant) {
 			if (b instanceof IntegerConstant) {
 				// Should not happen
 				assert false;
-				// return new RealConstant(((RealConstant) a).getValue() / ((IntegerConstant) b).getValue());
+				// return RealConstant.create(((RealConstant) a).getValue() / ((IntegerConstant) b).getValue());
 			} else if (b instanceof RealConstant) {
 				int z = Math.max(((RealConstant) a).getSize(), ((RealConstant) b).getSize());
 //				if (((RealConstant) b).getValue() == 0.0) {
 //					return null;
 //				} 
-				return new RealConstant(((RealConstant) a).getValue() / ((RealConstant) b).getValue(), z);
+				return RealConstant.create(((RealConstant) a).getValue() / ((RealConstant) b).getValue(), z);
 			}
 		}
-		return new Operation(Operator.DIV, a, b);
+		return create(Operator.DIV, a, b);
 	}
 	
 	public static Expression rem(Expression a, Expression b) {
@@ -443,7 +513,7 @@ public class Operation extends Expression {
 				if (((IntegerConstant) b).getValue() == 0) {
 					return null;
 				}
-				return new IntegerConstant(((IntegerConstant) a).getValue() % ((IntegerConstant) b).getValue(), z);
+				return IntegerConstant.create(((IntegerConstant) a).getValue() % ((IntegerConstant) b).getValue(), z);
 			} else if (b instanceof RealConstant) {
 				//should not happen
 				assert false;
@@ -457,17 +527,17 @@ public class Operation extends Expression {
 				if (((RealConstant) b).getValue() == 0.0) {
 					return null;
 				} 
-				return new RealConstant(((RealConstant) a).getValue() % ((RealConstant) b).getValue(), z);
+				return RealConstant.create(((RealConstant) a).getValue() % ((RealConstant) b).getValue(), z);
 			}
 		}
-		return new Operation(Operator.REM, a, b);
+		return create(Operator.REM, a, b);
 	}
 	
 	public static Expression bitor(Expression a, Expression b) {
 		if (a instanceof IntegerConstant) {
 			if (b instanceof IntegerConstant) {
 				int z = Math.max(((IntegerConstant) a).getSize(), ((IntegerConstant) b).getSize());
-				return new IntegerConstant(((IntegerConstant) a).getValue() | ((IntegerConstant) b).getValue(), z);
+				return IntegerConstant.create(((IntegerConstant) a).getValue() | ((IntegerConstant) b).getValue(), z);
 			} else if (b instanceof RealConstant || b instanceof RealVariable) {
 				//should not happen
 				assert false;
@@ -478,14 +548,14 @@ public class Operation extends Expression {
 		} else if (a instanceof RealVariable || b instanceof RealVariable) {
 			assert false;
 		}
-		return new Operation(Operator.BITOR, a, b);
+		return create(Operator.BITOR, a, b);
 	}
 	
 	public static Expression bitand(Expression a, Expression b) {
 		if (a instanceof IntegerConstant) {
 			if (b instanceof IntegerConstant) {
 				int z = Math.max(((IntegerConstant) a).getSize(), ((IntegerConstant) b).getSize());
-				return new IntegerConstant(((IntegerConstant) a).getValue() & ((IntegerConstant) b).getValue(), z);
+				return IntegerConstant.create(((IntegerConstant) a).getValue() & ((IntegerConstant) b).getValue(), z);
 			} else if (b instanceof RealConstant || b instanceof RealVariable) {
 				//should not happen
 				assert false;
@@ -496,14 +566,14 @@ public class Operation extends Expression {
 		} else if (a instanceof RealVariable || b instanceof RealVariable) {
 			assert false;
 		}
-		return new Operation(Operator.BITAND, a, b);
+		return create(Operator.BITAND, a, b);
 	}
 	
 	public static Expression bitxor(Expression a, Expression b) {
 		if (a instanceof IntegerConstant) {
 			if (b instanceof IntegerConstant) {
 				int z = Math.max(((IntegerConstant) a).getSize(), ((IntegerConstant) b).getSize());
-				return new IntegerConstant(((IntegerConstant) a).getValue() ^ ((IntegerConstant) b).getValue(), z);
+				return IntegerConstant.create(((IntegerConstant) a).getValue() ^ ((IntegerConstant) b).getValue(), z);
 			} else if (b instanceof RealConstant || b instanceof RealVariable) {
 				//should not happen
 				assert false;
@@ -514,14 +584,14 @@ public class Operation extends Expression {
 		} else if (a instanceof RealVariable || b instanceof RealVariable) {
 			assert false;
 		}
-		return new Operation(Operator.BITXOR, a, b);
+		return create(Operator.BITXOR, a, b);
 	}
 	
 	public static Expression shl(Expression a, Expression b) {
 		if (a instanceof IntegerConstant) {
 			if (b instanceof IntegerConstant) {
 				int z = ((IntegerConstant) a).getSize();
-				return new IntegerConstant(((IntegerConstant) a).getValue() << ((IntegerConstant) b).getValue(), z);
+				return IntegerConstant.create(((IntegerConstant) a).getValue() << ((IntegerConstant) b).getValue(), z);
 			} else if (b instanceof RealConstant || b instanceof RealVariable) {
 				//should not happen
 				assert false;
@@ -532,14 +602,14 @@ public class Operation extends Expression {
 		} else if (a instanceof RealVariable || b instanceof RealVariable) {
 			assert false;
 		}
-		return new Operation(Operator.SHL, a, b);
+		return create(Operator.SHL, a, b);
 	}
 	
 	public static Expression ashr(Expression a, Expression b) {
 		if (a instanceof IntegerConstant) {
 			if (b instanceof IntegerConstant) {
 				int z = ((IntegerConstant) a).getSize();
-				return new IntegerConstant(((IntegerConstant) a).getValue() >> ((IntegerConstant) b).getValue(), z);
+				return IntegerConstant.create(((IntegerConstant) a).getValue() >> ((IntegerConstant) b).getValue(), z);
 			} else if (b instanceof RealConstant || b instanceof RealVariable) {
 				//should not happen
 				assert false;
@@ -550,14 +620,14 @@ public class Operation extends Expression {
 		} else if (a instanceof RealVariable || b instanceof RealVariable) {
 			assert false;
 		}
-		return new Operation(Operator.ASHR, a, b);
+		return create(Operator.ASHR, a, b);
 	}
 	
 	public static Expression lshr(Expression a, Expression b) {
 		if (a instanceof IntegerConstant) {
 			if (b instanceof IntegerConstant) {
 				int z = ((IntegerConstant) a).getSize();
-				return new IntegerConstant(((IntegerConstant) a).getValue() >>> ((IntegerConstant) b).getValue(), z);
+				return IntegerConstant.create(((IntegerConstant) a).getValue() >>> ((IntegerConstant) b).getValue(), z);
 			} else if (b instanceof RealConstant || b instanceof RealVariable) {
 				//should not happen
 				assert false;
@@ -568,7 +638,7 @@ public class Operation extends Expression {
 		} else if (a instanceof RealVariable || b instanceof RealVariable) {
 			assert false;
 		}
-		return new Operation(Operator.LSHR, a, b);
+		return create(Operator.LSHR, a, b);
 	}
 
 	// ======================================================================
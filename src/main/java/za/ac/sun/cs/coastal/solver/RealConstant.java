@@ -20,19 +20,33 @@ package za.ac.sun.cs.coastal.solver;
 
 public class RealConstant extends Constant {
 
-	public static final Constant ZERO32 = new RealConstant(0, 32);
+	public static final Constant ZERO32 = create(0, 32);
 
-	public static final Constant ZERO64 = new RealConstant(0, 64);
+	public static final Constant ZERO64 = create(0, 64);
 	
 	private final double value;
 
 	protected final int size;
 	
-	public RealConstant(final double value, final int size) {
+	protected RealConstant(final double value, final int size) {
+		super(31 * Double.hashCode(value) + size);
 		this.value = value;
 		this.size = size;
 	}
 
+	/**
+	 * Return the unique real constant with the given value and size.
+	 * 
+	 * @param value
+	 *              the value of the constant
+	 * @param size
+	 *              the number of bits in the constant
+	 * @return the interned constant
+	 */
+	public static RealConstant create(final double value, final int size) {
+		return intern(new RealConstant(value, size));
+	}
+
 	public double getValue() {
 		return value;
 	}
@@ -60,8 +74,38 @@ public class RealConstant extends Constant {
 	// ======================================================================
 
 	@Override
-	public String toString0() {
-		return Double.toString(value);
+	protected void toString(StringBuilder b) {
+		b.append(value);
+	}
+
+	// ======================================================================
+	//
+	// EQUALITY
+	//
+	// ======================================================================
+
+	@Override
+	protected boolean equals0(Expression expression) {
+		RealConstant constant = (RealConstant) expression;
+		return (Double.compare(constant.value, value) == 0) && (constant.size == size);
+	}
+
+	// ======================================================================
+	//
+	// ORDERING
+	//
+	// ======================================================================
+
+	@Override
+	protected int getKind() {
+		return 1;
+	}
+
+	@Override
+	protected int compareTo0(Expression expression) {
+		RealConstant constant = (RealConstant) expression;
+		int order = Double.compare(value, constant.value);
+		return (order != 0) ? order : Integer.compare(size, constant.size);
 	}
 
 }
@@ -29,8 +29,8 @@ public class RealVariable extends Variable {
 
 	protected final double upperBound;
 	
-	public RealVariable(final String name, final int size, final double lowerBound, final double upperBound) {
-		super(name);
+	protected RealVariable(final String name, final int size, final double lowerBound, final double upperBound) {
+		super(31 * name.hashCode() + size, name);
 		assert (size == 32) || (size == 64);
 		this.size = size;
 		assert (lowerBound <= upperBound);
@@ -38,6 +38,24 @@ public class RealVariable extends Variable {
 		this.upperBound = upperBound;
 	}
 
+	/**
+	 * Return the unique real variable with the given name, size and bounds.
+	 * 
+	 * @param name
+	 *                   the name of the variable
+	 * @param size
+	 *                   the number of bits in the variable
+	 * @param lowerBound
+	 *                   the smallest value of the variable
+	 * @param upperBound
+	 *                   the largest value of the variable
+	 * @return the interned variable
+	 */
+	public static RealVariable create(final String name, final int size, final double lowerBound,
+			final double upperBound) {
+		return intern(new RealVariable(name, size, lowerBound, upperBound));
+	}
+
 	public int getSize() {
 		return size;
 	}
@@ -62,4 +80,42 @@ public class RealVariable extends Variable {
 		visitor.postVisit(this);
 	}
 
+	// ======================================================================
+	//
+	// EQUALITY
+	//
+	// ======================================================================
+
+	@Override
+	protected boolean equals0(Expression expression) {
+		RealVariable variable = (RealVariable) expression;
+		return getName().equals(variable.getName()) && (variable.size == size)
+				&& (Double.compare(variable.lowerBound, lowerBound) == 0)
+				&& (Double.compare(variable.upperBound, upperBound) == 0);
+	}
+
+	// ======================================================================
+	//
+	// ORDERING
+	//
+	// ======================================================================
+
+	@Override
+	protected int getKind() {
+		return 3;
+	}
+
+	@Override
+	protected int compareTo0(Expression expression) {
+		RealVariable variable = (RealVariable) expression;
+		int order = getName().compareTo(variable.getName());
+		if (order == 0) {
+			order = Integer.compare(size, variable.size);
+		}
+		if (order == 0) {
+			order = Double.compare(lowerBound, variable.lowerBound);
+		}
+		return (order != 0) ? order : Double.compare(upperBound, variable.upperBound);
+	}
+
 }
@@ -0,0 +1,146 @@
+/*
+ * This file is part of the COASTAL tool, https://deepseaplatform.github.io/coastal/
+ *
+ * Copyright (c) 2019-2020, Computer Science, Stellenbosch University.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package za.ac.sun.cs.coastal.solver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Removes the conjuncts of a path condition that are independent of its new
+ * conjuncts. Two conjuncts depend on each other if they share a variable, or
+ * if they both depend on a third conjunct. When a path condition is the
+ * extension of another path condition for which a model is known, only the new
+ * conjuncts and the conjuncts they depend on need to be solved: the known model
+ * already satisfies the rest, and its values can be reused for the variables
+ * that do not appear in the slice.
+ */
+public final class Slicer {
+
+	private Slicer() {
+		// static methods only
+	}
+
+	/**
+	 * Return the slice of a path condition that is relevant to the conjuncts that
+	 * are not already known to be satisfied. If no conjunct can be removed, the
+	 * original path condition is returned.
+	 * 
+	 * @param expression
+	 *                   the path condition to slice
+	 * @param satisfied
+	 *                   the conjuncts that are satisfied by a known model
+	 * @return the conjunction of the relevant conjuncts
+	 */
+	public static Expression slice(Expression expression, Set<Expression> satisfied) {
+		List<Expression> conjuncts = Solver.getConjuncts(expression);
+		List<Set<Variable>> variables = new ArrayList<>(conjuncts.size());
+		Map<Variable, Variable> parents = new HashMap<>();
+		for (Expression conjunct : conjuncts) {
+			Set<Variable> vars = getVariables(conjunct);
+			variables.add(vars);
+			Variable first = null;
+			for (Variable var : vars) {
+				parents.putIfAbsent(var, var);
+				if (first == null) {
+					first = var;
+				} else {
+					union(parents, first, var);
+				}
+			}
+		}
+		Set<Variable> roots = new HashSet<>();
+		boolean hasNewConjunct = false;
+		for (int i = 0; i < conjuncts.size(); i++) {
+			if (!satisfied.contains(conjuncts.get(i))) {
+				hasNewConjunct = true;
+				for (Variable var : variables.get(i)) {
+					roots.add(find(parents, var));
+				}
+			}
+		}
+		if (!hasNewConjunct) {
+			return expression;
+		}
+		Expression slice = null;
+		int sliceSize = 0;
+		for (int i = 0; i < conjuncts.size(); i++) {
+			Expression conjunct = conjuncts.get(i);
+			boolean relevant = !satisfied.contains(conjunct);
+			for (Variable var : variables.get(i)) {
+				if (relevant) {
+					break;
+				}
+				relevant = roots.contains(find(parents, var));
+			}
+			if (relevant) {
+				slice = (slice == null) ? conjunct : Operation.and(conjunct, slice);
+				sliceSize++;
+			}
+		}
+		return (sliceSize == conjuncts.size()) ? expression : slice;
+	}
+
+	/**
+	 * Return the variables that appear in an expression.
+	 * 
+	 * @param expression
+	 *                   the expression to examine
+	 * @return the set of variables
+	 */
+	public static Set<Variable> getVariables(Expression expression) {
+		final Set<Variable> variables = new HashSet<>();
+		try {
+			expression.accept(new Visitor() {
+				@Override
+				public void preVisit(Variable variable) {
+					variables.add(variable);
+				}
+			});
+		} catch (VisitorException x) {
+			// the visitor does not throw exceptions
+		}
+		return variables;
+	}
+
+	private static Variable find(Map<Variable, Variable> parents, Variable var) {
+		Variable root = var;
+		while (parents.get(root) != root) {
+			root = parents.get(root);
+		}
+		while (var != root) {
+			Variable next = parents.get(var);
+			parents.put(var, root);
+			var = next;
+		}
+		return root;
+	}
+
+	private static void union(Map<Variable, Variable> parents, Variable a, Variable b) {
+		Variable rootA = find(parents, a);
+		Variable rootB = find(parents, b);
+		if (rootA != rootB) {
+			parents.put(rootB, rootA);
+		}
+	}
+
+}
@@ -18,8 +18,15 @@
  */
 package za.ac.sun.cs.coastal.solver;
 
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+
 import za.ac.sun.cs.coastal.COASTAL;
 import za.ac.sun.cs.coastal.Configuration;
+import za.ac.sun.cs.coastal.solver.Operation.Operator;
 import za.ac.sun.cs.coastal.symbolic.Input;
 
 public abstract class Solver {
@@ -28,7 +35,18 @@ public abstract class Solver {
 
 	protected final Configuration configuration;
 
-	protected static Solver solver = null;
+	/**
+	 * The solver of each analysis run. Runs that share the JVM, such as those of
+	 * a batch, each get a solver built from their own configuration. A solver is
+	 * forgotten when its run stops.
+	 */
+	private static final Map<COASTAL, Solver> solvers = new IdentityHashMap<>();
+
+	/**
+	 * Result of {@link #solveOrUnknown(Expression)} when the solver could not
+	 * decide whether an expression is satisfiable.
+	 */
+	public static final Input UNKNOWN = new Input();
 
 	public Solver(COASTAL coastal, Configuration configuration) {
 		this.coastal = coastal;
@@ -37,21 +55,80 @@ public abstract class Solver {
 
 	public abstract Input solve(Expression expression);
 
+	/**
+	 * Solve an expression, and distinguish between expressions that are
+	 * unsatisfiable and expressions the solver could not decide. Solvers that
+	 * cannot make this distinction need not override this method.
+	 * 
+	 * @param expression
+	 *                   the expression to solve
+	 * @return a model for the expression, {@code null} if there is none, or
+	 *         {@link #UNKNOWN} if the solver failed
+	 */
+	public Input solveOrUnknown(Expression expression) {
+		return solve(expression);
+	}
+
+	/**
+	 * Return a subset of the conjuncts of an unsatisfiable expression that is
+	 * also unsatisfiable. Solvers that cannot compute unsatisfiable cores need
+	 * not override this method: it returns all the conjuncts.
+	 * 
+	 * @param expression
+	 *                   an unsatisfiable expression
+	 * @return a list of unsatisfiable conjuncts
+	 */
+	public List<Expression> getUnsatCore(Expression expression) {
+		return getConjuncts(expression);
+	}
+
 	public static Solver getSolver(COASTAL coastal) {
-		if (solver == null) {
-			String solverName = coastal.getConfig().getString("coastal.settings.solver");
-			if (solverName != null) {
-				Configuration solverConfiguration = coastal.getConfig().subset("coastal.settings.solver");
-				Object s = Configuration.createInstance(coastal, solverConfiguration, solverName.trim());
-				if ((s != null) && (s instanceof Solver)) {
-					solver = (Solver) s;
+		synchronized (solvers) {
+			Solver solver = solvers.get(coastal);
+			if (solver == null) {
+				solver = createSolver(coastal);
+				if (solver != null) {
+					solvers.put(coastal, solver);
+					coastal.getBroker().subscribe("coastal-stop", o -> forgetSolver(coastal));
 				}
 			}
+			return solver;
+		}
+	}
+
+	private static Solver createSolver(COASTAL coastal) {
+		String solverName = coastal.getConfig().getString("coastal.settings.solver");
+		if (solverName == null) {
+			return null;
+		}
+		Configuration solverConfiguration = coastal.getConfig().subset("coastal.settings.solver");
+		Object s = Configuration.createInstance(coastal, solverConfiguration, solverName.trim());
+		if ((s == null) || !(s instanceof Solver)) {
+			return null;
+		}
+		Solver solver = (Solver) s;
+		int bvBudget = solverConfiguration.getInt("bv-budget", 0);
+		if (bvBudget > 0) {
+			solver = new SolverBV(coastal, solverConfiguration, solver, bvBudget);
+		}
+		int cacheSize = solverConfiguration.getInt("cache-size", 0);
+		if (cacheSize > 0) {
+			solver = new SolverCache(coastal, solverConfiguration, solver, cacheSize);
 		}
 		return solver;
 	}
 
-	public static void report() {
+	private static void forgetSolver(COASTAL coastal) {
+		synchronized (solvers) {
+			solvers.remove(coastal);
+		}
+	}
+
+	public static void report(COASTAL coastal) {
+		Solver solver;
+		synchronized (solvers) {
+			solver = solvers.get(coastal);
+		}
 		if (solver != null) {
 			solver.issueReport();
 		}
@@ -59,4 +136,29 @@ public abstract class Solver {
 	
 	public void issueReport() { }
 
+	/**
+	 * Split an expression into its conjuncts. Path conditions are built by
+	 * adding new conjuncts on the left, so the conjuncts are returned from right
+	 * to left, oldest first.
+	 * 
+	 * @param expression
+	 *                   the expression to split
+	 * @return the list of conjuncts
+	 */
+	public static List<Expression> getConjuncts(Expression expression) {
+		List<Expression> conjuncts = new ArrayList<>();
+		Stack<Expression> pending = new Stack<>();
+		pending.push(expression);
+		while (!pending.isEmpty()) {
+			Expression e = pending.pop();
+			if ((e instanceof Operation) && (((Operation) e).getOperator() == Operator.AND)) {
+				pending.push(((Operation) e).getOperand(0));
+				pending.push(((Operation) e).getOperand(1));
+			} else {
+				conjuncts.add(e);
+			}
+		}
+		return conjuncts;
+	}
+
 }
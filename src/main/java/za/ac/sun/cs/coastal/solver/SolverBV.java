@@ -0,0 +1,674 @@
+/*
+ * This file is part of the COASTAL tool, https://deepseaplatform.github.io/coastal/
+ *
+ * Copyright (c) 2019-2020, Computer Science, Stellenbosch University.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package za.ac.sun.cs.coastal.solver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.Logger;
+
+import za.ac.sun.cs.coastal.COASTAL;
+import za.ac.sun.cs.coastal.Configuration;
+import za.ac.sun.cs.coastal.messages.Tuple;
+import za.ac.sun.cs.coastal.solver.Operation.Operator;
+import za.ac.sun.cs.coastal.symbolic.Input;
+
+/**
+ * In-process solver for constraints over bounded integer variables. The
+ * constraints are translated to a small evaluation tree with the same
+ * bit-vector semantics as the translation used by {@link SolverZ3}: operands
+ * are sign-extended to the larger of their sizes, and results wrap around.
+ * The domains of the variables are first narrowed by the conjuncts that
+ * compare a variable to a constant, and the remaining assignments are then
+ * enumerated depth-first, checking each conjunct as soon as all its variables
+ * have values.
+ * 
+ * The search is bounded by a budget of assignments. Expressions that involve
+ * real values or operations outside the fragment, and expressions for which
+ * the budget runs out, are passed on to another solver.
+ */
+public class SolverBV extends Solver {
+
+	protected final Logger log;
+
+	/**
+	 * The solver for expressions that cannot be solved in-process.
+	 */
+	protected final Solver delegate;
+
+	/**
+	 * The maximum number of assignments tried for a single expression.
+	 */
+	protected final long budget;
+
+	/**
+	 * Counter for the number of queries received.
+	 */
+	private final AtomicLong queryCount = new AtomicLong(0);
+
+	/**
+	 * Counter for the number of queries found to be satisfiable.
+	 */
+	private final AtomicLong satCount = new AtomicLong(0);
+
+	/**
+	 * Counter for the number of queries found to be unsatisfiable.
+	 */
+	private final AtomicLong unsatCount = new AtomicLong(0);
+
+	/**
+	 * Counter for the number of queries outside the supported fragment.
+	 */
+	private final AtomicLong unsupportedCount = new AtomicLong(0);
+
+	/**
+	 * Counter for the number of queries for which the budget ran out.
+	 */
+	private final AtomicLong exhaustedCount = new AtomicLong(0);
+
+	public SolverBV(COASTAL coastal, Configuration configuration, Solver delegate, long budget) {
+		super(coastal, configuration);
+		log = coastal.getLog();
+		this.delegate = delegate;
+		this.budget = budget;
+	}
+
+	@Override
+	public Input solve(Expression expression) {
+		Input input = solveOrUnknown(expression);
+		return (input == UNKNOWN) ? null : input;
+	}
+
+	@Override
+	public Input solveOrUnknown(Expression expression) {
+		queryCount.incrementAndGet();
+		Problem problem = Problem.create(expression);
+		if (problem == null) {
+			unsupportedCount.incrementAndGet();
+			return delegate.solveOrUnknown(expression);
+		}
+		Input model = problem.search(budget);
+		if (model == UNKNOWN) {
+			exhaustedCount.incrementAndGet();
+			log.trace("bit-vector search budget exhausted for {}", expression);
+			return delegate.solveOrUnknown(expression);
+		} else if (model == null) {
+			unsatCount.incrementAndGet();
+		} else {
+			satCount.incrementAndGet();
+		}
+		return model;
+	}
+
+	@Override
+	public List<Expression> getUnsatCore(Expression expression) {
+		return delegate.getUnsatCore(expression);
+	}
+
+	@Override
+	public void issueReport() {
+		coastal.getBroker().publish("report", new Tuple("SolverBV.queries", queryCount.get()));
+		coastal.getBroker().publish("report", new Tuple("SolverBV.sat", satCount.get()));
+		coastal.getBroker().publish("report", new Tuple("SolverBV.unsat", unsatCount.get()));
+		coastal.getBroker().publish("report", new Tuple("SolverBV.unsupported", unsupportedCount.get()));
+		coastal.getBroker().publish("report", new Tuple("SolverBV.exhausted", exhaustedCount.get()));
+		delegate.issueReport();
+	}
+
+	// ======================================================================
+	//
+	// PROBLEMS
+	//
+	// ======================================================================
+
+	/**
+	 * A compiled expression: its variables with their current domains, and its
+	 * conjuncts grouped by the last variable on which they depend.
+	 */
+	private static final class Problem {
+
+		private final List<IntegerVariable> variables;
+
+		private final long[] lo;
+
+		private final long[] hi;
+
+		/**
+		 * For each variable, the conjuncts whose last variable it is.
+		 */
+		private final List<List<Term>> levels;
+
+		/**
+		 * The conjuncts without variables.
+		 */
+		private final List<Term> closed = new ArrayList<>();
+
+		private Problem(List<IntegerVariable> variables, List<Term> conjuncts) {
+			this.variables = variables;
+			int n = variables.size();
+			lo = new long[n];
+			hi = new long[n];
+			levels = new ArrayList<>(n);
+			for (int i = 0; i < n; i++) {
+				lo[i] = variables.get(i).getLowerBound();
+				hi[i] = variables.get(i).getUpperBound();
+				levels.add(new ArrayList<>());
+			}
+			for (Term conjunct : conjuncts) {
+				if (conjunct.last < 0) {
+					closed.add(conjunct);
+				} else {
+					levels.get(conjunct.last).add(conjunct);
+				}
+				narrow(conjunct);
+			}
+		}
+
+		/**
+		 * Compile an expression, or return {@code null} if it falls outside the
+		 * supported fragment.
+		 * 
+		 * @param expression
+		 *                   the expression to compile
+		 * @return the compiled problem or {@code null}
+		 */
+		static Problem create(Expression expression) {
+			Compiler compiler = new Compiler();
+			List<Term> conjuncts = new ArrayList<>();
+			try {
+				for (Expression conjunct : getConjuncts(expression)) {
+					conjunct.accept(compiler);
+					Term term = compiler.stack.pop();
+					if (term.size != 0) {
+						return null;
+					}
+					conjuncts.add(term);
+				}
+			} catch (VisitorException x) {
+				return null;
+			}
+			return new Problem(compiler.variables, conjuncts);
+		}
+
+		/**
+		 * Narrow the domain of a variable that a conjunct compares to a constant.
+		 * 
+		 * @param conjunct
+		 *                 the conjunct to use
+		 */
+		private void narrow(Term conjunct) {
+			if (!(conjunct instanceof Binary)) {
+				return;
+			}
+			Binary b = (Binary) conjunct;
+			Operator op = b.op;
+			int v;
+			long c;
+			if ((b.left instanceof Var) && (b.right instanceof Const)) {
+				v = ((Var) b.left).index;
+				c = ((Const) b.right).value;
+			} else if ((b.left instanceof Const) && (b.right instanceof Var)) {
+				v = ((Var) b.right).index;
+				c = ((Const) b.left).value;
+				op = mirror(op);
+			} else {
+				return;
+			}
+			switch (op) {
+			case EQ:
+				lo[v] = Math.max(lo[v], c);
+				hi[v] = Math.min(hi[v], c);
+				break;
+			case NE:
+				if ((lo[v] == c) && (c < Long.MAX_VALUE)) {
+					lo[v]++;
+				} else if ((hi[v] == c) && (c > Long.MIN_VALUE)) {
+					hi[v]--;
+				}
+				break;
+			case LT:
+				if (c > Long.MIN_VALUE) {
+					hi[v] = Math.min(hi[v], c - 1);
+				}
+				break;
+			case LE:
+				hi[v] = Math.min(hi[v], c);
+				break;
+			case GT:
+				if (c < Long.MAX_VALUE) {
+					lo[v] = Math.max(lo[v], c + 1);
+				}
+				break;
+			case GE:
+				lo[v] = Math.max(lo[v], c);
+				break;
+			default:
+				break;
+			}
+		}
+
+		private static Operator mirror(Operator op) {
+			switch (op) {
+			case LT:
+				return Operator.GT;
+			case LE:
+				return Operator.GE;
+			case GT:
+				return Operator.LT;
+			case GE:
+				return Operator.LE;
+			default:
+				return op;
+			}
+		}
+
+		/**
+		 * Search for a model.
+		 * 
+		 * @param budget
+		 *               the maximum number of assignments to try
+		 * @return a model, {@code null} if there is none, or {@link #UNKNOWN} if
+		 *         the budget ran out
+		 */
+		Input search(long budget) {
+			int n = variables.size();
+			long[] values = new long[n];
+			if (!holds(closed, values)) {
+				return null;
+			}
+			for (int i = 0; i < n; i++) {
+				if (lo[i] > hi[i]) {
+					return null;
+				}
+			}
+			if (n == 0) {
+				return new Input();
+			}
+			long steps = 0;
+			int d = 0;
+			values[0] = lo[0];
+			while (true) {
+				if (++steps > budget) {
+					return UNKNOWN;
+				}
+				if (holds(levels.get(d), values)) {
+					if (d == n - 1) {
+						Input model = new Input();
+						for (int i = 0; i < n; i++) {
+							model.put(variables.get(i).getName(), values[i]);
+						}
+						return model;
+					}
+					d++;
+					values[d] = lo[d];
+					continue;
+				}
+				while (values[d] == hi[d]) {
+					if (d == 0) {
+						return null;
+					}
+					d--;
+				}
+				values[d]++;
+			}
+		}
+
+		private static boolean holds(List<Term> conjuncts, long[] values) {
+			for (Term conjunct : conjuncts) {
+				if (conjunct.eval(values) == 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+	}
+
+	// ======================================================================
+	//
+	// COMPILER
+	//
+	// ======================================================================
+
+	/**
+	 * Translates an expression to a {@link Term}. Variables whose bounds do not
+	 * fit in their signed range, real values, and floating-point operations are
+	 * rejected with a {@link VisitorException}.
+	 */
+	private static final class Compiler extends Visitor {
+
+		private final Stack<Term> stack = new Stack<>();
+
+		private final Map<Variable, Integer> indices = new HashMap<>();
+
+		private final List<IntegerVariable> variables = new ArrayList<>();
+
+		@Override
+		public void postVisit(IntegerConstant constant) throws VisitorException {
+			int size = constant.getSize();
+			stack.push(new Const(Term.wrap(constant.getValue(), size), size));
+		}
+
+		@Override
+		public void postVisit(IntegerVariable variable) throws VisitorException {
+			Integer index = indices.get(variable);
+			if (index == null) {
+				int size = variable.getSize();
+				long max = Term.mask(size) >>> 1;
+				if ((variable.getLowerBound() < -max - 1) || (variable.getUpperBound() > max)) {
+					throw new VisitorException("bounds of " + variable.getName() + " exceed signed range");
+				}
+				index = variables.size();
+				indices.put(variable, index);
+				variables.add(variable);
+			}
+			stack.push(new Var(index, variable.getSize()));
+		}
+
+		@Override
+		public void postVisit(RealConstant constant) throws VisitorException {
+			throw new VisitorException("real constant");
+		}
+
+		@Override
+		public void postVisit(RealVariable variable) throws VisitorException {
+			throw new VisitorException("real variable");
+		}
+
+		@Override
+		public void postVisit(Operation operation) throws VisitorException {
+			Operator op = operation.getOperator();
+			if ((op.getArity() != operation.getOperandCount()) || (stack.size() < op.getArity())) {
+				throw new VisitorException("unexpected operand count for " + op);
+			}
+			if (op.getArity() == 1) {
+				Term a = stack.pop();
+				int size;
+				switch (op) {
+				case NOT:
+					size = expect(a, true);
+					break;
+				case B2I:
+					size = expect(a, false) + 24;
+					break;
+				case S2I:
+					size = expect(a, false) + 16;
+					break;
+				case I2L:
+					size = expect(a, false) + 32;
+					break;
+				case I2B:
+					expect(a, false);
+					size = 8;
+					break;
+				case I2C:
+				case I2S:
+					expect(a, false);
+					size = 16;
+					break;
+				case L2I:
+					expect(a, false);
+					size = 32;
+					break;
+				default:
+					throw new VisitorException("unsupported operator " + op);
+				}
+				if (size > 64) {
+					throw new VisitorException("operand too wide for " + op);
+				}
+				stack.push(new Unary(op, a, size));
+			} else {
+				Term b = stack.pop();
+				Term a = stack.pop();
+				int size;
+				switch (op) {
+				case AND:
+				case OR:
+					expect(a, true);
+					expect(b, true);
+					size = 0;
+					break;
+				case EQ:
+				case NE:
+				case LT:
+				case LE:
+				case GT:
+				case GE:
+					expect(a, false);
+					expect(b, false);
+					size = 0;
+					break;
+				case LCMP:
+					expect(a, false);
+					expect(b, false);
+					size = 32;
+					break;
+				case ADD:
+				case SUB:
+				case MUL:
+				case DIV:
+				case REM:
+				case BITOR:
+				case BITAND:
+				case BITXOR:
+				case SHL:
+				case ASHR:
+				case LSHR:
+					size = Math.max(expect(a, false), expect(b, false));
+					break;
+				default:
+					throw new VisitorException("unsupported operator " + op);
+				}
+				stack.push(new Binary(op, a, b, size));
+			}
+		}
+
+		private static int expect(Term term, boolean isBoolean) throws VisitorException {
+			if ((term.size == 0) != isBoolean) {
+				throw new VisitorException("ill-sorted operand");
+			}
+			return term.size;
+		}
+
+	}
+
+	// ======================================================================
+	//
+	// TERMS
+	//
+	// ======================================================================
+
+	/**
+	 * A compiled expression. Bit-vector values are stored as sign-extended
+	 * longs; boolean values are 0 or 1 and have size 0.
+	 */
+	private abstract static class Term {
+
+		/**
+		 * The number of bits in the value, or 0 for a boolean.
+		 */
+		final int size;
+
+		/**
+		 * The index of the last variable on which the term depends, or -1 if it
+		 * does not depend on any variable.
+		 */
+		final int last;
+
+		Term(int size, int last) {
+			this.size = size;
+			this.last = last;
+		}
+
+		abstract long eval(long[] values);
+
+		/**
+		 * Truncate a value to a number of bits and sign-extend the result.
+		 * 
+		 * @param value
+		 *              the value to truncate
+		 * @param size
+		 *              the number of bits to keep
+		 * @return the truncated value
+		 */
+		static long wrap(long value, int size) {
+			return (size >= 64) ? value : (value << (64 - size)) >> (64 - size);
+		}
+
+		static long mask(int size) {
+			return (size >= 64) ? -1L : (1L << size) - 1;
+		}
+
+	}
+
+	private static final class Const extends Term {
+
+		final long value;
+
+		Const(long value, int size) {
+			super(size, -1);
+			this.value = value;
+		}
+
+		@Override
+		long eval(long[] values) {
+			return value;
+		}
+
+	}
+
+	private static final class Var extends Term {
+
+		final int index;
+
+		Var(int index, int size) {
+			super(size, index);
+			this.index = index;
+		}
+
+		@Override
+		long eval(long[] values) {
+			return values[index];
+		}
+
+	}
+
+	private static final class Unary extends Term {
+
+		final Operator op;
+
+		final Term operand;
+
+		Unary(Operator op, Term operand, int size) {
+			super(size, operand.last);
+			this.op = op;
+			this.operand = operand;
+		}
+
+		@Override
+		long eval(long[] values) {
+			long a = operand.eval(values);
+			if (op == Operator.NOT) {
+				return 1 - a;
+			}
+			return wrap(a, size);
+		}
+
+	}
+
+	private static final class Binary extends Term {
+
+		final Operator op;
+
+		final Term left;
+
+		final Term right;
+
+		Binary(Operator op, Term left, Term right, int size) {
+			super(size, Math.max(left.last, right.last));
+			this.op = op;
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		long eval(long[] values) {
+			long a = left.eval(values);
+			switch (op) {
+			case AND:
+				return (a == 0) ? 0 : right.eval(values);
+			case OR:
+				return (a != 0) ? 1 : right.eval(values);
+			default:
+				break;
+			}
+			long b = right.eval(values);
+			switch (op) {
+			case EQ:
+				return (a == b) ? 1 : 0;
+			case NE:
+				return (a != b) ? 1 : 0;
+			case LT:
+				return (a < b) ? 1 : 0;
+			case LE:
+				return (a <= b) ? 1 : 0;
+			case GT:
+				return (a > b) ? 1 : 0;
+			case GE:
+				return (a >= b) ? 1 : 0;
+			case LCMP:
+				return Long.compare(a, b);
+			case ADD:
+				return wrap(a + b, size);
+			case SUB:
+				return wrap(a - b, size);
+			case MUL:
+				return wrap(a * b, size);
+			case DIV:
+				// division by zero as defined for bvsdiv
+				return (b == 0) ? ((a < 0) ? 1 : -1) : wrap(a / b, size);
+			case REM:
+				return (b == 0) ? a : wrap(a % b, size);
+			case BITOR:
+				return a | b;
+			case BITAND:
+				return a & b;
+			case BITXOR:
+				return a ^ b;
+			case SHL:
+				b &= mask(size);
+				return (Long.compareUnsigned(b, size) >= 0) ? 0 : wrap(a << b, size);
+			case ASHR:
+				b &= mask(size);
+				return (Long.compareUnsigned(b, size) >= 0) ? ((a < 0) ? -1 : 0) : a >> b;
+			case LSHR:
+				b &= mask(size);
+				return (Long.compareUnsigned(b, size) >= 0) ? 0 : wrap((a & mask(size)) >>> b, size);
+			default:
+				throw new IllegalStateException("unexpected operator " + op);
+			}
+		}
+
+	}
+
+}
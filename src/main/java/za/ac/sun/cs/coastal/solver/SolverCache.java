@@ -0,0 +1,465 @@
+/*
+ * This file is part of the COASTAL tool, https://deepseaplatform.github.io/coastal/
+ *
+ * Copyright (c) 2019-2020, Computer Science, Stellenbosch University.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package za.ac.sun.cs.coastal.solver;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.Logger;
+
+import za.ac.sun.cs.coastal.COASTAL;
+import za.ac.sun.cs.coastal.Configuration;
+import za.ac.sun.cs.coastal.messages.Tuple;
+import za.ac.sun.cs.coastal.symbolic.Input;
+
+/**
+ * Solver that remembers the answers of another solver. Before an expression is
+ * looked up, it is put in a canonical form: its conjuncts are deduplicated and
+ * sorted, and its variables are renamed in the order in which they appear. Two
+ * expressions that differ only in the names of their variables or in the order
+ * of their conjuncts therefore share the same cache entry. Both models and
+ * unsatisfiable verdicts are cached; queries that the other solver fails to
+ * answer are not.
+ * 
+ * The cache holds at most a fixed number of entries, and evicts the least
+ * recently used entry when it is full. If a cache file is configured, the
+ * entries are loaded from it when the solver is created, and written back to it
+ * when COASTAL stops.
+ */
+public class SolverCache extends Solver {
+
+	protected final Logger log;
+
+	/**
+	 * The solver whose answers are cached.
+	 */
+	protected final Solver delegate;
+
+	/**
+	 * The maximum number of entries in the cache.
+	 */
+	protected final int capacity;
+
+	/**
+	 * The file where the cache is persisted, or {@code null} if it is not.
+	 */
+	protected final String cacheFile;
+
+	/**
+	 * Cached answers indexed by canonical expression, from least to most
+	 * recently used. Access must be synchronized on the map.
+	 */
+	private final Map<String, Entry> entries;
+
+	/**
+	 * Counter for the number of queries answered from the cache.
+	 */
+	private final AtomicLong hitCount = new AtomicLong(0);
+
+	/**
+	 * Counter for the number of queries answered from the cache with an
+	 * unsatisfiable verdict.
+	 */
+	private final AtomicLong unsatHitCount = new AtomicLong(0);
+
+	/**
+	 * Counter for the number of queries passed on to the delegate.
+	 */
+	private final AtomicLong missCount = new AtomicLong(0);
+
+	/**
+	 * Counter for the number of entries evicted from the cache.
+	 */
+	private final AtomicLong evictionCount = new AtomicLong(0);
+
+	/**
+	 * The number of entries loaded from the cache file.
+	 */
+	private int loadedCount = 0;
+
+	public SolverCache(COASTAL coastal, Configuration configuration, Solver delegate, int capacity) {
+		super(coastal, configuration);
+		log = coastal.getLog();
+		this.delegate = delegate;
+		this.capacity = capacity;
+		entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				if (size() > SolverCache.this.capacity) {
+					evictionCount.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+		cacheFile = configuration.getString("cache-file", null);
+		if (cacheFile != null) {
+			load();
+			coastal.getBroker().subscribe("coastal-stop", o -> save());
+		}
+	}
+
+	@Override
+	public Input solve(Expression expression) {
+		Input input = solveOrUnknown(expression);
+		return (input == UNKNOWN) ? null : input;
+	}
+
+	@Override
+	public Input solveOrUnknown(Expression expression) {
+		Canonicalizer canonicalizer = new Canonicalizer(expression);
+		String key = canonicalizer.getKey();
+		Entry entry;
+		synchronized (entries) {
+			entry = entries.get(key);
+		}
+		if (entry != null) {
+			hitCount.incrementAndGet();
+			if (entry.values == null) {
+				unsatHitCount.incrementAndGet();
+				return null;
+			}
+			log.trace("solver cache hit for {}", key);
+			return entry.getModel(canonicalizer.getNames());
+		}
+		missCount.incrementAndGet();
+		Input input = delegate.solveOrUnknown(expression);
+		if (input != UNKNOWN) {
+			entry = (input == null) ? Entry.UNSAT : new Entry(input, canonicalizer.getNames());
+			synchronized (entries) {
+				entries.put(key, entry);
+			}
+		}
+		return input;
+	}
+
+	@Override
+	public List<Expression> getUnsatCore(Expression expression) {
+		return delegate.getUnsatCore(expression);
+	}
+
+	@Override
+	public void issueReport() {
+		int size;
+		synchronized (entries) {
+			size = entries.size();
+		}
+		coastal.getBroker().publish("report", new Tuple("SolverCache.hits", hitCount.get()));
+		coastal.getBroker().publish("report", new Tuple("SolverCache.unsat-hits", unsatHitCount.get()));
+		coastal.getBroker().publish("report", new Tuple("SolverCache.misses", missCount.get()));
+		coastal.getBroker().publish("report", new Tuple("SolverCache.evictions", evictionCount.get()));
+		coastal.getBroker().publish("report", new Tuple("SolverCache.size", size));
+		if (cacheFile != null) {
+			coastal.getBroker().publish("report", new Tuple("SolverCache.loaded", loadedCount));
+		}
+		delegate.issueReport();
+	}
+
+	// ======================================================================
+	//
+	// CACHE ENTRIES
+	//
+	// ======================================================================
+
+	/**
+	 * The answer for a canonical expression. For a satisfiable expression, this
+	 * is the value of each canonical variable (or {@code null} if the model does
+	 * not mention the variable). For an unsatisfiable expression, the values are
+	 * {@code null}.
+	 */
+	private static final class Entry {
+
+		static final Entry UNSAT = new Entry(null);
+
+		final Object[] values;
+
+		Entry(Object[] values) {
+			this.values = values;
+		}
+
+		Entry(Input model, List<String> names) {
+			values = new Object[names.size()];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = model.get(names.get(i));
+			}
+		}
+
+		Input getModel(List<String> names) {
+			Input model = new Input();
+			for (int i = 0; i < values.length; i++) {
+				if (values[i] != null) {
+					model.put(names.get(i), values[i]);
+				}
+			}
+			return model;
+		}
+
+	}
+
+	// ======================================================================
+	//
+	// CANONICAL FORM
+	//
+	// ======================================================================
+
+	/**
+	 * Computes the canonical form of an expression. The conjuncts of the
+	 * expression are sorted by their shape, which is their string
+	 * representation with all variable names omitted. The conjuncts are then
+	 * rendered in that order, and each variable is replaced by its position in
+	 * the order of first appearance.
+	 */
+	private static final class Canonicalizer extends Visitor {
+
+		private final StringBuilder b = new StringBuilder();
+
+		private final Map<Variable, Integer> variableIds = new LinkedHashMap<>();
+
+		private final List<String> names = new ArrayList<>();
+
+		private boolean shapeOnly;
+
+		private final String key;
+
+		Canonicalizer(Expression expression) {
+			List<Expression> conjuncts = new ArrayList<>(new LinkedHashSet<>(getConjuncts(expression)));
+			List<String> shapes = new ArrayList<>(conjuncts.size());
+			shapeOnly = true;
+			for (Expression conjunct : conjuncts) {
+				shapes.add(render(conjunct));
+			}
+			List<Integer> order = new ArrayList<>(conjuncts.size());
+			for (int i = 0; i < conjuncts.size(); i++) {
+				order.add(i);
+			}
+			Collections.sort(order, Comparator.comparing(shapes::get));
+			shapeOnly = false;
+			StringBuilder k = new StringBuilder();
+			for (int i : order) {
+				k.append(render(conjuncts.get(i))).append(';');
+			}
+			key = k.toString();
+		}
+
+		/**
+		 * Return the canonical form of the expression.
+		 * 
+		 * @return the canonical form
+		 */
+		String getKey() {
+			return key;
+		}
+
+		/**
+		 * Return the original variable names, indexed by canonical variable number.
+		 * 
+		 * @return the list of original variable names
+		 */
+		List<String> getNames() {
+			return names;
+		}
+
+		private String render(Expression expression) {
+			b.setLength(0);
+			try {
+				expression.accept(this);
+			} catch (VisitorException x) {
+				// the canonicalizer does not throw exceptions
+			}
+			return b.toString();
+		}
+
+		@Override
+		public void preVisit(Operation operation) {
+			b.append('(').append(operation.getOperator().name());
+			if (operation.getResultingSize() != 0) {
+				b.append(':').append(operation.getResultingSize());
+			}
+		}
+
+		@Override
+		public void postVisit(Operation operation) {
+			b.append(')');
+		}
+
+		@Override
+		public void preVisit(IntegerVariable variable) {
+			appendVariable(variable, "i", variable.getSize(), variable.getLowerBound(), variable.getUpperBound());
+		}
+
+		@Override
+		public void preVisit(RealVariable variable) {
+			appendVariable(variable, "r", variable.getSize(), variable.getLowerBound(), variable.getUpperBound());
+		}
+
+		private void appendVariable(Variable variable, String type, int size, Object lowerBound, Object upperBound) {
+			b.append(' ');
+			if (!shapeOnly) {
+				Integer id = variableIds.get(variable);
+				if (id != null) {
+					b.append('v').append(id);
+					return;
+				}
+				id = names.size();
+				variableIds.put(variable, id);
+				names.add(variable.getName());
+				b.append('v').append(id).append('=');
+			}
+			b.append(type).append(size).append('[').append(lowerBound).append(',').append(upperBound).append(']');
+		}
+
+		@Override
+		public void preVisit(IntegerConstant constant) {
+			b.append(' ').append(constant.getValue()).append('i').append(constant.getSize());
+		}
+
+		@Override
+		public void preVisit(RealConstant constant) {
+			b.append(' ').append(constant.getValue()).append('r').append(constant.getSize());
+		}
+
+	}
+
+	// ======================================================================
+	//
+	// PERSISTENCE
+	//
+	// ======================================================================
+
+	/**
+	 * Load the entries in the cache file, if it exists. Each line of the file
+	 * holds one entry: the word "sat" or "unsat", the canonical expression, and
+	 * (for satisfiable expressions) the values of the canonical variables,
+	 * separated by tabs. Entries appear from least to most recently used.
+	 */
+	private void load() {
+		File file = new File(cacheFile);
+		if (!file.exists()) {
+			return;
+		}
+		try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.split("\t", -1);
+				if ((fields.length >= 2) && fields[0].equals("unsat")) {
+					entries.put(fields[1], Entry.UNSAT);
+				} else if ((fields.length >= 2) && fields[0].equals("sat")) {
+					Object[] values = new Object[fields.length - 2];
+					for (int i = 0; i < values.length; i++) {
+						values[i] = decodeValue(fields[i + 2]);
+					}
+					entries.put(fields[1], new Entry(values));
+				}
+			}
+			loadedCount = entries.size();
+			evictionCount.set(0);
+			log.info("loaded {} solver cache entries from {}", loadedCount, cacheFile);
+		} catch (IOException | IllegalArgumentException x) {
+			log.warn("could not load solver cache from {}", cacheFile, x);
+			entries.clear();
+			loadedCount = 0;
+		}
+	}
+
+	/**
+	 * Write all entries to the cache file. The file is first written under a
+	 * temporary name, so that an interrupted write does not destroy the previous
+	 * contents. Entries with values that cannot be written are left out.
+	 */
+	void save() {
+		File file = new File(cacheFile);
+		File tempFile = new File(cacheFile + ".tmp");
+		try (PrintWriter writer = new PrintWriter(tempFile, "UTF-8")) {
+			synchronized (entries) {
+				for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+					Object[] values = entry.getValue().values;
+					if (values == null) {
+						writer.append("unsat\t").append(entry.getKey()).append('\n');
+						continue;
+					}
+					StringBuilder line = new StringBuilder("sat\t").append(entry.getKey());
+					for (Object value : values) {
+						String field = encodeValue(value);
+						if (field == null) {
+							line = null;
+							break;
+						}
+						line.append('\t').append(field);
+					}
+					if (line != null) {
+						writer.append(line).append('\n');
+					}
+				}
+			}
+		} catch (IOException x) {
+			log.warn("could not save solver cache to {}", cacheFile, x);
+			return;
+		}
+		if (!tempFile.renameTo(file)) {
+			file.delete();
+			if (!tempFile.renameTo(file)) {
+				log.warn("could not save solver cache to {}", cacheFile);
+			}
+		}
+	}
+
+	/**
+	 * Return the text form of a model value: "-" for a missing value, or the
+	 * type letter followed by the value for longs and doubles.
+	 * 
+	 * @param value
+	 *              the model value
+	 * @return the text form, or {@code null} if the value cannot be written
+	 */
+	private static String encodeValue(Object value) {
+		if (value == null) {
+			return "-";
+		} else if (value instanceof Long) {
+			return "L" + value;
+		} else if (value instanceof Double) {
+			return "D" + Long.toHexString(Double.doubleToRawLongBits((Double) value));
+		} else {
+			return null;
+		}
+	}
+
+	private static Object decodeValue(String field) {
+		if (field.startsWith("L")) {
+			return Long.valueOf(field.substring(1));
+		} else if (field.startsWith("D")) {
+			return Double.longBitsToDouble(Long.parseUnsignedLong(field.substring(1), 16));
+		} else {
+			return null;
+		}
+	}
+
+}
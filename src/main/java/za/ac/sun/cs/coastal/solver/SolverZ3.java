@@ -19,18 +19,24 @@
 package za.ac.sun.cs.coastal.solver;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -40,6 +46,7 @@ import org.apache.logging.log4j.Logger;
 import za.ac.sun.cs.coastal.Banner;
 import za.ac.sun.cs.coastal.COASTAL;
 import za.ac.sun.cs.coastal.Configuration;
+import za.ac.sun.cs.coastal.messages.Tuple;
 import za.ac.sun.cs.coastal.solver.Operation.Operator;
 import za.ac.sun.cs.coastal.symbolic.Input;
 
@@ -58,15 +65,76 @@ public class SolverZ3 extends Solver {
 
 	protected final String z3Command;
 
+	/**
+	 * Whether queries are sent to long-lived Z3 processes that reuse the
+	 * assertions of earlier queries, or to a new Z3 process each.
+	 */
+	protected final boolean incremental;
+
+	/**
+	 * Z3 processes that are not currently in use. Each process is used by one
+	 * thread at a time. Processes are not tied to threads: the pool is shared
+	 * and last-in-first-out, so that a thread that solves queries in a row
+	 * usually gets back the process it released last, with the frames of its
+	 * previous query still asserted, while no more processes are started than
+	 * there are threads solving at the same time.
+	 */
+	private final ConcurrentLinkedDeque<Z3Session> idleSessions = new ConcurrentLinkedDeque<>();
+
+	/**
+	 * Whether the pool of idle Z3 processes has been closed.
+	 */
+	private volatile boolean closed = false;
+
+	/**
+	 * Counter for the number of Z3 processes started.
+	 */
+	private final AtomicLong processCount = new AtomicLong(0);
+
+	/**
+	 * Counter for the number of queries.
+	 */
+	private final AtomicLong queryCount = new AtomicLong(0);
+
+	/**
+	 * Counter for the number of conjuncts that are sent to Z3 processes.
+	 */
+	private final AtomicLong sentCount = new AtomicLong(0);
+
+	/**
+	 * Counter for the number of conjuncts that are already asserted in an
+	 * incremental Z3 process, and therefore not resent.
+	 */
+	private final AtomicLong reusedCount = new AtomicLong(0);
+
+	/**
+	 * Counter for the number of unsatisfiable cores computed.
+	 */
+	private final AtomicLong coreCount = new AtomicLong(0);
+
 	public SolverZ3(COASTAL coastal, Configuration configuration) {
 		super(coastal, configuration);
 		log = coastal.getLog();
 		String z3Path = configuration.getString("z3-path", DEFAULT_Z3_PATH);
 		String z3Args = configuration.getString("z3-args", DEFAULT_Z3_ARGS);
 		z3Command = z3Path + ' ' + z3Args;
+		incremental = configuration.getBoolean("z3-incremental", true);
+		coastal.getBroker().subscribe("coastal-stop", o -> closeSessions());
 	}
 
+	@Override
 	public Input solve(Expression expression) {
+		Input input = solveOrUnknown(expression);
+		return (input == UNKNOWN) ? null : input;
+	}
+
+	@Override
+	public Input solveOrUnknown(Expression expression) {
+		queryCount.incrementAndGet();
+		if (incremental) {
+			return solveIncremental(expression);
+		}
+		processCount.incrementAndGet();
 		try {
 			Translator t = new Translator();
 			expression.accept(t);
@@ -102,7 +170,7 @@ public class SolverZ3 extends Solver {
 				writer.println(smt);
 				writer.close();
 				log.trace("SMT input written to \"{}\"", filename);
-				return null;
+				return UNKNOWN;
 			}
 
 			stdin.write("(get-model)(exit)\n".getBytes());
@@ -121,7 +189,331 @@ public class SolverZ3 extends Solver {
 		} catch (IOException x) {
 			log.trace("IO EXCEPTION", x);
 		}
-		return null;
+		return UNKNOWN;
+	}
+
+	@Override
+	public void issueReport() {
+		coastal.getBroker().publish("report", new Tuple("SolverZ3.queries", queryCount.get()));
+		coastal.getBroker().publish("report", new Tuple("SolverZ3.process-count", processCount.get()));
+		if (incremental) {
+			coastal.getBroker().publish("report", new Tuple("SolverZ3.sent-conjuncts", sentCount.get()));
+			coastal.getBroker().publish("report", new Tuple("SolverZ3.reused-conjuncts", reusedCount.get()));
+		}
+		if (coreCount.get() > 0) {
+			coastal.getBroker().publish("report", new Tuple("SolverZ3.unsat-cores", coreCount.get()));
+		}
+	}
+
+	// ======================================================================
+	//
+	// INCREMENTAL SOLVING
+	//
+	// ======================================================================
+
+	/**
+	 * Solve an expression with a long-lived Z3 process. The expression is split
+	 * into its conjuncts, and each conjunct (together with the declarations of
+	 * the variables it introduces) is asserted in a separate {@code (push)}
+	 * frame. The frames that the process shares with the previous query it
+	 * answered are kept, so that queries with a common prefix (such as those for
+	 * sibling paths) only send the conjuncts that differ.
+	 * 
+	 * @param expression
+	 *                   the expression to solve
+	 * @return a model for the expression, or {@code null} if there is none
+	 */
+	private Input solveIncremental(Expression expression) {
+		List<String> frames = new ArrayList<>();
+		Translator t = new Translator();
+		try {
+			Map<String, String> definitions = t.getDefinitions();
+			int definitionCount = 0;
+			for (Expression conjunct : getConjuncts(expression)) {
+				conjunct.accept(t);
+				StringBuilder b = new StringBuilder();
+				Iterator<String> defs = definitions.values().iterator();
+				for (int i = 0; i < definitionCount; i++) {
+					defs.next();
+				}
+				while (defs.hasNext()) {
+					b.append(defs.next()).append('\n');
+					definitionCount++;
+				}
+				b.append("(assert ").append(t.getEntry()).append(')');
+				frames.add(b.toString());
+			}
+		} catch (AssertionError x) {
+			log.trace("VISITOR ASSERTION EXCEPTION", x);
+			return UNKNOWN;
+		} catch (VisitorException x) {
+			log.trace("VISITOR EXCEPTION", x);
+			return UNKNOWN;
+		}
+		Z3Session session = idleSessions.pollFirst();
+		try {
+			if (session == null) {
+				session = new Z3Session(z3Command);
+				processCount.incrementAndGet();
+			}
+			int reused = session.assertFrames(frames);
+			reusedCount.addAndGet(reused);
+			sentCount.addAndGet(frames.size() - reused);
+			String output = session.checkSat();
+			if (output.equals("unsat")) {
+				releaseSession(session);
+				return null;
+			} else if (!output.equals("sat")) {
+				Banner bn = new Banner('#');
+				bn.println("Z3 RETURNED A NULL:\n");
+				bn.println(output);
+				bn.display(log);
+				session.close();
+				String filename = Z3_FILE + problemCounter++;
+				PrintWriter writer = new PrintWriter(filename, "UTF-8");
+				writer.println("(set-option :produce-models true)");
+				frames.forEach(writer::println);
+				writer.println("(check-sat)");
+				writer.close();
+				log.trace("SMT input written to \"{}\"", filename);
+				return UNKNOWN;
+			}
+			output = session.getModel();
+			releaseSession(session);
+			log.trace("Z3 output: {}", output);
+			return retrieveModel(output, t.getVariables());
+		} catch (IOException x) {
+			log.trace("IO EXCEPTION", x);
+			if (session != null) {
+				session.close();
+			}
+		}
+		return UNKNOWN;
+	}
+
+	/**
+	 * Compute an unsatisfiable core with a long-lived Z3 process, whether or not
+	 * queries are incremental. All conjuncts are asserted in a single frame,
+	 * each under the name {@code c<i>}, where {@code i} is the index of the
+	 * conjunct. Z3 is asked to minimize the core.
+	 */
+	@Override
+	public List<Expression> getUnsatCore(Expression expression) {
+		List<Expression> conjuncts = getConjuncts(expression);
+		Translator t = new Translator();
+		StringBuilder b = new StringBuilder();
+		try {
+			StringBuilder asserts = new StringBuilder();
+			int index = 0;
+			for (Expression conjunct : conjuncts) {
+				conjunct.accept(t);
+				asserts.append("(assert (! ").append(t.getEntry()).append(" :named c").append(index++).append("))\n");
+			}
+			t.getDefinitions().values().forEach(d -> b.append(d).append('\n'));
+			b.append(asserts);
+		} catch (AssertionError x) {
+			log.trace("VISITOR ASSERTION EXCEPTION", x);
+			return super.getUnsatCore(expression);
+		} catch (VisitorException x) {
+			log.trace("VISITOR EXCEPTION", x);
+			return super.getUnsatCore(expression);
+		}
+		Z3Session session = idleSessions.pollFirst();
+		try {
+			if (session == null) {
+				session = new Z3Session(z3Command);
+				processCount.incrementAndGet();
+			}
+			session.assertFrames(Collections.singletonList(b.toString()));
+			String output = session.checkSat();
+			if (!output.equals("unsat")) {
+				log.trace("expected unsat while computing core, Z3 returned {}", output);
+				releaseSession(session);
+				return super.getUnsatCore(expression);
+			}
+			output = session.getUnsatCore();
+			releaseSession(session);
+			session = null;
+			coreCount.incrementAndGet();
+			List<Expression> core = new ArrayList<>();
+			for (String name : output.replaceAll("[()]", " ").trim().split("\\s+")) {
+				if (name.startsWith("c")) {
+					core.add(conjuncts.get(Integer.parseInt(name.substring(1))));
+				}
+			}
+			log.trace("unsat core has {} of {} conjuncts", core.size(), conjuncts.size());
+			return core;
+		} catch (IOException | NumberFormatException | IndexOutOfBoundsException x) {
+			log.trace("UNSAT CORE EXCEPTION", x);
+			if (session != null) {
+				session.close();
+			}
+		}
+		return super.getUnsatCore(expression);
+	}
+
+	/**
+	 * Return a Z3 process to the pool of idle processes. If the pool has already
+	 * been closed, the process is closed instead.
+	 * 
+	 * @param session
+	 *                the Z3 process that is no longer in use
+	 */
+	private void releaseSession(Z3Session session) {
+		idleSessions.offerFirst(session);
+		if (closed) {
+			closeSessions();
+		}
+	}
+
+	/**
+	 * Close all Z3 processes that are not in use. Processes that are still in use
+	 * are closed when they are released.
+	 */
+	private void closeSessions() {
+		closed = true;
+		Z3Session session;
+		while ((session = idleSessions.pollFirst()) != null) {
+			session.close();
+		}
+	}
+
+	/**
+	 * A long-lived Z3 process, together with the frames that are currently
+	 * asserted in it.
+	 */
+	private static class Z3Session {
+
+		private final Process process;
+
+		private final BufferedWriter writer;
+
+		private final BufferedReader reader;
+
+		/**
+		 * The frames that have been pushed, from the bottom of the assertion stack
+		 * to the top.
+		 */
+		private final List<String> frames = new ArrayList<>();
+
+		Z3Session(String z3Command) throws IOException {
+			process = Runtime.getRuntime().exec(z3Command);
+			writer = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()));
+			reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+			writer.write("(set-option :produce-models true)\n");
+			writer.write("(set-option :produce-unsat-cores true)\n");
+			writer.write("(set-option :smt.core.minimize true)\n");
+		}
+
+		/**
+		 * Make the assertion stack of the process equal to the given frames, by
+		 * popping the frames that do not match and pushing the new ones.
+		 * 
+		 * @param newFrames
+		 *                  the frames that must be asserted
+		 * @return the number of frames that were already asserted
+		 * @throws IOException
+		 *                     if the process cannot be written to
+		 */
+		int assertFrames(List<String> newFrames) throws IOException {
+			int common = 0;
+			int max = Math.min(frames.size(), newFrames.size());
+			while ((common < max) && frames.get(common).equals(newFrames.get(common))) {
+				common++;
+			}
+			int pops = frames.size() - common;
+			if (pops > 0) {
+				writer.write("(pop " + pops + ")\n");
+				frames.subList(common, frames.size()).clear();
+			}
+			for (String frame : newFrames.subList(common, newFrames.size())) {
+				writer.write("(push 1)\n");
+				writer.write(frame);
+				writer.write('\n');
+				frames.add(frame);
+			}
+			return common;
+		}
+
+		String checkSat() throws IOException {
+			writer.write("(check-sat)\n");
+			writer.flush();
+			String output = reader.readLine();
+			if (output == null) {
+				throw new IOException("Z3 process terminated");
+			}
+			return output.trim();
+		}
+
+		/**
+		 * Request and read the model after a successful {@code (check-sat)}. The
+		 * model is read up to the parenthesis that closes it.
+		 * 
+		 * @return the model as a single line
+		 * @throws IOException
+		 *                     if the process cannot be read or written
+		 */
+		String getModel() throws IOException {
+			writer.write("(get-model)\n");
+			writer.flush();
+			return readExpression();
+		}
+
+		/**
+		 * Request and read the unsatisfiable core after an unsuccessful
+		 * {@code (check-sat)}.
+		 * 
+		 * @return the list of names in the core as a single line
+		 * @throws IOException
+		 *                     if the process cannot be read or written
+		 */
+		String getUnsatCore() throws IOException {
+			writer.write("(get-unsat-core)\n");
+			writer.flush();
+			return readExpression();
+		}
+
+		/**
+		 * Read a parenthesized response, up to the parenthesis that closes it.
+		 * 
+		 * @return the response as a single line
+		 * @throws IOException
+		 *                     if the process cannot be read
+		 */
+		private String readExpression() throws IOException {
+			StringBuilder b = new StringBuilder();
+			int depth = 0;
+			boolean started = false;
+			while (!started || (depth > 0)) {
+				String line = reader.readLine();
+				if (line == null) {
+					throw new IOException("Z3 process terminated");
+				}
+				for (int i = 0; i < line.length(); i++) {
+					char c = line.charAt(i);
+					if (c == '(') {
+						depth++;
+						started = true;
+					} else if (c == ')') {
+						depth--;
+					}
+				}
+				b.append(line);
+			}
+			return b.toString();
+		}
+
+		void close() {
+			try {
+				writer.write("(exit)\n");
+				writer.close();
+				reader.close();
+			} catch (IOException x) {
+				// ignore
+			}
+			process.destroy();
+		}
+
 	}
 
 	// ======================================================================
@@ -134,7 +526,7 @@ public class SolverZ3 extends Solver {
 
 		private final Stack<StackEntry> stack = new Stack<>();
 
-		private final List<String> variableDefs = new LinkedList<>();
+		private final Map<String, String> variableDefs = new LinkedHashMap<>();
 
 		private final Map<String, Variable> variables = new HashMap<>();
 
@@ -148,10 +540,29 @@ public class SolverZ3 extends Solver {
 			return variables;
 		}
 
+		/**
+		 * Return the declarations and definitions needed by the expressions
+		 * translated so far, in the order in which they were first needed.
+		 * 
+		 * @return map from declared names to declarations
+		 */
+		public Map<String, String> getDefinitions() {
+			return variableDefs;
+		}
+
+		/**
+		 * Return the translation of the last expression that was visited.
+		 * 
+		 * @return the translated expression
+		 */
+		public String getEntry() {
+			return stack.pop().getEntry();
+		}
+
 		public String getTranslation() {
 			StringBuilder b = new StringBuilder();
 			b.append("(set-option :produce-models true)\n");
-			b.append(join(variableDefs, "\n"));
+			b.append(join(variableDefs.values(), "\n"));
 			b.append("\n(assert ").append(stack.pop().getEntry()).append(")\n");
 			b.append("(check-sat)");
 			return b.toString();
@@ -202,7 +613,7 @@ public class SolverZ3 extends Solver {
 					b.append("(assert (bvsle ").append(n).append(' ').append(literal(v.getUpperBound(), v.getSize()))
 							.append("))");
 				}
-				variableDefs.add(b.toString());
+				variableDefs.put(n, b.toString());
 				variables.put(n, v);
 			}
 			stack.push(new StackEntry(n, IntegerVariable.class, v.getSize()));
@@ -218,7 +629,7 @@ public class SolverZ3 extends Solver {
 						.append("))\n");
 				b.append("(assert (fp.leq ").append(n).append(' ').append(literal(v.getUpperBound(), v.getSize()))
 						.append("))");
-				variableDefs.add(b.toString());
+				variableDefs.put(n, b.toString());
 				variables.put(n, v);
 			}
 			stack.push(new StackEntry(n, RealVariable.class, v.getSize()));
@@ -367,7 +778,7 @@ public class SolverZ3 extends Solver {
 				case B2I:
 					b.append("((_ sign_extend 24) ");
 					b.append(l.getEntry()).append(')');
-					stack.push(new StackEntry(b.toString(), IntegerConstant.class, 64));
+					stack.push(new StackEntry(b.toString(), IntegerConstant.class, ls + 24));
 					break;
 				case D2F:
 					b.append("((_ to_fp 8 24) RNE ");
@@ -447,7 +858,7 @@ public class SolverZ3 extends Solver {
 				case S2I:
 					b.append("((_ sign_extend 16) ");
 					b.append(l.getEntry()).append(')');
-					stack.push(new StackEntry(b.toString(), IntegerConstant.class, 64));
+					stack.push(new StackEntry(b.toString(), IntegerConstant.class, ls + 16));
 					break;
 				case FNEG:
 					b.append("(fp.neg 32 RNE ");
@@ -475,7 +886,7 @@ public class SolverZ3 extends Solver {
 				b.append("(define-fun lcmp! ((l!l (_ BitVec 64)) (r!r (_ BitVec 64))) (_ BitVec 32) ");
 				b.append("(ite (bvsgt l!l r!r) #x00000001 ");
 				b.append("(ite (bvslt l!l r!r) #xffffffff #x00000000)))");
-				variableDefs.add(b.toString());
+				variableDefs.put("lcmp!", b.toString());
 				addedLcmp = true;
 			}
 		}
@@ -487,7 +898,7 @@ public class SolverZ3 extends Solver {
 				b.append("(ite (fp.gt l!l r!r) #x00000001 ");
 				b.append("(ite (fp.lt l!l r!r) #xffffffff ");
 				b.append("(ite (fp.eq l!l r!r) #x00000000 #xffffffff))))");
-				variableDefs.add(b.toString());
+				variableDefs.put("fcmpl!", b.toString());
 				addedFcmpl = true;
 			}
 		}
@@ -499,7 +910,7 @@ public class SolverZ3 extends Solver {
 				b.append("(ite (fp.gt l!l r!r) #x00000001 ");
 				b.append("(ite (fp.lt l!l r!r) #xffffffff ");
 				b.append("(ite (fp.eq l!l r!r) #x00000000 #x00000001))))");
-				variableDefs.add(b.toString());
+				variableDefs.put("fcmpg!", b.toString());
 				addedFcmpg = true;
 			}
 		}
@@ -511,7 +922,7 @@ public class SolverZ3 extends Solver {
 				b.append("(ite (fp.gt l!l r!r) #x00000001 ");
 				b.append("(ite (fp.lt l!l r!r) #xffffffff ");
 				b.append("(ite (fp.eq l!l r!r) #x00000000 #xffffffff))))");
-				variableDefs.add(b.toString());
+				variableDefs.put("dcmpl!", b.toString());
 				addedDcmpl = true;
 			}
 		}
@@ -523,7 +934,7 @@ public class SolverZ3 extends Solver {
 				b.append("(ite (fp.gt l!l r!r) #x00000001 ");
 				b.append("(ite (fp.lt l!l r!r) #xffffffff ");
 				b.append("(ite (fp.eq l!l r!r) #x00000000 #x00000001))))");
-				variableDefs.add(b.toString());
+				variableDefs.put("dcmpg!", b.toString());
 				addedDcmpg = true;
 			}
 		}
@@ -546,7 +957,9 @@ public class SolverZ3 extends Solver {
 			if (size == 32) {
 				return String.format("#x%08x", (int) v);
 			} else if (size == 16) {
-				return String.format("#x%04x", v);
+				return String.format("#x%04x", (short) v);
+			} else if (size == 8) {
+				return String.format("#x%02x", (byte) v);
 			} else if (size == 64) {
 				return String.format("#x%016x", v);
 			} else {
@@ -686,13 +1099,13 @@ public class SolverZ3 extends Solver {
 				Number value = null;
 				if (variable instanceof IntegerVariable) {
 					String z = assignment.get(name);
-					if (((IntegerVariable) variable).getSize() == 32) {
-						int val = Integer.parseUnsignedInt(z.substring(2), z.startsWith("#b") ? 2 : 16);
-						value = Long.valueOf(val);
-					} else {
-						long val = Long.parseUnsignedLong(z.substring(2), z.startsWith("#b") ? 2 : 16);
-						value = Long.valueOf(val);
+					long val = Long.parseUnsignedLong(z.substring(2), z.startsWith("#b") ? 2 : 16);
+					int shift = 64 - ((IntegerVariable) variable).getSize();
+					if (shift > 0) {
+						// sign-extend values of variables narrower than a long
+						val = (val << shift) >> shift;
 					}
+					value = Long.valueOf(val);
 				} else if (variable instanceof RealVariable) {
 					// UNHANDLED: NaN, -zero, +oo, -oo
 					String z = assignment.get(name);
@@ -24,12 +24,14 @@ public abstract class Variable extends Expression {
 
 	private final Object original;
 
-	public Variable(final String name) {
+	protected Variable(final int hash, final String name) {
+		super(hash);
 		this.name = name;
 		this.original = null;
 	}
 	
-	public Variable(final String name, final Object original) {
+	protected Variable(final int hash, final String name, final Object original) {
+		super(hash);
 		this.name = name;
 		this.original = original;
 	}
@@ -49,8 +51,8 @@ public abstract class Variable extends Expression {
 	// ======================================================================
 
 	@Override
-	public final String toString0() {
-		return getName();
+	protected final void toString(StringBuilder b) {
+		b.append(name);
 	}
 	
 }
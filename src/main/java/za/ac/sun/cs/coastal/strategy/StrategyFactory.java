@@ -32,6 +32,26 @@ public interface StrategyFactory extends TaskFactory {
 	@Override
 	Strategy[] createTask(COASTAL coastal, TaskManager manager);
 
+	/**
+	 * Return whether the strategy consumes the path conditions produced by
+	 * divers. Path conditions that no strategy consumes are not queued.
+	 *
+	 * @return {@code true} if the strategy reads the pc queue
+	 */
+	default boolean consumesPcs() {
+		return true;
+	}
+
+	/**
+	 * Return whether the strategy consumes the traces produced by surfers.
+	 * Traces that no strategy consumes are not queued.
+	 *
+	 * @return {@code true} if the strategy reads the trace queue
+	 */
+	default boolean consumesTraces() {
+		return true;
+	}
+
 	// ======================================================================
 	//
 	// STRATEGY MANAGER INTERFACE
@@ -40,7 +60,13 @@ public interface StrategyFactory extends TaskFactory {
 
 	public interface StrategyManager extends TaskManager {
 
-		void recordWaitTime(long l);
+		/**
+		 * Add the time that a strategy task has spent waiting for executions.
+		 * 
+		 * @param time
+		 *             the wait time, in nanoseconds
+		 */
+		void recordWaitTime(long time);
 
 	}
 
@@ -22,6 +22,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
@@ -40,6 +41,7 @@ import za.ac.sun.cs.coastal.strategy.StrategyFactory;
 import za.ac.sun.cs.coastal.surfer.TraceState;
 import za.ac.sun.cs.coastal.symbolic.Choice;
 import za.ac.sun.cs.coastal.symbolic.Execution;
+import za.ac.sun.cs.coastal.symbolic.FingerprintSet;
 import za.ac.sun.cs.coastal.symbolic.Input;
 import za.ac.sun.cs.coastal.symbolic.Path;
 
@@ -208,13 +210,18 @@ public class ConcolicFuzzerFactory implements StrategyFactory {
 		 * Add a reported strategy wait time. This is used to determine if it makes
 		 * sense to create additional threads (or destroy them).
 		 * 
-		 * @param time the wait time for this strategy
+		 * @param time the wait time for this strategy, in nanoseconds
 		 */
 		public void recordWaitTime(long time) {
 			strategyWaitTime.addAndGet(time);
 			strategyWaitCount.incrementAndGet();
 		}
 
+		@Override
+		public long getWaitTime() {
+			return strategyWaitTime.get() / 1000000;
+		}
+
 		protected void incrementTaskCount() {
 			taskCount++;
 		}
@@ -242,7 +249,7 @@ public class ConcolicFuzzerFactory implements StrategyFactory {
 
 		public void report(Object object) {
 			String name = getName();
-			double swt = strategyWaitTime.get() / strategyWaitCount.doubleValue();
+			double swt = strategyWaitTime.get() / 1000000.0 / strategyWaitCount.doubleValue();
 			broker.publish("report", new Tuple(name + ".tasks", getTaskCount()));
 			broker.publish("report", new FreqTuple(name + ".refinements", refineCount.get()));
 			broker.publish("report", new TimeTuple(name + ".wait-time", swt));
@@ -272,7 +279,7 @@ public class ConcolicFuzzerFactory implements StrategyFactory {
 		public Object[] getPropertyValues() {
 			Object[] propertyValues = new Object[4];
 			int index = 0;
-			double swt = strategyWaitTime.get() / strategyWaitCount.doubleValue();
+			double swt = strategyWaitTime.get() / 1000000.0 / strategyWaitCount.doubleValue();
 			long c = refineCount.get();
 			long t = strategyTime.get();
 			propertyValues[index++] = getTaskCount();
@@ -317,7 +324,7 @@ public class ConcolicFuzzerFactory implements StrategyFactory {
 
 		protected final Broker broker;
 
-		protected final Set<String> visitedModels = new HashSet<>();
+		protected final FingerprintSet visitedModels = new FingerprintSet();
 
 		protected int inputsAdded;
 
@@ -337,6 +344,8 @@ public class ConcolicFuzzerFactory implements StrategyFactory {
 
 		protected final int keepTop;
 
+		protected final int batchSize;
+
 		public ConcolicFuzzerStrategy(COASTAL coastal, StrategyManager manager) {
 			super(coastal, manager);
 			this.manager = (ConcolicFuzzerManager) manager;
@@ -348,6 +357,7 @@ public class ConcolicFuzzerFactory implements StrategyFactory {
 			eliminationCount = this.manager.getEliminationCount();
 			eliminationRatio = this.manager.getEliminationRatio();
 			keepTop = this.manager.getKeepTop();
+			batchSize = coastal.getBatchSize();
 		}
 
 		private Set<Integer> setValues = new HashSet<>();
@@ -360,10 +370,9 @@ public class ConcolicFuzzerFactory implements StrategyFactory {
 			try {
 				ExecutionCollection keepers = new ExecutionCollection(keepTop);
 				ExecutionCollection allTime = new ExecutionCollection(keepTop);
-				long t0 = System.currentTimeMillis();
+				long t0 = System.nanoTime();
 				Execution execution0 = coastal.getNextTrace();
-				long t1 = System.currentTimeMillis();
-				manager.recordWaitTime(t1 - t0);
+				manager.recordWaitTime(System.nanoTime() - t0);
 				manager.incrementRefinements();
 				log.trace("{} starting refinement", LOG_PREFIX);
 				int score0 = calculateScore(execution0);
@@ -372,6 +381,7 @@ public class ConcolicFuzzerFactory implements StrategyFactory {
 				setValues.addAll((Set<Integer>) execution0.getPayload("setValues"));
 				incValues.addAll((Set<Integer>) execution0.getPayload("incValues"));
 				refine(execution0, score0);
+				coastal.finishExecutions(1);
 				while (true) {
 					while (coastal.getSurferModelQueueLength() > queueLimit) {
 						Thread.sleep(200);
@@ -379,18 +389,22 @@ public class ConcolicFuzzerFactory implements StrategyFactory {
 					keepers.clear();
 					int eliminate = Math.max(eliminationCount,
 							(int) (eliminationRatio * coastal.getTraceQueueLength()));
-					for (int i = 0; i < eliminate; i++) {
-						t0 = System.currentTimeMillis();
-						Execution executionx = coastal.getNextTrace(200);
-						t1 = System.currentTimeMillis();
-						manager.recordWaitTime(t1 - t0);
-						if (executionx == null) {
+					int taken = 0;
+					while (eliminate > 0) {
+						t0 = System.nanoTime();
+						List<Execution> executions = coastal.getNextTraces(Math.min(eliminate, batchSize), 200);
+						manager.recordWaitTime(System.nanoTime() - t0);
+						if (executions.isEmpty()) {
 							log.trace("{} out of traces", LOG_PREFIX);
 							break;
 						}
-						int scorex = calculateScore(executionx);
-						keepers.add(scorex, executionx);
-						allTime.add(scorex, executionx);
+						for (Execution executionx : executions) {
+							int scorex = calculateScore(executionx);
+							keepers.add(scorex, executionx);
+							allTime.add(scorex, executionx);
+						}
+						eliminate -= executions.size();
+						taken += executions.size();
 					}
 					manager.incrementRefinements();
 					log.trace("{} starting refinement", LOG_PREFIX);
@@ -404,6 +418,7 @@ public class ConcolicFuzzerFactory implements StrategyFactory {
 					for (int j = 0, n = candidates.size(); j < n; j++) {
 						refine(candidates.getExecution(j), candidates.getScore(j));
 					}
+					coastal.finishExecutions(taken);
 					PathTreeNode root = manager.getPathTree().getRoot();
 					if ((root != null) && root.isFullyExplored()) {
 						coastal.stopWork("PATH TREE FULLY EXPLORED");
@@ -420,13 +435,12 @@ public class ConcolicFuzzerFactory implements StrategyFactory {
 
 		protected void refine(Execution execution, int score) {
 			long t0 = System.currentTimeMillis();
-			inputsAdded = -1;
+			inputsAdded = 0;
 			manager.insertPath(execution, false);
 			parameters = coastal.getParameters();
 			Input input = execution.getInput();
 			mutate(score, input);
-			log.trace("{} added {} surfer models", LOG_PREFIX, inputsAdded + 1);
-			coastal.updateWork(inputsAdded);
+			log.trace("{} added {} surfer models", LOG_PREFIX, inputsAdded);
 			manager.recordTime(System.currentTimeMillis() - t0);
 		}
 
@@ -625,7 +639,7 @@ public class ConcolicFuzzerFactory implements StrategyFactory {
 		public void run() {
 			log.trace("{} strategy task (ConcolicFuzzerPlanter) starting", LOG_PREFIX);
 			try {
-				while (true) {
+				while (!Thread.currentThread().isInterrupted()) {
 					if (!plant()) {
 						Thread.sleep(200);
 					}
@@ -663,7 +677,7 @@ public class ConcolicFuzzerFactory implements StrategyFactory {
 			if ((input == null) || (input.getSize() == 0)) {
 				return false;
 			}
-			coastal.updateWork(coastal.addDiverInputs(Collections.singletonList(input)));
+			coastal.addDiverInputs(Collections.singletonList(input));
 			return true;
 		}
 
@@ -722,13 +736,12 @@ public class ConcolicFuzzerFactory implements StrategyFactory {
 					long alternative = lastChoice.getAlternative();
 					Path newPath = new Path(path.getParent(), lastChoice.getAlternative(1 - alternative));
 					Input input = solver.solve(newPath.getPathCondition());
-					int d = -1;
 					if (input != null) {
 						input.copyPayload(execution.getInput());
 						input.setPayload("score", 100000);
-						d += coastal.addSurferInputs(Collections.singletonList(input));
+						coastal.addSurferInputs(Collections.singletonList(input));
 					}
-					coastal.updateWork(d);
+					coastal.finishExecutions(1);
 					PathTreeNode root = manager.getPathTree().getRoot();
 					if ((root != null) && root.isFullyExplored()) {
 						break;
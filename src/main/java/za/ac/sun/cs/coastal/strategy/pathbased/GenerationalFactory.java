@@ -19,13 +19,28 @@
 package za.ac.sun.cs.coastal.strategy.pathbased;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import za.ac.sun.cs.coastal.COASTAL;
 import za.ac.sun.cs.coastal.Configuration;
 import za.ac.sun.cs.coastal.pathtree.PathTree;
 import za.ac.sun.cs.coastal.pathtree.PathTreeNode;
 import za.ac.sun.cs.coastal.solver.Expression;
+import za.ac.sun.cs.coastal.solver.Solver;
 import za.ac.sun.cs.coastal.symbolic.Choice;
 import za.ac.sun.cs.coastal.symbolic.Execution;
 import za.ac.sun.cs.coastal.symbolic.Input;
@@ -33,6 +48,18 @@ import za.ac.sun.cs.coastal.symbolic.Path;
 
 public class GenerationalFactory extends PathBasedFactory {
 
+	/**
+	 * The number of solver queries that may wait for each solver worker. When
+	 * the queue is full, strategy threads solve queries themselves.
+	 */
+	private static final int SOLVER_QUEUE_FACTOR = 4;
+
+	/**
+	 * The number of milliseconds to wait for a solver query before checking
+	 * whether the analysis run has stopped.
+	 */
+	private static final long POLL_DELAY = 100;
+
 	private final Configuration config;
 
 	public GenerationalFactory(COASTAL coastal, Configuration config) {
@@ -72,6 +99,28 @@ public class GenerationalFactory extends PathBasedFactory {
 
 		private final boolean full;
 
+		/**
+		 * The pool of solver workers, or {@code null} if path conditions are solved
+		 * on the strategy threads.
+		 */
+		private final ThreadPoolExecutor solverPool;
+
+		/**
+		 * The index of the solver worker that runs on the current thread.
+		 */
+		private final ThreadLocal<Integer> solverIndex = new ThreadLocal<>();
+
+		/**
+		 * The accumulated time that each solver worker spent solving, in
+		 * nanoseconds.
+		 */
+		private final AtomicLongArray solverBusyTime;
+
+		/**
+		 * The time when the pool of solver workers was created, in nanoseconds.
+		 */
+		private final long solverPoolStart;
+
 		GenerationalManager(COASTAL coastal, Configuration config) {
 			super(coastal);
 			if (config.getBoolean("top-down", false)) {
@@ -82,6 +131,74 @@ public class GenerationalFactory extends PathBasedFactory {
 				priorityDelta = -1;
 			}
 			full = config.getBoolean("full", false);
+			int solverThreads = config.getInt("solver-threads", 0);
+			if (solverThreads > 0) {
+				AtomicInteger threadCount = new AtomicInteger(0);
+				solverPool = new ThreadPoolExecutor(solverThreads, solverThreads, 0, TimeUnit.MILLISECONDS,
+						new ArrayBlockingQueue<>(SOLVER_QUEUE_FACTOR * solverThreads), r -> {
+							int index = threadCount.getAndIncrement();
+							Thread thread = new Thread(() -> {
+								solverIndex.set(index);
+								r.run();
+							}, "coastal-solver-" + index);
+							thread.setDaemon(true);
+							return thread;
+						}, new ThreadPoolExecutor.CallerRunsPolicy());
+				solverBusyTime = new AtomicLongArray(solverThreads);
+				solverPoolStart = System.nanoTime();
+				broker.subscribe("coastal-stop", o -> solverPool.shutdownNow());
+			} else {
+				solverPool = null;
+				solverBusyTime = null;
+				solverPoolStart = 0;
+			}
+		}
+
+		/**
+		 * Add to the time that the current solver worker spent solving. The time
+		 * spent by strategy threads (when the queue of the pool is full) is not
+		 * recorded.
+		 * 
+		 * @param time
+		 *             the time in nanoseconds
+		 */
+		private void recordSolverBusyTime(long time) {
+			Integer index = solverIndex.get();
+			if (index != null) {
+				solverBusyTime.addAndGet(index, time);
+			}
+		}
+
+		@Override
+		public String[] getPropertyNames() {
+			String[] names = super.getPropertyNames();
+			if (solverPool == null) {
+				return names;
+			}
+			names = Arrays.copyOf(names, names.length + 2);
+			names[names.length - 2] = "solver queue";
+			names[names.length - 1] = "solver utilisation";
+			return names;
+		}
+
+		@Override
+		public Object[] getPropertyValues() {
+			Object[] values = super.getPropertyValues();
+			if (solverPool == null) {
+				return values;
+			}
+			values = Arrays.copyOf(values, values.length + 2);
+			values[values.length - 2] = solverPool.getQueue().size();
+			double elapsed = System.nanoTime() - solverPoolStart;
+			StringBuilder utilisation = new StringBuilder();
+			for (int i = 0; i < solverBusyTime.length(); i++) {
+				if (i > 0) {
+					utilisation.append(' ');
+				}
+				utilisation.append(String.format("%.0f%%", 100 * solverBusyTime.get(i) / elapsed));
+			}
+			values[values.length - 1] = utilisation.toString();
+			return values;
 		}
 
 		protected void incrementTaskCount() {
@@ -119,6 +236,12 @@ public class GenerationalFactory extends PathBasedFactory {
 		 */
 		private final int priorityDelta;
 
+		/**
+		 * The pool of solver workers, or {@code null} if path conditions are solved
+		 * on the strategy thread.
+		 */
+		private final ExecutorService solverPool;
+
 		/**
 		 * Construct a new task that implements the generational strategy.
 		 * 
@@ -131,6 +254,7 @@ public class GenerationalFactory extends PathBasedFactory {
 			super(coastal, manager);
 			priorityStart = ((GenerationalManager) manager).priorityStart;
 			priorityDelta = ((GenerationalManager) manager).priorityDelta;
+			solverPool = ((GenerationalManager) manager).solverPool;
 		}
 
 		@Override
@@ -140,9 +264,15 @@ public class GenerationalFactory extends PathBasedFactory {
 			}
 			List<Input> inputs = new ArrayList<>();
 			Path path = execution.getPath();
-			log.trace("explored path <{}> {}", path.getSignature(), path.getPathCondition().toString());
+			log.trace("explored path <{}> {}", path.getSignature(), path.getPathCondition());
 			PathTreeNode bottom = manager.insertPath0(execution, false);
-			if (bottom != null) {
+			if ((bottom != null) && coastal.isQuietReplay(execution.getInput())) {
+				log.trace("replayed path -- new models were derived before the checkpoint");
+				for (bottom = bottom.getParent(); (bottom != null) && !bottom.hasBeenGenerated(); bottom = bottom.getParent()) {
+					bottom.setGenerated();
+				}
+				return null;
+			} else if (bottom != null) {
 				List<Path> altPaths = new ArrayList<>();
 				bottom = bottom.getParent();
 				int depth = bottom.getPath().getDepth();
@@ -151,34 +281,152 @@ public class GenerationalFactory extends PathBasedFactory {
 					bottom.setGenerated();
 					bottom = bottom.getParent();
 				}
-				int priority = priorityStart;
-				for (Path altPath : altPaths) {
-					Expression pc = altPath.getPathCondition();
-					String sig = altPath.getSignature();
-					log.trace("about to explore path <{}> {}", sig, pc.toString());
-					long t = System.currentTimeMillis();
-					Input input = solver.solve(pc);
-					manager.recordSolverTime(System.currentTimeMillis() - t);
-					if (input == null) {
-						log.trace("no model was found for this path");
-						log.trace("the path condition is {}", altPath.getPathCondition().toString());
-						manager.insertPath(altPath, true);
+				if (solverPool == null) {
+					solveSequentially(execution, altPaths, inputs);
+				} else {
+					solveInParallel(execution, altPaths);
+				}
+			} else {
+				log.trace("revisited path -- no new models generated");
+			}
+			return inputs;
+		}
+
+		/**
+		 * Solve the path conditions of the alternative paths one after the other on
+		 * the strategy thread.
+		 * 
+		 * @param execution
+		 *                  the execution whose path is negated
+		 * @param altPaths
+		 *                  the alternative paths
+		 * @param inputs
+		 *                  the list to which new models are added
+		 */
+		private void solveSequentially(Execution execution, List<Path> altPaths, List<Input> inputs) {
+			Path path = execution.getPath();
+			int priority = priorityStart;
+			for (Path altPath : altPaths) {
+				Input input = solveAltPath(altPath, execution.getInput(), path.getPathCondition());
+				if ((input == null) || (input == Solver.UNKNOWN)) {
+					manager.insertPath(altPath, true);
+				} else {
+					log.trace("new model found for this path: {}", input);
+					if (visitedInputs.add(input.getFingerprint())) {
+						input.setPayload("priority", priority);
+						inputs.add(input);
+						priority += priorityDelta;
 					} else {
-						String modelString = input.toString();
-						log.trace("new model found for this path: {}", modelString);
-						if (visitedInputs.add(modelString)) {
-							input.setPayload("priority", priority);
-							inputs.add(input);
-							priority += priorityDelta;
+						log.trace("model {} has been visited before, retrying", input);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Solve the path conditions of the alternative paths with the solver pool
+		 * of the manager. The models are handled in the order of their paths in
+		 * the list of alternative paths, and each model is passed to the divers as
+		 * soon as the models of all earlier paths have been handled. The divers
+		 * therefore receive the same models with the same priorities as with
+		 * sequential solving. Outstanding queries are cancelled when the analysis
+		 * run stops.
+		 * 
+		 * @param execution
+		 *                  the execution whose path is negated
+		 * @param altPaths
+		 *                  the alternative paths
+		 */
+		private void solveInParallel(Execution execution, List<Path> altPaths) {
+			final Input witness = execution.getInput();
+			final Expression satisfiedPc = execution.getPath().getPathCondition();
+			CompletionService<Input> completionService = new ExecutorCompletionService<>(solverPool);
+			Map<Future<Input>, Integer> futures = new HashMap<>();
+			for (int i = 0; i < altPaths.size(); i++) {
+				final Path altPath = altPaths.get(i);
+				futures.put(completionService.submit(() -> {
+					long t0 = System.nanoTime();
+					try {
+						return solveAltPath(altPath, witness, satisfiedPc);
+					} finally {
+						((GenerationalManager) manager).recordSolverBusyTime(System.nanoTime() - t0);
+					}
+				}), i);
+			}
+			Input[] results = new Input[altPaths.size()];
+			boolean[] solved = new boolean[altPaths.size()];
+			int next = 0;
+			int priority = priorityStart;
+			try {
+				while (next < altPaths.size()) {
+					Future<Input> future = completionService.poll(POLL_DELAY, TimeUnit.MILLISECONDS);
+					if (future == null) {
+						if (coastal.workStopped()) {
+							log.trace("cancelling {} outstanding solver queries", futures.size());
+							break;
+						}
+						continue;
+					}
+					int index = futures.remove(future);
+					try {
+						results[index] = future.get();
+					} catch (ExecutionException x) {
+						log.trace("SOLVER WORKER EXCEPTION", x.getCause());
+						results[index] = Solver.UNKNOWN;
+					}
+					solved[index] = true;
+					for (; (next < altPaths.size()) && solved[next]; next++) {
+						Input input = results[next];
+						results[next] = null;
+						if ((input == null) || (input == Solver.UNKNOWN)) {
+							manager.insertPath(altPaths.get(next), true);
 						} else {
-							log.trace("model {} has been visited before, retrying", modelString);
+							log.trace("new model found for this path: {}", input);
+							if (visitedInputs.add(input.getFingerprint())) {
+								input.setPayload("priority", priority);
+								coastal.addDiverInputs(Collections.singletonList(input));
+								priority += priorityDelta;
+							} else {
+								log.trace("model {} has been visited before, retrying", input);
+							}
 						}
 					}
 				}
-			} else {
-				log.trace("revisited path -- no new models generated");
+			} catch (InterruptedException x) {
+				Thread.currentThread().interrupt();
+			} finally {
+				for (Future<Input> future : futures.keySet()) {
+					future.cancel(true);
+				}
 			}
-			return inputs;
+		}
+
+		/**
+		 * Solve the path condition of an alternative path.
+		 * 
+		 * @param altPath
+		 *                    the alternative path
+		 * @param witness
+		 *                    the input of the execution whose path is negated
+		 * @param satisfiedPc
+		 *                    the path condition of the execution whose path is
+		 *                    negated
+		 * @return a model for the path condition, {@code null} if there is none, or
+		 *         {@link Solver#UNKNOWN} if the solver failed
+		 */
+		private Input solveAltPath(Path altPath, Input witness, Expression satisfiedPc) {
+			Expression pc = altPath.getPathCondition();
+			log.trace("about to explore path <{}> {}", altPath.getSignature(), pc);
+			if (manager.isKnownInfeasible(pc)) {
+				log.trace("path contains a known unsatisfiable core");
+				return null;
+			}
+			Input input = solve(pc, witness, satisfiedPc);
+			if ((input == null) || (input == Solver.UNKNOWN)) {
+				log.trace("no model was found for this path");
+				log.trace("the path condition is {}", pc);
+			}
+			return input;
 		}
 
 		protected abstract List<Path> generateAltPaths(Path path, Path pointer, int depth);
@@ -18,10 +18,13 @@
  */
 package za.ac.sun.cs.coastal.strategy.pathbased;
 
+import java.util.ArrayDeque;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 
 import za.ac.sun.cs.coastal.COASTAL;
@@ -31,14 +34,21 @@ import za.ac.sun.cs.coastal.messages.Tuple;
 import za.ac.sun.cs.coastal.pathtree.PathTree;
 import za.ac.sun.cs.coastal.pathtree.PathTreeNode;
 import za.ac.sun.cs.coastal.solver.Expression;
+import za.ac.sun.cs.coastal.solver.Slicer;
 import za.ac.sun.cs.coastal.solver.Solver;
 import za.ac.sun.cs.coastal.strategy.StrategyFactory;
 import za.ac.sun.cs.coastal.symbolic.Execution;
+import za.ac.sun.cs.coastal.symbolic.FingerprintSet;
 import za.ac.sun.cs.coastal.symbolic.Input;
 import za.ac.sun.cs.coastal.symbolic.Path;
 
 public abstract class PathBasedFactory implements StrategyFactory {
 
+	@Override
+	public boolean consumesTraces() {
+		return false;
+	}
+
 	// ======================================================================
 	//
 	// PATH-BASED SEARCH STRATEGY MANAGER
@@ -55,6 +65,26 @@ public abstract class PathBasedFactory implements StrategyFactory {
 
 		protected final boolean showLines;
 
+		/**
+		 * Known unsatisfiable cores, or {@code null} if they are not recorded.
+		 */
+		protected final UnsatCoreCache coreCache;
+
+		/**
+		 * Whether path conditions are sliced before they are solved.
+		 */
+		protected final boolean sliceConstraints;
+
+		/**
+		 * Counter of the number of path conditions that were sliced.
+		 */
+		protected final AtomicLong sliceCount = new AtomicLong(0);
+
+		/**
+		 * Counter of the number of conjuncts removed by slicing.
+		 */
+		protected final AtomicLong slicedConjunctCount = new AtomicLong(0);
+
 		/**
 		 * Counter of number of refinements.
 		 */
@@ -85,22 +115,79 @@ public abstract class PathBasedFactory implements StrategyFactory {
 		 */
 		private final AtomicLong strategyWaitCount = new AtomicLong(0);
 
+		/**
+		 * The map fingerprints of derived models whose executions have not
+		 * reached the strategies yet.
+		 */
+		private final Set<Long> pendingModels = ConcurrentHashMap.newKeySet();
+
 		public PathBasedManager(COASTAL coastal) {
 			this.coastal = coastal;
 			broker = coastal.getBroker();
 			broker.subscribe("coastal-stop", this::report);
 			pathTree = coastal.getPathTree();
 			showLines = coastal.getConfig().getBoolean("coastal.settings.show-lines", false);
+			int coreLimit = coastal.getConfig().getInt("coastal.settings.unsat-core-cache", 0);
+			coreCache = (coreLimit > 0) ? new UnsatCoreCache(coreLimit) : null;
+			sliceConstraints = coastal.getConfig().getBoolean("coastal.settings.slice-constraints", false);
 		}
 
 		public PathTree getPathTree() {
 			return pathTree;
 		}
 
+		/**
+		 * Record that a model has been derived and waits to be executed.
+		 * 
+		 * @param input
+		 *              the model
+		 */
+		public void addPendingModel(Input input) {
+			pendingModels.add(input.getMapFingerprint());
+		}
+
+		/**
+		 * Record that the execution of a model has reached the strategies.
+		 * 
+		 * @param input
+		 *              the model
+		 */
+		public void removePendingModel(Input input) {
+			pendingModels.remove(input.getMapFingerprint());
+		}
+
+		/**
+		 * Return whether a model has been derived but its execution has not
+		 * reached the strategies yet. This happens when several executions are
+		 * in flight, for instance while a checkpoint is replayed.
+		 * 
+		 * @param input
+		 *              the model
+		 * @return {@code true} if the model waits to be executed
+		 */
+		public boolean isPendingModel(Input input) {
+			return pendingModels.contains(input.getMapFingerprint());
+		}
+
 		public boolean getShowLines() {
 			return showLines;
 		}
 
+		public boolean getSliceConstraints() {
+			return sliceConstraints;
+		}
+
+		/**
+		 * Record that a path condition was sliced.
+		 * 
+		 * @param removed
+		 *                the number of conjuncts removed from the path condition
+		 */
+		public void recordSlice(int removed) {
+			sliceCount.incrementAndGet();
+			slicedConjunctCount.addAndGet(removed);
+		}
+
 		public PathTreeNode insertPath0(Execution execution, boolean infeasible) {
 			return pathTree.insertPath(execution, infeasible);
 		}
@@ -113,6 +200,34 @@ public abstract class PathBasedFactory implements StrategyFactory {
 			return (pathTree.insertPath(new Execution(path, null), infeasible) == null);
 		}
 
+		/**
+		 * Check whether a path condition contains a known unsatisfiable core.
+		 * 
+		 * @param pc
+		 *           the path condition to check
+		 * @return {@code true} if the path condition is known to be infeasible
+		 */
+		public boolean isKnownInfeasible(Expression pc) {
+			return (coreCache != null) && coreCache.isSubsumed(new HashSet<>(Solver.getConjuncts(pc)));
+		}
+
+		/**
+		 * Record that a path condition is infeasible. If unsatisfiable cores are
+		 * recorded, the solver is asked for a core of the path condition.
+		 * 
+		 * @param solver
+		 *               the solver that found the path condition infeasible
+		 * @param pc
+		 *               the infeasible path condition
+		 */
+		public void recordInfeasible(Solver solver, Expression pc) {
+			if (coreCache != null) {
+				long t = System.currentTimeMillis();
+				coreCache.add(solver.getUnsatCore(pc));
+				recordSolverTime(System.currentTimeMillis() - t);
+			}
+		}
+
 		/**
 		 * Increment the number of refinements.
 		 */
@@ -142,22 +257,35 @@ public abstract class PathBasedFactory implements StrategyFactory {
 		 * Add a reported strategy wait time. This is used to determine if it makes
 		 * sense to create additional threads (or destroy them).
 		 * 
-		 * @param time the wait time for this strategy
+		 * @param time the wait time for this strategy, in nanoseconds
 		 */
 		public void recordWaitTime(long time) {
 			strategyWaitTime.addAndGet(time);
 			strategyWaitCount.incrementAndGet();
 		}
 
+		@Override
+		public long getWaitTime() {
+			return strategyWaitTime.get() / 1000000;
+		}
+
 		public void report(Object object) {
 			String name = getName();
-			double swt = strategyWaitTime.get() / strategyWaitCount.doubleValue();
+			double swt = strategyWaitTime.get() / 1000000.0 / strategyWaitCount.doubleValue();
 			broker.publish("report", new Tuple(name + ".tasks", getTaskCount()));
 			broker.publish("report", new TimeTuple(name + ".solver-time", solverTime.get()));
 			broker.publish("report", new TimeTuple(name + ".extraction-time", extractionTime.get()));
 			broker.publish("report", new TimeTuple(name + ".wait-time", swt));
 			broker.publish("report", new TimeTuple(name + ".total-time", strategyTime.get()));
-			Solver.report();
+			if (coreCache != null) {
+				broker.publish("report", new Tuple(name + ".unsat-cores", coreCache.size()));
+				broker.publish("report", new Tuple(name + ".pruned-infeasible", coreCache.getHitCount()));
+			}
+			if (sliceConstraints) {
+				broker.publish("report", new Tuple(name + ".sliced-queries", sliceCount.get()));
+				broker.publish("report", new Tuple(name + ".sliced-conjuncts", slicedConjunctCount.get()));
+			}
+			Solver.report(coastal);
 		}
 
 		protected abstract int getTaskCount();
@@ -174,7 +302,7 @@ public abstract class PathBasedFactory implements StrategyFactory {
 		public Object[] getPropertyValues() {
 			Object[] propertyValues = new Object[4];
 			int index = 0;
-			double swt = strategyWaitTime.get() / strategyWaitCount.doubleValue();
+			double swt = strategyWaitTime.get() / 1000000.0 / strategyWaitCount.doubleValue();
 			long c = refineCount.get();
 			long t = strategyTime.get();
 			propertyValues[index++] = getTaskCount();
@@ -200,12 +328,15 @@ public abstract class PathBasedFactory implements StrategyFactory {
 
 		protected final Solver solver;
 
-		protected final Set<String> visitedInputs = new HashSet<>();
+		protected final FingerprintSet visitedInputs = new FingerprintSet();
+
+		protected final int batchSize;
 
 		public PathBasedStrategy(COASTAL coastal, StrategyManager manager) {
 			super(coastal, manager);
 			this.manager = (PathBasedManager) manager;
 			broker = coastal.getBroker();
+			batchSize = coastal.getBatchSize();
 			solver = Solver.getSolver(coastal);
 		}
 
@@ -213,28 +344,29 @@ public abstract class PathBasedFactory implements StrategyFactory {
 		public void run() {
 			log.trace("starting strategy task");
 			try {
+				Deque<Execution> pending = new ArrayDeque<>();
 				while (true) {
-					long t0 = System.currentTimeMillis();
-					Execution execution = coastal.getNextPc();
-					long t1 = System.currentTimeMillis();
-					manager.recordWaitTime(t1 - t0);
+					if (pending.isEmpty()) {
+						long t0 = System.nanoTime();
+						pending.addAll(coastal.getNextPcs(batchSize));
+						manager.recordWaitTime(System.nanoTime() - t0);
+					}
+					Execution execution = pending.poll();
 					manager.incrementRefinements();
 					log.trace("--------- starting refinement --------");
 					List<Input> inputs = refine(execution);
-					// We start at -1 (and not at 0) to account for the
-					// fact that one item of work has been removed from
-					// the global work count.
-					int d = -1;
+					int d = 0;
 					while (inputs != null) {
-						int m = coastal.addDiverInputs(inputs);
-						if (m > 0) {
-							d += m;
+						d = coastal.addDiverInputs(inputs);
+						if (d > 0) {
 							break;
 						}
 						inputs = refine1();
 					}
-					log.trace("removed 1 model, added {} models", d + 1);
-					coastal.updateWork(d);
+					log.trace("removed 1 model, added {} models", d);
+					// The new models are already counted as work, so the
+					// execution can now be released.
+					coastal.finishExecution(execution);
 				}
 			} catch (InterruptedException e) {
 				log.trace("stoppping strategy task");
@@ -253,6 +385,9 @@ public abstract class PathBasedFactory implements StrategyFactory {
 			if (execution == null) {
 				return null;
 			}
+			if (execution.getInput() != null) {
+				manager.removePendingModel(execution.getInput());
+			}
 			Path path = execution.getPath();
 			if (manager.getShowLines()) {
 				@SuppressWarnings("unchecked")
@@ -268,8 +403,12 @@ public abstract class PathBasedFactory implements StrategyFactory {
 				manager.insertPath(execution, false); // ignore revisited return value
 				return null;
 			} else {
-				log.trace("explored path <{}> {}", path.getSignature(), path.getPathCondition().toString());
+				log.trace("explored path <{}> {}", path.getSignature(), path.getPathCondition());
 				manager.insertPath(execution, false); // ignore revisited return value
+				if (coastal.isQuietReplay(execution.getInput())) {
+					log.trace("replayed path -- new models were derived before the checkpoint");
+					return null;
+				}
 				return refine1();
 			}
 		}
@@ -284,27 +423,82 @@ public abstract class PathBasedFactory implements StrategyFactory {
 				}
 				Expression pc = path.getPathCondition();
 				String sig = path.getSignature();
-				log.trace("about to explore path <{}> {}", sig, pc.toString());
-				long t = System.currentTimeMillis();
-				Input input = solver.solve(pc);
-				manager.recordSolverTime(System.currentTimeMillis() - t);
-				if (input == null) {
+				log.trace("about to explore path <{}> {}", sig, pc);
+				if (manager.isKnownInfeasible(pc)) {
+					log.trace("path contains a known unsatisfiable core");
+					manager.insertPath(path, true);
+					continue;
+				}
+				Path parent = path.getParent();
+				Input witness = (parent == null) ? null : parent.getWitness();
+				Expression satisfiedPc = (parent == null) ? null : parent.getPathCondition();
+				Input input = solve(pc, witness, satisfiedPc);
+				if ((input == null) || (input == Solver.UNKNOWN)) {
 					log.trace("no model was found for this path");
-					log.trace("the path condition is {}", path.getPathCondition().toString());
+					log.trace("the path condition is {}", path.getPathCondition());
 					manager.insertPath(path, true);
 				} else {
-					String inputString = input.toMapString();
-					log.trace("new model found for this path: {}", inputString);
-					if (visitedInputs.add(inputString)) {
+					log.trace("new model found for this path: {}", input);
+					if (visitedInputs.add(input.getMapFingerprint())) {
+						manager.addPendingModel(input);
 						return Collections.singletonList(input);
+					} else if (manager.isPendingModel(input)) {
+						// The path is explored when the model's execution arrives
+						log.trace("model {} has not been executed yet", input);
+						return null;
 					} else {
 						manager.insertPath(path, false);
-						log.trace("model {} has been visited before, retrying", inputString);
+						log.trace("model {} has been visited before, retrying", input);
 					}
 				}
 			}
 		}
 
+		/**
+		 * Solve the path condition of a new path. If slicing is enabled and a
+		 * model is known for a path condition that shares conjuncts with the new
+		 * path condition, only the new conjuncts and the conjuncts that depend on
+		 * them are solved. The model is then completed with the values of the
+		 * known model. If the path condition is unsatisfiable, this is recorded
+		 * with the manager.
+		 * 
+		 * @param pc
+		 *                    the path condition to solve
+		 * @param witness
+		 *                    a model for {@code satisfiedPc}, or {@code null}
+		 * @param satisfiedPc
+		 *                    a path condition satisfied by {@code witness}, or
+		 *                    {@code null}
+		 * @return a model for the path condition, {@code null} if there is none, or
+		 *         {@link Solver#UNKNOWN} if the solver failed
+		 */
+		protected Input solve(Expression pc, Input witness, Expression satisfiedPc) {
+			Expression query = pc;
+			if (manager.getSliceConstraints() && (witness != null) && (satisfiedPc != null)) {
+				query = Slicer.slice(pc, new HashSet<>(Solver.getConjuncts(satisfiedPc)));
+				if (query != pc) {
+					manager.recordSlice(Solver.getConjuncts(pc).size() - Solver.getConjuncts(query).size());
+					log.trace("sliced path condition is {}", query);
+				}
+			}
+			long t = System.currentTimeMillis();
+			Input input = solver.solveOrUnknown(query);
+			manager.recordSolverTime(System.currentTimeMillis() - t);
+			if (input == null) {
+				manager.recordInfeasible(solver, query);
+			} else if ((input != Solver.UNKNOWN) && (query != pc)) {
+				Input model = new Input();
+				for (String name : witness.getNames()) {
+					model.put(name, witness.get(name));
+				}
+				for (String name : input.getNames()) {
+					model.put(name, input.get(name));
+				}
+				input = model;
+			}
+			return input;
+		}
+
 		protected abstract Path findNewPath(PathTree pathTree);
 
 	}
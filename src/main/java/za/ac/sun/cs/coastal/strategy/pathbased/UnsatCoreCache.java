@@ -0,0 +1,152 @@
+/*
+ * This file is part of the COASTAL tool, https://deepseaplatform.github.io/coastal/
+ *
+ * Copyright (c) 2019-2020, Computer Science, Stellenbosch University.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package za.ac.sun.cs.coastal.strategy.pathbased;
+
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+import za.ac.sun.cs.coastal.solver.Expression;
+
+/**
+ * A bounded collection of unsatisfiable cores: sets of conjuncts that cannot
+ * all be true at the same time. A path condition that contains all the
+ * conjuncts of a known core is infeasible, and need not be passed to the
+ * solver. This is especially useful for loops, where many candidate paths
+ * extend a prefix that is already known to be infeasible.
+ * 
+ * Each core is indexed under one of its conjuncts, so that a path condition is
+ * only compared to the cores that share at least one conjunct with it. When
+ * the collection is full, the oldest core is discarded.
+ */
+class UnsatCoreCache {
+
+	/**
+	 * The maximum number of cores.
+	 */
+	private final int capacity;
+
+	/**
+	 * Cores indexed by one of their conjuncts.
+	 */
+	private final Map<Expression, List<Set<Expression>>> index = new HashMap<>();
+
+	/**
+	 * The cores in the order they were added, together with their index keys.
+	 */
+	private final Queue<Map.Entry<Expression, Set<Expression>>> cores = new ArrayDeque<>();
+
+	/**
+	 * The number of path conditions found to be infeasible.
+	 */
+	private long hitCount = 0;
+
+	UnsatCoreCache(int capacity) {
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Check whether a path condition contains all the conjuncts of a known
+	 * unsatisfiable core.
+	 * 
+	 * @param conjuncts
+	 *                  the conjuncts of the path condition
+	 * @return {@code true} if and only if the path condition is known to be
+	 *         infeasible
+	 */
+	synchronized boolean isSubsumed(Set<Expression> conjuncts) {
+		for (Expression conjunct : conjuncts) {
+			List<Set<Expression>> candidates = index.get(conjunct);
+			if (candidates != null) {
+				for (Set<Expression> core : candidates) {
+					if (conjuncts.containsAll(core)) {
+						hitCount++;
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Add an unsatisfiable core, unless it already contains a known core.
+	 * 
+	 * @param conjuncts
+	 *                  the conjuncts of the core
+	 */
+	synchronized void add(List<Expression> conjuncts) {
+		if (conjuncts.isEmpty()) {
+			return;
+		}
+		Set<Expression> core = new HashSet<>(conjuncts);
+		Expression key = null;
+		int keyCount = Integer.MAX_VALUE;
+		for (Expression conjunct : core) {
+			List<Set<Expression>> candidates = index.get(conjunct);
+			int count = (candidates == null) ? 0 : candidates.size();
+			if (count > 0) {
+				for (Set<Expression> known : candidates) {
+					if (core.containsAll(known)) {
+						return;
+					}
+				}
+			}
+			if (count < keyCount) {
+				key = conjunct;
+				keyCount = count;
+			}
+		}
+		index.computeIfAbsent(key, k -> new ArrayList<>()).add(core);
+		cores.add(new AbstractMap.SimpleEntry<>(key, core));
+		if (cores.size() > capacity) {
+			Map.Entry<Expression, Set<Expression>> oldest = cores.remove();
+			List<Set<Expression>> candidates = index.get(oldest.getKey());
+			candidates.remove(oldest.getValue());
+			if (candidates.isEmpty()) {
+				index.remove(oldest.getKey());
+			}
+		}
+	}
+
+	/**
+	 * Return the number of cores.
+	 * 
+	 * @return the number of cores
+	 */
+	synchronized int size() {
+		return cores.size();
+	}
+
+	/**
+	 * Return the number of path conditions found to be infeasible.
+	 * 
+	 * @return the number of hits
+	 */
+	synchronized long getHitCount() {
+		return hitCount;
+	}
+
+}
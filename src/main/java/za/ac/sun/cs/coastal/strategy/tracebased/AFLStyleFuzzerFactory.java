@@ -22,7 +22,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -38,6 +37,7 @@ import za.ac.sun.cs.coastal.pathtree.PathTreeNode;
 import za.ac.sun.cs.coastal.strategy.MTRandom;
 import za.ac.sun.cs.coastal.strategy.StrategyFactory;
 import za.ac.sun.cs.coastal.symbolic.Execution;
+import za.ac.sun.cs.coastal.symbolic.FingerprintSet;
 import za.ac.sun.cs.coastal.symbolic.Input;
 import za.ac.sun.cs.coastal.symbolic.Path;
 
@@ -59,6 +59,11 @@ public class AFLStyleFuzzerFactory implements StrategyFactory {
 		return new AFLStyleFuzzerManager(coastal, configuration);
 	}
 
+	@Override
+	public boolean consumesPcs() {
+		return false;
+	}
+
 	@Override
 	public Strategy[] createTask(COASTAL coastal, TaskManager manager) {
 		((AFLStyleFuzzerManager) manager).incrementTaskCount();
@@ -109,6 +114,12 @@ public class AFLStyleFuzzerFactory implements StrategyFactory {
 
 		protected final Map<String, Integer> edgesSeen = new HashMap<>();
 
+		/**
+		 * Counter of traces that were scored on the edge map recorded by
+		 * edge-coverage instrumentation.
+		 */
+		protected final AtomicLong edgeTraceCount = new AtomicLong(0);
+
 		public AFLStyleFuzzerManager(COASTAL coastal, Configuration configuration) {
 			this.coastal = coastal;
 			broker = coastal.getBroker();
@@ -159,13 +170,18 @@ public class AFLStyleFuzzerFactory implements StrategyFactory {
 		 * Add a reported strategy wait time. This is used to determine if it makes
 		 * sense to create additional threads (or destroy them).
 		 * 
-		 * @param time the wait time for this strategy
+		 * @param time the wait time for this strategy, in nanoseconds
 		 */
 		public void recordWaitTime(long time) {
 			strategyWaitTime.addAndGet(time);
 			strategyWaitCount.incrementAndGet();
 		}
 
+		@Override
+		public long getWaitTime() {
+			return strategyWaitTime.get() / 1000000;
+		}
+
 		protected void incrementTaskCount() {
 			taskCount++;
 		}
@@ -174,6 +190,17 @@ public class AFLStyleFuzzerFactory implements StrategyFactory {
 			return taskCount;
 		}
 
+		/**
+		 * Increment the number of traces scored on their edge maps.
+		 */
+		public void incrementEdgeTraces() {
+			edgeTraceCount.incrementAndGet();
+		}
+
+		protected synchronized int getEdgesSeenCount() {
+			return edgesSeen.size();
+		}
+
 		protected synchronized int scoreEdges(Map<String, Integer> edges) {
 			int score = 0;
 			for (Map.Entry<String, Integer> entry : edges.entrySet()) {
@@ -193,10 +220,12 @@ public class AFLStyleFuzzerFactory implements StrategyFactory {
 
 		public void report(Object object) {
 			String name = getName();
-			double swt = strategyWaitTime.get() / strategyWaitCount.doubleValue();
+			double swt = strategyWaitTime.get() / 1000000.0 / strategyWaitCount.doubleValue();
 			broker.publish("report", new Tuple(name + ".tasks", getTaskCount()));
 			broker.publish("report", new TimeTuple(name + ".wait-time", swt));
 			broker.publish("report", new TimeTuple(name + ".total-time", strategyTime.get()));
+			broker.publish("report", new Tuple(name + ".edges-seen", getEdgesSeenCount()));
+			broker.publish("report", new Tuple(name + ".edge-traces", edgeTraceCount.get()));
 		}
 
 		private static final String[] PROPERTY_NAMES = new String[] { "#tasks", "#refinements", "waiting time",
@@ -216,7 +245,7 @@ public class AFLStyleFuzzerFactory implements StrategyFactory {
 		public Object[] getPropertyValues() {
 			Object[] propertyValues = new Object[4];
 			int index = 0;
-			double swt = strategyWaitTime.get() / strategyWaitCount.doubleValue();
+			double swt = strategyWaitTime.get() / 1000000.0 / strategyWaitCount.doubleValue();
 			long c = refineCount.get();
 			long t = strategyTime.get();
 			propertyValues[index++] = getTaskCount();
@@ -268,7 +297,7 @@ public class AFLStyleFuzzerFactory implements StrategyFactory {
 
 		protected final Broker broker;
 
-		protected final Set<String> visitedModels = new HashSet<>();
+		protected final FingerprintSet visitedModels = new FingerprintSet();
 
 		protected int modelsAdded;
 
@@ -278,6 +307,8 @@ public class AFLStyleFuzzerFactory implements StrategyFactory {
 
 		protected List<String> keys = null;
 
+		protected final int batchSize;
+
 		protected final int queueLimit;
 
 		private final MTRandom rng;
@@ -287,6 +318,7 @@ public class AFLStyleFuzzerFactory implements StrategyFactory {
 			this.manager = (AFLStyleFuzzerManager) manager;
 			broker = coastal.getBroker();
 			queueLimit = this.manager.getQueueLimit();
+			batchSize = coastal.getBatchSize();
 			rng = new MTRandom(this.manager.getRandomSeed());
 		}
 
@@ -295,13 +327,11 @@ public class AFLStyleFuzzerFactory implements StrategyFactory {
 			log.trace("{} strategy task starting", LOG_PREFIX);
 			try {
 				while (true) {
-					long t0 = System.currentTimeMillis();
-					Execution execution = coastal.getNextTrace();
-					long t1 = System.currentTimeMillis();
-					manager.recordWaitTime(t1 - t0);
-					manager.incrementRefinements();
-					log.trace("{} starting refinement", LOG_PREFIX);
-					refine(execution);
+					long t0 = System.nanoTime();
+					List<Execution> executions = coastal.getNextTraces(batchSize);
+					manager.recordWaitTime(System.nanoTime() - t0);
+					log.trace("{} starting refinement of {} traces", LOG_PREFIX, executions.size());
+					refine(executions);
 				}
 			} catch (InterruptedException e) {
 				log.trace("{} strategy task canceled", LOG_PREFIX);
@@ -309,17 +339,36 @@ public class AFLStyleFuzzerFactory implements StrategyFactory {
 			}
 		}
 
-		protected void refine(Execution execution) {
+		/**
+		 * Refine a batch of traces. All the traces are scored first, and then
+		 * mutated in order of decreasing score, so that the best traces are
+		 * mutated before the surfer queue reaches its limit.
+		 * 
+		 * @param executions the traces to refine
+		 */
+		protected void refine(List<Execution> executions) {
 			long t0 = System.currentTimeMillis();
-			modelsAdded = -1;
-			refine0(execution);
+			int n = executions.size();
+			int[] scores = new int[n];
+			Integer[] order = new Integer[n];
+			for (int i = 0; i < n; i++) {
+				scores[i] = calculateScore(executions.get(i));
+				order[i] = i;
+				manager.incrementRefinements();
+			}
+			if (n > 1) {
+				Arrays.sort(order, (i, j) -> Integer.compare(scores[j], scores[i]));
+			}
+			modelsAdded = 0;
+			for (int i : order) {
+				refine0(executions.get(i), scores[i]);
+			}
 			log.trace("{} added {} surfer models", LOG_PREFIX, modelsAdded);
-			coastal.updateWork(modelsAdded);
+			coastal.finishExecutions(n);
 			manager.recordTime(System.currentTimeMillis() - t0);
 		}
 
-		protected void refine0(Execution execution) {
-			int score = calculateScore(execution);
+		protected void refine0(Execution execution, int score) {
 			if ((score > 0) || (coastal.getSurferModelQueueLength() < queueLimit)) {
 				byte[] base = extractBase(execution);
 				flipBits(base, score);
@@ -347,16 +396,25 @@ public class AFLStyleFuzzerFactory implements StrategyFactory {
 		 * <li>32&ndash;127 occurrences = bucket 7</li>
 		 * <li>&ge;128 occurrences = bucket 8</li>
 		 * </ul>
-		 *
+		 * 
 		 * This information is passed to the manager, which returns a score based on the
-		 * counts.
+		 * counts. When surfers use edge-coverage instrumentation, the edges and their
+		 * counts are taken from the edge map of the trace instead.
 		 * 
 		 * @param execution the trace to calculate a score for
 		 * @return the score
 		 */
 		private int calculateScore(Execution execution) {
 			int oldScore = 0; // trace.getScore();
+			Object edgeMap = execution.getPayload("edges");
+			if (edgeMap instanceof int[]) {
+				manager.incrementEdgeTraces();
+				return manager.scoreEdges(bucketEdges((int[]) edgeMap)) + (oldScore >> 1);
+			}
 			Path path = execution.getPath();
+			if (path == null) {
+				return manager.scoreEdges(new HashMap<>()) + (oldScore >> 1);
+			}
 			Map<String, Integer> edges = new HashMap<>();
 			String prevBlock = (String) path.getChoice().getPayload("block");
 			path = path.getParent();
@@ -390,6 +448,23 @@ public class AFLStyleFuzzerFactory implements StrategyFactory {
 			return manager.scoreEdges(edges) + (oldScore >> 1);
 		}
 
+		/**
+		 * Convert the edges recorded by edge-coverage instrumentation to bucketed
+		 * counts. Each edge is encoded as its index in the edge map, shifted left by
+		 * eight bits, combined with its hit count.
+		 * 
+		 * @param edgeMap the encoded edges
+		 * @return a map from edges to buckets
+		 */
+		private Map<String, Integer> bucketEdges(int[] edgeMap) {
+			Map<String, Integer> edges = new HashMap<>();
+			for (int edge : edgeMap) {
+				int count = edge & 0xff;
+				edges.put(Integer.toString(edge >>> 8), (count >= 128) ? 8 : COUNT_TO_BUCKET[count]);
+			}
+			return edges;
+		}
+
 		/**
 		 * Convert the variable/value assignments that generated trace to an array of
 		 * bytes.
@@ -21,6 +21,7 @@ package za.ac.sun.cs.coastal.strategy.tracebased;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
@@ -38,6 +39,7 @@ import za.ac.sun.cs.coastal.strategy.MTRandom;
 import za.ac.sun.cs.coastal.strategy.StrategyFactory;
 import za.ac.sun.cs.coastal.surfer.TraceState;
 import za.ac.sun.cs.coastal.symbolic.Execution;
+import za.ac.sun.cs.coastal.symbolic.FingerprintSet;
 import za.ac.sun.cs.coastal.symbolic.Input;
 import za.ac.sun.cs.coastal.symbolic.Path;
 
@@ -59,6 +61,11 @@ public class FeedbackFuzzerFactory implements StrategyFactory {
 		return new FeedbackFuzzerManager(coastal, configuration);
 	}
 
+	@Override
+	public boolean consumesPcs() {
+		return false;
+	}
+
 	@Override
 	public Strategy[] createTask(COASTAL coastal, TaskManager manager) {
 		((FeedbackFuzzerManager) manager).incrementTaskCount();
@@ -201,13 +208,18 @@ public class FeedbackFuzzerFactory implements StrategyFactory {
 		 * Add a reported strategy wait time. This is used to determine if it makes
 		 * sense to create additional threads (or destroy them).
 		 * 
-		 * @param time the wait time for this strategy
+		 * @param time the wait time for this strategy, in nanoseconds
 		 */
 		public void recordWaitTime(long time) {
 			strategyWaitTime.addAndGet(time);
 			strategyWaitCount.incrementAndGet();
 		}
 
+		@Override
+		public long getWaitTime() {
+			return strategyWaitTime.get() / 1000000;
+		}
+
 		protected void incrementTaskCount() {
 			taskCount++;
 		}
@@ -235,7 +247,7 @@ public class FeedbackFuzzerFactory implements StrategyFactory {
 
 		public void report(Object object) {
 			String name = getName();
-			double swt = strategyWaitTime.get() / strategyWaitCount.doubleValue();
+			double swt = strategyWaitTime.get() / 1000000.0 / strategyWaitCount.doubleValue();
 			broker.publish("report", new Tuple(name + ".tasks", getTaskCount()));
 			broker.publish("report", new FreqTuple(name + ".refinements", refineCount.get()));
 			broker.publish("report", new TimeTuple(name + ".wait-time", swt));
@@ -265,7 +277,7 @@ public class FeedbackFuzzerFactory implements StrategyFactory {
 		public Object[] getPropertyValues() {
 			Object[] propertyValues = new Object[4];
 			int index = 0;
-			double swt = strategyWaitTime.get() / strategyWaitCount.doubleValue();
+			double swt = strategyWaitTime.get() / 1000000.0 / strategyWaitCount.doubleValue();
 			long c = refineCount.get();
 			long t = strategyTime.get();
 			propertyValues[index++] = getTaskCount();
@@ -310,7 +322,7 @@ public class FeedbackFuzzerFactory implements StrategyFactory {
 
 		protected final Broker broker;
 
-		protected final Set<String> visitedModels = new HashSet<>();
+		protected final FingerprintSet visitedModels = new FingerprintSet();
 
 		protected int inputsAdded;
 
@@ -330,6 +342,8 @@ public class FeedbackFuzzerFactory implements StrategyFactory {
 
 		protected final int keepTop;
 
+		protected final int batchSize;
+
 		public FeedbackFuzzerStrategy(COASTAL coastal, StrategyManager manager) {
 			super(coastal, manager);
 			this.manager = (FeedbackFuzzerManager) manager;
@@ -341,6 +355,7 @@ public class FeedbackFuzzerFactory implements StrategyFactory {
 			eliminationCount = this.manager.getEliminationCount();
 			eliminationRatio = this.manager.getEliminationRatio();
 			keepTop = this.manager.getKeepTop();
+			batchSize = coastal.getBatchSize();
 		}
 
 		private Set<Integer> setValues = new HashSet<>();
@@ -353,10 +368,9 @@ public class FeedbackFuzzerFactory implements StrategyFactory {
 			try {
 				ExecutionCollection keepers = new ExecutionCollection(keepTop);
 				ExecutionCollection allTime = new ExecutionCollection(keepTop);
-				long t0 = System.currentTimeMillis();
+				long t0 = System.nanoTime();
 				Execution execution0 = coastal.getNextTrace();
-				long t1 = System.currentTimeMillis();
-				manager.recordWaitTime(t1 - t0);
+				manager.recordWaitTime(System.nanoTime() - t0);
 				manager.incrementRefinements();
 				log.trace("{} starting refinement", LOG_PREFIX);
 				int score0 = calculateScore(execution0);
@@ -365,6 +379,7 @@ public class FeedbackFuzzerFactory implements StrategyFactory {
 				setValues.addAll((Set<Integer>) execution0.getPayload("setValues"));
 				incValues.addAll((Set<Integer>) execution0.getPayload("incValues"));
 				refine(execution0, score0);
+				coastal.finishExecutions(1);
 				while (true) {
 					while (coastal.getSurferModelQueueLength() > queueLimit) {
 						Thread.sleep(200);
@@ -372,18 +387,22 @@ public class FeedbackFuzzerFactory implements StrategyFactory {
 					keepers.clear();
 					int eliminate = Math.max(eliminationCount,
 							(int) (eliminationRatio * coastal.getTraceQueueLength()));
-					for (int i = 0; i < eliminate; i++) {
-						t0 = System.currentTimeMillis();
-						Execution executionx = coastal.getNextTrace(200);
-						t1 = System.currentTimeMillis();
-						manager.recordWaitTime(t1 - t0);
-						if (executionx == null) {
+					int taken = 0;
+					while (eliminate > 0) {
+						t0 = System.nanoTime();
+						List<Execution> executions = coastal.getNextTraces(Math.min(eliminate, batchSize), 200);
+						manager.recordWaitTime(System.nanoTime() - t0);
+						if (executions.isEmpty()) {
 							log.trace("{} out of traces", LOG_PREFIX);
 							break;
 						}
-						int scorex = calculateScore(executionx);
-						keepers.add(scorex, executionx);
-						allTime.add(scorex, executionx);
+						for (Execution executionx : executions) {
+							int scorex = calculateScore(executionx);
+							keepers.add(scorex, executionx);
+							allTime.add(scorex, executionx);
+						}
+						eliminate -= executions.size();
+						taken += executions.size();
 					}
 					manager.incrementRefinements();
 					log.trace("{} starting refinement", LOG_PREFIX);
@@ -397,6 +416,7 @@ public class FeedbackFuzzerFactory implements StrategyFactory {
 					for (int j = 0, n = candidates.size(); j < n; j++) {
 						refine(candidates.getExecution(j), candidates.getScore(j));
 					}
+					coastal.finishExecutions(taken);
 					PathTreeNode root = manager.getPathTree().getRoot();
 					if ((root != null) && root.isFullyExplored()) {
 						coastal.stopWork("PATH TREE FULLY EXPLORED");
@@ -413,13 +433,12 @@ public class FeedbackFuzzerFactory implements StrategyFactory {
 
 		protected void refine(Execution execution, int score) {
 			long t0 = System.currentTimeMillis();
-			inputsAdded = -1;
+			inputsAdded = 0;
 			manager.insertPath(execution, false);
 			parameters = coastal.getParameters();
 			Input input = execution.getInput();
 			mutate(score, input);
 			log.trace("{} added {} surfer models", LOG_PREFIX, inputsAdded);
-			coastal.updateWork(inputsAdded);
 			manager.recordTime(System.currentTimeMillis() - t0);
 		}
 
@@ -36,6 +36,7 @@ import za.ac.sun.cs.coastal.strategy.MTRandom;
 import za.ac.sun.cs.coastal.strategy.StrategyFactory;
 import za.ac.sun.cs.coastal.surfer.TraceState;
 import za.ac.sun.cs.coastal.symbolic.Execution;
+import za.ac.sun.cs.coastal.symbolic.FingerprintSet;
 import za.ac.sun.cs.coastal.symbolic.Input;
 import za.ac.sun.cs.coastal.symbolic.Path;
 
@@ -57,6 +58,11 @@ public class FeedbackXFuzzerFactory implements StrategyFactory {
 		return new FeedbackXFuzzerManager(coastal, configuration);
 	}
 
+	@Override
+	public boolean consumesPcs() {
+		return false;
+	}
+
 	@Override
 	public Strategy[] createTask(COASTAL coastal, TaskManager manager) {
 		((FeedbackXFuzzerManager) manager).incrementTaskCount();
@@ -184,13 +190,18 @@ public class FeedbackXFuzzerFactory implements StrategyFactory {
 		 * makes sense to create additional threads (or destroy them).
 		 * 
 		 * @param time
-		 *            the wait time for this strategy
+		 *            the wait time for this strategy, in nanoseconds
 		 */
 		public void recordWaitTime(long time) {
 			strategyWaitTime.addAndGet(time);
 			strategyWaitCount.incrementAndGet();
 		}
 
+		@Override
+		public long getWaitTime() {
+			return strategyWaitTime.get() / 1000000;
+		}
+
 		protected void incrementTaskCount() {
 			taskCount++;
 		}
@@ -218,7 +229,7 @@ public class FeedbackXFuzzerFactory implements StrategyFactory {
 
 		public void report(Object object) {
 			String name = getName();
-			double swt = strategyWaitTime.get() / strategyWaitCount.doubleValue();
+			double swt = strategyWaitTime.get() / 1000000.0 / strategyWaitCount.doubleValue();
 			broker.publish("report", new Tuple(name + ".tasks", getTaskCount()));
 			broker.publish("report", new FreqTuple(name + ".refinements", refineCount.get()));
 			broker.publish("report", new TimeTuple(name + ".wait-time", swt));
@@ -242,7 +253,7 @@ public class FeedbackXFuzzerFactory implements StrategyFactory {
 		public Object[] getPropertyValues() {
 			Object[] propertyValues = new Object[4];
 			int index = 0;
-			double swt = strategyWaitTime.get() / strategyWaitCount.doubleValue();
+			double swt = strategyWaitTime.get() / 1000000.0 / strategyWaitCount.doubleValue();
 			long c = refineCount.get();
 			long t = strategyTime.get();
 			propertyValues[index++] = getTaskCount();
@@ -287,7 +298,7 @@ public class FeedbackXFuzzerFactory implements StrategyFactory {
 
 		protected final Broker broker;
 
-		protected final Set<String> visitedModels = new HashSet<>();
+		protected final FingerprintSet visitedModels = new FingerprintSet();
 
 		protected int inputsAdded;
 
@@ -324,11 +335,10 @@ public class FeedbackXFuzzerFactory implements StrategyFactory {
 		public void run() {
 			log.trace("{} strategy task starting", LOG_PREFIX);
 			try {
-				long t0 = System.currentTimeMillis();
+				long t0 = System.nanoTime();
 				Execution execution = coastal.getNextTrace();
 				int score = calculateScore(execution);
-				long t1 = System.currentTimeMillis();
-				manager.recordWaitTime(t1 - t0);
+				manager.recordWaitTime(System.nanoTime() - t0);
 				manager.incrementRefinements();
 				log.trace("{} starting refinement", LOG_PREFIX);
 				setValues = new HashSet<Integer>((Set<Integer>) execution.getPayload("setValues"));
@@ -342,29 +352,36 @@ public class FeedbackXFuzzerFactory implements StrategyFactory {
 //					incValues.addAll(iv);
 //				}
 				refineFirst(execution, score);
+				coastal.finishExecutions(1);
 				while (true) {
-					t0 = System.currentTimeMillis();
+					t0 = System.nanoTime();
 					Execution execution1 = null, execution2 = null;
 					int score1 = 0, score2 = 0;
 					do {
 						execution1 = coastal.getNextTrace();
 						score1 = calculateScore(execution1);
+						if (score1 <= 0) {
+							coastal.finishExecutions(1);
+						}
 					} while (score1 <= 0);
 					setValues = new HashSet<Integer>((Set<Integer>) execution1.getPayload("setValues"));
 					incValues = new HashSet<Integer>((Set<Integer>) execution1.getPayload("incValues"));
 					int tries = 5;
 					do {
+						if (execution2 != null) {
+							coastal.finishExecutions(1);
+						}
 						execution2 = coastal.getNextTrace();
 						score2 = calculateScore(execution2);
 					} while ((tries-- > 0) && (score2 <= 0));
 					//} while ((tries-- > 0) && ((score2 <= 0) || trace1.toString().equals(trace2.toString())));
 					setValues.addAll((Set<Integer>) execution2.getPayload("setValues"));
 					incValues.addAll((Set<Integer>) execution2.getPayload("incValues"));
-					t1 = System.currentTimeMillis();
-					manager.recordWaitTime(t1 - t0);
+					manager.recordWaitTime(System.nanoTime() - t0);
 					manager.incrementRefinements();
 					log.trace("{} starting refinement", LOG_PREFIX);
 					refinePair(execution1, score1, execution2, score2);
+					coastal.finishExecutions(2);
 				}
 			} catch (InterruptedException e) {
 				log.trace("{} strategy task canceled", LOG_PREFIX);
@@ -374,7 +391,7 @@ public class FeedbackXFuzzerFactory implements StrategyFactory {
 
 		protected void refineFirst(Execution execution, int score) {
 			long t0 = System.currentTimeMillis();
-			inputsAdded = -1;
+			inputsAdded = 0;
 			manager.insertPath(execution, false);
 			parameters = coastal.getParameters();
 			Input input = execution.getInput();
@@ -385,14 +402,13 @@ public class FeedbackXFuzzerFactory implements StrategyFactory {
 			for (int i = 0; i < firstRepeat; i++) {
 				mutatem(score, input);
 			}
-			log.trace("{} added {} surfer models", LOG_PREFIX, inputsAdded + 1);
-			coastal.updateWork(inputsAdded);
+			log.trace("{} added {} surfer models", LOG_PREFIX, inputsAdded);
 			manager.recordTime(System.currentTimeMillis() - t0);
 		}
 
 		protected void refinePair(Execution execution1, int score1, Execution execution2, int score2) {
 			long t0 = System.currentTimeMillis();
-			inputsAdded = -1;
+			inputsAdded = 0;
 			manager.insertPath(execution1, false);
 			manager.insertPath(execution2, false);
 			Input input1 = execution1.getInput();
@@ -432,8 +448,7 @@ public class FeedbackXFuzzerFactory implements StrategyFactory {
 				mutatem(score, newModel1);
 				mutatem(score, newModel2);
 			}
-			log.trace("{} added {} surfer models", LOG_PREFIX, inputsAdded + 1);
-			coastal.updateWork(inputsAdded);
+			log.trace("{} added {} surfer models", LOG_PREFIX, inputsAdded);
 			manager.recordTime(System.currentTimeMillis() - t0);
 		}
 
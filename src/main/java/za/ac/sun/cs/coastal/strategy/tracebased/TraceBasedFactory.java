@@ -18,9 +18,9 @@
  */
 package za.ac.sun.cs.coastal.strategy.tracebased;
 
-import java.util.HashSet;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
-import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
 
 import za.ac.sun.cs.coastal.COASTAL;
@@ -31,6 +31,7 @@ import za.ac.sun.cs.coastal.pathtree.PathTree;
 import za.ac.sun.cs.coastal.pathtree.PathTreeNode;
 import za.ac.sun.cs.coastal.strategy.StrategyFactory;
 import za.ac.sun.cs.coastal.symbolic.Execution;
+import za.ac.sun.cs.coastal.symbolic.FingerprintSet;
 import za.ac.sun.cs.coastal.symbolic.Input;
 
 public abstract class TraceBasedFactory implements StrategyFactory {
@@ -40,6 +41,11 @@ public abstract class TraceBasedFactory implements StrategyFactory {
 	 */
 	private static final String LOG_PREFIX = "@T@";
 
+	@Override
+	public boolean consumesPcs() {
+		return false;
+	}
+
 	// ======================================================================
 	//
 	// TRACE-BASED SEARCH STRATEGY MANAGER
@@ -116,16 +122,21 @@ public abstract class TraceBasedFactory implements StrategyFactory {
 		 * makes sense to create additional threads (or destroy them).
 		 * 
 		 * @param time
-		 *            the wait time for this strategy
+		 *            the wait time for this strategy, in nanoseconds
 		 */
 		public void recordWaitTime(long time) {
 			strategyWaitTime.addAndGet(time);
 			strategyWaitCount.incrementAndGet();
 		}
 
+		@Override
+		public long getWaitTime() {
+			return strategyWaitTime.get() / 1000000;
+		}
+
 		public void report(Object object) {
 			String name = getName();
-			double swt = strategyWaitTime.get() / strategyWaitCount.doubleValue();
+			double swt = strategyWaitTime.get() / 1000000.0 / strategyWaitCount.doubleValue();
 			broker.publish("report", new Tuple(name + ".tasks", getTaskCount()));
 			broker.publish("report", new TimeTuple(name + ".wait-time", swt));
 			broker.publish("report", new TimeTuple(name + ".total-time", strategyTime.get()));
@@ -145,7 +156,7 @@ public abstract class TraceBasedFactory implements StrategyFactory {
 		public Object[] getPropertyValues() {
 			Object[] propertyValues = new Object[4];
 			int index = 0;
-			double swt = strategyWaitTime.get() / strategyWaitCount.doubleValue();
+			double swt = strategyWaitTime.get() / 1000000.0 / strategyWaitCount.doubleValue();
 			long c = refineCount.get();
 			long t = strategyTime.get();
 			propertyValues[index++] = getTaskCount();
@@ -169,37 +180,42 @@ public abstract class TraceBasedFactory implements StrategyFactory {
 
 		protected final Broker broker;
 
-		protected final Set<String> visitedModels = new HashSet<>();
+		protected final FingerprintSet visitedModels = new FingerprintSet();
+
+		protected final int batchSize;
 
 		public TraceBasedStrategy(COASTAL coastal, StrategyManager manager) {
 			super(coastal, manager);
 			this.manager = (TraceBasedManager) manager;
 			broker = coastal.getBroker();
+			batchSize = coastal.getBatchSize();
 		}
 
 		@Override
 		public void run() {
 			log.trace("{} strategy task starting", LOG_PREFIX);
 			try {
+				Deque<Execution> pending = new ArrayDeque<>();
 				while (true) {
-					long t0 = System.currentTimeMillis();
-					Execution execution = coastal.getNextTrace();
-					long t1 = System.currentTimeMillis();
-					manager.recordWaitTime(t1 - t0);
+					if (pending.isEmpty()) {
+						long t0 = System.nanoTime();
+						pending.addAll(coastal.getNextTraces(batchSize));
+						manager.recordWaitTime(System.nanoTime() - t0);
+					}
+					Execution execution = pending.poll();
 					manager.incrementRefinements();
 					log.trace("{} starting refinement", LOG_PREFIX);
 					List<Input> inputs = refine(execution);
-					int d = -1;
+					int d = 0;
 					while (inputs != null) {
-						int m = coastal.addSurferInputs(inputs);
-						if (m > 0) {
-							d += m;
+						d = coastal.addSurferInputs(inputs);
+						if (d > 0) {
 							break;
 						}
 						inputs = refine1();
 					}
 					log.trace("{} added {} surfer models", LOG_PREFIX, d);
-					coastal.updateWork(d);
+					coastal.finishExecutions(1);
 				}
 			} catch (InterruptedException e) {
 				log.trace("{} strategy task canceled", LOG_PREFIX);
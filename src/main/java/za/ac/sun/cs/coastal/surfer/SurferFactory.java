@@ -20,6 +20,8 @@ package za.ac.sun.cs.coastal.surfer;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -142,13 +144,18 @@ public class SurferFactory implements TaskFactory {
 		 * create additional threads (or destroy them).
 		 * 
 		 * @param time
-		 *             the wait time for this surf
+		 *             the wait time for this surf, in nanoseconds
 		 */
 		public void recordWaitTime(long time) {
 			surferWaitTime.addAndGet(time);
 			surferWaitCount.incrementAndGet();
 		}
 
+		@Override
+		public long getWaitTime() {
+			return surferWaitTime.get() / 1000000;
+		}
+
 		/**
 		 * Increment and return the abort counter.
 		 * 
@@ -159,8 +166,8 @@ public class SurferFactory implements TaskFactory {
 		}
 
 		public void report(Object object) {
-			double swt = surferWaitTime.get() / surferWaitCount.doubleValue();
-			broker.publish("report", new Tuple("Surfers.tasks", surferTaskCount));
+			double swt = surferWaitTime.get() / 1000000.0 / surferWaitCount.doubleValue();
+			broker.publish("report", new Tuple("Surfers.tasks", surferTaskCount.get()));
 			broker.publish("report", new FreqTuple("Surfers.count", getSurfCount()));
 			broker.publish("report", new Tuple("Surfers.aborted", abortCount.get()));
 			broker.publish("report", new TimeTuple("Surfers.total-time", surferTime.get()));
@@ -180,7 +187,7 @@ public class SurferFactory implements TaskFactory {
 		@Override
 		public Object[] getPropertyValues() {
 			Object[] propertyValues = new Object[4];
-			double swt = surferWaitTime.get() / surferWaitCount.doubleValue();
+			double swt = surferWaitTime.get() / 1000000.0 / surferWaitCount.doubleValue();
 			int stc = getSurferTaskCount();
 			long c = getSurfCount();
 			long t = surferTime.get();
@@ -215,6 +222,8 @@ public class SurferFactory implements TaskFactory {
 
 		protected final boolean safeMode;
 
+		protected final int batchSize;
+
 		public Surfer(COASTAL coastal, SurferManager manager, int id) {
 			this.coastal = coastal;
 			log = coastal.getLog();
@@ -223,6 +232,7 @@ public class SurferFactory implements TaskFactory {
 			this.manager = manager;
 			surferTaskId = id;
 			safeMode = !coastal.getConfig().getBoolean("coastal.settings.trace-all", false);
+			batchSize = coastal.getBatchSize();
 		}
 
 		@Override
@@ -242,11 +252,15 @@ public class SurferFactory implements TaskFactory {
 				Method meth = null;
 				Trigger trigger = coastal.getMainEntrypoint();
 				TraceState traceState = new TraceState(coastal, null);
+				Deque<Input> pending = new ArrayDeque<>();
 				while (!Thread.currentThread().isInterrupted()) {
-					long t0 = System.currentTimeMillis();
-					Input input = coastal.getNextSurferInput();
+					if (pending.isEmpty()) {
+						long t0 = System.nanoTime();
+						pending.addAll(coastal.getNextSurferInputs(batchSize));
+						manager.recordWaitTime(System.nanoTime() - t0);
+					}
+					Input input = pending.poll();
 					long t1 = System.currentTimeMillis();
-					manager.recordWaitTime(t1 - t0);
 					String banner = "(" + surferTaskId + ") starting surf " + manager.getNextSurfCount() + " @"
 							+ Banner.getElapsed(coastal);
 					log.trace(Banner.getBannerLine(banner, '-'));
@@ -375,6 +389,7 @@ public class SurferFactory implements TaskFactory {
 					manager.recordSurferTime(System.currentTimeMillis() - t1);
 					if (aborted) {
 						manager.incrementAbortCount();
+						coastal.abandonSurferInput(input);
 					} else {
 						Execution execution = traceState.getExecution();
 						execution.copyPayload(input);
@@ -19,6 +19,7 @@
 package za.ac.sun.cs.coastal.surfer;
 
 import java.lang.reflect.Array;
+import java.util.Arrays;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -30,6 +31,7 @@ import org.objectweb.asm.Opcodes;
 import za.ac.sun.cs.coastal.COASTAL;
 import za.ac.sun.cs.coastal.Trigger;
 import za.ac.sun.cs.coastal.instrument.Bytecodes;
+import za.ac.sun.cs.coastal.messages.EventBus;
 import za.ac.sun.cs.coastal.messages.Tuple;
 import za.ac.sun.cs.coastal.pathtree.PathTreeNode;
 import za.ac.sun.cs.coastal.solver.Expression;
@@ -70,6 +72,13 @@ public final class TraceState extends State {
 
 	private final List<String> lines = new ArrayList<>();
 
+	/**
+	 * The hit counts of edges between branch outcomes, updated by the
+	 * system-under-test when surfers use edge-coverage instrumentation, or
+	 * {@code null} otherwise.
+	 */
+	private final byte[] edgeMap;
+
 	/**
 	 * Create a new instance of the tracing state.
 	 * 
@@ -80,6 +89,12 @@ public final class TraceState extends State {
 		super(coastal, input);
 		useCurrentValues = (input == null) || (input.getSize() == 0);
 		pathTreeNode = coastal.getPathTree().getRoot();
+		edgeMap = coastal.getClassManager().isEdgeCoverage() ? new byte[EDGE_MAP_SIZE] : null;
+	}
+
+	@Override
+	public byte[] getEdgeMap() {
+		return edgeMap;
 	}
 
 	public void reset(Input input) {
@@ -114,9 +129,35 @@ public final class TraceState extends State {
 		result.setPayload("setValues", new HashSet<Integer>(setValues));
 		result.setPayload("incValues", new HashSet<Integer>(incValues));
 		result.setPayload("lines", lines);
+		if (edgeMap != null) {
+			result.setPayload("edges", getEdges());
+		}
 		return result;
 	}
 
+	/**
+	 * Return the edges hit during the execution. Each edge is encoded as its
+	 * index in the edge map, shifted left by eight bits, combined with its hit
+	 * count.
+	 * 
+	 * @return the encoded edges
+	 */
+	private int[] getEdges() {
+		int count = 0;
+		for (byte hits : edgeMap) {
+			if (hits != 0) {
+				count++;
+			}
+		}
+		int[] edges = new int[count];
+		for (int i = 0, j = 0; j < count; i++) {
+			if (edgeMap[i] != 0) {
+				edges[j++] = (i << 8) | (edgeMap[i] & 0xff);
+			}
+		}
+		return edges;
+	}
+
 	/**
 	 * Handle the termination of a method. The return value is handled elsewhere.
 	 * The task of this method is to potentially switch off the symbolic tracking
@@ -842,9 +883,12 @@ public final class TraceState extends State {
 				setTrackingMode(true);
 				frameCount++;
 				triggeringIndex = triggerIndex;
+				if (edgeMap != null) {
+					Arrays.fill(edgeMap, (byte) 0);
+				}
 			}
 		}
-		broker.publishThread("enter-method", methodNumber);
+		events.publishMethod(EventBus.ENTER_METHOD, methodNumber);
 	}
 
 	/*
@@ -859,7 +903,7 @@ public final class TraceState extends State {
 		}
 		log.trace("transferring {} arguments, methodNumber={}, methodName={}", argCount, methodNumber, methodName);
 		frameCount++;
-		broker.publishThread("enter-method", methodNumber);
+		events.publishMethod(EventBus.ENTER_METHOD, methodNumber);
 	}
 
 	/*
@@ -952,7 +996,7 @@ public final class TraceState extends State {
 		if (getRecordingMode()) {
 			lines.add(filename + ":" + line);
 		}
-		broker.publishThread("linenumber", new Tuple(instr, line));
+		events.publishLine(instr, line);
 	}
 
 	/*
@@ -976,11 +1020,11 @@ public final class TraceState extends State {
 			return;
 		}
 		log.trace("--> {} (offset={})", Bytecodes.toString(opcode), instr);
-		broker.publishThread("insn", new Tuple(instr, opcode));
+		events.publishInsn(EventBus.INSN, instr, opcode);
 		switch (opcode) {
 		// case Opcodes.IDIV:
 		// assert noExceptionExpression == null;
-		// noExceptionExpression = new Operation(Operator.NE, e, Operation.ZERO);
+		// noExceptionExpression = Operation.create(Operator.NE, e, Operation.ZERO);
 		// exceptionDepth = Thread.currentThread().getStackTrace().length;
 		// throwable = Operation.ZERO;
 		// break;
@@ -991,7 +1035,7 @@ public final class TraceState extends State {
 			break;
 		// case Opcodes.ATHROW:
 		// assert noExceptionExpression == null;
-		// noExceptionExpression = new Operation(Operator.NE, Operation.ZERO,
+		// noExceptionExpression = Operation.create(Operator.NE, Operation.ZERO,
 		// Operation.ZERO);
 		// exceptionDepth = Thread.currentThread().getStackTrace().length;
 		// throwable = pop();
@@ -1076,7 +1120,7 @@ public final class TraceState extends State {
 			return;
 		}
 		log.trace("--> {} (offset={})", Bytecodes.toString(opcode), instr);
-		broker.publishThread("jump-insn", new Tuple(instr, opcode));
+		events.publishInsn(EventBus.JUMP_INSN, instr, opcode);
 		switch (opcode) {
 		case Opcodes.GOTO:
 			break;
@@ -1100,7 +1144,7 @@ public final class TraceState extends State {
 			return;
 		}
 		log.trace("--> {} (offset={})", Bytecodes.toString(opcode), instr);
-		broker.publishThread("jump-insn", new Tuple(instr, opcode));
+		events.publishInsn(EventBus.JUMP_INSN, instr, opcode);
 		switch (opcode) {
 		case Opcodes.IFEQ:
 			jumpInsn(instr, opcode, value == 0);
@@ -1161,7 +1205,7 @@ public final class TraceState extends State {
 			return;
 		}
 		log.trace("--> {} (offset={})", Bytecodes.toString(opcode), instr);
-		broker.publishThread("jump-insn", new Tuple(instr, opcode));
+		events.publishInsn(EventBus.JUMP_INSN, instr, opcode);
 		switch (opcode) {
 		case Opcodes.IF_ACMPEQ:
 		case Opcodes.IF_ICMPEQ:
@@ -1209,7 +1253,7 @@ public final class TraceState extends State {
 	 */
 	private void jumpInsn(int instr, int opcode, boolean result) throws COASTALException {
 		if (getRecordingMode()) {
-			broker.publishThread("jump-insn", new Tuple(instr, opcode));
+			events.publishInsn(EventBus.JUMP_INSN, instr, opcode);
 			if (pathTreeNode != null) {
 				int ptn = pathTreeNode.getId();
 				if (result) {
@@ -0,0 +1,324 @@
+/*
+ * This file is part of the COASTAL tool, https://deepseaplatform.github.io/coastal/
+ *
+ * Copyright (c) 2019-2020, Computer Science, Stellenbosch University.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package za.ac.sun.cs.coastal.symbolic;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe set of 64-bit fingerprints, used to remember which inputs have
+ * been seen before. Fingerprints are stored in open-addressed tables of
+ * primitive {@code long}s, one per stripe, so that threads that add different
+ * fingerprints seldom contend for the same lock, and so that each entry costs
+ * about 16 bytes instead of a string.
+ * 
+ * If a limit is given, at most that many fingerprints are stored exactly.
+ * Further fingerprints are recorded in a Bloom filter with about 16 bits per
+ * expected entry. This bounds the memory of very long runs, at the cost of
+ * occasionally reporting a new fingerprint as seen.
+ * 
+ * The static {@code hash} and {@code mix} methods are used to compute
+ * fingerprints. Integral values are hashed by value and other values mostly by
+ * their string representation, so that sets of fingerprints behave like the
+ * sets of strings they replace. The exceptions are values of different kinds
+ * that print the same: the integer 5 and the string "5", or the float and the
+ * double 0.1, have different hashes. Arrays are hashed by identity, just as
+ * their strings were.
+ */
+public final class FingerprintSet {
+
+	/**
+	 * The number of stripes. Must be a power of 2.
+	 */
+	private static final int STRIPE_COUNT = 16;
+
+	/**
+	 * The initial number of slots in each stripe. Must be a power of 2.
+	 */
+	private static final int INITIAL_CAPACITY = 64;
+
+	/**
+	 * The number of Bloom filter bits per entry beyond the limit.
+	 */
+	private static final int BLOOM_BITS_PER_ENTRY = 16;
+
+	/**
+	 * The stripes of the exact set.
+	 */
+	private final Stripe[] stripes = new Stripe[STRIPE_COUNT];
+
+	/**
+	 * The maximum number of fingerprints stored exactly, or 0 if there is no
+	 * limit.
+	 */
+	private final long limit;
+
+	/**
+	 * The Bloom filter for fingerprints beyond the limit, or {@code null} if
+	 * there is no limit.
+	 */
+	private final AtomicLongArray bloom;
+
+	/**
+	 * The number of bits in the Bloom filter, minus one.
+	 */
+	private final long bloomMask;
+
+	/**
+	 * The number of fingerprints stored exactly.
+	 */
+	private final AtomicLong exactCount = new AtomicLong(0);
+
+	/**
+	 * The number of fingerprints added to the Bloom filter.
+	 */
+	private final AtomicLong bloomCount = new AtomicLong(0);
+
+	/**
+	 * Construct a set without a limit.
+	 */
+	public FingerprintSet() {
+		this(0);
+	}
+
+	/**
+	 * Construct a set that stores at most a given number of fingerprints
+	 * exactly.
+	 * 
+	 * @param limit
+	 *              the maximum number of exact fingerprints, or 0 for no limit
+	 */
+	public FingerprintSet(long limit) {
+		this.limit = limit;
+		for (int i = 0; i < STRIPE_COUNT; i++) {
+			stripes[i] = new Stripe();
+		}
+		if (limit > 0) {
+			long bits = Long.highestOneBit(Math.max(limit * BLOOM_BITS_PER_ENTRY, 64L) - 1) << 1;
+			bits = Math.min(bits, 1L << 32);
+			bloom = new AtomicLongArray((int) (bits >>> 6));
+			bloomMask = bits - 1;
+		} else {
+			bloom = null;
+			bloomMask = 0;
+		}
+	}
+
+	/**
+	 * Add a fingerprint to the set.
+	 * 
+	 * @param fingerprint
+	 *                    the fingerprint to add
+	 * @return {@code true} if the fingerprint was not in the set before
+	 */
+	public boolean add(long fingerprint) {
+		Stripe stripe = stripes[(int) (fingerprint >>> 60) & (STRIPE_COUNT - 1)];
+		synchronized (stripe) {
+			if (stripe.contains(fingerprint)) {
+				return false;
+			}
+			if ((limit == 0) || (exactCount.get() < limit)) {
+				stripe.add(fingerprint);
+				exactCount.incrementAndGet();
+				return true;
+			}
+		}
+		if (addToBloom(fingerprint)) {
+			bloomCount.incrementAndGet();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Return the number of fingerprints that were added successfully.
+	 * 
+	 * @return the size of the set
+	 */
+	public long size() {
+		return exactCount.get() + bloomCount.get();
+	}
+
+	/**
+	 * Set the four Bloom filter bits of a fingerprint.
+	 * 
+	 * @param fingerprint
+	 *                    the fingerprint to add
+	 * @return {@code true} if at least one of the bits was not set before
+	 */
+	private boolean addToBloom(long fingerprint) {
+		long h1 = fingerprint;
+		long h2 = mix(fingerprint) | 1;
+		boolean changed = false;
+		for (int i = 0; i < 4; i++) {
+			long bit = (h1 + i * h2) & bloomMask;
+			int index = (int) (bit >>> 6);
+			long mask = 1L << bit;
+			long word = bloom.get(index);
+			while ((word & mask) == 0) {
+				if (bloom.compareAndSet(index, word, word | mask)) {
+					changed = true;
+					break;
+				}
+				word = bloom.get(index);
+			}
+		}
+		return changed;
+	}
+
+	// ======================================================================
+	//
+	// FINGERPRINTS
+	//
+	// ======================================================================
+
+	/**
+	 * Scramble the bits of a value. This is the finalizer of the SplitMix64
+	 * generator.
+	 * 
+	 * @param value
+	 *              the value to scramble
+	 * @return the scrambled value
+	 */
+	public static long mix(long value) {
+		long z = value + 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Compute a 64-bit hash of a value. Integral values are hashed by their
+	 * value, so that, say, an {@link Integer} and a {@link Long} with the same
+	 * value have the same hash. Values other than numbers are hashed by their
+	 * string representation.
+	 * 
+	 * @param value
+	 *              the value to hash
+	 * @return the hash of the value
+	 */
+	public static long hash(Object value) {
+		if (value == null) {
+			return 0x6A09E667F3BCC908L;
+		} else if ((value instanceof Long) || (value instanceof Integer) || (value instanceof Short)
+				|| (value instanceof Byte)) {
+			return mix(((Number) value).longValue());
+		} else if ((value instanceof Double) || (value instanceof Float)) {
+			return mix(Double.doubleToLongBits(((Number) value).doubleValue()) ^ 0xBB67AE8584CAA73BL);
+		} else if (value instanceof String) {
+			return hash((String) value);
+		} else {
+			return hash(value.toString());
+		}
+	}
+
+	/**
+	 * Compute a 64-bit hash of a string.
+	 * 
+	 * @param value
+	 *              the string to hash
+	 * @return the hash of the string
+	 */
+	public static long hash(String value) {
+		long h = 0x3C6EF372FE94F82BL;
+		for (int i = 0, n = value.length(); i < n; i++) {
+			h = (h ^ value.charAt(i)) * 0x100000001B3L;
+		}
+		return mix(h);
+	}
+
+	/**
+	 * Compute the contribution of a key-value pair to the fingerprint of a
+	 * map. The contributions of the entries of a map are added, so that the
+	 * fingerprint does not depend on the order of the entries.
+	 * 
+	 * @param key
+	 *              the key of the entry
+	 * @param value
+	 *              the value of the entry
+	 * @return the hash of the entry
+	 */
+	public static long hashEntry(Object key, Object value) {
+		return mix(hash(key) * 31 + hash(value));
+	}
+
+	// ======================================================================
+	//
+	// STRIPES
+	//
+	// ======================================================================
+
+	/**
+	 * An open-addressed hash table of fingerprints with linear probing. The
+	 * value 0 marks an empty slot, so the fingerprint 0 is recorded separately.
+	 * Access must be synchronized on the stripe.
+	 */
+	private static final class Stripe {
+
+		private long[] slots = new long[INITIAL_CAPACITY];
+
+		private int size = 0;
+
+		private boolean hasZero = false;
+
+		boolean contains(long fingerprint) {
+			if (fingerprint == 0) {
+				return hasZero;
+			}
+			int mask = slots.length - 1;
+			for (int i = (int) fingerprint & mask;; i = (i + 1) & mask) {
+				long slot = slots[i];
+				if (slot == fingerprint) {
+					return true;
+				} else if (slot == 0) {
+					return false;
+				}
+			}
+		}
+
+		void add(long fingerprint) {
+			if (fingerprint == 0) {
+				hasZero = true;
+				return;
+			}
+			if (2 * (size + 1) > slots.length) {
+				long[] oldSlots = slots;
+				slots = new long[2 * oldSlots.length];
+				for (long slot : oldSlots) {
+					if (slot != 0) {
+						insert(slot);
+					}
+				}
+			}
+			insert(fingerprint);
+			size++;
+		}
+
+		private void insert(long fingerprint) {
+			int mask = slots.length - 1;
+			int i = (int) fingerprint & mask;
+			while (slots[i] != 0) {
+				i = (i + 1) & mask;
+			}
+			slots[i] = fingerprint;
+		}
+
+	}
+
+}
@@ -18,6 +18,9 @@
  */
 package za.ac.sun.cs.coastal.symbolic;
 
+import java.lang.reflect.Array;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -42,6 +45,13 @@ public final class Input extends PayloadCarrierImpl {
 	 */
 	private final InputVector inputVector;
 
+	/**
+	 * The priority of this input, kept up to date as the "priority" and "score"
+	 * payloads are set, so that queues can order inputs without looking up and
+	 * unboxing the payload.
+	 */
+	private int priority = 0;
+
 	public static final Input DONE_INPUT = new Input();
 
 	/**
@@ -67,20 +77,38 @@ public final class Input extends PayloadCarrierImpl {
 	}
 
 	/**
-	 * Return the priority of this input. First the method checks is there is a
-	 * "priority" payload. If not, it checks for a "score" payload. If either is
-	 * present, it is returned. Otherwise, the method returns 0.
+	 * Return the priority of this input. This is the "priority" payload if there
+	 * is one, otherwise the "score" payload if there is one, and otherwise 0. The
+	 * value is computed when the payload is set, not when it is requested.
 	 * 
 	 * @return priority of this input
 	 */
 	public int getPriority() {
-		Integer priority = (Integer) getPayload("priority");
-		if (priority == null) {
-			priority = (Integer) getPayload("score");
-		}
 		return priority;
 	}
 
+	@Override
+	public void setPayload(String key, Object value) {
+		super.setPayload(key, value);
+		if ("priority".equals(key) || "score".equals(key)) {
+			updatePriority();
+		}
+	}
+
+	@Override
+	public void copyPayload(PayloadCarrier carrier) {
+		super.copyPayload(carrier);
+		updatePriority();
+	}
+
+	private void updatePriority() {
+		Object value = payload.get("priority");
+		if (value == null) {
+			value = payload.get("score");
+		}
+		priority = (value instanceof Integer) ? (Integer) value : 0;
+	}
+
 	/**
 	 * Return the variable value associated with a name.
 	 * 
@@ -141,6 +169,249 @@ public final class Input extends PayloadCarrierImpl {
 		return inputVector.getIndices();
 	}
 
+	/**
+	 * Return a 64-bit fingerprint of the input, including its payload. Inputs
+	 * with the same string representation have the same fingerprint, unless a
+	 * variable holds values of different kinds (see {@link FingerprintSet}).
+	 * 
+	 * @return the fingerprint of the input
+	 */
+	public long getFingerprint() {
+		long sum = payload.size();
+		for (Map.Entry<String, Object> entry : payload.entrySet()) {
+			sum += FingerprintSet.hashEntry(entry.getKey(), entry.getValue());
+		}
+		long h = inputMap.getFingerprint();
+		h = FingerprintSet.mix(h * 31 + inputVector.getFingerprint());
+		return FingerprintSet.mix(h * 31 + FingerprintSet.mix(sum));
+	}
+
+	/**
+	 * Return a 64-bit fingerprint of the mapping from variable names to values.
+	 * Inputs with the same map string have the same map fingerprint.
+	 * 
+	 * @return the fingerprint of the variable mapping
+	 */
+	public long getMapFingerprint() {
+		return inputMap.getFingerprint();
+	}
+
+	/**
+	 * Return a single line of text from which {@link #decode(String)} can
+	 * reconstruct the input. Each variable and payload entry is written as a
+	 * tab-separated field that starts with {@code n} (for a name), {@code i} (for
+	 * an index) or {@code p} (for a payload key), followed by the escaped key, an
+	 * equals sign, a type letter, and the value. An array is written as the type
+	 * letter {@code [}, the type letter of its components, and the encoded
+	 * components separated by commas.
+	 * 
+	 * @return the encoded input, or {@code null} if some value is not a boxed
+	 *         primitive, a string, or an array of these
+	 */
+	public String encode() {
+		StringBuilder line = new StringBuilder();
+		for (String name : inputMap.getNames()) {
+			if (!encodeField(line, 'n', name, inputMap.get(name))) {
+				return null;
+			}
+		}
+		for (Integer index : inputVector.getIndices()) {
+			if (!encodeField(line, 'i', index.toString(), inputVector.get(index))) {
+				return null;
+			}
+		}
+		for (Map.Entry<String, Object> entry : payload.entrySet()) {
+			if (!encodeField(line, 'p', entry.getKey(), entry.getValue())) {
+				return null;
+			}
+		}
+		return line.toString();
+	}
+
+	private static boolean encodeField(StringBuilder line, char section, String key, Object value) {
+		String text = encodeValue(value);
+		if (text == null) {
+			return false;
+		}
+		if (line.length() > 0) {
+			line.append('\t');
+		}
+		line.append(section).append(escape(key)).append('=').append(text);
+		return true;
+	}
+
+	private static String encodeValue(Object value) {
+		if (value == null) {
+			return "N";
+		} else if (value instanceof Long) {
+			return "J" + value;
+		} else if (value instanceof Integer) {
+			return "I" + value;
+		} else if (value instanceof Short) {
+			return "S" + value;
+		} else if (value instanceof Byte) {
+			return "B" + value;
+		} else if (value instanceof Character) {
+			return "C" + Integer.toString((Character) value);
+		} else if (value instanceof Boolean) {
+			return "Z" + value;
+		} else if (value instanceof Double) {
+			return "D" + Double.doubleToRawLongBits((Double) value);
+		} else if (value instanceof Float) {
+			return "F" + Float.floatToRawIntBits((Float) value);
+		} else if (value instanceof String) {
+			return "T" + escape((String) value);
+		} else if (value.getClass().isArray()) {
+			String componentType = ARRAY_TYPES.get(value.getClass().getComponentType());
+			if (componentType == null) {
+				return null;
+			}
+			StringBuilder text = new StringBuilder("[").append(componentType);
+			for (int i = 0, n = Array.getLength(value); i < n; i++) {
+				if (i > 0) {
+					text.append(',');
+				}
+				text.append(encodeValue(Array.get(value, i)));
+			}
+			return text.toString();
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * The type letters of the components of arrays that can be encoded.
+	 */
+	private static final Map<Class<?>, String> ARRAY_TYPES = new HashMap<>();
+
+	static {
+		ARRAY_TYPES.put(long.class, "J");
+		ARRAY_TYPES.put(int.class, "I");
+		ARRAY_TYPES.put(short.class, "S");
+		ARRAY_TYPES.put(byte.class, "B");
+		ARRAY_TYPES.put(char.class, "C");
+		ARRAY_TYPES.put(boolean.class, "Z");
+		ARRAY_TYPES.put(double.class, "D");
+		ARRAY_TYPES.put(float.class, "F");
+		ARRAY_TYPES.put(String.class, "T");
+	}
+
+	/**
+	 * Reconstruct an input from a line produced by {@link #encode()}.
+	 * 
+	 * @param line
+	 *             the encoded input
+	 * @return the input
+	 * @throws IllegalArgumentException
+	 *                                  if the line is malformed
+	 */
+	public static Input decode(String line) {
+		Input input = new Input();
+		if (line.isEmpty()) {
+			return input;
+		}
+		for (String field : line.split("\t")) {
+			int eq = field.indexOf('=');
+			if ((eq < 1) || (eq + 1 >= field.length())) {
+				throw new IllegalArgumentException("malformed input field \"" + field + "\"");
+			}
+			String key = unescape(field.substring(1, eq));
+			Object value = decodeValue(field.substring(eq + 1), field);
+			switch (field.charAt(0)) {
+			case 'n':
+				input.put(key, value);
+				break;
+			case 'i':
+				input.put(Integer.parseInt(key), value);
+				break;
+			case 'p':
+				input.setPayload(key, value);
+				break;
+			default:
+				throw new IllegalArgumentException("malformed input field \"" + field + "\"");
+			}
+		}
+		return input;
+	}
+
+	private static Object decodeValue(String encoded, String field) {
+		String text = encoded.substring(1);
+		switch (encoded.charAt(0)) {
+		case 'N':
+			return null;
+		case 'J':
+			return Long.valueOf(text);
+		case 'I':
+			return Integer.valueOf(text);
+		case 'S':
+			return Short.valueOf(text);
+		case 'B':
+			return Byte.valueOf(text);
+		case 'C':
+			return Character.valueOf((char) Integer.parseInt(text));
+		case 'Z':
+			return Boolean.valueOf(text);
+		case 'D':
+			return Double.longBitsToDouble(Long.parseLong(text));
+		case 'F':
+			return Float.intBitsToFloat(Integer.parseInt(text));
+		case 'T':
+			return unescape(text);
+		case '[':
+			Class<?> componentType = null;
+			for (Map.Entry<Class<?>, String> entry : ARRAY_TYPES.entrySet()) {
+				if (text.startsWith(entry.getValue())) {
+					componentType = entry.getKey();
+				}
+			}
+			if (componentType == null) {
+				break;
+			}
+			String[] components = (text.length() == 1) ? new String[0] : text.substring(1).split(",", -1);
+			Object array = Array.newInstance(componentType, components.length);
+			for (int i = 0; i < components.length; i++) {
+				if (components[i].isEmpty()) {
+					throw new IllegalArgumentException("malformed input field \"" + field + "\"");
+				}
+				Array.set(array, i, decodeValue(components[i], field));
+			}
+			return array;
+		default:
+			break;
+		}
+		throw new IllegalArgumentException("malformed input field \"" + field + "\"");
+	}
+
+	private static String escape(String text) {
+		StringBuilder b = new StringBuilder(text.length());
+		for (int i = 0; i < text.length(); i++) {
+			char ch = text.charAt(i);
+			if ((ch == '%') || (ch == '=') || (ch == ',') || (ch < ' ')) {
+				b.append('%').append(String.format("%04x", (int) ch));
+			} else {
+				b.append(ch);
+			}
+		}
+		return b.toString();
+	}
+
+	private static String unescape(String text) {
+		if (text.indexOf('%') == -1) {
+			return text;
+		}
+		StringBuilder b = new StringBuilder(text.length());
+		for (int i = 0; i < text.length(); i++) {
+			char ch = text.charAt(i);
+			if ((ch == '%') && (i + 4 < text.length())) {
+				b.append((char) Integer.parseInt(text.substring(i + 1, i + 5), 16));
+				i += 4;
+			} else {
+				b.append(ch);
+			}
+		}
+		return b.toString();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -84,6 +84,20 @@ public class InputMap {
 		return inputMap.keySet();
 	}
 
+	/**
+	 * Return a 64-bit fingerprint of the mapping. Mappings with the same
+	 * string representation have the same fingerprint.
+	 * 
+	 * @return the fingerprint of the mapping
+	 */
+	public long getFingerprint() {
+		long sum = inputMap.size();
+		for (Map.Entry<String, Object> entry : inputMap.entrySet()) {
+			sum += FingerprintSet.hashEntry(entry.getKey(), entry.getValue());
+		}
+		return FingerprintSet.mix(sum);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
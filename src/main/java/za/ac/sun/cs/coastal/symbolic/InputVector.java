@@ -81,6 +81,20 @@ public class InputVector {
 		return inputVector.keySet();
 	}
 
+	/**
+	 * Return a 64-bit fingerprint of the mapping. Mappings with the same
+	 * string representation have the same fingerprint.
+	 * 
+	 * @return the fingerprint of the mapping
+	 */
+	public long getFingerprint() {
+		long sum = inputVector.size();
+		for (Map.Entry<Integer, Object> entry : inputVector.entrySet()) {
+			sum += FingerprintSet.hashEntry(entry.getKey(), entry.getValue());
+		}
+		return FingerprintSet.mix(sum);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -45,6 +45,13 @@ public final class Path {
 	 */
 	protected final Choice choice;
 
+	/**
+	 * The input of the execution that produced this path, or {@code null} if the
+	 * path was not produced by an execution. The execution followed this path,
+	 * so the input satisfies its path condition.
+	 */
+	protected final Input witness;
+
 	/**
 	 * Construct a new path.
 	 * 
@@ -52,9 +59,21 @@ public final class Path {
 	 * @param choice the last choice made on the path
 	 */
 	public Path(Path parent, Choice choice) {
+		this(parent, choice, null);
+	}
+
+	/**
+	 * Construct a new path that is produced by an execution.
+	 * 
+	 * @param parent  the prefix of the path
+	 * @param choice  the last choice made on the path
+	 * @param witness the input of the execution
+	 */
+	public Path(Path parent, Choice choice, Input witness) {
 		this.parent = parent;
 		this.depth = (parent == null) ? 1 : (1 + parent.getDepth());
 		this.choice = choice;
+		this.witness = witness;
 	}
 
 	/**
@@ -84,6 +103,16 @@ public final class Path {
 		return choice;
 	}
 
+	/**
+	 * Return the input of the execution that produced this path. This input
+	 * satisfies the path condition of this path.
+	 * 
+	 * @return the input of the execution, or {@code null} if there is none
+	 */
+	public Input getWitness() {
+		return witness;
+	}
+
 	// ======================================================================
 	//
 	// PATH CONDITIONS
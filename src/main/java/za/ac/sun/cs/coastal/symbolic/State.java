@@ -23,6 +23,7 @@ import org.apache.logging.log4j.Logger;
 import za.ac.sun.cs.coastal.COASTAL;
 import za.ac.sun.cs.coastal.Symbolic;
 import za.ac.sun.cs.coastal.messages.Broker;
+import za.ac.sun.cs.coastal.messages.EventBus;
 import za.ac.sun.cs.coastal.solver.Expression;
 import za.ac.sun.cs.coastal.symbolic.ValueFactory.Value;
 import za.ac.sun.cs.coastal.symbolic.exceptions.COASTALException;
@@ -63,6 +64,12 @@ public abstract class State {
 
 	public static final String CREATE_VAR_PREFIX = "N_D_"; // "@"
 
+	/**
+	 * The number of entries in the map of edge hits kept by states that use
+	 * edge-coverage instrumentation. Must be a power of two.
+	 */
+	public static final int EDGE_MAP_SIZE = 1 << 16;
+
 	// ======================================================================
 	//
 	// SHARED FIELDS
@@ -84,6 +91,11 @@ public abstract class State {
 	 */
 	protected final Broker broker;
 
+	/**
+	 * Shortcut to the event listeners of the current thread.
+	 */
+	protected final EventBus.Listeners events;
+
 	/**
 	 * The input that triggered this execution.
 	 * 
@@ -126,6 +138,7 @@ public abstract class State {
 		this.coastal = coastal;
 		log = coastal.getLog();
 		broker = coastal.getBroker();
+		events = coastal.getEventBus().getListeners();
 		this.input = input;
 	}
 
@@ -166,6 +179,16 @@ public abstract class State {
 		this.recordingMode = recordingMode;
 	}
 
+	/**
+	 * Return the map of edge hits that the edge-coverage instrumentation of the
+	 * system-under-test updates directly, without calling the state.
+	 * 
+	 * @return the map of edge hits, or {@code null} if edge coverage is not used
+	 */
+	public byte[] getEdgeMap() {
+		return null;
+	}
+
 	// ======================================================================
 	//
 	// STATE ROUTINES
@@ -36,6 +36,19 @@ public class VM {
 	 */
 	public static State state = null;
 
+	/**
+	 * The map of edge hits of the state. Edge-coverage instrumentation updates
+	 * it directly, instead of calling a method of this class for each branch.
+	 */
+	public static byte[] edges = null;
+
+	/**
+	 * The identifier of the last branch outcome, shifted right by one bit, which
+	 * edge-coverage instrumentation combines with the identifier of the next
+	 * outcome to find the entry of the edge in {@link #edges}.
+	 */
+	public static int prevBlock = 0;
+
 	/**
 	 * Set the state for a particular copy of this class.
 	 *
@@ -44,6 +57,8 @@ public class VM {
 	 */
 	public static void setState(State state) {
 		VM.state = state;
+		edges = state.getEdgeMap();
+		prevBlock = 0;
 	}
 
 	// ======================================================================
@@ -1086,6 +1101,7 @@ public class VM {
 	 */
 	public static void triggerMethod(int methodNumber, int triggerIndex, boolean isStatic) throws COASTALException {
 		try {
+			prevBlock = 0;
 			state.triggerMethod(methodNumber, triggerIndex, isStatic);
 		} catch (ControlException x) {
 			throw x;
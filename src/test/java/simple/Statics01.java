@@ -0,0 +1,27 @@
+package simple;
+
+public class Statics01 {
+
+	private static int counter;
+
+	private static final int[] LIMITS = { 5, 10 };
+
+	public static void main(String[] args) {
+		run(10);
+		System.out.println("done");
+	}
+
+	private static void run(int x) {
+		counter++;
+		if (counter == 1) {
+			if (x < LIMITS[0]) {
+				System.out.println("<5");
+			} else if (x < LIMITS[1]) {
+				System.out.println("<10");
+			} else {
+				System.out.println(">=10");
+			}
+		}
+	}
+
+}
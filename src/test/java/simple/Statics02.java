@@ -0,0 +1,28 @@
+package simple;
+
+public class Statics02 {
+
+	private static int counter;
+
+	private static String last;
+
+	public static void main(String[] args) {
+		run(10);
+		System.out.println("done");
+	}
+
+	private static void run(int x) {
+		counter++;
+		if ((counter == 1) && (last == null)) {
+			if (x < 5) {
+				last = "<5";
+			} else if (x < 10) {
+				last = "<10";
+			} else {
+				last = ">=10";
+			}
+			System.out.println(last);
+		}
+	}
+
+}
@@ -0,0 +1,44 @@
+package simple;
+
+public class Switch01 {
+
+	public static void main(String[] args) {
+		run(0, 0);
+		System.out.println("done");
+	}
+
+	private static void run(int x, int y) {
+		switch (x) {
+		case 0:
+			System.out.println("x=0");
+			break;
+		case 1:
+			System.out.println("x=1");
+			break;
+		case 2:
+			System.out.println("x=2");
+			break;
+		case 3:
+			System.out.println("x=3");
+			break;
+		default:
+			System.out.println("x=?");
+			break;
+		}
+		switch (y) {
+		case 10:
+			System.out.println("y=10");
+			break;
+		case 11:
+			System.out.println("y=11");
+			break;
+		case 12:
+			System.out.println("y=12");
+			break;
+		default:
+			System.out.println("y=?");
+			break;
+		}
+	}
+
+}
@@ -0,0 +1,49 @@
+package simple;
+
+public class Switch02 {
+
+	public static void main(String[] args) {
+		run(0, 0);
+		System.out.println("done");
+	}
+
+	private static void run(int x, int y) {
+		switch (x) {
+		case -100:
+			System.out.println("x=-100");
+			break;
+		case 7:
+			System.out.println("x=7");
+			break;
+		case 1000:
+			System.out.println("x=1000");
+			break;
+		default:
+			System.out.println("x=?");
+			break;
+		}
+		try {
+			check(y);
+			System.out.println("y ok");
+		} catch (IllegalArgumentException x1) {
+			switch (y) {
+			case 5:
+				System.out.println("y=5");
+				break;
+			case 500:
+				System.out.println("y=500");
+				break;
+			default:
+				System.out.println("y<0");
+				break;
+			}
+		}
+	}
+
+	private static void check(int y) {
+		if ((y < 0) || (y == 5) || (y == 500)) {
+			throw new IllegalArgumentException();
+		}
+	}
+
+}
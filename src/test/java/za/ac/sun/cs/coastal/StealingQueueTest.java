@@ -0,0 +1,280 @@
+/*
+ * This file is part of the COASTAL tool, https://deepseaplatform.github.io/coastal/
+ *
+ * Copyright (c) 2019-2020, Computer Science, Stellenbosch University.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package za.ac.sun.cs.coastal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import za.ac.sun.cs.coastal.TerminationDetector.Stage;
+import za.ac.sun.cs.coastal.WorkQueue.OverflowPolicy;
+import za.ac.sun.cs.coastal.symbolic.Input;
+
+/**
+ * Tests for the lanes of work-stealing queues, on their own and as the
+ * in-memory part of work queues.
+ */
+public class StealingQueueTest {
+
+	private final TerminationDetector termination = new TerminationDetector(() -> {
+	});
+
+	private static StealingQueue<Integer> createQueue(int laneCount) {
+		return new StealingQueue<>(i -> i, laneCount);
+	}
+
+	private static List<Integer> pollAll(StealingQueue<Integer> queue) {
+		List<Integer> items = new ArrayList<>();
+		Integer item;
+		while ((item = queue.poll()) != null) {
+			items.add(item);
+		}
+		return items;
+	}
+
+	@Test
+	public void testLaneOrder() {
+		StealingQueue<Integer> queue = createQueue(1);
+		for (int i : new int[] { 5, 3, 9, 1, 7, 3 }) {
+			queue.offer(i);
+		}
+		assertEquals(Integer.valueOf(1), queue.peek());
+		assertEquals(Arrays.asList(1, 3, 3, 5, 7, 9), pollAll(queue));
+		assertEquals(0, queue.getStealCount());
+	}
+
+	@Test
+	public void testStealWhenLaneEmpty() {
+		StealingQueue<Integer> queue = createQueue(2);
+		// Items go to the lanes in turn: 10 and 5 to the first, 20 and 15 to
+		// the second
+		for (int i : new int[] { 10, 20, 5, 15 }) {
+			queue.offer(i);
+		}
+		assertEquals(Integer.valueOf(5), queue.peek());
+		// This thread is the first consumer, and owns the first lane
+		assertEquals(Arrays.asList(5, 10, 15, 20), pollAll(queue));
+		assertEquals(2, queue.getStealCount());
+	}
+
+	@Test
+	public void testOwnLanes() throws InterruptedException {
+		StealingQueue<Integer> queue = createQueue(2);
+		for (int i : new int[] { 1, 2, 3, 4 }) {
+			queue.offer(i);
+		}
+		assertEquals(Integer.valueOf(1), queue.take());
+		Integer[] other = new Integer[1];
+		Thread consumer = new Thread(() -> {
+			other[0] = queue.poll();
+		});
+		consumer.start();
+		consumer.join();
+		// The second consumer owns the second lane
+		assertEquals(Integer.valueOf(2), other[0]);
+		assertEquals(Integer.valueOf(3), queue.poll(1, TimeUnit.SECONDS));
+		assertEquals(0, queue.getStealCount());
+		assertEquals(1, queue.size());
+	}
+
+	@Test
+	public void testDrainRemoveClear() {
+		StealingQueue<Integer> queue = createQueue(3);
+		for (int i = 1; i <= 10; i++) {
+			queue.offer(i);
+		}
+		assertEquals(10, queue.size());
+		assertTrue(queue.remove(4));
+		assertFalse(queue.remove(4));
+		assertFalse(queue.remove(42));
+		assertEquals(9, queue.size());
+		List<Integer> drained = new ArrayList<>();
+		assertEquals(3, queue.drainTo(drained, 3));
+		assertEquals(3, drained.size());
+		assertEquals(6, queue.size());
+		List<Integer> rest = new ArrayList<>();
+		queue.iterator().forEachRemaining(rest::add);
+		assertEquals(6, rest.size());
+		assertFalse(rest.contains(4));
+		rest.addAll(drained);
+		rest.sort(null);
+		assertEquals(Arrays.asList(1, 2, 3, 5, 6, 7, 8, 9, 10), rest);
+		queue.clear();
+		assertEquals(0, queue.size());
+		assertNull(queue.poll());
+		assertNull(queue.peek());
+		assertEquals(0, queue.drainTo(drained));
+		queue.offer(11);
+		assertEquals(1, queue.size());
+		assertEquals(Integer.valueOf(11), queue.poll());
+	}
+
+	@Test
+	public void testConcurrent() throws InterruptedException {
+		final int threads = 4;
+		final int perProducer = 20000;
+		StealingQueue<Integer> queue = createQueue(threads);
+		BitSet seen = new BitSet(threads * perProducer);
+		AtomicInteger taken = new AtomicInteger();
+		AtomicInteger duplicates = new AtomicInteger();
+		List<Thread> workers = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			final int base = t * perProducer;
+			workers.add(new Thread(() -> {
+				for (int i = 0; i < perProducer; i++) {
+					queue.put(base + (i * 7919) % perProducer);
+				}
+			}));
+			workers.add(new Thread(() -> {
+				try {
+					while (taken.get() < threads * perProducer) {
+						Integer item = queue.poll(10, TimeUnit.MILLISECONDS);
+						if (item != null) {
+							synchronized (seen) {
+								if (seen.get(item)) {
+									duplicates.incrementAndGet();
+								}
+								seen.set(item);
+							}
+							taken.incrementAndGet();
+						}
+					}
+				} catch (InterruptedException x) {
+					// ignore
+				}
+			}));
+		}
+		workers.forEach(Thread::start);
+		for (Thread worker : workers) {
+			worker.join(60000);
+			assertFalse(worker.isAlive());
+		}
+		assertEquals(0, duplicates.get());
+		assertEquals(threads * perProducer, seen.cardinality());
+		assertEquals(0, queue.size());
+		assertNull(queue.poll());
+	}
+
+	// ======================================================================
+	//
+	// WORK QUEUES
+	//
+	// ======================================================================
+
+	private WorkQueue<Integer> createWorkQueue(int capacity, OverflowPolicy policy, long blockTimeout) {
+		return new WorkQueue<>("test", createQueue(3), Comparator.naturalOrder(), capacity, policy, blockTimeout, null,
+				n -> termination.leave(Stage.STRATEGY, n), null);
+	}
+
+	private boolean put(WorkQueue<Integer> queue, int item) throws InterruptedException {
+		termination.enter(Stage.STRATEGY, 1);
+		boolean added = queue.put(item);
+		if (!added) {
+			termination.leave(Stage.STRATEGY, 1);
+		}
+		return added;
+	}
+
+	private static List<Integer> drain(WorkQueue<Integer> queue) {
+		List<Integer> items = new ArrayList<>();
+		queue.drainTo(items, Integer.MAX_VALUE);
+		items.sort(null);
+		return items;
+	}
+
+	@Test
+	public void testBlockTimeout() throws InterruptedException {
+		WorkQueue<Integer> queue = createWorkQueue(2, OverflowPolicy.BLOCK, 20);
+		assertTrue(put(queue, 1));
+		assertTrue(put(queue, 2));
+		assertTrue(put(queue, 3));
+		assertEquals(1, queue.getOverflowCount());
+		assertEquals(3, queue.size());
+		assertEquals(Arrays.asList(1, 2, 3), drain(queue));
+	}
+
+	@Test
+	public void testDropOldest() throws InterruptedException {
+		WorkQueue<Integer> queue = createWorkQueue(2, OverflowPolicy.DROP_OLDEST, 0);
+		assertTrue(put(queue, 4));
+		assertTrue(put(queue, 2));
+		assertTrue(put(queue, 1));
+		assertFalse(put(queue, 7));
+		assertEquals(2, queue.getDropCount());
+		assertEquals(2, queue.size());
+		assertEquals(2, termination.getInFlight(Stage.STRATEGY));
+		assertEquals(Arrays.asList(1, 2), drain(queue));
+	}
+
+	@Test
+	public void testDropLowest() throws InterruptedException {
+		WorkQueue<Integer> queue = createWorkQueue(3, OverflowPolicy.DROP_LOWEST, 0);
+		for (int i : new int[] { 8, 3, 6 }) {
+			assertTrue(put(queue, i));
+		}
+		assertTrue(put(queue, 5));
+		assertFalse(put(queue, 9));
+		assertEquals(2, queue.getDropCount());
+		assertEquals(3, termination.getInFlight(Stage.STRATEGY));
+		assertEquals(Arrays.asList(3, 5, 6), drain(queue));
+	}
+
+	@Test
+	public void testSpill() throws InterruptedException {
+		WorkQueue.Codec<Input> codec = new WorkQueue.Codec<Input>() {
+			@Override
+			public String encode(Input input) {
+				return input.encode();
+			}
+
+			@Override
+			public Input decode(String line) {
+				return Input.decode(line);
+			}
+		};
+		WorkQueue<Input> queue = new WorkQueue<>("test", new StealingQueue<>(Input::getPriority, 2), null, 2,
+				OverflowPolicy.SPILL, 0, codec, n -> termination.leave(Stage.SURFER, n), null);
+		for (int i = 0; i < 7; i++) {
+			Input input = new Input();
+			input.put("X", i);
+			queue.put(input);
+		}
+		assertEquals(7, queue.size());
+		assertEquals(5, queue.getSpillCount());
+		BitSet seen = new BitSet();
+		for (int i = 0; i < 7; i++) {
+			seen.set((Integer) queue.poll(1, TimeUnit.SECONDS).get("X"));
+		}
+		assertEquals(7, seen.cardinality());
+		assertEquals(0, queue.size());
+		assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+	}
+
+}
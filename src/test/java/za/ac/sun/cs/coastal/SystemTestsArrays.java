@@ -18,7 +18,13 @@
  */
 package za.ac.sun.cs.coastal;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -115,6 +121,196 @@ public class SystemTestsArrays extends SystemTests {
         checkPathTree(reporter, 3, 0, 0);
     }
 
+    @Test
+    public void testANewArraySelective() {
+        final Logger log = LogManager.getLogger("COASTAL-TEST");
+        // Only the target class, so that the counts do not depend on the rest of the package
+        Configuration config = Configuration.load(log, new String[]{"Test01.properties", "arrays/ANewArray.properties"},
+                "coastal.settings.selective-instrumentation = true\ncoastal.target.instrument = arrays.ANewArray");
+        assertNotNull(config);
+        COASTAL coastal = new COASTAL(log, config);
+        coastal.start(false);
+        Reporter reporter = coastal.getReporter();
+        checkDivers(reporter, 1, 1);
+        checkSurfers(reporter, 0, 0);
+        checkDFStrategy(reporter, 1);
+        checkPathTree(reporter, 0, 0, 0);
+        assertEquals(0, reporter.getLong("PathTree.unique-count"));
+        assertEquals(38, reporter.getLong("Instrumentation.analyzed-instruction-count"));
+        assertEquals(19, reporter.getLong("Instrumentation.skipped-instruction-count"));
+    }
+
+    @Test
+    public void testSorting02UnsatCores() {
+        final Logger log = LogManager.getLogger("COASTAL-TEST");
+        Configuration config = Configuration.load(log, new String[]{"Test01.properties", "arrays/Sorting02-A.properties"});
+        assertNotNull(config);
+        COASTAL coastal = new COASTAL(log, config);
+        coastal.start(false);
+        Reporter reporter = coastal.getReporter();
+        checkDivers(reporter, 1, 53);
+        checkSurfers(reporter, 0, 0);
+        checkDFStrategy(reporter, 1);
+        checkPathTree(reporter, 410, 0, 357);
+        assertTrue(reporter.getLong("DepthFirstStrategy.pruned-infeasible") > 0);
+    }
+
+    @Test
+    public void testSorting02Pool() {
+        final Logger log = LogManager.getLogger("COASTAL-TEST");
+        Configuration config = Configuration.load(log, new String[]{"Test01.properties", "arrays/Sorting02-B.properties"});
+        assertNotNull(config);
+        COASTAL coastal = new COASTAL(log, config);
+        coastal.start(false);
+        Reporter reporter = coastal.getReporter();
+        checkDivers(reporter, 1, 53);
+        checkSurfers(reporter, 0, 0);
+        checkDFStrategy(reporter, 1);
+        checkPathTree(reporter, 410, 0, 357);
+    }
+
+    @Test
+    public void testSorting02Surfers() {
+        final Logger log = LogManager.getLogger("COASTAL-TEST");
+        Configuration config = Configuration.load(log, new String[]{"Test01.properties", "arrays/Sorting02.properties"},
+                "coastal.surfers.threads = 1");
+        assertNotNull(config);
+        COASTAL coastal = new COASTAL(log, config);
+        coastal.start(false);
+        Reporter reporter = coastal.getReporter();
+        checkDivers(reporter, 1, 53);
+        checkSurfers(reporter, 1, 0);
+        checkDFStrategy(reporter, 1);
+        checkPathTree(reporter, 410, 0, 357);
+    }
+
+    @Test
+    public void testSorting02Batch() {
+        final Logger log = LogManager.getLogger("COASTAL-TEST");
+        Configuration config = Configuration.load(log, new String[]{"Test01.properties", "arrays/Sorting02.properties"},
+                "coastal.settings.batch-size = 8\ncoastal.surfers.threads = 1");
+        assertNotNull(config);
+        COASTAL coastal = new COASTAL(log, config);
+        assertEquals(8, coastal.getBatchSize());
+        coastal.start(false);
+        Reporter reporter = coastal.getReporter();
+        checkDivers(reporter, 1, 53);
+        checkSurfers(reporter, 1, 0);
+        checkDFStrategy(reporter, 1);
+        checkPathTree(reporter, 410, 0, 357);
+        assertEquals(53, reporter.getLong("PathTree.unique-count"));
+    }
+
+    @Test
+    public void testSorting02Checkpoint()throws IOException {
+        final Logger log = LogManager.getLogger("COASTAL-TEST");
+        File checkpointFile = File.createTempFile("coastal", ".checkpoint");
+        checkpointFile.deleteOnExit();
+        String fileName = checkpointFile.getPath().replace('\\', '/');
+        Configuration config = Configuration.load(log, new String[]{"Test01.properties", "arrays/Sorting02.properties"},
+                "coastal.settings.checkpoint.file = " + fileName + "\ncoastal.settings.time-limit = 1");
+        assertNotNull(config);
+        COASTAL coastal = new COASTAL(log, config);
+        coastal.start(false);
+        Reporter reporter = coastal.getReporter();
+        assertTrue(reporter.getLong("Checkpoint.writes") > 0);
+        assertTrue(reporter.getLong("PathTree.unique-count") <= 53);
+        config = Configuration.load(log, new String[]{"Test01.properties", "arrays/Sorting02.properties"},
+                "coastal.settings.checkpoint.resume = " + fileName);
+        assertNotNull(config);
+        coastal = new COASTAL(log, config);
+        coastal.start(false);
+        reporter = coastal.getReporter();
+        assertTrue(reporter.getLong("Checkpoint.replayed-inputs") > 0);
+        assertEquals(53, reporter.getLong("PathTree.unique-count"));
+    }
+
+    @Test
+    public void testSorting02Adaptive() {
+        final Logger log = LogManager.getLogger("COASTAL-TEST");
+        String generational = "coastal.strategies.DF = za.ac.sun.cs.coastal.strategy.pathbased.GenerationalFactory";
+        Configuration config = Configuration.load(log, new String[]{"Test01.properties", "arrays/Sorting02.properties"},
+                generational);
+        assertNotNull(config);
+        COASTAL coastal = new COASTAL(log, config);
+        coastal.start(false);
+        Reporter fixed = coastal.getReporter();
+        config = Configuration.load(log, new String[]{"Test01.properties", "arrays/Sorting02.properties"},
+                generational + "\ncoastal.settings.adaptive-threads = true"
+                        + "\ncoastal.divers.min-threads = 1\ncoastal.divers.max-threads = 3"
+                        + "\ncoastal.strategies.DF.max-threads = 2");
+        assertNotNull(config);
+        coastal = new COASTAL(log, config);
+        coastal.start(false);
+        Reporter reporter = coastal.getReporter();
+        assertEquals(53, fixed.getLong("Divers.count"));
+        for (String key : new String[]{"Divers.count", "PathTree.inserted-count", "PathTree.revisit-count",
+                "PathTree.infeasible-count", "PathTree.unique-count"}) {
+            assertEquals(key, fixed.getLong(key), reporter.getLong(key));
+        }
+        long started = reporter.getLong("COASTAL.tasks-started");
+        long retired = reporter.getLong("COASTAL.tasks-retired");
+        long diverPeak = reporter.getLong("COASTAL.peak-tasks.Diver");
+        long strategyPeak = reporter.getLong("COASTAL.peak-tasks.GenerationalStrategy");
+        assertTrue(started > 0);
+        assertTrue(diverPeak >= 1 && diverPeak <= 3);
+        assertTrue(strategyPeak >= 1 && strategyPeak <= 2);
+        // Every started task is accounted for by a peak or by a retirement
+        assertTrue(started <= (diverPeak - 1) + (strategyPeak - 1) + retired);
+        assertTrue(retired <= started);
+        assertTrue(reporter.getLong("Divers.tasks") <= 1 + started);
+    }
+
+    @Test
+    public void testSorting02SolverThreads() {
+        final Logger log = LogManager.getLogger("COASTAL-TEST");
+        String generational = "coastal.strategies.DF = za.ac.sun.cs.coastal.strategy.pathbased.GenerationalFactory";
+        Configuration config = Configuration.load(log, new String[]{"Test01.properties", "arrays/Sorting02.properties"},
+                generational);
+        assertNotNull(config);
+        COASTAL coastal = new COASTAL(log, config);
+        coastal.start(false);
+        Reporter sequential = coastal.getReporter();
+        config = Configuration.load(log, new String[]{"Test01.properties", "arrays/Sorting02.properties"},
+                generational + "\ncoastal.strategies.DF.solver-threads = 3");
+        assertNotNull(config);
+        coastal = new COASTAL(log, config);
+        coastal.start(false);
+        Reporter reporter = coastal.getReporter();
+        assertEquals(53, sequential.getLong("Divers.count"));
+        for (String key : new String[]{"Divers.count", "PathTree.inserted-count", "PathTree.revisit-count",
+                "PathTree.infeasible-count", "PathTree.unique-count", "COASTAL.diver-models"}) {
+            assertEquals(key, sequential.getLong(key), reporter.getLong(key));
+        }
+    }
+
+    @Test
+    public void testSorting02SolverThreadsStop() throws InterruptedException {
+        final Logger log = LogManager.getLogger("COASTAL-TEST");
+        Configuration config = Configuration.load(log, new String[]{"Test01.properties", "arrays/Sorting02.properties"},
+                "coastal.strategies.DF = za.ac.sun.cs.coastal.strategy.pathbased.GenerationalFactory\n"
+                        + "coastal.strategies.DF.solver-threads = 2\ncoastal.settings.time-limit = 1");
+        assertNotNull(config);
+        COASTAL coastal = new COASTAL(log, config);
+        coastal.start(false);
+        Reporter reporter = coastal.getReporter();
+        assertTrue(reporter.getLong("Divers.count") < 53);
+        // The solver threads are stopped with the run
+        for (int i = 0; (i < 50) && solverThreadsAlive(); i++) {
+            Thread.sleep(100);
+        }
+        assertFalse(solverThreadsAlive());
+    }
+
+    private static boolean solverThreadsAlive() {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("coastal-solver-") && thread.isAlive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
 //	@Test
 //	public void testSorting01() {
 //		final Logger log = LogManager.getLogger("COASTAL-TEST");
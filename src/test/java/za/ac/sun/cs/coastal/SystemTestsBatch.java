@@ -0,0 +1,92 @@
+/*
+ * This file is part of the COASTAL tool, https://deepseaplatform.github.io/coastal/
+ *
+ * Copyright (c) 2019-2020, Computer Science, Stellenbosch University.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package za.ac.sun.cs.coastal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.Test;
+
+import za.ac.sun.cs.coastal.BatchRunner.Result;
+
+/**
+ * System tests for batch mode.
+ */
+public class SystemTestsBatch extends SystemTests {
+
+	/**
+	 * Settings that batch runs take from {@code Test01.properties} in the other
+	 * system tests: the configuration files of a batch are loaded on their own.
+	 */
+	private static final String DEPTH_FIRST = "coastal.divers.threads = 1\n" //
+			+ "coastal.surfers.threads = 0\n" //
+			+ "coastal.strategies = DF\n" //
+			+ "coastal.strategies.DF = za.ac.sun.cs.coastal.strategy.pathbased.DepthFirstFactory\n" //
+			+ "coastal.strategies.DF.threads = 1";
+
+	@Test
+	public void testSwitch01() {
+		final Logger log = LogManager.getLogger("COASTAL-TEST");
+		Configuration config = Configuration.load(log, new String[] { "Test01.properties", "simple/Switch01.properties" });
+		assertNotNull(config);
+		COASTAL coastal = new COASTAL(log, config);
+		coastal.start(false);
+		Reporter reporter = coastal.getReporter();
+		checkDivers(reporter, 1, 20);
+		checkSurfers(reporter, 0, 0);
+		checkDFStrategy(reporter, 1);
+		checkPathTree(reporter, 20, 0, 0);
+	}
+
+	@Test
+	public void testSwitch02() {
+		final Logger log = LogManager.getLogger("COASTAL-TEST");
+		Configuration config = Configuration.load(log, new String[] { "Test01.properties", "simple/Switch02.properties" });
+		assertNotNull(config);
+		COASTAL coastal = new COASTAL(log, config);
+		coastal.start(false);
+		Reporter reporter = coastal.getReporter();
+		checkDivers(reporter, 1, 36);
+		checkSurfers(reporter, 0, 0);
+		checkDFStrategy(reporter, 1);
+		checkPathTree(reporter, 72, 20, 16);
+	}
+
+	@Test
+	public void testBatchJobs() {
+		final Logger log = LogManager.getLogger("COASTAL-TEST");
+		String[] configFiles = { "simple/Switch01.properties", "simple/Switch02.properties",
+				"simple/Switch02.properties", "simple/Switch01.properties" };
+		BatchRunner batch = new BatchRunner(log, configFiles, DEPTH_FIRST, 2, false);
+		batch.run();
+		List<Result> results = batch.getResults();
+		assertEquals(4, results.size());
+		long[] expectedPaths = { 20, 36, 36, 20 };
+		for (int i = 0; i < 4; i++) {
+			assertNull(results.get(i).getError());
+			assertEquals(expectedPaths[i], results.get(i).getPaths());
+		}
+	}
+
+}
@@ -0,0 +1,68 @@
+/*
+ * This file is part of the COASTAL tool, https://deepseaplatform.github.io/coastal/
+ *
+ * Copyright (c) 2019-2020, Computer Science, Stellenbosch University.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package za.ac.sun.cs.coastal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.Test;
+
+/**
+ * System tests for analysis runs that hand out their inputs to worker
+ * processes.
+ */
+public class SystemTestsDistributed extends SystemTests {
+
+	private Reporter run(String target, String extra) {
+		final Logger log = LogManager.getLogger("COASTAL-TEST");
+		Configuration config = Configuration.load(log, new String[] { "Test01.properties", target }, extra);
+		assertNotNull(config);
+		COASTAL coastal = new COASTAL(log, config);
+		coastal.start(false);
+		return coastal.getReporter();
+	}
+
+	private void compareWithWorkers(String target) {
+		Reporter single = run(target, null);
+		// The coordinator runs no divers, so that all executions come from the worker
+		Reporter distributed = run(target, "coastal.divers.threads = 0\ncoastal.settings.distributed.workers = 1");
+		assertEquals(1, distributed.getLong("Coordinator.workers"));
+		assertEquals(0, distributed.getLong("Divers.count"));
+		assertEquals(single.getLong("Divers.count"), distributed.getLong("Coordinator.received-executions"));
+		assertEquals(distributed.getLong("Coordinator.sent-inputs"),
+				distributed.getLong("Coordinator.received-executions"));
+		assertEquals(0, distributed.getLong("Coordinator.returned-inputs"));
+		assertEquals(single.getLong("PathTree.unique-count"), distributed.getLong("PathTree.unique-count"));
+		checkPathTree(distributed, (int) single.getLong("PathTree.inserted-count"),
+				(int) single.getLong("PathTree.revisit-count"), (int) single.getLong("PathTree.infeasible-count"));
+	}
+
+	@Test
+	public void testSwitch02Workers() {
+		compareWithWorkers("simple/Switch02.properties");
+	}
+
+	@Test
+	public void testSorting02Workers() {
+		compareWithWorkers("arrays/Sorting02.properties");
+	}
+
+}
@@ -0,0 +1,81 @@
+/*
+ * This file is part of the COASTAL tool, https://deepseaplatform.github.io/coastal/
+ *
+ * Copyright (c) 2019-2020, Computer Science, Stellenbosch University.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package za.ac.sun.cs.coastal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.Test;
+
+/**
+ * System tests for the fuzzing strategies.
+ */
+public class SystemTestsFuzzing extends SystemTests {
+
+	/**
+	 * Settings that replace the feedback fuzzer of {@code Fuzzing01.properties}
+	 * with the AFL-style fuzzer. The fuzzer does not stop by itself, so the run
+	 * is limited in time.
+	 */
+	private static final String AFL_STYLE = "coastal.strategies.S = za.ac.sun.cs.coastal.strategy.tracebased.AFLStyleFuzzerFactory\n" //
+			+ "coastal.strategies.S.seed = 999\n" //
+			+ "coastal.settings.time-limit = 2\n" //
+			+ "coastal.observers = M\n" //
+			+ "coastal.observers.M = za.ac.sun.cs.coastal.observers.MarkerCoverageFactory";
+
+	@Test
+	public void testFuzzing01Edges() {
+		final Logger log = LogManager.getLogger("COASTAL-TEST");
+		Configuration config = Configuration.load(log, new String[] { "fuzzing/Fuzzing01.properties" },
+				AFL_STYLE + "\ncoastal.settings.surfer-instrumentation = edges");
+		assertNotNull(config);
+		COASTAL coastal = new COASTAL(log, config);
+		coastal.start(false);
+		Reporter reporter = coastal.getReporter();
+		assertEquals(0, reporter.getLong("Divers.count"));
+		assertTrue(reporter.getLong("Surfers.count") > 0);
+		// Traces are scored on the edge maps of the surfers
+		assertTrue(reporter.getLong("AFLStyleFuzzer.edge-traces") > 0);
+		long edges = reporter.getLong("AFLStyleFuzzer.edges-seen");
+		assertTrue(edges > 0 && edges <= 4);
+		for (int marker = 1; marker <= 3; marker++) {
+			assertTrue(reporter.getLong("MarkerCoverage.marker[" + marker + "]") > 0);
+		}
+	}
+
+	@Test
+	public void testFuzzing01Full() {
+		final Logger log = LogManager.getLogger("COASTAL-TEST");
+		Configuration config = Configuration.load(log, new String[] { "fuzzing/Fuzzing01.properties" }, AFL_STYLE);
+		assertNotNull(config);
+		COASTAL coastal = new COASTAL(log, config);
+		coastal.start(false);
+		Reporter reporter = coastal.getReporter();
+		assertTrue(reporter.getLong("Surfers.count") > 0);
+		assertEquals(0, reporter.getLong("AFLStyleFuzzer.edge-traces"));
+		assertTrue(reporter.getLong("AFLStyleFuzzer.edges-seen") > 0);
+		for (int marker = 1; marker <= 3; marker++) {
+			assertTrue(reporter.getLong("MarkerCoverage.marker[" + marker + "]") > 0);
+		}
+	}
+
+}
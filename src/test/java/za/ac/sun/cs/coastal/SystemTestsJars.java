@@ -18,24 +18,44 @@
  */
 package za.ac.sun.cs.coastal;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.net.URL;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.junit.Ignore;
 import org.junit.Test;
 
 /**
  * System tests to check that jar files are analysed correctly.
  */
-@Ignore
 public class SystemTestsJars extends SystemTests {
 
+	/**
+	 * Return the setting that names the test jar. The jar is found on the class
+	 * path, so that the tests do not depend on the working directory.
+	 * 
+	 * @return the setting for {@code coastal.target.jars}
+	 */
+	private static String getJarSetting() {
+		URL url = SystemTestsJars.class.getResource("/jars/testJar.jar");
+		assertNotNull(url);
+		try {
+			return "coastal.target.jars = " + new File(url.toURI()).getPath().replace('\\', '/');
+		} catch (URISyntaxException x) {
+			throw new AssertionError(x);
+		}
+	}
+
 	@Test
 	public void testJar00() {
 		final Logger log = LogManager.getLogger("COASTAL-TEST");
 		Configuration config = Configuration.load(log, new String[] { "Test01.properties", "jars/testJar00.properties" },
-				"coastal.target.jars = jars/testJar.jar\ncoastal.target.jars.directory = ZZ");
+				getJarSetting() + "\ncoastal.target.jars.directory = ZZ");
 		assertNotNull(config);
 		COASTAL coastal = new COASTAL(log, config);
 		coastal.start(false);
@@ -49,7 +69,27 @@ public class SystemTestsJars extends SystemTests {
 	@Test
 	public void testJar01() {
 		final Logger log = LogManager.getLogger("COASTAL-TEST");
-		Configuration config = Configuration.load(log, new String[] { "Test01.properties", "jars/testJar01.properties" });
+		Configuration config = Configuration.load(log, new String[] { "Test01.properties", "jars/testJar01.properties" },
+				getJarSetting());
+		assertNotNull(config);
+		COASTAL coastal = new COASTAL(log, config);
+		coastal.start(false);
+		Reporter reporter = coastal.getReporter();
+		checkDivers(reporter, 1, 7);
+		checkSurfers(reporter, 0, 0);
+		checkDFStrategy(reporter, 1);
+		checkPathTree(reporter, 8, 0, 1);
+		assertEquals(9, reporter.getLong("Instrumentation.indexed-jar-files"));
+		assertEquals(1, reporter.getLong("Instrumentation.instrumented-count"));
+		assertTrue(reporter.getLong("Instrumentation.lookup-count") > 0);
+		assertEquals(0, reporter.getLong("Instrumentation.pre-instrumented-count"));
+	}
+
+	@Test
+	public void testJar01PreInstrument() {
+		final Logger log = LogManager.getLogger("COASTAL-TEST");
+		Configuration config = Configuration.load(log, new String[] { "Test01.properties", "jars/testJar01.properties" },
+				getJarSetting() + "\ncoastal.settings.pre-instrument = true");
 		assertNotNull(config);
 		COASTAL coastal = new COASTAL(log, config);
 		coastal.start(false);
@@ -58,12 +98,15 @@ public class SystemTestsJars extends SystemTests {
 		checkSurfers(reporter, 0, 0);
 		checkDFStrategy(reporter, 1);
 		checkPathTree(reporter, 8, 0, 1);
+		assertEquals(1, reporter.getLong("Instrumentation.pre-instrumented-count"));
+		assertEquals(1, reporter.getLong("Instrumentation.instrumented-count"));
 	}
 
 	@Test
 	public void testJar02() {
 		final Logger log = LogManager.getLogger("COASTAL-TEST");
-		Configuration config = Configuration.load(log, new String[] { "Test01.properties", "jars/testJar02.properties" });
+		Configuration config = Configuration.load(log, new String[] { "Test01.properties", "jars/testJar02.properties" },
+				getJarSetting());
 		assertNotNull(config);
 		COASTAL coastal = new COASTAL(log, config);
 		coastal.start(false);
@@ -72,12 +115,30 @@ public class SystemTestsJars extends SystemTests {
 		checkSurfers(reporter, 0, 0);
 		checkDFStrategy(reporter, 1);
 		checkPathTree(reporter, 4, 0, 0);
+		// Only the files in the QQ directory are indexed
+		assertEquals(2, reporter.getLong("Instrumentation.indexed-jar-files"));
 	}
 
 	@Test
 	public void testJar03() {
 		final Logger log = LogManager.getLogger("COASTAL-TEST");
-		Configuration config = Configuration.load(log, new String[] { "Test01.properties", "jars/testJar03.properties" });
+		Configuration config = Configuration.load(log, new String[] { "Test01.properties", "jars/testJar03.properties" },
+				getJarSetting());
+		assertNotNull(config);
+		COASTAL coastal = new COASTAL(log, config);
+		coastal.start(false);
+		Reporter reporter = coastal.getReporter();
+		checkDivers(reporter, 1, 4);
+		checkSurfers(reporter, 0, 0);
+		checkDFStrategy(reporter, 1);
+		checkPathTree(reporter, 4, 0, 0);
+	}
+
+	@Test
+	public void testJar03PreInstrument() {
+		final Logger log = LogManager.getLogger("COASTAL-TEST");
+		Configuration config = Configuration.load(log, new String[] { "Test01.properties", "jars/testJar03.properties" },
+				getJarSetting() + "\ncoastal.settings.pre-instrument = true");
 		assertNotNull(config);
 		COASTAL coastal = new COASTAL(log, config);
 		coastal.start(false);
@@ -86,6 +147,7 @@ public class SystemTestsJars extends SystemTests {
 		checkSurfers(reporter, 0, 0);
 		checkDFStrategy(reporter, 1);
 		checkPathTree(reporter, 4, 0, 0);
+		assertEquals(1, reporter.getLong("Instrumentation.pre-instrumented-count"));
 	}
-	
+
 }
@@ -67,6 +67,33 @@ public class SystemTestsObservers extends SystemTests {
         assertEquals("{21}", reporter.getString("LineCoverage.uncovered"));
     }
 
+    /**
+     * Instruction and line coverage together, with several divers that each
+     * have their own listeners. The expected values are those reported before
+     * the observers moved from the broker to the event bus.
+     */
+    @Test
+    public void testCoverageObservers() {
+        final Logger log = LogManager.getLogger("COASTAL-TEST");
+        String extra = "coastal.divers.threads = 3\n"
+                + "coastal.observers = IC, LC\n"
+                + "coastal.observers.IC = za.ac.sun.cs.coastal.observers.InstructionCoverageFactory\n"
+                + "coastal.observers.LC = za.ac.sun.cs.coastal.observers.LineCoverageFactory";
+        Configuration config = Configuration.load(log,
+                new String[]{"Test01.properties", "observers/LineCoverage01.properties"}, extra);
+        assertNotNull(config);
+        COASTAL coastal = new COASTAL(log, config);
+        coastal.start(false);
+        Reporter reporter = coastal.getReporter();
+        checkDivers(reporter, 3, 5);
+        checkPathTree(reporter, 8, 0, 3);
+        assertEquals(32, reporter.getLong("InstructionCoverage.covered-count"));
+        assertEquals(38, reporter.getLong("InstructionCoverage.potential-total"));
+        assertEquals(9, reporter.getLong("LineCoverage.covered-count"));
+        assertEquals(10, reporter.getLong("LineCoverage.potential-total"));
+        assertEquals("{21}", reporter.getString("LineCoverage.uncovered"));
+    }
+
     @Test
     public void testMarkerCoverage01() {
         final Logger log = LogManager.getLogger("COASTAL-TEST");
@@ -152,6 +179,25 @@ public class SystemTestsObservers extends SystemTests {
         assertEquals(1, reporter.getLong("MarkerCoverage.marker[>=5>=7!=9-1]"));
     }
 
+    @Test
+    public void testDiveSubscriptions() {
+        final Logger log = LogManager.getLogger("COASTAL-TEST");
+        Configuration config = Configuration.load(log,
+                new String[]{"Test01.properties", "simple/Switch02.properties"},
+                "coastal.observers = za.ac.sun.cs.coastal.observers.DiveCounterFactory");
+        assertNotNull(config);
+        COASTAL coastal = new COASTAL(log, config);
+        coastal.start(false);
+        Reporter reporter = coastal.getReporter();
+        checkDivers(reporter, 1, 36);
+        checkDFStrategy(reporter, 1);
+        checkPathTree(reporter, 72, 20, 16);
+        // Every dive-end reaches only the observer of that dive
+        assertEquals(36, reporter.getLong("DiveCounter.dive-ends"));
+        assertEquals(1, reporter.getLong("DiveCounter.max-subscribers"));
+        assertEquals(0, reporter.getLong("DiveCounter.final-subscribers"));
+    }
+
     @Test
     public void testStopController01() {
         final Logger log = LogManager.getLogger("COASTAL-TEST");
@@ -18,7 +18,15 @@
  */
 package za.ac.sun.cs.coastal;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -111,4 +119,103 @@ public class SystemTestsSimple extends SystemTests {
 		checkPathTree(reporter, 6, 0, 1);
 	}
 
+	@Test
+	public void testChoice04Sliced() {
+		final Logger log = LogManager.getLogger("COASTAL-TEST");
+		Configuration config = Configuration.load(log, new String[] { "Test01.properties", "simple/Choice04-A.properties" });
+		assertNotNull(config);
+		COASTAL coastal = new COASTAL(log, config);
+		coastal.start(false);
+		Reporter reporter = coastal.getReporter();
+		checkDivers(reporter, 1, 5);
+		checkSurfers(reporter, 0, 0);
+		checkDFStrategy(reporter, 1);
+		checkPathTree(reporter, 6, 0, 1);
+		assertEquals(3, reporter.getLong("DepthFirstStrategy.sliced-queries"));
+	}
+
+	@Test
+	public void testStatics01() {
+		final Logger log = LogManager.getLogger("COASTAL-TEST");
+		Configuration config = Configuration.load(log, new String[] { "Test01.properties", "simple/Statics01.properties" });
+		assertNotNull(config);
+		COASTAL coastal = new COASTAL(log, config);
+		coastal.start(false);
+		Reporter reporter = coastal.getReporter();
+		checkDivers(reporter, 1, 3);
+		checkSurfers(reporter, 0, 0);
+		checkDFStrategy(reporter, 1);
+		checkPathTree(reporter, 5, 1, 1);
+	}
+
+	@Test
+	public void testStatics02() {
+		final Logger log = LogManager.getLogger("COASTAL-TEST");
+		Configuration config = Configuration.load(log, new String[] { "Test01.properties", "simple/Statics02.properties" });
+		assertNotNull(config);
+		COASTAL coastal = new COASTAL(log, config);
+		coastal.start(false);
+		Reporter reporter = coastal.getReporter();
+		checkDivers(reporter, 1, 5);
+		checkSurfers(reporter, 0, 0);
+		checkDFStrategy(reporter, 1);
+		checkPathTree(reporter, 7, 2, 0);
+	}
+
+	@Test
+	public void testStatics02PreInstrument() throws IOException {
+		final Logger log = LogManager.getLogger("COASTAL-TEST");
+		File cacheDir = Files.createTempDirectory("coastal").toFile();
+		String extra = "coastal.settings.pre-instrument = true\ncoastal.settings.instrumentation-cache.directory = "
+				+ cacheDir.getPath().replace('\\', '/');
+		try {
+			Configuration config = Configuration.load(log,
+					new String[] { "Test01.properties", "simple/Statics02.properties" }, extra);
+			assertNotNull(config);
+			COASTAL coastal = new COASTAL(log, config);
+			coastal.start(false);
+			Reporter reporter = coastal.getReporter();
+			checkDivers(reporter, 1, 5);
+			checkSurfers(reporter, 0, 0);
+			checkDFStrategy(reporter, 1);
+			checkPathTree(reporter, 7, 2, 0);
+			long count = reporter.getLong("Instrumentation.pre-instrumented-count");
+			assertTrue(count > 0);
+			assertEquals(count, reporter.getLong("Instrumentation.disk-cache-writes"));
+			// A second run takes the instrumented classes from the directory
+			config = Configuration.load(log, new String[] { "Test01.properties", "simple/Statics02.properties" },
+					extra);
+			assertNotNull(config);
+			coastal = new COASTAL(log, config);
+			coastal.start(false);
+			reporter = coastal.getReporter();
+			checkDivers(reporter, 1, 5);
+			checkPathTree(reporter, 7, 2, 0);
+			assertEquals(count, reporter.getLong("Instrumentation.pre-instrumented-count"));
+			assertEquals(count, reporter.getLong("Instrumentation.disk-cache-hits"));
+			assertEquals(0, reporter.getLong("Instrumentation.disk-cache-writes"));
+		} finally {
+			FileUtils.deleteDirectory(cacheDir);
+		}
+	}
+
+	@Test
+	public void testStatics01Selective() {
+		final Logger log = LogManager.getLogger("COASTAL-TEST");
+		// Only the target class, so that the counts do not depend on the rest of the package
+		Configuration config = Configuration.load(log, new String[] { "Test01.properties", "simple/Statics01.properties" },
+				"coastal.settings.selective-instrumentation = true\ncoastal.target.instrument = simple.Statics01");
+		assertNotNull(config);
+		COASTAL coastal = new COASTAL(log, config);
+		coastal.start(false);
+		Reporter reporter = coastal.getReporter();
+		checkDivers(reporter, 1, 2);
+		checkSurfers(reporter, 0, 0);
+		checkDFStrategy(reporter, 1);
+		checkPathTree(reporter, 3, 0, 1);
+		assertEquals(2, reporter.getLong("PathTree.unique-count"));
+		assertEquals(50, reporter.getLong("Instrumentation.analyzed-instruction-count"));
+		assertEquals(36, reporter.getLong("Instrumentation.skipped-instruction-count"));
+	}
+
 }
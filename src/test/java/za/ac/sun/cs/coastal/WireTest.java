@@ -0,0 +1,211 @@
+/*
+ * This file is part of the COASTAL tool, https://deepseaplatform.github.io/coastal/
+ *
+ * Copyright (c) 2019-2020, Computer Science, Stellenbosch University.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package za.ac.sun.cs.coastal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+import za.ac.sun.cs.coastal.diver.SegmentedPC;
+import za.ac.sun.cs.coastal.solver.Expression;
+import za.ac.sun.cs.coastal.solver.IntegerConstant;
+import za.ac.sun.cs.coastal.solver.IntegerVariable;
+import za.ac.sun.cs.coastal.solver.Operation;
+import za.ac.sun.cs.coastal.solver.Operation.Operator;
+import za.ac.sun.cs.coastal.solver.RealConstant;
+import za.ac.sun.cs.coastal.solver.RealVariable;
+import za.ac.sun.cs.coastal.surfer.Trace;
+import za.ac.sun.cs.coastal.symbolic.Choice;
+import za.ac.sun.cs.coastal.symbolic.Execution;
+import za.ac.sun.cs.coastal.symbolic.Input;
+import za.ac.sun.cs.coastal.symbolic.Path;
+
+/**
+ * Tests for the messages exchanged by the coordinator and workers of a
+ * distributed analysis run.
+ */
+public class WireTest {
+
+	private static final Expression X = IntegerVariable.create("X", 32, -100, 100);
+
+	private static final Expression Y = IntegerVariable.create("Y", 32, -100, 100);
+
+	private static final Expression R = RealVariable.create("R", 64, -1.0, 1.0);
+
+	private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+	private final Wire.Encoder encoder = new Wire.Encoder(bytes);
+
+	private Wire.Decoder decoder = null;
+
+	private void send(long id, Execution execution) throws IOException {
+		encoder.writeExecution(id, execution);
+	}
+
+	private Execution receive(long id, Input input) throws IOException {
+		if (decoder == null) {
+			encoder.flush();
+			decoder = new Wire.Decoder(new ByteArrayInputStream(bytes.toByteArray()));
+		}
+		assertEquals(id, decoder.getStream().readLong());
+		return decoder.readExecution(input);
+	}
+
+	private static Path extend(Path parent, Expression active, Expression passive, long alternative, Input witness) {
+		return new Path(parent, new Choice(new SegmentedPC.Binary(active, passive), alternative), witness);
+	}
+
+	private static void assertSamePath(Path expected, Path actual) {
+		while (expected != null) {
+			Choice e = expected.getChoice();
+			Choice a = actual.getChoice();
+			assertEquals(e.getBranch().getClass(), a.getBranch().getClass());
+			if (e.getBranch() instanceof SegmentedPC) {
+				SegmentedPC es = (SegmentedPC) e.getBranch();
+				SegmentedPC as = (SegmentedPC) a.getBranch();
+				assertEquals(es.getExpression(), as.getExpression());
+				assertEquals(es.getPassiveConjunct(), as.getPassiveConjunct());
+			}
+			assertEquals(e.getAlternative(), a.getAlternative());
+			assertEquals(expected.getWitness() == null, actual.getWitness() == null);
+			expected = expected.getParent();
+			actual = actual.getParent();
+		}
+		assertNull(actual);
+	}
+
+	@Test
+	public void testExecution() throws IOException {
+		Expression lt = Operation.create(Operator.LT, X, IntegerConstant.create(5, 32));
+		Expression ge = Operation.create(Operator.GE, R, RealConstant.create(0.5, 64));
+		Input input = new Input();
+		input.put(0, 3);
+		Path path = extend(null, lt, null, 1, null);
+		path = extend(path, ge, lt, 0, input);
+		path = new Path(path, new Choice(new SegmentedPC.Nary(Y, -1, 3, null), 2));
+		path = new Path(path, new Choice(new SegmentedPC.Kary(X, new int[] { 7, -100, 1000 }, lt), 3));
+		path = new Path(path, new Choice(new Trace.Binary(), 1));
+		Execution execution = new Execution(path, input);
+		execution.setPayload("edges", new int[] { 4, 8 });
+		execution.setPayload("origin", "test");
+		execution.setPayload("depth", 17L);
+		execution.setPayload("set", new HashSet<>(Arrays.asList(1, 2)));
+		execution.setPayload("skipped", new Object());
+		path.getChoice().setPayload("flag", true);
+		send(42, execution);
+
+		Input sent = new Input();
+		Execution copy = receive(42, sent);
+		assertSame(sent, copy.getInput());
+		assertEquals(3, sent.get(0));
+		assertSamePath(path, copy.getPath());
+		assertSame(sent, copy.getPath().getParent().getParent().getParent().getWitness());
+		assertArrayEquals(new int[] { 4, 8 }, (int[]) copy.getPayload("edges"));
+		assertEquals("test", copy.getPayload("origin"));
+		assertEquals(17L, copy.getPayload("depth"));
+		assertEquals(2, ((Collection<?>) copy.getPayload("set")).size());
+		assertNull(copy.getPayload("skipped"));
+		assertEquals(true, copy.getPath().getChoice().getPayload("flag"));
+	}
+
+	@Test
+	public void testExpressionTable() throws IOException {
+		Expression lt = Operation.create(Operator.LT, X, Y);
+		Expression eq = Operation.create(Operator.EQ, X, IntegerConstant.create(0, 32));
+		Path shared = extend(null, lt, null, 1, null);
+		send(1, new Execution(shared, null));
+		send(2, new Execution(extend(shared, eq, null, 0, null), null));
+		Execution first = receive(1, null);
+		long fresh = decoder.getNewExpressions();
+		assertEquals(3, fresh);
+		assertEquals(0, decoder.getReusedExpressions());
+		Execution second = receive(2, null);
+		assertSamePath(extend(shared, eq, null, 0, null), second.getPath());
+		// lt is sent as a single index, and eq reuses X
+		assertEquals(fresh + 2, decoder.getNewExpressions());
+		assertEquals(2, decoder.getReusedExpressions());
+		assertSame(((SegmentedPC) first.getPath().getChoice().getBranch()).getExpression(),
+				((SegmentedPC) second.getPath().getParent().getChoice().getBranch()).getExpression());
+	}
+
+	@Test
+	public void testTableReset() throws IOException {
+		Expression lt = Operation.create(Operator.LT, X, Y);
+		send(1, new Execution(extend(null, lt, null, 1, null), null));
+		// A path long enough to overflow the table makes both ends clear it
+		Choice choice = new Choice(new SegmentedPC.Binary(lt, null), 0);
+		Path path = null;
+		for (int i = 0; i <= Wire.TABLE_LIMIT / 4; i++) {
+			path = new Path(path, choice);
+		}
+		send(2, new Execution(path, null));
+		Expression gt = Operation.create(Operator.GT, X, Y);
+		Path last = extend(null, gt, lt, 0, null);
+		send(3, new Execution(last, null));
+		receive(1, null);
+		long fresh = decoder.getNewExpressions();
+		Execution copy = receive(2, null);
+		assertEquals(path.getDepth(), copy.getPath().getDepth());
+		assertEquals(lt, ((SegmentedPC) copy.getPath().getChoice().getBranch()).getExpression());
+		// lt is sent in full again after the reset
+		assertEquals(2 * fresh, decoder.getNewExpressions());
+		assertSamePath(last, receive(3, null).getPath());
+		assertTrue(decoder.getReusedExpressions() > Wire.TABLE_LIMIT / 4);
+	}
+
+	@Test
+	public void testInputs() throws IOException {
+		Input input = new Input();
+		input.put(0, "a,b");
+		input.put(1, new int[] { 1, 2 });
+		encoder.writeInput(9, input.encode());
+		encoder.writeString(null);
+		encoder.flush();
+		decoder = new Wire.Decoder(new ByteArrayInputStream(bytes.toByteArray()));
+		assertEquals(9, decoder.getStream().readLong());
+		Input copy = Input.decode(decoder.readString());
+		assertEquals("a,b", copy.get(0));
+		assertArrayEquals(new int[] { 1, 2 }, (int[]) copy.get(1));
+		assertNull(decoder.readString());
+	}
+
+	@Test(expected = IOException.class)
+	public void testUnknownReference() throws IOException {
+		ByteArrayOutputStream raw = new ByteArrayOutputStream();
+		Wire.Encoder rawEncoder = new Wire.Encoder(raw);
+		rawEncoder.writeString(null);
+		rawEncoder.getStream().writeInt(1);
+		rawEncoder.getStream().writeByte(0);
+		rawEncoder.getStream().writeInt(5);
+		rawEncoder.flush();
+		new Wire.Decoder(new ByteArrayInputStream(raw.toByteArray())).readExecution(null);
+	}
+
+}
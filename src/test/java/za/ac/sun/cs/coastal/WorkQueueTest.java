@@ -0,0 +1,274 @@
+/*
+ * This file is part of the COASTAL tool, https://deepseaplatform.github.io/coastal/
+ *
+ * Copyright (c) 2019-2020, Computer Science, Stellenbosch University.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package za.ac.sun.cs.coastal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import za.ac.sun.cs.coastal.TerminationDetector.Stage;
+import za.ac.sun.cs.coastal.WorkQueue.OverflowPolicy;
+import za.ac.sun.cs.coastal.symbolic.Input;
+
+/**
+ * Tests for the overflow policies of work queues.
+ */
+public class WorkQueueTest {
+
+	private static final WorkQueue.Codec<Input> INPUT_CODEC = new WorkQueue.Codec<Input>() {
+		@Override
+		public String encode(Input input) {
+			return input.encode();
+		}
+
+		@Override
+		public Input decode(String line) {
+			return Input.decode(line);
+		}
+	};
+
+	private final TerminationDetector termination = new TerminationDetector(() -> {
+	});
+
+	/**
+	 * Create a queue of integers whose drop handler removes the dropped items
+	 * from the outstanding work of the strategy stage, as COASTAL does.
+	 */
+	private WorkQueue<Integer> createQueue(Comparator<Integer> comparator, int capacity, OverflowPolicy policy,
+			long blockTimeout) {
+		return new WorkQueue<>("test", comparator, capacity, policy, blockTimeout, null,
+				n -> termination.leave(Stage.STRATEGY, n), null);
+	}
+
+	/**
+	 * Add an item to a queue the way COASTAL does: the item is counted as work
+	 * before it is added, and no longer counted if it is not added.
+	 */
+	private boolean put(WorkQueue<Integer> queue, int item) throws InterruptedException {
+		termination.enter(Stage.STRATEGY, 1);
+		boolean added = queue.put(item);
+		if (!added) {
+			termination.leave(Stage.STRATEGY, 1);
+		}
+		return added;
+	}
+
+	private List<Integer> drain(WorkQueue<Integer> queue) {
+		List<Integer> items = new ArrayList<>();
+		queue.drainTo(items, Integer.MAX_VALUE);
+		return items;
+	}
+
+	@Test
+	public void testParsePolicy() {
+		assertEquals(OverflowPolicy.DROP_OLDEST, OverflowPolicy.parse(" Drop-Oldest ", OverflowPolicy.BLOCK));
+		assertEquals(OverflowPolicy.SPILL, OverflowPolicy.parse("spill", OverflowPolicy.BLOCK));
+		assertEquals(OverflowPolicy.BLOCK, OverflowPolicy.parse("unknown", OverflowPolicy.BLOCK));
+		assertNull(OverflowPolicy.parse(null, null));
+	}
+
+	@Test
+	public void testBlockTimeout() throws InterruptedException {
+		WorkQueue<Integer> queue = createQueue(null, 1, OverflowPolicy.BLOCK, 50);
+		assertTrue(put(queue, 1));
+		long t0 = System.currentTimeMillis();
+		assertTrue(put(queue, 2));
+		assertTrue(System.currentTimeMillis() - t0 >= 40);
+		assertEquals(1, queue.getOverflowCount());
+		assertEquals(0, queue.getDropCount());
+		assertEquals(2, queue.size());
+		assertEquals(2, termination.getInFlight(Stage.STRATEGY));
+	}
+
+	@Test
+	public void testOverflowHandler() throws InterruptedException {
+		List<Long> overflows = new ArrayList<>();
+		WorkQueue<Integer> queue = new WorkQueue<>("test", null, 1, OverflowPolicy.BLOCK, 1, null,
+				n -> termination.leave(Stage.STRATEGY, n), overflows::add);
+		for (int i = 0; i < 4; i++) {
+			assertTrue(put(queue, i));
+		}
+		// The capacity is a soft bound: every item is added after the timeout
+		assertEquals(4, queue.size());
+		assertEquals(Arrays.asList(1L, 2L, 3L), overflows);
+		assertEquals(3, queue.getOverflowCount());
+	}
+
+	@Test
+	public void testBlockUntilTaken() throws Exception {
+		WorkQueue<Integer> queue = createQueue(null, 1, OverflowPolicy.BLOCK, 0);
+		assertTrue(put(queue, 1));
+		Thread producer = new Thread(() -> {
+			try {
+				put(queue, 2);
+			} catch (InterruptedException x) {
+				// ignore
+			}
+		});
+		producer.start();
+		Thread.sleep(50);
+		assertTrue(producer.isAlive());
+		assertEquals(Integer.valueOf(1), queue.poll(1, TimeUnit.SECONDS));
+		producer.join(1000);
+		assertFalse(producer.isAlive());
+		assertEquals(Integer.valueOf(2), queue.poll(1, TimeUnit.SECONDS));
+		assertEquals(0, queue.getOverflowCount());
+	}
+
+	@Test
+	public void testDropLowestPriority() throws InterruptedException {
+		WorkQueue<Integer> queue = createQueue(Comparator.naturalOrder(), 2, OverflowPolicy.DROP_LOWEST, 0);
+		assertTrue(put(queue, 1));
+		assertTrue(put(queue, 5));
+		// 5 is served last and makes way for 3
+		assertTrue(put(queue, 3));
+		// 9 would be served last and is not added
+		assertFalse(put(queue, 9));
+		assertEquals(2, queue.getDropCount());
+		assertEquals(2, queue.size());
+		assertEquals(2, termination.getInFlight(Stage.STRATEGY));
+		List<Integer> items = drain(queue);
+		items.sort(null);
+		assertEquals(Arrays.asList(1, 3), items);
+	}
+
+	@Test
+	public void testDropLowestFifo() throws InterruptedException {
+		WorkQueue<Integer> queue = createQueue(null, 2, OverflowPolicy.DROP_LOWEST, 0);
+		assertTrue(put(queue, 1));
+		assertTrue(put(queue, 2));
+		assertFalse(put(queue, 3));
+		assertEquals(1, queue.getDropCount());
+		assertEquals(2, termination.getInFlight(Stage.STRATEGY));
+		assertEquals(Arrays.asList(1, 2), drain(queue));
+	}
+
+	@Test
+	public void testDropOldestFifo() throws InterruptedException {
+		WorkQueue<Integer> queue = createQueue(null, 2, OverflowPolicy.DROP_OLDEST, 0);
+		assertTrue(put(queue, 1));
+		assertTrue(put(queue, 2));
+		assertTrue(put(queue, 3));
+		assertTrue(put(queue, 4));
+		assertEquals(2, queue.getDropCount());
+		assertEquals(2, termination.getInFlight(Stage.STRATEGY));
+		assertEquals(Arrays.asList(3, 4), drain(queue));
+	}
+
+	@Test
+	public void testDropOldestPriority() throws InterruptedException {
+		WorkQueue<Integer> queue = createQueue(Comparator.naturalOrder(), 2, OverflowPolicy.DROP_OLDEST, 0);
+		assertTrue(put(queue, 4));
+		assertTrue(put(queue, 2));
+		assertTrue(put(queue, 1));
+		assertFalse(put(queue, 7));
+		assertEquals(2, queue.getDropCount());
+		assertEquals(2, termination.getInFlight(Stage.STRATEGY));
+		List<Integer> items = drain(queue);
+		items.sort(null);
+		assertEquals(Arrays.asList(1, 2), items);
+	}
+
+	@Test
+	public void testDropsReachQuiescence() throws InterruptedException {
+		boolean[] quiescent = { false };
+		TerminationDetector detector = new TerminationDetector(() -> quiescent[0] = true);
+		WorkQueue<Integer> queue = new WorkQueue<>("test", null, 1, OverflowPolicy.DROP_OLDEST, 0, null,
+				n -> detector.leave(Stage.STRATEGY, n), null);
+		detector.enter(Stage.STRATEGY, 1);
+		queue.put(1);
+		detector.enter(Stage.STRATEGY, 1);
+		queue.put(2);
+		assertEquals(1, detector.getInFlight());
+		assertEquals(Integer.valueOf(2), queue.poll(1, TimeUnit.SECONDS));
+		assertFalse(quiescent[0]);
+		detector.leave(Stage.STRATEGY, 1);
+		assertTrue(quiescent[0]);
+	}
+
+	@Test
+	public void testSpillAndRefill() throws InterruptedException {
+		WorkQueue<Input> queue = new WorkQueue<>("test", null, 2, OverflowPolicy.SPILL, 0, INPUT_CODEC,
+				n -> termination.leave(Stage.DIVER, n), null);
+		for (int i = 0; i < 6; i++) {
+			Input input = new Input();
+			input.put("X", i);
+			input.put("A", new int[] { i, -i });
+			input.put("S", "s=" + i);
+			input.setPayload("priority", i);
+			queue.put(input);
+		}
+		assertEquals(6, queue.size());
+		assertEquals(4, queue.getSpillCount());
+		assertEquals(0, queue.getOverflowCount());
+		for (int i = 0; i < 6; i++) {
+			Input input = queue.poll(1, TimeUnit.SECONDS);
+			assertEquals(Integer.valueOf(i), input.get("X"));
+			assertArrayEquals(new int[] { i, -i }, (int[]) input.get("A"));
+			assertEquals("s=" + i, input.get("S"));
+			assertEquals(i, input.getPriority());
+		}
+		assertEquals(0, queue.size());
+		assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+		assertEquals(0, queue.getDropCount());
+	}
+
+	@Test
+	public void testSpillUnencodable() throws InterruptedException {
+		WorkQueue<Input> queue = new WorkQueue<>("test", null, 1, OverflowPolicy.SPILL, 0, INPUT_CODEC,
+				n -> termination.leave(Stage.DIVER, n), null);
+		Input input = new Input();
+		input.put("O", new Object());
+		queue.put(new Input());
+		queue.put(input);
+		assertEquals(0, queue.getSpillCount());
+		assertEquals(1, queue.getOverflowCount());
+		assertEquals(2, queue.size());
+	}
+
+	@Test
+	public void testSpillWithoutCodec() {
+		WorkQueue<Integer> queue = createQueue(null, 1, OverflowPolicy.SPILL, 0);
+		assertEquals(OverflowPolicy.BLOCK, queue.getPolicy());
+	}
+
+	@Test
+	public void testClearRemovesSpilled() throws InterruptedException {
+		WorkQueue<Input> queue = new WorkQueue<>("test", null, 1, OverflowPolicy.SPILL, 0, INPUT_CODEC,
+				n -> termination.leave(Stage.DIVER, n), null);
+		for (int i = 0; i < 3; i++) {
+			queue.put(new Input());
+		}
+		assertEquals(3, queue.size());
+		queue.clear();
+		assertEquals(0, queue.size());
+		assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+	}
+
+}
@@ -0,0 +1,194 @@
+/*
+ * This file is part of the COASTAL tool, https://deepseaplatform.github.io/coastal/
+ *
+ * Copyright (c) 2019-2020, Computer Science, Stellenbosch University.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package za.ac.sun.cs.coastal.instrument;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import za.ac.sun.cs.coastal.instrument.InstrumentationCache.Entry;
+
+/**
+ * Tests for the disk tier of the cache of instrumented classes.
+ */
+public class InstrumentationCacheTest {
+
+	private static final long NO_LIMIT = Long.MAX_VALUE;
+
+	private File directory;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("coastal-icache").toFile();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(directory);
+	}
+
+	private static String key(int i) {
+		return InstrumentationCache.computeKey("heavy", "config", new int[] { 1, 2, 3 }, new byte[] { (byte) i });
+	}
+
+	private static Entry entry(int i) {
+		Map<Integer, Integer> first = new HashMap<>();
+		first.put(7, 100 + i);
+		Map<Integer, Integer> last = new HashMap<>();
+		last.put(7, 200 + i);
+		BitSet lines = new BitSet();
+		lines.set(3);
+		lines.set(65);
+		Map<Integer, int[]> lookup = new HashMap<>();
+		lookup.put(150, new int[] { -1, i, 1000 });
+		return new Entry(new byte[] { (byte) 0xca, (byte) 0xfe, (byte) i }, new int[] { 300 + i, 8, 9 }, first, last,
+				Collections.singletonMap(7, lines), lookup);
+	}
+
+	private File file(int i) {
+		return new File(directory, key(i) + ".icache");
+	}
+
+	@Test
+	public void testWrite() {
+		InstrumentationCache cache = new InstrumentationCache(directory, NO_LIMIT);
+		cache.put(key(0), entry(0));
+		assertTrue(file(0).isFile());
+		assertEquals(1, cache.getDiskWriteCount());
+		// Temporary files are renamed into place
+		assertEquals(1, directory.list().length);
+		// An entry that is already present is not written again
+		cache.put(key(0), entry(1));
+		assertEquals(1, cache.getDiskWriteCount());
+	}
+
+	@Test
+	public void testDiskHit() {
+		new InstrumentationCache(directory, NO_LIMIT).put(key(1), entry(1));
+		InstrumentationCache cache = new InstrumentationCache(directory, NO_LIMIT);
+		Entry entry = cache.get(key(1));
+		assertNotNull(entry);
+		assertEquals(1, cache.getDiskHitCount());
+		assertEquals(1, cache.getHitCount());
+		assertArrayEquals(new byte[] { (byte) 0xca, (byte) 0xfe, 1 }, entry.getBytecode());
+		assertArrayEquals(new int[] { 301, 8, 9 }, entry.getCounters());
+		assertEquals(Integer.valueOf(101), entry.getFirstInstructions().get(7));
+		assertEquals(Integer.valueOf(201), entry.getLastInstructions().get(7));
+		assertEquals(entry(1).getLineNumbers(), entry.getLineNumbers());
+		assertArrayEquals(new int[] { -1, 1, 1000 }, entry.getLookupKeys().get(150));
+		// The second lookup is served from memory
+		assertNotNull(cache.get(key(1)));
+		assertEquals(1, cache.getDiskHitCount());
+		assertEquals(2, cache.getHitCount());
+		assertNull(cache.get(key(2)));
+		assertEquals(1, cache.getMissCount());
+	}
+
+	@Test
+	public void testKeyMismatch() throws IOException {
+		new InstrumentationCache(directory, NO_LIMIT).put(key(1), entry(1));
+		Files.move(file(1).toPath(), file(2).toPath());
+		InstrumentationCache cache = new InstrumentationCache(directory, NO_LIMIT);
+		assertNull(cache.get(key(2)));
+		assertEquals(0, cache.getDiskHitCount());
+		assertFalse(file(2).exists());
+	}
+
+	@Test
+	public void testCorruptFiles() throws IOException {
+		InstrumentationCache writer = new InstrumentationCache(directory, NO_LIMIT);
+		writer.put(key(1), entry(1));
+		writer.put(key(2), entry(2));
+		writer.put(key(3), entry(3));
+		// A truncated file
+		try (RandomAccessFile file = new RandomAccessFile(file(1), "rw")) {
+			file.setLength(file.length() - 5);
+		}
+		// A bytecode length beyond the end of the file; the length follows the
+		// magic number, the version, and the key
+		try (RandomAccessFile file = new RandomAccessFile(file(2), "rw")) {
+			file.seek(8 + 2 + key(2).length());
+			file.writeInt(Integer.MAX_VALUE);
+		}
+		// A negative length
+		try (RandomAccessFile file = new RandomAccessFile(file(3), "rw")) {
+			file.seek(8 + 2 + key(3).length());
+			file.writeInt(-1);
+		}
+		InstrumentationCache cache = new InstrumentationCache(directory, NO_LIMIT);
+		assertNull(cache.get(key(1)));
+		assertNull(cache.get(key(2)));
+		assertNull(cache.get(key(3)));
+		assertEquals(3, cache.getMissCount());
+		assertEquals(0, directory.list().length);
+		// The entry can be written again
+		cache.put(key(1), entry(1));
+		assertNotNull(new InstrumentationCache(directory, NO_LIMIT).get(key(1)));
+	}
+
+	@Test
+	public void testEviction() {
+		InstrumentationCache writer = new InstrumentationCache(directory, NO_LIMIT);
+		for (int i = 0; i < 5; i++) {
+			writer.put(key(i), entry(i));
+		}
+		long size = file(0).length();
+		long now = System.currentTimeMillis();
+		for (int i = 0; i < 5; i++) {
+			assertEquals(size, file(i).length());
+			assertTrue(file(i).setLastModified(now - (10 - i) * 60000L));
+		}
+		// Reading an entry makes it the most recently used
+		assertNotNull(new InstrumentationCache(directory, NO_LIMIT).get(key(1)));
+		// Five files exceed a limit of four, and eviction goes down to three
+		InstrumentationCache cache = new InstrumentationCache(directory, 4 * size);
+		assertEquals(2, cache.getEvictedCount());
+		assertFalse(file(0).exists());
+		assertTrue(file(1).exists());
+		assertFalse(file(2).exists());
+		assertTrue(file(3).exists());
+		assertTrue(file(4).exists());
+		// Writing beyond the limit evicts again
+		cache.put(key(5), entry(5));
+		assertTrue(file(5).exists());
+		assertEquals(2, cache.getEvictedCount());
+		cache.put(key(6), entry(6));
+		assertEquals(4, cache.getEvictedCount());
+		assertEquals(3, directory.list().length);
+		assertTrue(file(6).exists());
+	}
+
+}
@@ -0,0 +1,132 @@
+/*
+ * This file is part of the COASTAL tool, https://deepseaplatform.github.io/coastal/
+ *
+ * Copyright (c) 2019-2020, Computer Science, Stellenbosch University.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package za.ac.sun.cs.coastal.messages;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.Test;
+
+/**
+ * Tests for subscribing to and unsubscribing from broker topics, alone and in
+ * scopes.
+ */
+public class BrokerTest {
+
+	private final Broker broker = new Broker();
+
+	private final List<String> received = new ArrayList<>();
+
+	private Consumer<Object> recorder(String name) {
+		return message -> received.add(name + ":" + message);
+	}
+
+	@Test
+	public void testUnsubscribe() {
+		Subscription a = broker.subscribe("t", recorder("a"));
+		broker.subscribe("t", recorder("b"));
+		broker.publish("t", 1);
+		a.unsubscribe();
+		broker.publish("t", 2);
+		assertEquals(Arrays.asList("a:1", "b:1", "b:2"), received);
+		assertEquals(1, broker.getSubscriberCount("t"));
+		assertEquals(0, broker.getSubscriberCount("u"));
+	}
+
+	@Test
+	public void testSameSubscriberTwice() {
+		Consumer<Object> a = recorder("a");
+		broker.subscribe("t", a);
+		Subscription second = broker.subscribe("t", a);
+		second.unsubscribe();
+		broker.publish("t", 1);
+		assertEquals(Arrays.asList("a:1"), received);
+		assertEquals(1, broker.getSubscriberCount("t"));
+	}
+
+	@Test
+	public void testScope() {
+		broker.subscribe("t", recorder("outside"));
+		Subscriptions scope = Subscriptions.open();
+		broker.subscribe("t", recorder("a"));
+		broker.subscribe("u", recorder("b"));
+		broker.subscribeThread("t", recorder("c"));
+		assertEquals(3, scope.size());
+		scope.unsubscribe();
+		assertEquals(0, scope.size());
+		assertEquals(1, broker.getSubscriberCount("t"));
+		assertEquals(0, broker.getSubscriberCount("u"));
+		// Subscriptions after the scope is closed are not recorded in it
+		broker.subscribe("u", recorder("d"));
+		assertEquals(0, scope.size());
+		broker.publish("t", 1);
+		broker.publish("u", 2);
+		broker.publishThread("t", 3);
+		assertEquals(Arrays.asList("outside:1", "d:2"), received);
+	}
+
+	@Test
+	public void testNestedScopes() {
+		Subscriptions outer = Subscriptions.open();
+		broker.subscribe("t", recorder("a"));
+		Subscriptions inner = Subscriptions.open();
+		broker.subscribe("t", recorder("b"));
+		inner.unsubscribe();
+		broker.subscribe("t", recorder("c"));
+		assertEquals(2, outer.size());
+		broker.publish("t", 1);
+		outer.unsubscribe();
+		broker.publish("t", 2);
+		assertEquals(Arrays.asList("a:1", "c:1"), received);
+		assertEquals(0, broker.getSubscriberCount("t"));
+	}
+
+	@Test
+	public void testManyScopes() {
+		int[] count = { 0 };
+		for (int i = 0; i < 1000; i++) {
+			Subscriptions scope = Subscriptions.open();
+			broker.subscribe("t", o -> count[0]++);
+			broker.subscribeThread("end", o -> count[0]++);
+			broker.publish("t", i);
+			broker.publishThread("end", i);
+			scope.unsubscribe();
+			assertEquals(0, broker.getSubscriberCount("t"));
+		}
+		assertEquals(2000, count[0]);
+	}
+
+	@Test
+	public void testUnsubscribeWhilePublishing() {
+		Subscription[] b = new Subscription[1];
+		broker.subscribe("t", message -> {
+			received.add("a:" + message);
+			b[0].unsubscribe();
+		});
+		b[0] = broker.subscribe("t", recorder("b"));
+		broker.publish("t", 1);
+		broker.publish("t", 2);
+		assertEquals(Arrays.asList("a:1", "b:1", "a:2"), received);
+	}
+
+}
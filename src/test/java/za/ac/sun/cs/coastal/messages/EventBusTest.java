@@ -0,0 +1,146 @@
+/*
+ * This file is part of the COASTAL tool, https://deepseaplatform.github.io/coastal/
+ *
+ * Copyright (c) 2019-2020, Computer Science, Stellenbosch University.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package za.ac.sun.cs.coastal.messages;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import za.ac.sun.cs.coastal.messages.EventBus.Listeners;
+
+/**
+ * Tests for the per-thread listeners of the event bus.
+ */
+public class EventBusTest {
+
+	private final EventBus eventBus = new EventBus();
+
+	private final List<String> received = new ArrayList<>();
+
+	@Test
+	public void testTopics() {
+		Listeners listeners = eventBus.getListeners();
+		eventBus.subscribeInsn(EventBus.JUMP_INSN, (i, o) -> received.add("jump:" + i + ":" + o));
+		eventBus.subscribeMethod(EventBus.EXIT_METHOD, m -> received.add("exit:" + m));
+		eventBus.subscribeLine((i, l) -> received.add("line:" + l));
+		eventBus.subscribeLabel((i, l) -> received.add("label:" + l));
+		listeners.publishInsn(EventBus.INSN, 1, 2);
+		listeners.publishInsn(EventBus.JUMP_INSN, 3, 4);
+		listeners.publishMethod(EventBus.ENTER_METHOD, 5);
+		listeners.publishMethod(EventBus.EXIT_METHOD, 6);
+		listeners.publishLine(7, 8);
+		listeners.publishLabel(9, "L");
+		assertEquals(Arrays.asList("jump:3:4", "exit:6", "line:8", "label:L"), received);
+	}
+
+	@Test
+	public void testExecutedInsns() {
+		Listeners listeners = eventBus.getListeners();
+		int[] count = { 0 };
+		Subscription subscription = eventBus.subscribeExecutedInsns((i, o) -> count[0]++);
+		for (int topic = 0; topic < EventBus.INSN_TOPIC_COUNT; topic++) {
+			listeners.publishInsn(topic, 0, 0);
+		}
+		assertEquals(EventBus.INSN_TOPIC_COUNT - 1, count[0]);
+		subscription.unsubscribe();
+		for (int topic = 0; topic < EventBus.INSN_TOPIC_COUNT; topic++) {
+			listeners.publishInsn(topic, 0, 0);
+		}
+		assertEquals(EventBus.INSN_TOPIC_COUNT - 1, count[0]);
+	}
+
+	@Test
+	public void testOrderAndUnsubscribe() {
+		Listeners listeners = eventBus.getListeners();
+		EventBus.LineListener a = (i, l) -> received.add("a" + l);
+		eventBus.subscribeLine(a);
+		Subscription b = eventBus.subscribeLine((i, l) -> received.add("b" + l));
+		Subscription secondA = eventBus.subscribeLine(a);
+		listeners.publishLine(0, 1);
+		secondA.unsubscribe();
+		listeners.publishLine(0, 2);
+		b.unsubscribe();
+		listeners.publishLine(0, 3);
+		assertEquals(Arrays.asList("a1", "b1", "a1", "a2", "b2", "a3"), received);
+	}
+
+	@Test
+	public void testChangeWhilePublishing() {
+		Listeners listeners = eventBus.getListeners();
+		Subscription[] b = new Subscription[1];
+		eventBus.subscribeLine((i, l) -> {
+			received.add("a" + l);
+			if (l == 1) {
+				// Neither change affects the event being delivered
+				b[0].unsubscribe();
+				eventBus.subscribeLine((j, m) -> received.add("c" + m));
+			}
+		});
+		b[0] = eventBus.subscribeLine((i, l) -> received.add("b" + l));
+		listeners.publishLine(0, 1);
+		listeners.publishLine(0, 2);
+		assertEquals(Arrays.asList("a1", "b1", "a2", "c2"), received);
+	}
+
+	@Test
+	public void testThreads() throws InterruptedException {
+		Listeners listeners = eventBus.getListeners();
+		assertSame(listeners, eventBus.getListeners());
+		eventBus.subscribeLine((i, l) -> received.add("main" + l));
+		Listeners[] other = new Listeners[1];
+		Thread thread = new Thread(() -> {
+			other[0] = eventBus.getListeners();
+			eventBus.subscribeLine((i, l) -> received.add("other" + l));
+			other[0].publishLine(0, 1);
+		});
+		thread.start();
+		thread.join();
+		assertNotSame(listeners, other[0]);
+		listeners.publishLine(0, 2);
+		assertEquals(Arrays.asList("other1", "main2"), received);
+	}
+
+	@Test
+	public void testScopeAndReset() {
+		Listeners listeners = eventBus.getListeners();
+		eventBus.subscribeMethod(EventBus.ENTER_METHOD, m -> received.add("task" + m));
+		Subscriptions scope = Subscriptions.open();
+		eventBus.subscribeMethod(EventBus.ENTER_METHOD, m -> received.add("dive" + m));
+		eventBus.subscribeExecutedInsns((i, o) -> received.add("insn" + i));
+		assertEquals(2, scope.size());
+		listeners.publishMethod(EventBus.ENTER_METHOD, 1);
+		listeners.publishInsn(EventBus.INSN, 2, 0);
+		scope.unsubscribe();
+		listeners.publishMethod(EventBus.ENTER_METHOD, 3);
+		listeners.publishInsn(EventBus.INSN, 4, 0);
+		assertEquals(Arrays.asList("task1", "dive1", "insn2", "task3"), received);
+		eventBus.resetListeners();
+		Listeners fresh = eventBus.getListeners();
+		assertNotSame(listeners, fresh);
+		fresh.publishMethod(EventBus.ENTER_METHOD, 5);
+		assertEquals(4, received.size());
+	}
+
+}
@@ -0,0 +1,124 @@
+/*
+ * This file is part of the COASTAL tool, https://deepseaplatform.github.io/coastal/
+ *
+ * Copyright (c) 2019-2020, Computer Science, Stellenbosch University.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package za.ac.sun.cs.coastal.observers;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import za.ac.sun.cs.coastal.COASTAL;
+import za.ac.sun.cs.coastal.Configuration;
+import za.ac.sun.cs.coastal.messages.Broker;
+import za.ac.sun.cs.coastal.messages.Tuple;
+
+/**
+ * Observer created for every dive that counts the dive-end messages it
+ * receives, and records the largest number of subscribers that the observers
+ * of a run ever had at the same time. Used to check that the subscriptions of
+ * per-dive observers are discarded after each dive.
+ */
+public class DiveCounterFactory implements ObserverFactory {
+
+	/**
+	 * Topic that only the observers of this factory subscribe to.
+	 */
+	private static final String PROBE = "dive-counter-probe";
+
+	public DiveCounterFactory(COASTAL coastal, Configuration config) {
+	}
+
+	@Override
+	public int getFrequencyflags() {
+		return ObserverFactory.ONCE_PER_DIVER;
+	}
+
+	@Override
+	public ObserverManager createManager(COASTAL coastal) {
+		return new DiveCounterManager(coastal);
+	}
+
+	@Override
+	public Observer createObserver(COASTAL coastal, ObserverManager manager) {
+		return new DiveCounterObserver(coastal, manager);
+	}
+
+	// ======================================================================
+	//
+	// MANAGER FOR DIVE COUNTER
+	//
+	// ======================================================================
+
+	private static class DiveCounterManager implements ObserverManager {
+
+		private final Broker broker;
+
+		private final AtomicLong diveEnds = new AtomicLong(0);
+
+		private final AtomicLong maxSubscribers = new AtomicLong(0);
+
+		DiveCounterManager(COASTAL coastal) {
+			broker = coastal.getBroker();
+			broker.subscribe("coastal-stop", this::report);
+		}
+
+		void recordDiveEnd() {
+			diveEnds.incrementAndGet();
+			maxSubscribers.accumulateAndGet(broker.getSubscriberCount(PROBE), Math::max);
+		}
+
+		public void report(Object object) {
+			broker.publish("report", new Tuple("DiveCounter.dive-ends", diveEnds.get()));
+			broker.publish("report", new Tuple("DiveCounter.max-subscribers", maxSubscribers.get()));
+			broker.publish("report", new Tuple("DiveCounter.final-subscribers", broker.getSubscriberCount(PROBE)));
+		}
+
+		@Override
+		public String getName() {
+			return null;
+		}
+
+		@Override
+		public String[] getPropertyNames() {
+			return null;
+		}
+
+		@Override
+		public Object[] getPropertyValues() {
+			return null;
+		}
+
+	}
+
+	// ======================================================================
+	//
+	// OBSERVER FOR DIVE COUNTER
+	//
+	// ======================================================================
+
+	private static class DiveCounterObserver implements Observer {
+
+		DiveCounterObserver(COASTAL coastal, ObserverManager manager) {
+			DiveCounterManager counter = (DiveCounterManager) manager;
+			Broker broker = coastal.getBroker();
+			broker.subscribe(PROBE, o -> {
+			});
+			broker.subscribeThread("dive-end", o -> counter.recordDiveEnd());
+		}
+
+	}
+
+}
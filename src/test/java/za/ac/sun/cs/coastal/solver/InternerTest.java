@@ -0,0 +1,147 @@
+/*
+ * This file is part of the COASTAL tool, https://deepseaplatform.github.io/coastal/
+ *
+ * Copyright (c) 2019-2020, Computer Science, Stellenbosch University.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package za.ac.sun.cs.coastal.solver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+
+import org.junit.Test;
+
+import za.ac.sun.cs.coastal.solver.Operation.Operator;
+
+/**
+ * Tests for the interning, equality and ordering of solver expressions.
+ */
+public class InternerTest {
+
+	private static Expression build(String name, long value) {
+		Expression x = IntegerVariable.create(name, 32, -10, 10);
+		Expression sum = Operation.create(Operator.ADD, x, IntegerConstant.create(value, 32));
+		return Operation.create(Operator.AND, Operation.create(Operator.LT, sum, RealConstant.create(0.5, 64)),
+				Operation.create(Operator.NOT, Operation.create(Operator.EQ, x, IntegerConstant.ONE32)));
+	}
+
+	@Test
+	public void testStructurallyEqual() {
+		assertSame(build("X", 3), build("X", 3));
+		assertNotSame(build("X", 3), build("X", 4));
+		assertNotSame(build("X", 3), build("Y", 3));
+		assertSame(IntegerConstant.create(0, 32), IntegerConstant.ZERO32);
+		assertNotSame(IntegerConstant.create(0, 64), IntegerConstant.ZERO32);
+		assertNotSame(RealConstant.create(-0.0, 64), RealConstant.ZERO64);
+		assertSame(RealConstant.create(Double.NaN, 64), RealConstant.create(Double.NaN, 64));
+		assertNotSame(IntegerVariable.create("X", 32, -10, 10), IntegerVariable.create("X", 32, -10, 11));
+		assertNotSame(Operation.create(Operator.ADD, IntegerConstant.ONE32, IntegerConstant.ONE32),
+				Operation.create(Operator.ADD, 64, IntegerConstant.ONE32, IntegerConstant.ONE32));
+	}
+
+	@Test
+	public void testConcurrent() throws InterruptedException {
+		final int threadCount = 8;
+		CyclicBarrier barrier = new CyclicBarrier(threadCount);
+		Expression[][] results = new Expression[threadCount][];
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < threadCount; t++) {
+			final int index = t;
+			threads.add(new Thread(() -> {
+				Expression[] mine = new Expression[500];
+				try {
+					barrier.await();
+				} catch (Exception x) {
+					// start anyway
+				}
+				for (int i = 0; i < mine.length; i++) {
+					mine[i] = build("C" + (i % 50), i);
+				}
+				results[index] = mine;
+			}));
+		}
+		threads.forEach(Thread::start);
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		for (int t = 1; t < threadCount; t++) {
+			for (int i = 0; i < results[0].length; i++) {
+				assertSame(results[0][i], results[t][i]);
+			}
+		}
+	}
+
+	private static int signum(int value) {
+		return Integer.signum(value);
+	}
+
+	@Test
+	public void testCompareToConsistentWithEquals() {
+		List<Expression> expressions = new ArrayList<>(Arrays.asList(IntegerConstant.ZERO32, IntegerConstant.ZERO64,
+				IntegerConstant.MONE32, RealConstant.ZERO64, RealConstant.create(-0.0, 64),
+				RealConstant.create(Double.NaN, 64), RealConstant.ZERO32, IntegerVariable.create("X", 32, -10, 10),
+				IntegerVariable.create("X", 32, -10, 11), IntegerVariable.create("X", 64, -10, 10),
+				RealVariable.create("X", 64, -1.0, 1.0), RealVariable.create("Y", 64, -1.0, 1.0), build("X", 3),
+				build("X", 4), build("Y", 3),
+				Operation.create(Operator.NOT, IntegerConstant.ONE32),
+				Operation.create(Operator.ADD, IntegerConstant.ONE32, IntegerConstant.ONE32),
+				Operation.create(Operator.ADD, 64, IntegerConstant.ONE32, IntegerConstant.ONE32)));
+		for (Expression a : expressions) {
+			for (Expression b : expressions) {
+				assertEquals(a.equals(b), a.compareTo(b) == 0);
+				assertEquals(a.equals(b), a == b);
+				assertEquals(signum(a.compareTo(b)), -signum(b.compareTo(a)));
+				if (a.equals(b)) {
+					assertEquals(a.hashCode(), b.hashCode());
+				}
+				for (Expression c : expressions) {
+					if ((a.compareTo(b) < 0) && (b.compareTo(c) < 0)) {
+						assertTrue(a.compareTo(c) < 0);
+					}
+				}
+			}
+		}
+		assertNotEquals(IntegerConstant.ZERO32, RealConstant.ZERO32);
+		assertNotEquals(0, IntegerConstant.ZERO32.compareTo(RealConstant.ZERO32));
+	}
+
+	@Test
+	public void testRelease() throws InterruptedException {
+		Expression expression = build("Unreferenced", 12345);
+		WeakReference<Expression> ref = new WeakReference<>(expression);
+		int size = Interner.size();
+		expression = null;
+		for (int i = 0; (i < 100) && (ref.get() != null); i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertNull(ref.get());
+		assertTrue(Interner.size() < size);
+		// A new instance takes the place of the released one
+		Expression again = build("Unreferenced", 12345);
+		assertSame(again, build("Unreferenced", 12345));
+	}
+
+}
@@ -0,0 +1,252 @@
+/*
+ * This file is part of the COASTAL tool, https://deepseaplatform.github.io/coastal/
+ *
+ * Copyright (c) 2019-2020, Computer Science, Stellenbosch University.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package za.ac.sun.cs.coastal.solver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import za.ac.sun.cs.coastal.COASTAL;
+import za.ac.sun.cs.coastal.Configuration;
+import za.ac.sun.cs.coastal.solver.Operation.Operator;
+import za.ac.sun.cs.coastal.symbolic.Input;
+
+/**
+ * Tests that the in-process bit-vector solver agrees with Z3 on small
+ * bounded queries, and passes the other queries on.
+ */
+public class SolverBVTest {
+
+	private static COASTAL coastal;
+
+	private static Configuration configuration;
+
+	private static SolverZ3 z3;
+
+	private static final IntegerVariable B = IntegerVariable.create("B", 8, -128, 127);
+
+	private static final IntegerVariable S = IntegerVariable.create("S", 16, -5, 5);
+
+	private static final IntegerVariable X = IntegerVariable.create("X", 32, -8, 8);
+
+	private static final IntegerVariable Y = IntegerVariable.create("Y", 32, -8, 8);
+
+	private static final IntegerVariable ZERO = IntegerVariable.create("Z", 32, 0, 0);
+
+	private static final IntegerVariable HIGH = IntegerVariable.create("H", 32, Integer.MAX_VALUE - 4,
+			Integer.MAX_VALUE);
+
+	private static final IntegerVariable SHIFT = IntegerVariable.create("N", 32, -2, 40);
+
+	private static final IntegerVariable WIDE = IntegerVariable.create("W", 32, -1000000, 1000000);
+
+	/**
+	 * Passes queries on to Z3 and counts them.
+	 */
+	private static final class Counting extends Solver {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		Counting() {
+			super(SolverBVTest.coastal, SolverBVTest.configuration);
+		}
+
+		@Override
+		public Input solve(Expression expression) {
+			count.incrementAndGet();
+			return z3.solve(expression);
+		}
+
+		@Override
+		public Input solveOrUnknown(Expression expression) {
+			count.incrementAndGet();
+			return z3.solveOrUnknown(expression);
+		}
+
+	}
+
+	@BeforeClass
+	public static void setUp() {
+		final Logger log = LogManager.getLogger("COASTAL-TEST");
+		Configuration config = Configuration.load(log, new String[] { "Test01.properties", "simple/Switch01.properties" });
+		assertNotNull(config);
+		coastal = new COASTAL(log, config);
+		configuration = config.subset("coastal.settings.solver");
+		z3 = new SolverZ3(coastal, configuration);
+	}
+
+	private static Expression c32(long value) {
+		return IntegerConstant.create(value, 32);
+	}
+
+	private static Expression c64(long value) {
+		return IntegerConstant.create(value, 64);
+	}
+
+	private static Expression op(Operator operator, Expression... operands) {
+		return Operation.create(operator, operands);
+	}
+
+	private static Expression and(Expression... conjuncts) {
+		Expression expression = conjuncts[0];
+		for (int i = 1; i < conjuncts.length; i++) {
+			expression = Operation.create(Operator.AND, conjuncts[i], expression);
+		}
+		return expression;
+	}
+
+	/**
+	 * Solve an expression in-process and with Z3, check that both agree on its
+	 * satisfiability, and check that Z3 accepts the in-process model. The query
+	 * must be decided in-process.
+	 * 
+	 * @param expression
+	 *                   the expression to solve
+	 * @param variables
+	 *                   the variables of the expression
+	 * @return the in-process model, or {@code null} if there is none
+	 */
+	private static Input check(Expression expression, IntegerVariable... variables) {
+		Counting delegate = new Counting();
+		Input model = new SolverBV(coastal, configuration, delegate, 1000000).solveOrUnknown(expression);
+		assertEquals(0, delegate.count.get());
+		Input expected = z3.solveOrUnknown(expression);
+		assertNotSame(Solver.UNKNOWN, expected);
+		assertEquals(expected == null, model == null);
+		if (model != null) {
+			Expression pinned = expression;
+			for (IntegerVariable variable : variables) {
+				long value = (Long) model.get(variable.getName());
+				pinned = and(pinned, op(Operator.EQ, variable, IntegerConstant.create(value, variable.getSize())));
+			}
+			assertNotNull(z3.solve(pinned));
+		}
+		return model;
+	}
+
+	@Test
+	public void testSignExtension() {
+		// B2I, S2I, and I2L sign-extend their operand
+		assertEquals(-1L, check(op(Operator.EQ, Operation.create(Operator.B2I, 32, B), c32(-1)), B).get("B"));
+		check(op(Operator.EQ, Operation.create(Operator.B2I, 32, B), c32(255)), B);
+		assertEquals(-5L, check(op(Operator.LT, Operation.create(Operator.S2I, 32, S), c32(-4)), S).get("S"));
+		assertEquals(-8L, check(op(Operator.EQ, Operation.create(Operator.I2L, 64, X), c64(-8)), X).get("X"));
+		check(op(Operator.EQ, Operation.create(Operator.I2L, 64, X), c64(0xfffffff8L)), X);
+		// Narrower operands are sign-extended to the size of the wider one
+		check(op(Operator.EQ, op(Operator.ADD, X, c64(-1)), c64(-9)), X);
+		// Truncation keeps the low bits
+		assertEquals((long) Integer.MAX_VALUE, check(op(Operator.EQ, Operation.create(Operator.I2B, 8, HIGH),
+				IntegerConstant.create(-1, 8)), HIGH).get("H"));
+	}
+
+	@Test
+	public void testWraparound() {
+		assertEquals((long) Integer.MAX_VALUE - 4, check(op(Operator.LT, op(Operator.ADD, HIGH, c32(10)), c32(0)), HIGH).get("H"));
+		check(op(Operator.GT, op(Operator.ADD, HIGH, c32(4)), HIGH), HIGH);
+		check(op(Operator.EQ, op(Operator.MUL, HIGH, c32(2)), c32(-2)), HIGH);
+		check(op(Operator.EQ, op(Operator.SUB, c32(Integer.MIN_VALUE), X), c32(Integer.MAX_VALUE)), X);
+	}
+
+	@Test
+	public void testDivisionByZero() {
+		// bvsdiv by zero is -1 for non-negative and 1 for negative dividends
+		check(and(op(Operator.EQ, op(Operator.DIV, X, ZERO), c32(1)), op(Operator.GE, X, c32(0))), X, ZERO);
+		check(and(op(Operator.EQ, op(Operator.DIV, X, ZERO), c32(1)), op(Operator.LT, X, c32(0))), X, ZERO);
+		check(and(op(Operator.EQ, op(Operator.DIV, X, ZERO), c32(-1)), op(Operator.EQ, X, c32(3))), X, ZERO);
+		// bvsrem by zero is the dividend
+		check(op(Operator.NE, op(Operator.REM, X, ZERO), X), X, ZERO);
+		check(op(Operator.EQ, op(Operator.REM, X, Y), c32(-3)), X, Y);
+		check(op(Operator.EQ, op(Operator.DIV, c32(Integer.MIN_VALUE), X), c32(Integer.MIN_VALUE)), X);
+	}
+
+	@Test
+	public void testShifts() {
+		// Shift amounts are not masked to five bits as in Java
+		check(and(op(Operator.EQ, op(Operator.SHL, c32(1), SHIFT), c32(2)), op(Operator.GT, SHIFT, c32(31))), SHIFT);
+		check(and(op(Operator.EQ, op(Operator.SHL, c32(1), SHIFT), c32(0)), op(Operator.GT, SHIFT, c32(31))), SHIFT);
+		check(and(op(Operator.EQ, op(Operator.ASHR, X, SHIFT), c32(-1)), op(Operator.LT, SHIFT, c32(0))), X, SHIFT);
+		check(and(op(Operator.NE, op(Operator.LSHR, X, SHIFT), c32(0)), op(Operator.LT, SHIFT, c32(0))), X, SHIFT);
+		check(op(Operator.EQ, op(Operator.LSHR, X, c32(28)), c32(15)), X);
+		check(op(Operator.EQ, op(Operator.SHL, X, c32(30)), c32(Integer.MIN_VALUE)), X);
+	}
+
+	@Test
+	public void testNarrowing() {
+		// With the domain narrowed by both conjuncts, a budget of a few steps
+		// is enough; constants on the left are mirrored
+		Counting delegate = new Counting();
+		SolverBV solver = new SolverBV(coastal, configuration, delegate, 3);
+		Expression expression = and(op(Operator.LT, c32(999), WIDE), op(Operator.GE, c32(1000), WIDE));
+		assertEquals(1000L, solver.solveOrUnknown(expression).get("W"));
+		expression = and(op(Operator.GT, c32(-999), WIDE), op(Operator.LE, c32(-1000), WIDE));
+		assertEquals(-1000L, solver.solveOrUnknown(expression).get("W"));
+		expression = and(op(Operator.NE, WIDE, c32(-1000000)), op(Operator.LT, WIDE, c32(-999998)));
+		assertEquals(-999999L, solver.solveOrUnknown(expression).get("W"));
+		expression = and(op(Operator.GT, c32(5), WIDE), op(Operator.GT, WIDE, c32(4)));
+		assertNull(solver.solveOrUnknown(expression));
+		assertEquals(0, delegate.count.get());
+		check(and(op(Operator.LE, c32(3), X), op(Operator.GE, c32(3), X), op(Operator.NE, X, c32(3))), X);
+	}
+
+	@Test
+	public void testFallback() {
+		Counting delegate = new Counting();
+		SolverBV solver = new SolverBV(coastal, configuration, delegate, 1000);
+		// The budget runs out before the model is found
+		Expression expression = op(Operator.EQ, op(Operator.MUL, WIDE, WIDE), c32(999 * 999));
+		Input model = solver.solveOrUnknown(expression);
+		assertEquals(1, delegate.count.get());
+		assertNotNull(model);
+		long w = (Long) model.get("W");
+		assertEquals(999 * 999, w * w);
+		// Unsatisfiable within the budget
+		assertNull(solver.solveOrUnknown(and(op(Operator.LT, X, Y), op(Operator.LT, Y, X))));
+		assertEquals(1, delegate.count.get());
+		// Satisfiable within the budget
+		assertNotNull(solver.solveOrUnknown(op(Operator.EQ, op(Operator.ADD, X, Y), c32(16))));
+		assertEquals(1, delegate.count.get());
+	}
+
+	@Test
+	public void testRealsFallback() {
+		Counting delegate = new Counting();
+		SolverBV solver = new SolverBV(coastal, configuration, delegate, 1000000);
+		RealVariable r = RealVariable.create("R", 64, -10.0, 10.0);
+		Expression expression = and(op(Operator.GT, r, RealConstant.create(2.5, 64)),
+				op(Operator.LT, r, RealConstant.create(3.0, 64)));
+		Input model = solver.solveOrUnknown(expression);
+		assertEquals(1, delegate.count.get());
+		assertNotNull(model);
+		double value = (Double) model.get("R");
+		assertEquals(true, (value > 2.5) && (value < 3.0));
+		// A variable whose bounds do not fit in its size is also passed on
+		IntegerVariable unbounded = IntegerVariable.create("U", 8, 0, 1000);
+		solver.solveOrUnknown(op(Operator.EQ, unbounded, IntegerConstant.create(5, 8)));
+		assertEquals(2, delegate.count.get());
+	}
+
+}
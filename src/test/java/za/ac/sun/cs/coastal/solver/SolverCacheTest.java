@@ -0,0 +1,231 @@
+/*
+ * This file is part of the COASTAL tool, https://deepseaplatform.github.io/coastal/
+ *
+ * Copyright (c) 2019-2020, Computer Science, Stellenbosch University.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package za.ac.sun.cs.coastal.solver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import za.ac.sun.cs.coastal.COASTAL;
+import za.ac.sun.cs.coastal.Configuration;
+import za.ac.sun.cs.coastal.solver.Operation.Operator;
+import za.ac.sun.cs.coastal.symbolic.Input;
+
+/**
+ * Tests for the solver cache: canonical keys, cached verdicts, eviction and
+ * the cache file.
+ */
+public class SolverCacheTest {
+
+	private static final Logger log = LogManager.getLogger("COASTAL-TEST");
+
+	private static final IntegerVariable A = IntegerVariable.create("A", 32, -8, 8);
+
+	private static final IntegerVariable B = IntegerVariable.create("B", 32, -8, 8);
+
+	private static final IntegerVariable X = IntegerVariable.create("X", 32, -8, 8);
+
+	private static final IntegerVariable Y = IntegerVariable.create("Y", 32, -8, 8);
+
+	private static final RealVariable R = RealVariable.create("R", 64, -1.0, 1.0);
+
+	private File directory;
+
+	private COASTAL coastal;
+
+	private Configuration configuration;
+
+	/**
+	 * Returns a fixed answer and counts the queries it receives.
+	 */
+	private final class Scripted extends Solver {
+
+		private Input answer = null;
+
+		private int count = 0;
+
+		Scripted() {
+			super(SolverCacheTest.this.coastal, SolverCacheTest.this.configuration);
+		}
+
+		@Override
+		public Input solve(Expression expression) {
+			Input input = solveOrUnknown(expression);
+			return (input == UNKNOWN) ? null : input;
+		}
+
+		@Override
+		public Input solveOrUnknown(Expression expression) {
+			count++;
+			return answer;
+		}
+
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("solver-cache").toFile();
+		String extra = "coastal.settings.solver.cache-file = " + new File(directory, "cache.txt").getPath();
+		Configuration config = Configuration.load(log, new String[] { "Test01.properties", "simple/Switch01.properties" },
+				extra);
+		assertNotNull(config);
+		coastal = new COASTAL(log, config);
+		configuration = config.subset("coastal.settings.solver");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(directory);
+	}
+
+	private static Expression c32(long value) {
+		return IntegerConstant.create(value, 32);
+	}
+
+	private static Expression and(Expression left, Expression right) {
+		return Operation.create(Operator.AND, left, right);
+	}
+
+	private static Expression lt(Expression left, Expression right) {
+		return Operation.create(Operator.LT, left, right);
+	}
+
+	private static Input model(Object... namesAndValues) {
+		Input input = new Input();
+		for (int i = 0; i < namesAndValues.length; i += 2) {
+			input.put((String) namesAndValues[i], namesAndValues[i + 1]);
+		}
+		return input;
+	}
+
+	@Test
+	public void testAlphaEquivalent() {
+		Scripted delegate = new Scripted();
+		SolverCache cache = new SolverCache(coastal, configuration, delegate, 10);
+		delegate.answer = model("X", 1L, "Y", 2L);
+		Input input = cache.solve(and(lt(X, Y), lt(X, c32(5))));
+		assertEquals(1L, input.get("X"));
+		// Renamed variables and reordered conjuncts share the entry
+		input = cache.solve(and(lt(A, c32(5)), lt(A, B)));
+		assertEquals(1, delegate.count);
+		assertEquals(1L, input.get("A"));
+		assertEquals(2L, input.get("B"));
+		// Swapping the roles of the variables does not
+		cache.solve(and(lt(Y, X), lt(X, c32(5))));
+		assertEquals(2, delegate.count);
+	}
+
+	@Test
+	public void testBoundsMiss() {
+		Scripted delegate = new Scripted();
+		SolverCache cache = new SolverCache(coastal, configuration, delegate, 10);
+		delegate.answer = model("X", 1L);
+		cache.solve(lt(X, c32(5)));
+		cache.solve(lt(IntegerVariable.create("X", 32, -9, 8), c32(5)));
+		cache.solve(lt(IntegerVariable.create("X", 64, -8, 8), c32(5)));
+		assertEquals(3, delegate.count);
+		cache.solve(lt(IntegerVariable.create("Z", 32, -9, 8), c32(5)));
+		assertEquals(3, delegate.count);
+	}
+
+	@Test
+	public void testUnsatAndUnknown() {
+		Scripted delegate = new Scripted();
+		SolverCache cache = new SolverCache(coastal, configuration, delegate, 10);
+		delegate.answer = null;
+		assertNull(cache.solve(lt(X, X)));
+		assertNull(cache.solveOrUnknown(lt(Y, Y)));
+		assertEquals(1, delegate.count);
+		// Failures are passed on each time
+		delegate.answer = Solver.UNKNOWN;
+		assertSame(Solver.UNKNOWN, cache.solveOrUnknown(lt(X, c32(0))));
+		assertNull(cache.solve(lt(X, c32(0))));
+		assertEquals(3, delegate.count);
+	}
+
+	@Test
+	public void testEviction() {
+		Scripted delegate = new Scripted();
+		SolverCache cache = new SolverCache(coastal, configuration, delegate, 2);
+		delegate.answer = model("X", 0L);
+		Expression q1 = lt(X, c32(1));
+		Expression q2 = lt(X, c32(2));
+		Expression q3 = lt(X, c32(3));
+		cache.solve(q1);
+		cache.solve(q2);
+		cache.solve(q1);
+		assertEquals(2, delegate.count);
+		// q2 is now the least recently used entry
+		cache.solve(q3);
+		cache.solve(q1);
+		assertEquals(3, delegate.count);
+		cache.solve(q2);
+		assertEquals(4, delegate.count);
+	}
+
+	@Test
+	public void testSaveLoad() throws IOException {
+		Scripted delegate = new Scripted();
+		SolverCache cache = new SolverCache(coastal, configuration, delegate, 10);
+		Expression sat = and(lt(X, Y), Operation.create(Operator.GT, R, RealConstant.create(0.5, 64)));
+		Expression partial = lt(X, c32(7));
+		Expression unsat = lt(X, X);
+		Expression odd = lt(X, c32(-3));
+		delegate.answer = model("X", -1L, "Y", 3L, "R", 0.75);
+		cache.solve(sat);
+		delegate.answer = model();
+		cache.solve(partial);
+		delegate.answer = null;
+		cache.solve(unsat);
+		delegate.answer = model("X", "not a number");
+		cache.solve(odd);
+		assertEquals(4, delegate.count);
+		cache.save();
+
+		Scripted other = new Scripted();
+		SolverCache loaded = new SolverCache(coastal, configuration, other, 10);
+		Input input = loaded.solve(and(lt(A, B), Operation.create(Operator.GT, R, RealConstant.create(0.5, 64))));
+		assertEquals(-1L, input.get("A"));
+		assertEquals(3L, input.get("B"));
+		assertEquals(0.75, input.get("R"));
+		assertEquals(0, loaded.solve(partial).getSize());
+		assertNull(loaded.solve(unsat));
+		assertEquals(0, other.count);
+		// The entry with a value that cannot be written was left out
+		other.answer = model("X", 0L);
+		assertEquals(0L, loaded.solve(odd).get("X"));
+		assertEquals(1, other.count);
+		List<String> lines = Files.readAllLines(new File(directory, "cache.txt").toPath());
+		assertEquals(3, lines.size());
+	}
+
+}
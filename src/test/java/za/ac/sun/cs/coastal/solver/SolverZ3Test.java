@@ -0,0 +1,201 @@
+/*
+ * This file is part of the COASTAL tool, https://deepseaplatform.github.io/coastal/
+ *
+ * Copyright (c) 2019-2020, Computer Science, Stellenbosch University.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package za.ac.sun.cs.coastal.solver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import za.ac.sun.cs.coastal.COASTAL;
+import za.ac.sun.cs.coastal.Configuration;
+import za.ac.sun.cs.coastal.solver.Operation.Operator;
+import za.ac.sun.cs.coastal.symbolic.Input;
+
+/**
+ * Tests for the commands that {@link SolverZ3} sends to long-lived solver
+ * processes. The solver is started with a scripted stand-in for Z3 that logs
+ * the commands it receives and answers them from a file.
+ */
+public class SolverZ3Test {
+
+	private static final IntegerVariable X = IntegerVariable.create("X", 32, -8, 8);
+
+	private static final IntegerVariable Y = IntegerVariable.create("Y", 32, -8, 8);
+
+	private static final String MODEL = "(model (define-fun X () (_ BitVec 32) #x00000001)"
+			+ " (define-fun Y () (_ BitVec 32) #xfffffffe))";
+
+	private File directory;
+
+	private COASTAL coastal;
+
+	private SolverZ3 solver;
+
+	/**
+	 * A stand-in for a Z3 process. The n-th process started in a directory
+	 * appends the commands it receives to the file {@code n.log}, and answers
+	 * each {@code (check-sat)}, {@code (get-model)}, and
+	 * {@code (get-unsat-core)} command with the next line of {@code n.txt}.
+	 */
+	public static final class FakeZ3 {
+
+		public static void main(String[] args) throws IOException {
+			File directory = new File(args[0]);
+			int n = 0;
+			while (new File(directory, n + ".log").exists()) {
+				n++;
+			}
+			Iterator<String> responses = Files.readAllLines(new File(directory, n + ".txt").toPath()).iterator();
+			try (PrintWriter log = new PrintWriter(new FileWriter(new File(directory, n + ".log")), true)) {
+				BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+				String line;
+				while ((line = in.readLine()) != null) {
+					log.println(line);
+					if (line.equals("(exit)")) {
+						break;
+					} else if (line.startsWith("(check-sat") || line.startsWith("(get-")) {
+						System.out.println(responses.hasNext() ? responses.next() : "(error \"no response\")");
+						System.out.flush();
+					}
+				}
+			}
+		}
+
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("coastal-z3").toFile();
+		final Logger log = LogManager.getLogger("COASTAL-TEST");
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		String args = "-cp " + System.getProperty("java.class.path") + " " + FakeZ3.class.getName() + " "
+				+ directory.getAbsolutePath();
+		Configuration config = Configuration.load(log, new String[] { "Test01.properties", "simple/Switch01.properties" },
+				"coastal.settings.solver.z3-path = " + java + "\ncoastal.settings.solver.z3-args = " + args);
+		assertNotNull(config);
+		coastal = new COASTAL(log, config);
+		solver = new SolverZ3(coastal, config.subset("coastal.settings.solver"));
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(directory);
+	}
+
+	private void script(int process, String... responses) throws IOException {
+		Files.write(new File(directory, process + ".txt").toPath(), Arrays.asList(responses));
+	}
+
+	/**
+	 * Return the stack and query commands that a process has received, in order.
+	 * The assertions inside the frames are left out.
+	 */
+	private List<String> commands(int process) throws IOException {
+		List<String> commands = new ArrayList<>();
+		for (String line : Files.readAllLines(new File(directory, process + ".log").toPath())) {
+			if (line.startsWith("(push") || line.startsWith("(pop") || line.startsWith("(check-sat")
+					|| line.startsWith("(get-")) {
+				commands.add(line);
+			}
+		}
+		return commands;
+	}
+
+	private static Expression c32(long value) {
+		return IntegerConstant.create(value, 32);
+	}
+
+	private static Expression and(Expression newer, Expression older) {
+		return Operation.create(Operator.AND, newer, older);
+	}
+
+	@Test
+	public void testSiblingQueries() throws IOException {
+		script(0, "sat", MODEL, "sat", MODEL, "unsat");
+		Expression a = Operation.create(Operator.LT, X, c32(5));
+		Expression b = Operation.create(Operator.GT, Y, c32(0));
+		Expression c = Operation.create(Operator.LE, Y, c32(0));
+		Expression d = Operation.create(Operator.EQ, X, Y);
+		Input model = solver.solveOrUnknown(and(b, a));
+		assertEquals(1L, model.get("X"));
+		assertEquals(-2L, model.get("Y"));
+		// The sibling query keeps the frame of the shared conjunct
+		assertNotNull(solver.solveOrUnknown(and(c, a)));
+		// A deeper query only adds a frame
+		assertNull(solver.solveOrUnknown(and(d, and(c, a))));
+		assertEquals(Arrays.asList("(push 1)", "(push 1)", "(check-sat)", "(get-model)", "(pop 1)", "(push 1)",
+				"(check-sat)", "(get-model)", "(push 1)", "(check-sat)"), commands(0));
+		assertFalse(new File(directory, "1.log").exists());
+	}
+
+	@Test
+	public void testErrorDiscardsSession() throws IOException {
+		script(0, "sat", MODEL, "(error \"line 4 column 10: unknown constant\")");
+		script(1, "sat", MODEL);
+		Expression a = Operation.create(Operator.LT, X, c32(5));
+		Expression b = Operation.create(Operator.GT, Y, c32(0));
+		assertNotNull(solver.solveOrUnknown(a));
+		assertSame(Solver.UNKNOWN, solver.solveOrUnknown(and(b, a)));
+		// The process that answered with an error is not used again
+		assertNotNull(solver.solveOrUnknown(and(b, a)));
+		assertEquals(Arrays.asList("(push 1)", "(check-sat)", "(get-model)", "(push 1)", "(check-sat)"), commands(0));
+		assertEquals(Arrays.asList("(push 1)", "(push 1)", "(check-sat)", "(get-model)"), commands(1));
+	}
+
+	@Test
+	public void testUnsatCoreSharesSession() throws IOException {
+		script(0, "sat", MODEL, "unsat", "(c0 c2)", "sat", MODEL);
+		Expression a = Operation.create(Operator.LT, X, c32(0));
+		Expression b = Operation.create(Operator.GT, Y, c32(0));
+		Expression c = Operation.create(Operator.GT, X, c32(0));
+		assertNotNull(solver.solveOrUnknown(and(b, a)));
+		// The core replaces the frames of the previous query with one frame
+		assertEquals(Arrays.asList(a, c), solver.getUnsatCore(and(c, and(b, a))));
+		assertNotNull(solver.solveOrUnknown(and(b, a)));
+		assertEquals(Arrays.asList("(push 1)", "(push 1)", "(check-sat)", "(get-model)", "(pop 2)", "(push 1)",
+				"(check-sat)", "(get-unsat-core)", "(pop 1)", "(push 1)", "(push 1)", "(check-sat)", "(get-model)"),
+				commands(0));
+		List<String> log = Files.readAllLines(new File(directory, "0.log").toPath());
+		assertEquals(3, log.stream().filter(line -> line.contains(":named c")).count());
+		assertFalse(new File(directory, "1.log").exists());
+	}
+
+}
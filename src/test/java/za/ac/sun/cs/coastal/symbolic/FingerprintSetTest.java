@@ -0,0 +1,211 @@
+/*
+ * This file is part of the COASTAL tool, https://deepseaplatform.github.io/coastal/
+ *
+ * Copyright (c) 2019-2020, Computer Science, Stellenbosch University.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package za.ac.sun.cs.coastal.symbolic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Tests for the fingerprint sets that deduplicate inputs, and for the
+ * fingerprints of inputs.
+ */
+public class FingerprintSetTest {
+
+	@Test
+	public void testStripes() {
+		FingerprintSet set = new FingerprintSet();
+		// The same slot in different stripes, then a collision in one stripe
+		for (long high = 0; high < 16; high++) {
+			assertTrue(set.add((high << 60) | 1));
+		}
+		assertTrue(set.add(65));
+		assertTrue(set.add(129));
+		for (long high = 0; high < 16; high++) {
+			assertFalse(set.add((high << 60) | 1));
+		}
+		assertFalse(set.add(65));
+		assertFalse(set.add(129));
+		assertEquals(18, set.size());
+	}
+
+	@Test
+	public void testResize() {
+		FingerprintSet set = new FingerprintSet();
+		// Small values all fall in the first stripe
+		for (long i = 1; i <= 100000; i++) {
+			assertTrue(set.add(i));
+			assertTrue(set.add(FingerprintSet.mix(i)));
+		}
+		for (long i = 1; i <= 100000; i++) {
+			assertFalse(set.add(i));
+			assertFalse(set.add(FingerprintSet.mix(i)));
+		}
+		assertEquals(200000, set.size());
+	}
+
+	@Test
+	public void testZero() {
+		FingerprintSet set = new FingerprintSet();
+		assertTrue(set.add(0));
+		assertFalse(set.add(0));
+		for (long i = 1; i < 1000; i++) {
+			set.add(i);
+		}
+		assertFalse(set.add(0));
+		assertTrue(set.add(1L << 60));
+		assertEquals(1001, set.size());
+	}
+
+	@Test
+	public void testLimit() {
+		FingerprintSet set = new FingerprintSet(1000);
+		for (long i = 0; i < 2000; i++) {
+			assertTrue(set.add(FingerprintSet.mix(i)));
+		}
+		// Beyond the limit, a new fingerprint may be taken for an old one
+		int added = 0;
+		for (long i = 2000; i < 4000; i++) {
+			if (set.add(FingerprintSet.mix(i))) {
+				added++;
+			}
+		}
+		assertTrue(added > 1900);
+		assertEquals(2000 + added, set.size());
+		// but an old fingerprint is never taken for a new one
+		for (long i = 0; i < 4000; i++) {
+			assertFalse(set.add(FingerprintSet.mix(i)));
+		}
+		assertEquals(2000 + added, set.size());
+	}
+
+	@Test
+	public void testConcurrent() throws InterruptedException {
+		final int count = 50000;
+		FingerprintSet set = new FingerprintSet();
+		AtomicInteger added = new AtomicInteger();
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 8; t++) {
+			final int offset = t * 997;
+			threads.add(new Thread(() -> {
+				for (int i = 0; i < count; i++) {
+					if (set.add(FingerprintSet.mix((i + offset) % count))) {
+						added.incrementAndGet();
+					}
+				}
+			}));
+		}
+		threads.forEach(Thread::start);
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(count, added.get());
+		assertEquals(count, set.size());
+	}
+
+	// ======================================================================
+	//
+	// INPUT FINGERPRINTS
+	//
+	// ======================================================================
+
+	private static Input input(Object... indicesAndValues) {
+		Input input = new Input();
+		for (int i = 0; i < indicesAndValues.length; i += 2) {
+			Object key = indicesAndValues[i];
+			if (key instanceof Integer) {
+				input.put((Integer) key, indicesAndValues[i + 1]);
+			} else {
+				input.put((String) key, indicesAndValues[i + 1]);
+			}
+		}
+		return input;
+	}
+
+	/**
+	 * Check that two inputs have the same fingerprint exactly when they have
+	 * the same string representation, which is what deduplication used to
+	 * compare.
+	 */
+	private static void assertLikeStrings(Input a, Input b) {
+		boolean sameString = a.toString().equals(b.toString());
+		assertEquals(sameString, a.getFingerprint() == b.getFingerprint());
+		FingerprintSet set = new FingerprintSet();
+		set.add(a.getFingerprint());
+		assertEquals(!sameString, set.add(b.getFingerprint()));
+	}
+
+	@Test
+	public void testInputFingerprints() {
+		assertLikeStrings(input(0, 5, 1, "x", "A", 2.5), input("A", 2.5, 1, "x", 0, 5));
+		assertLikeStrings(input(0, 5), input(0, 5L));
+		assertLikeStrings(input(0, (short) -1), input(0, (byte) -1));
+		assertLikeStrings(input(0, 'a'), input(0, "a"));
+		assertLikeStrings(input(0, true), input(0, "true"));
+		assertLikeStrings(input(0, 5), input(0, 6));
+		assertLikeStrings(input(0, 5), input(1, 5));
+		assertLikeStrings(input(0, 5), input("0", 5));
+		assertLikeStrings(input(0, 1, 1, 2), input(0, 2, 1, 1));
+		assertLikeStrings(input(0, 0.0), input(0, -0.0));
+		assertLikeStrings(input(0, null), input());
+		assertLikeStrings(input(0, "a,b"), input(0, "a", 1, "b"));
+		assertLikeStrings(input("A", 1), input("A", 1L));
+	}
+
+	@Test
+	public void testPayloadFingerprints() {
+		Input a = input(0, 1);
+		Input b = input(0, 1);
+		a.setPayload("priority", 3);
+		assertLikeStrings(a, b);
+		b.setPayload("priority", 3);
+		assertLikeStrings(a, b);
+		b.setPayload("priority", 4);
+		assertLikeStrings(a, b);
+		a.setPayload("origin", "x");
+		a.setPayload("priority", 4);
+		b.setPayload("origin", "x");
+		assertLikeStrings(a, b);
+		assertEquals(a.getMapFingerprint(), input(0, 1).getMapFingerprint());
+	}
+
+	@Test
+	public void testArrayFingerprints() {
+		// Arrays print, and are therefore hashed, by identity
+		int[] array = { 1, 2 };
+		assertLikeStrings(input(0, array), input(0, array));
+		assertLikeStrings(input(0, array), input(0, new int[] { 1, 2 }));
+	}
+
+	@Test
+	public void testKinds() {
+		// Unlike their strings, values of different kinds do not collide
+		assertNotEquals(input(0, 5).getFingerprint(), input(0, "5").getFingerprint());
+		assertNotEquals(input(0, 0.1f).getFingerprint(), input(0, 0.1).getFingerprint());
+		assertEquals(input(0, 5).toString(), input(0, "5").toString());
+	}
+
+}
@@ -0,0 +1,143 @@
+/*
+ * This file is part of the COASTAL tool, https://deepseaplatform.github.io/coastal/
+ *
+ * Copyright (c) 2019-2020, Computer Science, Stellenbosch University.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package za.ac.sun.cs.coastal.symbolic;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * Tests for the text encoding of inputs used by checkpoints and spilled
+ * queues.
+ */
+public class InputTest {
+
+	private static Input roundTrip(Input input) {
+		String line = input.encode();
+		Input copy = Input.decode(line);
+		assertEquals(line, copy.encode());
+		return copy;
+	}
+
+	@Test
+	public void testEmpty() {
+		Input copy = roundTrip(new Input());
+		assertEquals(0, copy.getSize());
+	}
+
+	@Test
+	public void testScalars() {
+		Input input = new Input();
+		input.put(0, 42);
+		input.put(1, -7L);
+		input.put(2, (short) 3);
+		input.put(3, (byte) -1);
+		input.put(4, 'x');
+		input.put(5, true);
+		input.put(6, -0.0);
+		input.put(7, Float.NaN);
+		input.put("a", 5);
+		input.put("b", null);
+		Input copy = roundTrip(input);
+		assertEquals(input.getFingerprint(), copy.getFingerprint());
+		assertEquals(42, copy.get(0));
+		assertEquals(-7L, copy.get(1));
+		assertEquals((short) 3, copy.get(2));
+		assertEquals((byte) -1, copy.get(3));
+		assertEquals('x', copy.get(4));
+		assertEquals(true, copy.get(5));
+		assertEquals(Double.doubleToRawLongBits(-0.0), Double.doubleToRawLongBits((Double) copy.get(6)));
+		assertEquals(Float.floatToRawIntBits(Float.NaN), Float.floatToRawIntBits((Float) copy.get(7)));
+		assertEquals(5, copy.get("a"));
+		assertNull(copy.get("b"));
+	}
+
+	@Test
+	public void testStrings() {
+		Input input = new Input();
+		input.put(0, "plain");
+		input.put(1, "a=b,c%d\te\n");
+		input.put(2, "");
+		input.put("key=with,tab\t", "value");
+		Input copy = roundTrip(input);
+		assertEquals(input.getFingerprint(), copy.getFingerprint());
+		assertEquals("plain", copy.get(0));
+		assertEquals("a=b,c%d\te\n", copy.get(1));
+		assertEquals("", copy.get(2));
+		assertEquals("value", copy.get("key=with,tab\t"));
+	}
+
+	@Test
+	public void testArrays() {
+		Input input = new Input();
+		input.put(0, new int[] { 3, -1, 0, Integer.MAX_VALUE });
+		input.put(1, new long[] { Long.MIN_VALUE });
+		input.put(2, new char[] { 'a', ',', '=' });
+		input.put(3, new boolean[] { true, false });
+		input.put(4, new double[] { 1.5, Double.NEGATIVE_INFINITY });
+		input.put(5, new float[0]);
+		input.put(6, new String[] { "x,y", "", null });
+		input.put(7, new byte[] { -128, 127 });
+		input.put(8, new short[] { 1, 2 });
+		Input copy = roundTrip(input);
+		assertArrayEquals(new int[] { 3, -1, 0, Integer.MAX_VALUE }, (int[]) copy.get(0));
+		assertArrayEquals(new long[] { Long.MIN_VALUE }, (long[]) copy.get(1));
+		assertArrayEquals(new char[] { 'a', ',', '=' }, (char[]) copy.get(2));
+		assertArrayEquals(new boolean[] { true, false }, (boolean[]) copy.get(3));
+		assertArrayEquals(new double[] { 1.5, Double.NEGATIVE_INFINITY }, (double[]) copy.get(4), 0.0);
+		assertEquals(0, ((float[]) copy.get(5)).length);
+		assertArrayEquals(new String[] { "x,y", "", null }, (String[]) copy.get(6));
+		assertArrayEquals(new byte[] { -128, 127 }, (byte[]) copy.get(7));
+		assertArrayEquals(new short[] { 1, 2 }, (short[]) copy.get(8));
+	}
+
+	@Test
+	public void testPayload() {
+		Input input = new Input();
+		input.put(0, 1);
+		input.setPayload("priority", 17);
+		input.setPayload("origin", "mutation");
+		Input copy = roundTrip(input);
+		assertEquals(17, copy.getPayload("priority"));
+		assertEquals("mutation", copy.getPayload("origin"));
+	}
+
+	@Test
+	public void testUnencodable() {
+		Input input = new Input();
+		input.put(0, new Object());
+		assertNull(input.encode());
+		input = new Input();
+		input.put(0, new Integer[] { 1 });
+		assertNull(input.encode());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMalformed() {
+		Input.decode("i0=Q1");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMalformedArray() {
+		Input.decode("i0=[I1,,2");
+	}
+
+}